@@ -67,6 +67,16 @@ public final class AnimChannel {
     
     private float blendAmount = 1f;
     private float blendRate   = 0;
+
+    /**
+     * Keyframe found by each track of the animation and of the animation
+     * blended from, used to find the next keyframe during playback.
+     */
+    private int[] keyFrames = new int[0];
+    private int[] keyFramesBlendFrom = new int[0];
+    private boolean updatingBlendFrom = false;
+    private int[] currentKeyFrames = keyFrames;
+    private int currentTrack;
     
     AnimChannel(AnimControl control){
         this.control = control;
@@ -201,6 +211,9 @@ public final class AnimChannel {
             blendTime = Math.min(blendTime, anim.getLength() / speed);            
             blendFrom = animation;
             timeBlendFrom = time;
+            int[] swap = keyFramesBlendFrom;
+            keyFramesBlendFrom = keyFrames;
+            keyFrames = swap;
             speedBlendFrom = speed;
             loopModeBlendFrom = loopMode;
             blendAmount = 0f;
@@ -299,6 +312,59 @@ public final class AnimChannel {
     BitSet getAffectedBones(){
         return affectedBones;
     }
+
+    Animation getAnimation() {
+        return animation;
+    }
+
+    /**
+     * @return The animation blended from, or null if there is none.
+     */
+    Animation getBlendFrom() {
+        return blendFrom != null && blendAmount != 1.0f ? blendFrom : null;
+    }
+
+    float getTimeBlendFrom() {
+        return timeBlendFrom;
+    }
+
+    float getBlendAmount() {
+        return blendAmount;
+    }
+
+    /**
+     * Sets the track of the animation being updated, the keyframes found
+     * by {@link #findKeyFrame(float[], float) } are kept for this track.
+     */
+    void setCurrentTrack(int trackIndex, int trackCount) {
+        if (updatingBlendFrom) {
+            if (keyFramesBlendFrom.length < trackCount) {
+                keyFramesBlendFrom = new int[trackCount];
+            }
+            currentKeyFrames = keyFramesBlendFrom;
+        } else {
+            if (keyFrames.length < trackCount) {
+                keyFrames = new int[trackCount];
+            }
+            currentKeyFrames = keyFrames;
+        }
+        currentTrack = trackIndex;
+    }
+
+    /**
+     * Finds the keyframe to interpolate from for the current track, starting
+     * from the keyframe found for it in the previous update.
+     * 
+     * @see AnimationUtils#findKeyFrame(float[], float, int) 
+     */
+    int findKeyFrame(float[] times, float time) {
+        if (currentTrack >= currentKeyFrames.length) {
+            return AnimationUtils.findKeyFrame(times, time, 0);
+        }
+        int frame = AnimationUtils.findKeyFrame(times, time, currentKeyFrames[currentTrack]);
+        currentKeyFrames[currentTrack] = frame;
+        return frame;
+    }
     
     public void reset(boolean rewind){
         if(rewind){
@@ -324,7 +390,9 @@ public final class AnimChannel {
             // The blendFrom anim is set, the actual animation
             // playing will be set 
 //            blendFrom.setTime(timeBlendFrom, 1f, control, this, vars);
-            blendFrom.setTime(timeBlendFrom, 1f - blendAmount, control, this, vars);
+            updatingBlendFrom = true;
+            blendFrom.setTime(control.getSampleTime(timeBlendFrom), 1f - blendAmount, control, this, vars);
+            updatingBlendFrom = false;
             
             timeBlendFrom += tpf * speedBlendFrom;
             timeBlendFrom = AnimationUtils.clampWrapTime(timeBlendFrom,
@@ -342,7 +410,7 @@ public final class AnimChannel {
             }
         }
         
-        animation.setTime(time, blendAmount, control, this, vars);
+        animation.setTime(control.getSampleTime(time), blendAmount, control, this, vars);
         
         if (animation.getLength() > 0){
             if (!notified && (time >= animation.getLength() || time < 0)) {
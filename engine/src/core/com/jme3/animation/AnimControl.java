@@ -44,6 +44,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <code>AnimControl</code> is a Spatial control that allows manipulation
@@ -86,6 +87,32 @@ public final class AnimControl extends AbstractControl implements Cloneable {
      * Animation event listeners
      */
     private transient ArrayList<AnimEventListener> listeners = new ArrayList<AnimEventListener>();
+    /**
+     * Transforms of the skeleton bones, the tracks are blended into it
+     */
+    private transient SkeletonPose pose;
+    /**
+     * Hands out the update phases, so that models at the same level of
+     * detail are not all updated on the same frame.
+     */
+    private static final AtomicInteger nextLodPhase = new AtomicInteger();
+    /**
+     * Levels of detail, sorted by distance. Not saved.
+     */
+    private float[] lodDistances = new float[0];
+    private int[] lodIntervals = new int[0];
+    private int[] lodMaxDepths = new int[0];
+    private transient int lodLevel = -1;
+    private transient long lodFrame = 0;
+    private transient int lodPhase = nextLodPhase.getAndIncrement() & 0xffff;
+    private transient float lodTime = 0;
+    private transient float viewDistance = Float.POSITIVE_INFINITY;
+    /**
+     * Cache of poses shared with other controls, null if not used
+     */
+    private transient AnimPoseCache poseCache;
+    private transient AnimPoseCache.Key poseKey;
+    private transient boolean sharingPose = false;
 
     /**
      * Creates a new animation control for the given skeleton.
@@ -114,6 +141,11 @@ public final class AnimControl extends AbstractControl implements Cloneable {
             clone.spatial = spatial;
             clone.channels = new ArrayList<AnimChannel>();
             clone.listeners = new ArrayList<AnimEventListener>();
+            clone.pose = null;
+            clone.poseKey = null;
+            clone.lodFrame = 0;
+            clone.lodPhase = nextLodPhase.getAndIncrement() & 0xffff;
+            clone.lodTime = 0;
 
             if (skeleton != null) {
                 clone.skeleton = new Skeleton(skeleton);
@@ -318,13 +350,158 @@ public final class AnimControl extends AbstractControl implements Cloneable {
         return a.getLength();
     }
 
+    /**
+     * Adds a level of detail for the animation of the model, used when
+     * the model is at least <code>distance</code> away from the camera.
+     * <p>
+     * Far models can be updated less often, the animations being advanced
+     * by the time elapsed since the last update, and can have their deepest
+     * bones, such as fingers, left unanimated. The distance is measured
+     * when the model is rendered, models that were not rendered in the
+     * last frame, for example because they were culled, use the farthest
+     * level of detail. Levels of detail are not saved with the control.
+     * 
+     * @param distance The distance from the camera from which this level
+     * is used
+     * @param updateInterval The model is updated once every
+     * <code>updateInterval</code> frames
+     * @param maxBoneDepth The depth of the deepest animated bones, the
+     * root bones being at depth 0, or -1 to animate all the bones
+     */
+    public void addLodLevel(float distance, int updateInterval, int maxBoneDepth) {
+        if (updateInterval < 1) {
+            throw new IllegalArgumentException("updateInterval must be at least 1");
+        }
+        int count = lodDistances.length;
+        int index = 0;
+        while (index < count && lodDistances[index] <= distance) {
+            index++;
+        }
+
+        // copied so that clones keep their own levels
+        float[] distances = new float[count + 1];
+        int[] intervals = new int[count + 1];
+        int[] maxDepths = new int[count + 1];
+        System.arraycopy(lodDistances, 0, distances, 0, index);
+        System.arraycopy(lodIntervals, 0, intervals, 0, index);
+        System.arraycopy(lodMaxDepths, 0, maxDepths, 0, index);
+        distances[index] = distance;
+        intervals[index] = updateInterval;
+        maxDepths[index] = maxBoneDepth;
+        System.arraycopy(lodDistances, index, distances, index + 1, count - index);
+        System.arraycopy(lodIntervals, index, intervals, index + 1, count - index);
+        System.arraycopy(lodMaxDepths, index, maxDepths, index + 1, count - index);
+        lodDistances = distances;
+        lodIntervals = intervals;
+        lodMaxDepths = maxDepths;
+    }
+
+    /**
+     * Removes all the levels of detail, the model is then animated fully
+     * every frame.
+     */
+    public void clearLodLevels() {
+        lodDistances = new float[0];
+        lodIntervals = new int[0];
+        lodMaxDepths = new int[0];
+        lodLevel = -1;
+    }
+
+    /**
+     * @return The index of the level of detail used in the last update,
+     * in the order of their distances, or -1 if the model was fully
+     * animated.
+     * 
+     * @see #addLodLevel(float, int, int) 
+     */
+    public int getLodLevel() {
+        return lodLevel;
+    }
+
+    /**
+     * Sets a cache to share the poses of the skeleton with other controls
+     * playing the same animations, typically copies of the same model. The
+     * cache is also used by the copies of this control made afterwards.
+     * 
+     * @param poseCache The cache, or null to compute the pose in every update
+     * 
+     * @see AnimPoseCache
+     */
+    public void setPoseCache(AnimPoseCache poseCache) {
+        this.poseCache = poseCache;
+    }
+
+    /**
+     * @return The cache the poses are shared through, null by default.
+     * 
+     * @see #setPoseCache(com.jme3.animation.AnimPoseCache) 
+     */
+    public AnimPoseCache getPoseCache() {
+        return poseCache;
+    }
+
+    /**
+     * @return The time the tracks are sampled at for the given channel time,
+     * rounded when the pose is shared.
+     */
+    float getSampleTime(float time) {
+        return sharingPose ? poseCache.getSampleTime(time) : time;
+    }
+
+    /**
+     * @return The pose the bone tracks are blended into, null if there
+     * is no skeleton.
+     */
+    SkeletonPose getSkeletonPose() {
+        return pose;
+    }
+
     /**
      * Internal use only.
      */
     @Override
     protected void controlUpdate(float tpf) {
+        lodTime += tpf;
+        if (lodDistances.length > 0) {
+            lodLevel = -1;
+            for (int i = 0; i < lodDistances.length && viewDistance >= lodDistances[i]; i++) {
+                lodLevel = i;
+            }
+            viewDistance = Float.POSITIVE_INFINITY;
+
+            if (lodLevel >= 0) {
+                // models at the same level are spread over the frames
+                // of the interval by their phase
+                if ((++lodFrame + lodPhase) % lodIntervals[lodLevel] != 0) {
+                    return;
+                }
+            }
+        }
+        tpf = lodTime;
+        lodTime = 0;
+
+        AnimPoseCache.Entry cached = null;
         if (skeleton != null) {
-            skeleton.reset(); // reset skeleton to bind pose
+            if (pose == null || pose.getSkeleton() != skeleton) {
+                pose = new SkeletonPose(skeleton);
+            }
+            pose.setMaxDepth(lodLevel >= 0 ? lodMaxDepths[lodLevel] : -1);
+            skeleton.setSharedSkinningMatrices(null);
+
+            sharingPose = poseCache != null && pose.isShareable();
+            if (sharingPose) {
+                if (poseKey == null) {
+                    poseKey = new AnimPoseCache.Key();
+                }
+                // the key is the state of the channels before the update
+                poseKey.set(skeleton, channels, poseCache);
+                cached = poseCache.get(poseKey);
+            }
+            // other tracks than bone tracks are still updated
+            pose.setSampling(cached == null);
+            if (cached == null) {
+                pose.reset(); // reset skeleton to bind pose
+            }
         }
 
         TempVars vars = TempVars.get();
@@ -334,7 +511,18 @@ public final class AnimControl extends AbstractControl implements Cloneable {
         vars.release();
 
         if (skeleton != null) {
-            skeleton.updateWorldVectors();
+            if (cached != null) {
+                pose.load(cached.pose);
+            } else {
+                pose.update();
+                if (sharingPose) {
+                    cached = poseCache.put(poseKey, pose.save(), skeleton.computeSkinningMatrices());
+                }
+            }
+            if (cached != null) {
+                skeleton.setSharedSkinningMatrices(cached.skinningMatrices);
+            }
+            sharingPose = false;
         }
     }
 
@@ -343,6 +531,10 @@ public final class AnimControl extends AbstractControl implements Cloneable {
      */
     @Override
     protected void controlRender(RenderManager rm, ViewPort vp) {
+        if (lodDistances.length > 0) {
+            float distance = vp.getCamera().getLocation().distance(spatial.getWorldTranslation());
+            viewDistance = Math.min(viewDistance, distance);
+        }
     }
 
     @Override
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.Matrix4f;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares the poses computed by {@link AnimControl}s whose channels are in
+ * the same state.
+ * <p>
+ * A crowd of copies of a model, which share the skeleton bind pose and the
+ * animations of the original, often plays the same few animations at the
+ * same times. When a cache is set with
+ * {@link AnimControl#setPoseCache(com.jme3.animation.AnimPoseCache) }, the
+ * pose of the skeleton is stored in the cache, keyed by the animations of
+ * the channels, their times rounded to the {@link #getTimeStep() time step}
+ * and their blending state. The other controls in the same state load the
+ * bone transforms from the cache instead of sampling the tracks, and their
+ * skeletons return the cached skinning matrices from
+ * {@link Skeleton#computeSkinningMatrices() }.
+ * <p>
+ * The tracks are sampled at the rounded times. Blend amounts are rounded to
+ * 1/64, a cached pose is used for all the blend amounts that round to the
+ * same value. Poses are not shared when bones are under user control or
+ * not all animated because of a level of detail. Bones should not be
+ * modified after the AnimControl update when a cache is used, as the
+ * skinning matrices would not be recomputed.
+ * <p>
+ * The cache can be shared by controls updated on several threads. The
+ * least recently used poses are dropped when the cache is full.
+ */
+public class AnimPoseCache {
+
+    private static final int BLEND_STEPS = 64;
+
+    private final float timeStep;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache of up to 1024 poses, with a time step of 1/60th of
+     * a second.
+     */
+    public AnimPoseCache() {
+        this(1f / 60f, 1024);
+    }
+
+    /**
+     * @param timeStep The time step the channel times are rounded to
+     * @param maxEntries The maximum number of poses kept
+     */
+    public AnimPoseCache(float timeStep, final int maxEntries) {
+        if (timeStep <= 0) {
+            throw new IllegalArgumentException("timeStep must be greater than zero");
+        }
+        this.timeStep = timeStep;
+        this.maxEntries = maxEntries;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, AnimPoseCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The time step the channel times are rounded to.
+     */
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * @return The maximum number of poses kept.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return The number of poses currently kept.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of updates which used a cached pose.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of updates which computed their pose.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The ratio of updates which used a cached pose, from 0 to 1.
+     */
+    public synchronized float getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (float) hits / total;
+    }
+
+    /**
+     * Resets the hit and miss counts.
+     */
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Removes all the poses.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    float getSampleTime(float time) {
+        return Math.round(time / timeStep) * timeStep;
+    }
+
+    synchronized Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a pose, the matrices are copied.
+     */
+    Entry put(Key key, float[] pose, Matrix4f[] skinningMatrices) {
+        Matrix4f[] matrices = new Matrix4f[skinningMatrices.length];
+        for (int i = 0; i < matrices.length; i++) {
+            matrices[i] = skinningMatrices[i].clone();
+        }
+        Entry entry = new Entry(pose, matrices);
+        Key copy = key.copy();
+        synchronized (this) {
+            entries.put(copy, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[entries=" + size() + ", hitRate=" + getHitRate() + ']';
+    }
+
+    /**
+     * A cached pose, never modified once created.
+     */
+    static final class Entry {
+
+        final float[] pose;
+        final Matrix4f[] skinningMatrices;
+
+        Entry(float[] pose, Matrix4f[] skinningMatrices) {
+            this.pose = pose;
+            this.skinningMatrices = skinningMatrices;
+        }
+    }
+
+    /**
+     * The state of the channels of a control. Each control reuses its key
+     * for lookups, the cache stores copies.
+     */
+    static final class Key {
+
+        private Object skeleton;
+        private int channelCount;
+        // animation, animation blended from, and affected bones per channel
+        private Object[] objects = new Object[0];
+        // time, time blended from and blend amount per channel
+        private int[] values = new int[0];
+        private int hash;
+
+        void set(Skeleton skeleton, List<AnimChannel> channels, AnimPoseCache cache) {
+            this.skeleton = skeleton.getBindPoseKey();
+            channelCount = channels.size();
+            if (objects.length < channelCount * 3) {
+                objects = new Object[channelCount * 3];
+                values = new int[channelCount * 3];
+            }
+
+            int h = this.skeleton.hashCode();
+            for (int i = 0; i < channelCount; i++) {
+                AnimChannel channel = channels.get(i);
+                Animation anim = channel.getAnimation();
+                Animation blendFrom = channel.getBlendFrom();
+                int o = i * 3;
+                objects[o] = anim != null ? anim.getPoseKey() : null;
+                objects[o + 1] = blendFrom != null ? blendFrom.getPoseKey() : null;
+                objects[o + 2] = channel.getAffectedBones();
+                values[o] = anim != null ? Math.round(channel.getTime() / cache.timeStep) : 0;
+                if (blendFrom != null) {
+                    values[o + 1] = Math.round(channel.getTimeBlendFrom() / cache.timeStep);
+                    values[o + 2] = Math.round(channel.getBlendAmount() * BLEND_STEPS);
+                } else {
+                    values[o + 1] = 0;
+                    values[o + 2] = BLEND_STEPS;
+                }
+                for (int j = o; j < o + 3; j++) {
+                    h = 31 * h + (objects[j] != null ? objects[j].hashCode() : 0);
+                    h = 31 * h + values[j];
+                }
+            }
+            hash = h;
+        }
+
+        Key copy() {
+            Key copy = new Key();
+            copy.skeleton = skeleton;
+            copy.channelCount = channelCount;
+            copy.objects = new Object[channelCount * 3];
+            System.arraycopy(objects, 0, copy.objects, 0, channelCount * 3);
+            for (int i = 2; i < copy.objects.length; i += 3) {
+                if (copy.objects[i] != null) {
+                    copy.objects[i] = ((BitSet) copy.objects[i]).clone();
+                }
+            }
+            copy.values = new int[channelCount * 3];
+            System.arraycopy(values, 0, copy.values, 0, channelCount * 3);
+            copy.hash = hash;
+            return copy;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hash != other.hash || skeleton != other.skeleton
+                    || channelCount != other.channelCount) {
+                return false;
+            }
+            for (int i = 0; i < channelCount * 3; i++) {
+                if (values[i] != other.values[i]) {
+                    return false;
+                }
+                Object a = objects[i];
+                Object b = other.objects[i];
+                // animations are compared by identity, affected bones by value
+                if (a != b && (a == null || b == null || i % 3 != 2 || !a.equals(b))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
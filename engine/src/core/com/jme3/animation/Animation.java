@@ -56,6 +56,12 @@ public class Animation implements Savable, Cloneable {
      * The tracks of the animation. 
      */
     private SafeArrayList<Track> tracks = new SafeArrayList<Track>(Track.class);
+    /**
+     * Identifies the poses given by the tracks of this animation, shared
+     * with the copies made by {@link #cloneForSpatial(com.jme3.scene.Spatial) }
+     * which share the tracks. See {@link AnimPoseCache}.
+     */
+    private transient Object poseKey = new Object();
 
     /**
      * Serialization-only. Do not use.
@@ -106,8 +112,10 @@ public class Animation implements Savable, Cloneable {
             return;
         }
 
-        for (Track track : tracks) {
-            track.setTime(time, blendAmount, control, channel, vars);
+        Track[] array = tracks.getArray();
+        for (int i = 0; i < array.length; i++) {
+            channel.setCurrentTrack(i, array.length);
+            array[i].setTime(time, blendAmount, control, channel, vars);
         }
     }
 
@@ -120,6 +128,7 @@ public class Animation implements Savable, Cloneable {
         for (Track track : tracksArray) {
             tracks.add(track);
         }
+        poseKey = new Object();
     }
 
     /**
@@ -128,6 +137,7 @@ public class Animation implements Savable, Cloneable {
      */
     public void addTrack(Track track) {
         tracks.add(track);
+        poseKey = new Object();
     }
 
     /**
@@ -136,6 +146,7 @@ public class Animation implements Savable, Cloneable {
      */
     public void removeTrack(Track track) {
         tracks.remove(track);
+        poseKey = new Object();
         if (track instanceof ClonableTrack) {
             ((ClonableTrack) track).cleanUp();
         }
@@ -162,6 +173,7 @@ public class Animation implements Savable, Cloneable {
             for (Track track : tracks) {
                 result.tracks.add(track.clone());
             }
+            result.poseKey = new Object();
             return result;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError();
@@ -190,6 +202,10 @@ public class Animation implements Savable, Cloneable {
         }
     }
 
+    Object getPoseKey() {
+        return poseKey;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "[name=" + name + ", length=" + length + ']';
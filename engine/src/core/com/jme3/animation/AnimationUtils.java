@@ -64,4 +64,49 @@ public class AnimationUtils {
         }
         return time;
      }
+
+    /**
+     * Finds the keyframe to interpolate from at the given time, which is
+     * the last keyframe before <code>time</code>, or the first keyframe
+     * if there is none. The result is never the last keyframe, so that
+     * the keyframe after it can be used as the one to interpolate to.
+     * <p>
+     * <code>hint</code> is the keyframe found for the previous time, during
+     * playback the result is found by stepping from it, otherwise by a
+     * binary search. Any hint gives the correct result.
+     *
+     * @param times The times of the keyframes in ascending order, at least
+     * two keyframes are needed.
+     * @param time The time in the animation
+     * @param hint The keyframe found for the previous time
+     * @return The index of the keyframe
+     */
+    public static int findKeyFrame(float[] times, float time, int hint) {
+        int lastFrame = times.length - 1;
+        int low = 0;
+        if (hint > 0 && hint < lastFrame && times[hint] < time) {
+            // playing forward, the next keyframes are checked first
+            for (int i = 0; i < 4; i++) {
+                if (hint + 1 >= lastFrame || times[hint + 1] >= time) {
+                    return hint;
+                }
+                hint++;
+            }
+            low = hint + 1;
+        } else if (times[1] >= time || lastFrame == 1) {
+            return 0;
+        }
+
+        // first keyframe at or after the time
+        int high = lastFrame;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low > 0 ? low - 1 : 0;
+    }
 }
@@ -312,6 +312,15 @@ public final class Bone implements Savable {
         userControl = enable;
     }
 
+    /**
+     * @return True if the user controls the bone transform.
+     * 
+     * @see #setUserControl(boolean) 
+     */
+    boolean hasUserControl() {
+        return userControl;
+    }
+
     /**
      * Add a new child to this bone. Shouldn't be used by user code.
      * Can corrupt skeleton.
@@ -370,6 +379,10 @@ public final class Bone implements Savable {
             worldScale.set(localScale);
         }
 
+        updateAttachNode();
+    }
+
+    private void updateAttachNode() {
         if (attachNode != null) {
             attachNode.setLocalTranslation(worldPos);
             attachNode.setLocalRotation(worldRot);
@@ -377,6 +390,27 @@ public final class Bone implements Savable {
         }
     }
 
+    /**
+     * Sets the local and world transforms of this bone, and updates the
+     * attach node. Used by {@link SkeletonPose}, the arrays hold the
+     * transforms of all the bones.
+     * 
+     * @param index The index of this bone in the arrays
+     */
+    void setPoseTransforms(float[] localPos, float[] localRot, float[] localScale,
+            float[] worldPos, float[] worldRot, float[] worldScale, int index) {
+        int p = index * 3;
+        int r = index * 4;
+        this.localPos.set(localPos[p], localPos[p + 1], localPos[p + 2]);
+        this.localRot.set(localRot[r], localRot[r + 1], localRot[r + 2], localRot[r + 3]);
+        this.localScale.set(localScale[p], localScale[p + 1], localScale[p + 2]);
+        this.worldPos.set(worldPos[p], worldPos[p + 1], worldPos[p + 2]);
+        this.worldRot.set(worldRot[r], worldRot[r + 1], worldRot[r + 2], worldRot[r + 3]);
+        this.worldScale.set(worldScale[p], worldScale[p + 1], worldScale[p + 2]);
+        currentWeightSum = -1;
+        updateAttachNode();
+    }
+
     /**
      * Updates world transforms for this bone and it's children.
      */
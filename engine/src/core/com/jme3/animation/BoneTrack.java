@@ -192,9 +192,12 @@ public final class BoneTrack implements Track {
         if (affectedBones != null && !affectedBones.get(targetBoneIndex)) {
             return;
         }
-        
-        Bone target = control.getSkeleton().getBone(targetBoneIndex);
 
+        SkeletonPose pose = control.getSkeletonPose();
+        if (pose != null && !pose.isAnimated(targetBoneIndex)) {
+            return;
+        }
+        
         Vector3f tempV = vars.vect1;
         Vector3f tempS = vars.vect2;
         Quaternion tempQ = vars.quat1;
@@ -216,14 +219,8 @@ public final class BoneTrack implements Track {
                 scales.get(lastFrame, tempS);
             }
         } else {
-            int startFrame = 0;
-            int endFrame = 1;
-            // use lastFrame so we never overflow the array
-            int i;
-            for (i = 0; i < lastFrame && times[i] < time; i++) {
-                startFrame = i;
-                endFrame = i + 1;
-            }
+            int startFrame = channel.findKeyFrame(times, time);
+            int endFrame = startFrame + 1;
 
             float blend = (time - times[startFrame])
                     / (times[endFrame] - times[startFrame]);
@@ -243,11 +240,12 @@ public final class BoneTrack implements Track {
             tempS.interpolateLocal(tempS2, blend);
         }
 
-//        if (weight != 1f) {
+        if (pose != null) {
+            pose.blend(targetBoneIndex, tempV, tempQ, scales != null ? tempS : null, weight);
+        } else {
+            Bone target = control.getSkeleton().getBone(targetBoneIndex);
             target.blendAnimTransforms(tempV, tempQ, scales != null ? tempS : null, weight);
-//        } else {
-//            target.setAnimTransforms(tempV, tempQ, scales != null ? tempS : null);
-//        }
+        }
     }
     
     /**
@@ -55,6 +55,15 @@ public final class Skeleton implements Savable {
      * will cause it to go to the animated position.
      */
     private transient Matrix4f[] skinningMatrixes;
+    /**
+     * Skinning matrices shared with other skeletons, set by AnimControl
+     * when the pose was found in an {@link AnimPoseCache}
+     */
+    private transient Matrix4f[] sharedSkinningMatrixes;
+    /**
+     * Identifies the bind pose, shared by the copies of this skeleton
+     */
+    private transient Object bindPoseKey = new Object();
 
     /**
      * Creates a skeleton from a bone list. 
@@ -106,6 +115,7 @@ public final class Skeleton implements Savable {
             rootBones[i] = recreateBoneStructure(source.rootBones[i]);
         }
         createSkinningMatrices();
+        bindPoseKey = source.bindPoseKey;
 
         for (int i = rootBones.length - 1; i >= 0; i--) {
             rootBones[i].update();
@@ -144,6 +154,7 @@ public final class Skeleton implements Savable {
      * Typically called after setting local animation transforms.
      */
     public void updateWorldVectors() {
+        sharedSkinningMatrixes = null;
         for (int i = rootBones.length - 1; i >= 0; i--) {
             rootBones[i].update();
         }
@@ -153,6 +164,8 @@ public final class Skeleton implements Savable {
      * Saves the current skeleton state as it's binding pose.
      */
     public void setBindingPose() {
+        sharedSkinningMatrixes = null;
+        bindPoseKey = new Object();
         for (int i = rootBones.length - 1; i >= 0; i--) {
             rootBones[i].setBindingPose();
         }
@@ -162,6 +175,7 @@ public final class Skeleton implements Savable {
      * Reset the skeleton to bind pose.
      */
     public final void reset() {
+        sharedSkinningMatrixes = null;
         for (int i = rootBones.length - 1; i >= 0; i--) {
             rootBones[i].reset();
         }
@@ -171,6 +185,7 @@ public final class Skeleton implements Savable {
      * Reset the skeleton to bind pose and updates the bones
      */
     public final void resetAndUpdate() {
+        sharedSkinningMatrixes = null;
         for (int i = rootBones.length - 1; i >= 0; i--) {
             Bone rootBone = rootBones[i];
             rootBone.reset();
@@ -241,9 +256,17 @@ public final class Skeleton implements Savable {
 
     /**
      * Compute the skining matrices for each bone of the skeleton that would be used to transform vertices of associated meshes
+     * <p>
+     * When the pose was taken from an {@link AnimPoseCache}, the returned
+     * matrices are shared with the other skeletons in the same pose, and
+     * must not be modified.
+     * 
      * @return 
      */
     public Matrix4f[] computeSkinningMatrices() {
+        if (sharedSkinningMatrixes != null) {
+            return sharedSkinningMatrixes;
+        }
         TempVars vars = TempVars.get();
         for (int i = 0; i < boneList.length; i++) {
             boneList[i].getOffsetTransform(skinningMatrixes[i], vars.quat1, vars.vect1, vars.vect2, vars.tempMat3);
@@ -252,6 +275,18 @@ public final class Skeleton implements Savable {
         return skinningMatrixes;
     }
 
+    /**
+     * Sets the skinning matrices returned by {@link #computeSkinningMatrices() }
+     * until the bones are updated again, or null to compute them.
+     */
+    void setSharedSkinningMatrices(Matrix4f[] matrices) {
+        sharedSkinningMatrixes = matrices;
+    }
+
+    Object getBindPoseKey() {
+        return bindPoseKey;
+    }
+
     /**
      * returns the number of bones of this skeleton
      * @return 
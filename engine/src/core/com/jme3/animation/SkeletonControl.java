@@ -52,6 +52,7 @@ import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -108,6 +109,23 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
      * Material references used for hardware skinning
      */
     private Set<Material> materials = new HashSet<Material>();
+    /**
+     * Executor used for software skinning, if null the meshes are skinned
+     * on the render thread in {@link #controlRender(RenderManager, ViewPort) }
+     */
+    private transient Executor skinningExecutor;
+    /**
+     * One skinning job per target mesh, only used with an executor
+     */
+    private transient SafeArrayList<SkinningJob> skinningJobs = new SafeArrayList<SkinningJob>(SkinningJob.class);
+    /**
+     * Bone offset matrices packed for the skinning jobs
+     */
+    private transient float[] packedMatrices;
+    /**
+     * True if the skinning jobs were started and not finished yet
+     */
+    private transient boolean skinningStarted = false;
 
     /**
      * Serialization only. Do not use.
@@ -194,6 +212,40 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
         return hwSkinningEnabled;
     }
     
+    /**
+     * Sets the executor used for software skinning.
+     * <p>
+     * With an executor, the meshes are skinned in vertex ranges on the
+     * executor threads. The work is started in
+     * {@link #controlUpdate(float) } if the skeleton was already animated
+     * for this frame, that is if no {@link AnimControl} comes after this
+     * control on the spatial, otherwise it is started when the model is
+     * rendered. The rendering thread helps with the remaining ranges and
+     * waits for the results before rendering. The skinned data is written
+     * to separate buffers which are swapped into the meshes once all the
+     * ranges are done, so the meshes never hold partially skinned data.
+     * <p>
+     * Without an executor (the default), the meshes are skinned on the
+     * rendering thread.
+     * 
+     * @param executor The executor to use, or null to skin on the
+     * rendering thread.
+     */
+    public void setSoftwareSkinningExecutor(Executor executor) {
+        finishSkinningJobs();
+        skinningJobs.clear();
+        skinningExecutor = executor;
+    }
+
+    /**
+     * @return The executor used for software skinning, null by default.
+     * 
+     * @see #setSoftwareSkinningExecutor(java.util.concurrent.Executor) 
+     */
+    public Executor getSoftwareSkinningExecutor() {
+        return skinningExecutor;
+    }
+
     /**
      * Creates a skeleton control. The list of targets will be acquired
      * automatically when the control is attached to a node.
@@ -264,6 +316,14 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
     }
 
     private void controlRenderSoftware() {
+        if (skinningExecutor != null) {
+            if (!skinningStarted) {
+                startSkinningJobs();
+            }
+            finishSkinningJobs();
+            return;
+        }
+
         resetToBind(); // reset morph meshes to bind pose
 
         offsetMatrices = skeleton.computeSkinningMatrices();
@@ -276,6 +336,64 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
         }     
     }
 
+    private void startSkinningJobs() {
+        if (!isSkinningJobsValid()) {
+            skinningJobs.clear();
+            for (Mesh mesh : targets) {
+                skinningJobs.add(new SkinningJob(mesh));
+            }
+        }
+
+        offsetMatrices = skeleton.computeSkinningMatrices();
+        packedMatrices = SkinningJob.packMatrices(offsetMatrices, packedMatrices);
+
+        for (SkinningJob job : skinningJobs.getArray()) {
+            job.start(packedMatrices, skinningExecutor);
+        }
+        skinningStarted = true;
+    }
+
+    private void finishSkinningJobs() {
+        if (!skinningStarted) {
+            return;
+        }
+        skinningStarted = false;
+        for (SkinningJob job : skinningJobs.getArray()) {
+            job.finish();
+        }
+    }
+
+    private boolean isSkinningJobsValid() {
+        if (skinningJobs.size() != targets.size()) {
+            return false;
+        }
+        SkinningJob[] jobs = skinningJobs.getArray();
+        Mesh[] meshes = targets.getArray();
+        for (int i = 0; i < jobs.length; i++) {
+            if (jobs[i].getMesh() != meshes[i] || !jobs[i].isValid()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return True if an AnimControl is updated after this control, in
+     * which case the skeleton is not posed yet in controlUpdate.
+     */
+    private boolean isAnimatedAfterUpdate() {
+        boolean found = false;
+        for (int i = 0; i < spatial.getNumControls(); i++) {
+            Control control = spatial.getControl(i);
+            if (control == this) {
+                found = true;
+            } else if (found && control instanceof AnimControl) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void controlRenderHardware() {
         offsetMatrices = skeleton.computeSkinningMatrices();
         for (Material m : materials) {
@@ -288,6 +406,10 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
     protected void controlRender(RenderManager rm, ViewPort vp) {
         if (!wasMeshUpdated) {
             updateTargetsAndMaterials(spatial);
+
+            if (skinningStarted && (hwSkinningDesired || !isSkinningJobsValid())) {
+                finishSkinningJobs();
+            }
             
             // Prevent illegal cases. These should never happen.
             assert hwSkinningTested || (!hwSkinningTested && !hwSkinningSupported && !hwSkinningEnabled);
@@ -324,8 +446,19 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
 
     @Override
     protected void controlUpdate(float tpf) {
+        if (skinningExecutor != null) {
+            // results that were not rendered are simply replaced
+            finishSkinningJobs();
+
+            // only start early once the targets are known and the model
+            // is skinned in software
+            if (wasMeshUpdated && !hwSkinningEnabled && !hwSkinningDesired
+                    && !isAnimatedAfterUpdate()) {
+                startSkinningJobs();
+            }
+        }
         wasMeshUpdated = false;
-     }
+    }
 
     //only do this for software updates
     void resetToBind() {
@@ -373,6 +506,7 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
         SkeletonControl clone = new SkeletonControl();
 
         clone.skeleton = ctrl.getSkeleton();
+        clone.skinningExecutor = skinningExecutor;
 
         clone.setSpatial(clonedNode);
 
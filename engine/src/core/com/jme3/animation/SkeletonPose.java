@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+
+/**
+ * Holds the local and model space transforms of all the bones of a
+ * {@link Skeleton} in flat float arrays, 3 floats per position and scale
+ * and 4 per rotation, indexed like the bones of the skeleton.
+ * <p>
+ * {@link AnimControl} resets the pose, blends the tracks of all its
+ * channels into it, then computes the model transforms in one pass over
+ * the hierarchy and copies the result into the bones. The computations
+ * are the same as the ones done by {@link Bone}, so both give the same
+ * results.
+ * <p>
+ * Bones deeper than {@link #setMaxDepth(int) the maximum depth} are not
+ * animated and keep their last local transform.
+ */
+final class SkeletonPose {
+
+    private final Skeleton skeleton;
+    private final Bone[] bones;
+    /**
+     * Bone indices, each bone after its parent.
+     */
+    private final int[] order;
+    private final int[] parents;
+    private final int[] depths;
+    private final boolean[] userControl;
+    private int maxDepth = -1;
+    private boolean sampling = true;
+
+    private final float[] bindPos;
+    private final float[] bindRot;
+    private final float[] bindScale;
+    private final float[] localPos;
+    private final float[] localRot;
+    private final float[] localScale;
+    private final float[] weightSums;
+    private final float[] modelPos;
+    private final float[] modelRot;
+    private final float[] modelScale;
+
+    SkeletonPose(Skeleton skeleton) {
+        this.skeleton = skeleton;
+        int count = skeleton.getBoneCount();
+        bones = new Bone[count];
+        for (int i = 0; i < count; i++) {
+            bones[i] = skeleton.getBone(i);
+        }
+
+        order = new int[count];
+        parents = new int[count];
+        depths = new int[count];
+        ArrayList<Bone> queue = new ArrayList<Bone>();
+        Bone[] roots = skeleton.getRoots();
+        for (int i = 0; i < roots.length; i++) {
+            queue.add(roots[i]);
+        }
+        for (int i = 0; i < queue.size(); i++) {
+            Bone bone = queue.get(i);
+            int index = skeleton.getBoneIndex(bone);
+            order[i] = index;
+            if (bone.getParent() == null) {
+                parents[index] = -1;
+                depths[index] = 0;
+            } else {
+                parents[index] = skeleton.getBoneIndex(bone.getParent());
+                depths[index] = depths[parents[index]] + 1;
+            }
+            queue.addAll(bone.getChildren());
+        }
+        userControl = new boolean[count];
+
+        bindPos = new float[count * 3];
+        bindRot = new float[count * 4];
+        bindScale = new float[count * 3];
+        localPos = new float[count * 3];
+        localRot = new float[count * 4];
+        localScale = new float[count * 3];
+        weightSums = new float[count];
+        modelPos = new float[count * 3];
+        modelRot = new float[count * 4];
+        modelScale = new float[count * 3];
+
+        for (int i = 0; i < count; i++) {
+            weightSums[i] = -1;
+            get(bones[i].getLocalPosition(), localPos, i * 3);
+            get(bones[i].getLocalRotation(), localRot, i * 4);
+            get(bones[i].getLocalScale(), localScale, i * 3);
+        }
+    }
+
+    private static void get(Vector3f v, float[] store, int offset) {
+        store[offset] = v.x;
+        store[offset + 1] = v.y;
+        store[offset + 2] = v.z;
+    }
+
+    private static void get(Quaternion q, float[] store, int offset) {
+        store[offset] = q.getX();
+        store[offset + 1] = q.getY();
+        store[offset + 2] = q.getZ();
+        store[offset + 3] = q.getW();
+    }
+
+    Skeleton getSkeleton() {
+        return skeleton;
+    }
+
+    /**
+     * @param maxDepth The depth of the deepest animated bones, the root
+     * bones being at depth 0, or -1 to animate all the bones.
+     */
+    void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param sampling False if the bone tracks are not to be sampled,
+     * because the pose is loaded from an {@link AnimPoseCache}.
+     */
+    void setSampling(boolean sampling) {
+        this.sampling = sampling;
+    }
+
+    /**
+     * @return True if the tracks of the given bone are to be blended
+     * into this pose.
+     */
+    boolean isAnimated(int boneIndex) {
+        return sampling && (maxDepth < 0 || depths[boneIndex] <= maxDepth);
+    }
+
+    /**
+     * @return True if this pose only depends on the animations, that is if
+     * all the bones are animated and none is under user control.
+     */
+    boolean isShareable() {
+        if (maxDepth >= 0) {
+            return false;
+        }
+        for (int i = 0; i < bones.length; i++) {
+            if (bones[i].hasUserControl()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return A copy of the local and model transforms of the bones.
+     */
+    float[] save() {
+        float[] data = new float[bones.length * 20];
+        int offset = 0;
+        for (float[] array : new float[][]{localPos, localRot, localScale, modelPos, modelRot, modelScale}) {
+            System.arraycopy(array, 0, data, offset, array.length);
+            offset += array.length;
+        }
+        return data;
+    }
+
+    /**
+     * Sets the local and model transforms saved by {@link #save() } and
+     * stores them in the bones.
+     */
+    void load(float[] data) {
+        int offset = 0;
+        for (float[] array : new float[][]{localPos, localRot, localScale, modelPos, modelRot, modelScale}) {
+            System.arraycopy(data, offset, array, 0, array.length);
+            offset += array.length;
+        }
+        for (int i = 0; i < bones.length; i++) {
+            weightSums[i] = -1;
+            bones[i].setPoseTransforms(localPos, localRot, localScale, modelPos, modelRot, modelScale, i);
+        }
+    }
+
+    /**
+     * Resets the animated bones to their bind pose. The bones under user
+     * control take their current local transform.
+     */
+    void reset() {
+        for (int i = 0; i < bones.length; i++) {
+            Bone bone = bones[i];
+            userControl[i] = bone.hasUserControl();
+            if (userControl[i]) {
+                get(bone.getLocalPosition(), localPos, i * 3);
+                get(bone.getLocalRotation(), localRot, i * 4);
+                get(bone.getLocalScale(), localScale, i * 3);
+            } else if (isAnimated(i)) {
+                get(bone.getWorldBindPosition(), bindPos, i * 3);
+                get(bone.getWorldBindRotation(), bindRot, i * 4);
+                get(bone.getWorldBindScale(), bindScale, i * 3);
+                System.arraycopy(bindPos, i * 3, localPos, i * 3, 3);
+                System.arraycopy(bindRot, i * 4, localRot, i * 4, 4);
+                System.arraycopy(bindScale, i * 3, localScale, i * 3, 3);
+            }
+            weightSums[i] = -1;
+        }
+    }
+
+    /**
+     * Blends an animation transform onto the local transform of a bone,
+     * as {@link Bone#blendAnimTransforms(Vector3f, Quaternion, Vector3f, float) }
+     * does.
+     */
+    void blend(int boneIndex, Vector3f translation, Quaternion rotation, Vector3f scale, float weight) {
+        if (userControl[boneIndex] || weight == 0) {
+            return;
+        }
+
+        float weightSum = weightSums[boneIndex];
+        if (weightSum == 1) {
+            return; // More than 2 transforms are being blended
+        }
+
+        int p = boneIndex * 3;
+        int r = boneIndex * 4;
+        float x = bindRot[r], y = bindRot[r + 1], z = bindRot[r + 2], w = bindRot[r + 3];
+        float qx = rotation.getX(), qy = rotation.getY(), qz = rotation.getZ(), qw = rotation.getW();
+        float rx = x * qw + y * qz - z * qy + w * qx;
+        float ry = -x * qz + y * qw + z * qx + w * qy;
+        float rz = x * qy - y * qx + z * qw + w * qz;
+        float rw = -x * qx - y * qy - z * qz + w * qw;
+
+        if (weightSum == -1 || weightSum == 0) {
+            // Set the transform fully
+            localPos[p] = bindPos[p] + translation.x;
+            localPos[p + 1] = bindPos[p + 1] + translation.y;
+            localPos[p + 2] = bindPos[p + 2] + translation.z;
+            localRot[r] = rx;
+            localRot[r + 1] = ry;
+            localRot[r + 2] = rz;
+            localRot[r + 3] = rw;
+            if (scale != null) {
+                localScale[p] = bindScale[p] * scale.x;
+                localScale[p + 1] = bindScale[p + 1] * scale.y;
+                localScale[p + 2] = bindScale[p + 2] * scale.z;
+            }
+            weightSums[boneIndex] = weight;
+        } else {
+            interpolate(localPos, p, bindPos[p] + translation.x, bindPos[p + 1] + translation.y,
+                    bindPos[p + 2] + translation.z, weight);
+            nlerp(localRot, r, rx, ry, rz, rw, weight);
+            if (scale != null) {
+                interpolate(localScale, p, bindScale[p] * scale.x, bindScale[p + 1] * scale.y,
+                        bindScale[p + 2] * scale.z, weight);
+            }
+            weightSums[boneIndex] = 1;
+        }
+    }
+
+    private static void interpolate(float[] v, int i, float x, float y, float z, float blend) {
+        v[i] = (1 - blend) * v[i] + blend * x;
+        v[i + 1] = (1 - blend) * v[i + 1] + blend * y;
+        v[i + 2] = (1 - blend) * v[i + 2] + blend * z;
+    }
+
+    private static void nlerp(float[] q, int i, float x2, float y2, float z2, float w2, float blend) {
+        float x = q[i], y = q[i + 1], z = q[i + 2], w = q[i + 3];
+        float dot = w * w2 + x * x2 + y * y2 + z * z2;
+        float blendI = 1.0f - blend;
+        if (dot < 0.0f) {
+            x = blendI * x - blend * x2;
+            y = blendI * y - blend * y2;
+            z = blendI * z - blend * z2;
+            w = blendI * w - blend * w2;
+        } else {
+            x = blendI * x + blend * x2;
+            y = blendI * y + blend * y2;
+            z = blendI * z + blend * z2;
+            w = blendI * w + blend * w2;
+        }
+        float n = (float) (1.0f / Math.sqrt(w * w + x * x + y * y + z * z));
+        q[i] = x * n;
+        q[i + 1] = y * n;
+        q[i + 2] = z * n;
+        q[i + 3] = w * n;
+    }
+
+    /**
+     * Applies the blend weights, computes the model transforms and stores
+     * the local and model transforms in the bones.
+     */
+    void update() {
+        for (int o = 0; o < order.length; o++) {
+            int i = order[o];
+            int p = i * 3;
+            int r = i * 4;
+
+            float weightSum = weightSums[i];
+            if (weightSum != 1f && weightSum != -1f) {
+                // Apply the weight to the local transform
+                if (weightSum == 0) {
+                    System.arraycopy(bindPos, p, localPos, p, 3);
+                    System.arraycopy(bindRot, r, localRot, r, 4);
+                    System.arraycopy(bindScale, p, localScale, p, 3);
+                } else {
+                    float invWeightSum = 1f - weightSum;
+                    nlerp(localRot, r, bindRot[r], bindRot[r + 1], bindRot[r + 2], bindRot[r + 3], invWeightSum);
+                    interpolate(localPos, p, bindPos[p], bindPos[p + 1], bindPos[p + 2], invWeightSum);
+                    interpolate(localScale, p, bindScale[p], bindScale[p + 1], bindScale[p + 2], invWeightSum);
+                }
+            }
+            weightSums[i] = -1;
+
+            int parent = parents[i];
+            if (parent < 0) {
+                System.arraycopy(localPos, p, modelPos, p, 3);
+                System.arraycopy(localRot, r, modelRot, r, 4);
+                System.arraycopy(localScale, p, modelScale, p, 3);
+            } else {
+                int pp = parent * 3;
+                int pr = parent * 4;
+                float x = modelRot[pr], y = modelRot[pr + 1], z = modelRot[pr + 2], w = modelRot[pr + 3];
+
+                // rotation
+                float qx = localRot[r], qy = localRot[r + 1], qz = localRot[r + 2], qw = localRot[r + 3];
+                modelRot[r] = x * qw + y * qz - z * qy + w * qx;
+                modelRot[r + 1] = -x * qz + y * qw + z * qx + w * qy;
+                modelRot[r + 2] = x * qy - y * qx + z * qw + w * qz;
+                modelRot[r + 3] = -x * qx - y * qy - z * qz + w * qw;
+
+                // scale, the parent scale is taken into account
+                modelScale[p] = modelScale[pp] * localScale[p];
+                modelScale[p + 1] = modelScale[pp + 1] * localScale[p + 1];
+                modelScale[p + 2] = modelScale[pp + 2] * localScale[p + 2];
+
+                // translation, rotated and scaled by the parent
+                float vx = localPos[p], vy = localPos[p + 1], vz = localPos[p + 2];
+                float tx, ty, tz;
+                if (vx == 0 && vy == 0 && vz == 0) {
+                    tx = 0;
+                    ty = 0;
+                    tz = 0;
+                } else {
+                    tx = w * w * vx + 2 * y * w * vz - 2 * z * w * vy + x * x
+                            * vx + 2 * y * x * vy + 2 * z * x * vz - z * z * vx - y
+                            * y * vx;
+                    ty = 2 * x * y * vx + y * y * vy + 2 * z * y * vz + 2 * w
+                            * z * vx - z * z * vy + w * w * vy - 2 * x * w * vz - x
+                            * x * vy;
+                    tz = 2 * x * z * vx + 2 * y * z * vy + z * z * vz - 2 * w
+                            * y * vx - y * y * vz + 2 * w * x * vy - x * x * vz + w
+                            * w * vz;
+                }
+                modelPos[p] = tx * modelScale[pp] + modelPos[pp];
+                modelPos[p + 1] = ty * modelScale[pp + 1] + modelPos[pp + 1];
+                modelPos[p + 2] = tz * modelScale[pp + 2] + modelPos[pp + 2];
+            }
+
+            bones[i].setPoseTransforms(localPos, localRot, localScale, modelPos, modelRot, modelScale, i);
+        }
+    }
+}
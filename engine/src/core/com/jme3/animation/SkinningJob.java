@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * Skins one mesh on the CPU, split in vertex ranges that can run in
+ * parallel on an executor. Used by {@link SkeletonControl}.
+ * <p>
+ * The bind pose, bone weights and bone indices are read from arrays and
+ * the bone matrices from a packed float array, so the tasks share no
+ * state with the scene graph. The results are written to a second set
+ * of position, normal and tangent buffers, which are swapped into the
+ * mesh by {@link #finish() } once every range is done. The mesh never
+ * holds partially skinned data.
+ */
+final class SkinningJob implements Runnable {
+
+    /**
+     * Number of vertices skinned by one task.
+     */
+    static final int RANGE_SIZE = 2048;
+
+    private final Mesh mesh;
+    private final VertexBuffer bindPosBuffer;
+    private final int vertexCount;
+    private final int maxWeights;
+    private final float[] bindPos;
+    private final float[] bindNorm;
+    private final float[] bindTan;
+    private final float[] weights;
+    private final byte[] indices;
+    private final float[] pos;
+    private final float[] norm;
+    private final float[] tan;
+    private FloatBuffer backPos;
+    private FloatBuffer backNorm;
+    private FloatBuffer backTan;
+    private final int rangeCount;
+
+    private float[] matrices;
+    private boolean started = false;
+    private int nextRange;
+    private int running;
+    private Throwable error;
+
+    SkinningJob(Mesh mesh) {
+        this.mesh = mesh;
+        if (!mesh.getBuffer(Type.BoneIndex).getData().hasArray()
+                || !mesh.getBuffer(Type.BoneWeight).getData().hasArray()) {
+            mesh.prepareForAnim(true);
+        }
+        maxWeights = mesh.getMaxNumWeights();
+        if (maxWeights <= 0) {
+            throw new IllegalStateException("Max weights per vert is incorrectly set!");
+        }
+
+        bindPosBuffer = mesh.getBuffer(Type.BindPosePosition);
+        bindPos = toArray(bindPosBuffer);
+        vertexCount = bindPos.length / 3;
+        pos = new float[bindPos.length];
+        backPos = createBackBuffer(mesh.getBuffer(Type.Position));
+
+        VertexBuffer bindNormBuffer = mesh.getBuffer(Type.BindPoseNormal);
+        if (bindNormBuffer != null && mesh.getBuffer(Type.Normal) != null) {
+            bindNorm = toArray(bindNormBuffer);
+            norm = new float[bindNorm.length];
+            backNorm = createBackBuffer(mesh.getBuffer(Type.Normal));
+        } else {
+            bindNorm = null;
+            norm = null;
+        }
+
+        VertexBuffer bindTanBuffer = mesh.getBuffer(Type.BindPoseTangent);
+        if (bindTanBuffer != null && mesh.getBuffer(Type.Tangent) != null) {
+            bindTan = toArray(bindTanBuffer);
+            tan = new float[bindTan.length];
+            backTan = createBackBuffer(mesh.getBuffer(Type.Tangent));
+        } else {
+            bindTan = null;
+            tan = null;
+        }
+
+        weights = ((FloatBuffer) mesh.getBuffer(Type.BoneWeight).getData()).array();
+        indices = ((ByteBuffer) mesh.getBuffer(Type.BoneIndex).getData()).array();
+        rangeCount = Math.max(1, (vertexCount + RANGE_SIZE - 1) / RANGE_SIZE);
+    }
+
+    private static float[] toArray(VertexBuffer vb) {
+        FloatBuffer data = (FloatBuffer) vb.getData();
+        float[] array = new float[data.limit()];
+        data.clear();
+        data.get(array);
+        data.clear();
+        return array;
+    }
+
+    private static FloatBuffer createBackBuffer(VertexBuffer vb) {
+        return BufferUtils.createFloatBuffer(vb.getData().capacity());
+    }
+
+    /**
+     * Packs the rotation and translation rows of the bone offset matrices,
+     * 12 floats per bone.
+     */
+    static float[] packMatrices(Matrix4f[] offsetMatrices, float[] store) {
+        if (store == null || store.length != offsetMatrices.length * 12) {
+            store = new float[offsetMatrices.length * 12];
+        }
+        for (int i = 0, j = 0; i < offsetMatrices.length; i++) {
+            Matrix4f m = offsetMatrices[i];
+            store[j++] = m.m00;
+            store[j++] = m.m01;
+            store[j++] = m.m02;
+            store[j++] = m.m03;
+            store[j++] = m.m10;
+            store[j++] = m.m11;
+            store[j++] = m.m12;
+            store[j++] = m.m13;
+            store[j++] = m.m20;
+            store[j++] = m.m21;
+            store[j++] = m.m22;
+            store[j++] = m.m23;
+        }
+        return store;
+    }
+
+    Mesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * @return False if the mesh buffers were replaced since this job
+     * was created.
+     */
+    boolean isValid() {
+        return mesh.getBuffer(Type.BindPosePosition) == bindPosBuffer;
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Starts skinning with the given packed matrices. The array must not
+     * be modified until {@link #finish() } returns.
+     * 
+     * @param matrices The packed bone matrices
+     * @param executor The executor running the ranges, or null to run
+     * them all in {@link #finish() }
+     */
+    void start(float[] matrices, Executor executor) {
+        assert !started;
+        synchronized (this) {
+            this.matrices = matrices;
+            nextRange = 0;
+            running = 0;
+            error = null;
+            started = true;
+        }
+        if (executor != null) {
+            for (int i = 0; i < rangeCount; i++) {
+                executor.execute(this);
+            }
+        }
+    }
+
+    public void run() {
+        while (runRange()) {
+        }
+    }
+
+    private boolean runRange() {
+        int range;
+        synchronized (this) {
+            if (nextRange >= rangeCount) {
+                return false;
+            }
+            range = nextRange++;
+            running++;
+        }
+
+        try {
+            int start = range * RANGE_SIZE;
+            int end = Math.min(start + RANGE_SIZE, vertexCount);
+            skin(start, end);
+            store(start, end);
+        } catch (Throwable t) {
+            synchronized (this) {
+                if (error == null) {
+                    error = t;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                running--;
+                notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the ranges no task has claimed yet, waits for the others and
+     * swaps the skinned buffers into the mesh.
+     */
+    void finish() {
+        if (!started) {
+            return;
+        }
+        run();
+
+        boolean interrupted = false;
+        synchronized (this) {
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            started = false;
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw new RuntimeException("Failed to skin " + mesh, error);
+        }
+
+        backPos = swap(mesh.getBuffer(Type.Position), backPos);
+        if (norm != null) {
+            backNorm = swap(mesh.getBuffer(Type.Normal), backNorm);
+        }
+        if (tan != null) {
+            backTan = swap(mesh.getBuffer(Type.Tangent), backTan);
+        }
+    }
+
+    private static FloatBuffer swap(VertexBuffer vb, FloatBuffer skinned) {
+        FloatBuffer previous = (FloatBuffer) vb.getData();
+        skinned.clear();
+        vb.updateData(skinned);
+        return previous;
+    }
+
+    private void store(int start, int end) {
+        // each range writes its own part through a separate view
+        FloatBuffer dst = backPos.duplicate();
+        dst.position(start * 3);
+        dst.put(pos, start * 3, (end - start) * 3);
+        if (norm != null) {
+            dst = backNorm.duplicate();
+            dst.position(start * 3);
+            dst.put(norm, start * 3, (end - start) * 3);
+        }
+        if (tan != null) {
+            dst = backTan.duplicate();
+            dst.position(start * 4);
+            dst.put(tan, start * 4, (end - start) * 4);
+        }
+    }
+
+    private void skin(int start, int end) {
+        float[] m = matrices;
+        boolean hasNormals = norm != null;
+        boolean hasTangents = tan != null;
+
+        for (int v = start; v < end; v++) {
+            int p = v * 3;
+            int w = v * 4;
+
+            // Keep the bind pose if the first weight is zero.
+            if (weights[w] == 0) {
+                pos[p] = bindPos[p];
+                pos[p + 1] = bindPos[p + 1];
+                pos[p + 2] = bindPos[p + 2];
+                if (hasNormals) {
+                    norm[p] = bindNorm[p];
+                    norm[p + 1] = bindNorm[p + 1];
+                    norm[p + 2] = bindNorm[p + 2];
+                }
+                if (hasTangents) {
+                    tan[w] = bindTan[w];
+                    tan[w + 1] = bindTan[w + 1];
+                    tan[w + 2] = bindTan[w + 2];
+                    tan[w + 3] = bindTan[w + 3];
+                }
+                continue;
+            }
+
+            float vtx = bindPos[p];
+            float vty = bindPos[p + 1];
+            float vtz = bindPos[p + 2];
+            float rx = 0, ry = 0, rz = 0;
+            for (int i = 0; i < maxWeights; i++) {
+                float weight = weights[w + i];
+                int b = (indices[w + i] & 0xff) * 12;
+                rx += (m[b] * vtx + m[b + 1] * vty + m[b + 2] * vtz + m[b + 3]) * weight;
+                ry += (m[b + 4] * vtx + m[b + 5] * vty + m[b + 6] * vtz + m[b + 7]) * weight;
+                rz += (m[b + 8] * vtx + m[b + 9] * vty + m[b + 10] * vtz + m[b + 11]) * weight;
+            }
+            pos[p] = rx;
+            pos[p + 1] = ry;
+            pos[p + 2] = rz;
+
+            if (hasNormals) {
+                float nmx = bindNorm[p];
+                float nmy = bindNorm[p + 1];
+                float nmz = bindNorm[p + 2];
+                float rnx = 0, rny = 0, rnz = 0;
+                for (int i = 0; i < maxWeights; i++) {
+                    float weight = weights[w + i];
+                    int b = (indices[w + i] & 0xff) * 12;
+                    rnx += (nmx * m[b] + nmy * m[b + 1] + nmz * m[b + 2]) * weight;
+                    rny += (nmx * m[b + 4] + nmy * m[b + 5] + nmz * m[b + 6]) * weight;
+                    rnz += (nmx * m[b + 8] + nmy * m[b + 9] + nmz * m[b + 10]) * weight;
+                }
+                norm[p] = rnx;
+                norm[p + 1] = rny;
+                norm[p + 2] = rnz;
+            }
+
+            if (hasTangents) {
+                float tnx = bindTan[w];
+                float tny = bindTan[w + 1];
+                float tnz = bindTan[w + 2];
+                float rtx = 0, rty = 0, rtz = 0;
+                for (int i = 0; i < maxWeights; i++) {
+                    float weight = weights[w + i];
+                    int b = (indices[w + i] & 0xff) * 12;
+                    rtx += (tnx * m[b] + tny * m[b + 1] + tnz * m[b + 2]) * weight;
+                    rty += (tnx * m[b + 4] + tny * m[b + 5] + tnz * m[b + 6]) * weight;
+                    rtz += (tnx * m[b + 8] + tny * m[b + 9] + tnz * m[b + 10]) * weight;
+                }
+                tan[w] = rtx;
+                tan[w + 1] = rty;
+                tan[w + 2] = rtz;
+                // the 4th component of the tangent is not transformed
+                tan[w + 3] = bindTan[w + 3];
+            }
+        }
+    }
+}
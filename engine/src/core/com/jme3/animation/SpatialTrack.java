@@ -124,13 +124,10 @@ public class SpatialTrack implements Track {
                 scales.get(lastFrame, tempS);
             }
         } else {
-            int startFrame = 0;
-            int endFrame = 1;
-            // use lastFrame so we never overflow the array
-            for (int i = 0; i < lastFrame && times[i] < time; ++i) {
-                startFrame = i;
-                endFrame = i + 1;
-            }
+            int startFrame = channel != null
+                    ? channel.findKeyFrame(times, time)
+                    : AnimationUtils.findKeyFrame(times, time, 0);
+            int endFrame = startFrame + 1;
 
             float blend = (time - times[startFrame]) / (times[endFrame] - times[startFrame]);
 
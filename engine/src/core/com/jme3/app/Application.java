@@ -48,6 +48,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -92,6 +93,16 @@ public class Application implements SystemListener {
     protected AppStateManager stateManager;
 
     private final ConcurrentLinkedQueue<AppTask<?>> taskQueue = new ConcurrentLinkedQueue<AppTask<?>>();
+    private final Executor renderThreadExecutor = new Executor() {
+        public void execute(final Runnable command) {
+            enqueue(new Callable<Object>() {
+                public Object call() {
+                    command.run();
+                    return null;
+                }
+            });
+        }
+    };
 
     /**
      * Create a new instance of <code>Application</code>.
@@ -573,6 +584,17 @@ public class Application implements SystemListener {
         return task;
     }
 
+    /**
+     * Returns an executor that runs its tasks in the jME3 rendering 
+     * thread, in the same way as {@link #enqueue(Callable)}.
+     * Useful to receive asset load callbacks on the rendering thread.
+     * 
+     * @see com.jme3.asset.AssetManager#loadAssetAsync(com.jme3.asset.AssetKey, com.jme3.asset.AssetLoadPriority, com.jme3.asset.AssetLoadCallback, java.util.concurrent.Executor) 
+     */
+    public Executor getRenderThreadExecutor() {
+        return renderThreadExecutor;
+    }
+
     /**
      * Runs tasks enqueued via {@link #enqueue(Callable)}
      */
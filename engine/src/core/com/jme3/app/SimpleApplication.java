@@ -41,6 +41,7 @@ import com.jme3.input.controls.KeyTrigger;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.scene.Node;
+import com.jme3.scene.ParallelSceneUpdater;
 import com.jme3.scene.Spatial.CullHint;
 import com.jme3.system.AppSettings;
 import com.jme3.system.JmeContext.Type;
@@ -75,6 +76,7 @@ public abstract class SimpleApplication extends Application {
     protected BitmapFont guiFont;
     protected FlyByCamera flyCam;
     protected boolean showSettings = true;
+    protected ParallelSceneUpdater sceneUpdater;
     private AppActionListener actionListener = new AppActionListener();
     
     private class AppActionListener implements ActionListener {
@@ -171,6 +173,28 @@ public abstract class SimpleApplication extends Application {
         this.showSettings = showSettings;
     }
 
+    /**
+     * Sets the updater used to update the logical and geometric state
+     * of the rootNode with several threads. The guiNode is always updated
+     * on the render thread.
+     * 
+     * @param sceneUpdater The updater to use, or null to update the
+     * rootNode on the render thread (the default)
+     * 
+     * @see ParallelSceneUpdater
+     */
+    public void setParallelSceneUpdater(ParallelSceneUpdater sceneUpdater) {
+        this.sceneUpdater = sceneUpdater;
+    }
+
+    /**
+     * @return The updater used for the rootNode, or null if it is updated
+     * on the render thread.
+     */
+    public ParallelSceneUpdater getParallelSceneUpdater() {
+        return sceneUpdater;
+    }
+
     /**
      *  Creates the font that will be set to the guiFont field
      *  and subsequently set as the font for the stats text.
@@ -241,10 +265,18 @@ public abstract class SimpleApplication extends Application {
         // simple update and root node
         simpleUpdate(tpf);
  
-        rootNode.updateLogicalState(tpf);
+        if (sceneUpdater != null) {
+            sceneUpdater.updateLogicalState(rootNode, tpf);
+        } else {
+            rootNode.updateLogicalState(tpf);
+        }
         guiNode.updateLogicalState(tpf);
         
-        rootNode.updateGeometricState();
+        if (sceneUpdater != null) {
+            sceneUpdater.updateGeometricState(rootNode);
+        } else {
+            rootNode.updateGeometricState();
+        }
         guiNode.updateGeometricState();
 
         // render states
@@ -48,6 +48,8 @@ import com.jme3.texture.Texture;
 import com.jme3.texture.plugins.TGALoader;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * <code>AssetManager</code> provides an interface for managing the data assets
@@ -262,6 +264,49 @@ public interface AssetManager {
      */
     public Object loadAsset(String name);
 
+    /**
+     * Load an asset in the background, calling this method
+     * is the same as calling
+     * <code>
+     * loadAssetAsync(key, AssetLoadPriority.Normal, null, null).
+     * </code>
+     *
+     * @param <T> The object type that will be loaded from the AssetKey instance.
+     * @param key The AssetKey
+     * @return The future result of the load.
+     *
+     * @see AssetManager#loadAssetAsync(com.jme3.asset.AssetKey, com.jme3.asset.AssetLoadPriority, com.jme3.asset.AssetLoadCallback, java.util.concurrent.Executor)
+     */
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key);
+
+    /**
+     * Load an asset in the background on the asset manager's loading threads.
+     * <p>
+     * Requests for the same cached asset made while it is loading share 
+     * a single load, each request still receives its own instance of 
+     * the asset. Dependencies known from earlier loads of the asset 
+     * (e.g. the textures of a model) are prefetched along with it.
+     * Calling {@link AssetManager#loadAsset(com.jme3.asset.AssetKey) }
+     * for an asset that is loading in the background waits for that load
+     * instead of loading the asset again.
+     * <p>
+     * Cancelling the returned future only cancels this request,
+     * the load itself is abandoned once no request is waiting for it.
+     *
+     * @param <T> The object type that will be loaded from the AssetKey instance.
+     * @param key The AssetKey
+     * @param priority The priority of the load relative to other 
+     * background loads, null for {@link AssetLoadPriority#Normal}.
+     * @param callback The callback to notify once the asset is loaded
+     * or failed to load, may be null.
+     * @param callbackExecutor The executor on which the callback is notified,
+     * e.g. {@link com.jme3.app.Application#getRenderThreadExecutor() }.
+     * If null, the callback is notified on the loading thread.
+     * @return The future result of the load.
+     */
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key, AssetLoadPriority priority,
+                                        AssetLoadCallback<T> callback, Executor callbackExecutor);
+
     /**
      * Loads texture file, supported types are BMP, JPG, PNG, GIF,
      * TGA and DDS.
@@ -54,7 +54,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -70,6 +73,15 @@ public class DesktopAssetManager implements AssetManager {
     private ShaderGenerator shaderGenerator;
     
     private final ImplHandler handler = new ImplHandler(this);
+    
+    private final ThreadingManager threadingManager = new ThreadingManager(this);
+    
+    /**
+     * Dependencies of assets observed while loading them, 
+     * used to prefetch them on the next background load.
+     */
+    private final ConcurrentHashMap<AssetKey<?>, ConcurrentHashMap<AssetKey<?>, Boolean>> dependencies =
+            new ConcurrentHashMap<AssetKey<?>, ConcurrentHashMap<AssetKey<?>, Boolean>>();
 
     private CopyOnWriteArrayList<AssetEventListener> eventListeners = 
             new CopyOnWriteArrayList<AssetEventListener>();
@@ -247,6 +259,19 @@ public class DesktopAssetManager implements AssetManager {
         }
     }
 
+    /**
+     * Returns the cache used for assets whose keys specify the given
+     * cache type, creating it if needed. Can be used to configure
+     * a cache or query its statistics, e.g. of a 
+     * {@link com.jme3.asset.cache.BoundedAssetCache}.
+     * 
+     * @param cacheType The cache type returned by {@link AssetKey#getCacheType() }
+     * @return The cache, or null if cacheType is null
+     */
+    public <T extends AssetCache> T getCache(Class<T> cacheType){
+        return handler.getCache(cacheType);
+    }
+
     /**
      * <font color="red">Thread-safe.</font>
      *
@@ -262,9 +287,20 @@ public class DesktopAssetManager implements AssetManager {
             listener.assetRequested(key);
         }
         
+        AssetKey<?> parentKey = handler.getParentKey();
+        if (parentKey != null && !parentKey.equals(key)){
+            recordDependency(parentKey, key);
+        }
+        
         AssetCache cache = handler.getCache(key.getCacheType());
         AssetProcessor proc = handler.getProcessor(key.getProcessorType());
         
+        if (cache != null){
+            // If the asset is being loaded in the background, 
+            // wait for it rather than loading it twice.
+            threadingManager.awaitPendingLoad(key);
+        }
+        
         Object obj = cache != null ? cache.getFromCache(key) : null;
         if (obj == null){
             // Asset not in cache, load it from file system.
@@ -342,6 +378,47 @@ public class DesktopAssetManager implements AssetManager {
         return loadAsset(new AssetKey(name));
     }
 
+    private void recordDependency(AssetKey<?> parentKey, AssetKey<?> key){
+        ConcurrentHashMap<AssetKey<?>, Boolean> deps = dependencies.get(parentKey);
+        if (deps == null){
+            // Store copies of the keys, caches may hold assets 
+            // only as long as their original key is referenced.
+            ConcurrentHashMap<AssetKey<?>, Boolean> newDeps = new ConcurrentHashMap<AssetKey<?>, Boolean>();
+            deps = dependencies.putIfAbsent(parentKey.clone(), newDeps);
+            if (deps == null){
+                deps = newDeps;
+            }
+        }
+        if (!deps.containsKey(key)){
+            deps.putIfAbsent(key.clone(), Boolean.TRUE);
+        }
+    }
+
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key){
+        return loadAssetAsync(key, AssetLoadPriority.Normal, null, null);
+    }
+
+    /**
+     * <font color="red">Thread-safe.</font>
+     */
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key, AssetLoadPriority priority,
+                                        AssetLoadCallback<T> callback, Executor callbackExecutor){
+        if (key == null)
+            throw new IllegalArgumentException("key cannot be null");
+        
+        ConcurrentHashMap<AssetKey<?>, Boolean> deps = dependencies.get(key);
+        if (deps != null){
+            for (AssetKey<?> dep : deps.keySet()){
+                AssetCache cache = handler.getCache(dep.getCacheType());
+                if (cache != null && cache.getFromCache(dep) == null){
+                    threadingManager.loadAsset(dep, priority, null, null);
+                }
+            }
+        }
+        
+        return threadingManager.loadAsset(key, priority, callback, callbackExecutor);
+    }
+
     public Texture loadTexture(TextureKey key){
         return (Texture) loadAsset(key);
     }
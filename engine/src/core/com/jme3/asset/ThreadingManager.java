@@ -31,22 +31,42 @@
  */
 package com.jme3.asset;
 
+import java.util.ArrayList;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <code>ThreadingManager</code> manages the threads used to load content
  * within the Content Manager system. A pool of threads and a task queue
  * is used to load resource data and perform I/O while the application's
  * render thread is active. 
+ * <p>
+ * Pending loads are started in order of their {@link AssetLoadPriority}.
+ * Concurrent requests for the same cached asset share a single load.
+ * A thread loading an asset synchronously while a load of the same asset
+ * is pending here waits for that load, or runs it itself if it has not 
+ * started yet, instead of parsing the asset a second time.
  */
 public class ThreadingManager {
 
-    protected final ExecutorService executor =
-            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
-                                         new LoadingThreadFactory());
+    private static final Runnable NO_OP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    protected final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(),
+                                   Runtime.getRuntime().availableProcessors(),
+                                   0L, TimeUnit.MILLISECONDS,
+                                   new PriorityBlockingQueue<Runnable>(),
+                                   new LoadingThreadFactory());
 
     protected final AssetManager owner;
     protected int nextThreadId = 0;
+    
+    private final ConcurrentHashMap<AssetKey<?>, LoadingTask<?>> pendingTasks =
+            new ConcurrentHashMap<AssetKey<?>, LoadingTask<?>>();
+    private final AtomicLong nextSequence = new AtomicLong();
 
     public ThreadingManager(AssetManager owner){
         this.owner = owner;
@@ -61,21 +81,284 @@ public class ThreadingManager {
         }
     }
 
-    protected class LoadingTask<T> implements Callable<T> {
+    /**
+     * Loads an asset once for all requests made while it is pending.
+     */
+    protected class LoadingTask<T> implements Runnable, Comparable<LoadingTask<?>> {
 
         private final AssetKey<T> assetKey;
+        private final ArrayList<AssetRequest<T>> requests = new ArrayList<AssetRequest<T>>();
+        private AssetLoadPriority priority;
+        private long sequence;
+        private boolean started = false;
+        private boolean finished = false;
+        private Thread runner;
 
-        public LoadingTask(AssetKey<T> assetKey) {
+        public LoadingTask(AssetKey<T> assetKey, AssetLoadPriority priority) {
             this.assetKey = assetKey;
+            this.priority = priority;
+            this.sequence = nextSequence.getAndIncrement();
+        }
+
+        public int compareTo(LoadingTask<?> other) {
+            if (priority != other.priority) {
+                return priority.ordinal() - other.priority.ordinal();
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        /**
+         * @return false if the task has already finished and cannot
+         * serve more requests.
+         */
+        synchronized boolean addRequest(AssetRequest<T> request) {
+            if (finished) {
+                return false;
+            }
+            requests.add(request);
+            request.task = this;
+            
+            if (!started && request.priority.ordinal() < priority.ordinal()
+                    && executor.remove(this)) {
+                // re-queue with the higher priority
+                priority = request.priority;
+                executor.execute(this);
+            }
+            return true;
+        }
+
+        synchronized void requestCancelled() {
+            if (started) {
+                return;
+            }
+            for (AssetRequest<T> request : requests) {
+                if (!request.isCancelled()) {
+                    return;
+                }
+            }
+            // nobody wants the asset anymore
+            executor.remove(this);
+            started = true;
+            finished = true;
+            pendingTasks.remove(assetKey, this);
+        }
+
+        public void run() {
+            execute();
+        }
+
+        /**
+         * Called by a thread that loads the asset synchronously.
+         * Runs the task if it has not started yet, otherwise waits
+         * for it to finish.
+         */
+        void await() {
+            synchronized (this) {
+                if (runner == Thread.currentThread()) {
+                    // the load itself is asking for the asset
+                    return;
+                }
+                if (!started) {
+                    executor.remove(this);
+                }
+            }
+            execute();
+            
+            boolean interrupted = false;
+            synchronized (this) {
+                while (!finished) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
 
-        public T call() throws Exception {
-            return owner.loadAsset(assetKey);
+        private void execute() {
+            synchronized (this) {
+                if (started) {
+                    return;
+                }
+                started = true;
+                runner = Thread.currentThread();
+            }
+            
+            T asset = null;
+            Throwable error = null;
+            try {
+                asset = owner.loadAsset(assetKey);
+            } catch (Throwable t) {
+                error = t;
+            }
+            
+            ArrayList<AssetRequest<T>> served;
+            synchronized (this) {
+                finished = true;
+                runner = null;
+                served = new ArrayList<AssetRequest<T>>(requests);
+                notifyAll();
+            }
+            pendingTasks.remove(assetKey, this);
+            
+            boolean first = true;
+            for (AssetRequest<T> request : served) {
+                if (request.isCancelled()) {
+                    continue;
+                }
+                if (error != null) {
+                    request.fail(error);
+                } else if (first) {
+                    request.succeed(asset);
+                    first = false;
+                } else {
+                    // every request gets its own instance, the asset
+                    // itself is now in the cache.
+                    try {
+                        request.succeed(owner.loadAsset(assetKey));
+                    } catch (Throwable t) {
+                        request.fail(t);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The future returned for a single request.
+     * Cancelling it never interrupts the loading thread, since the load
+     * may be shared with other requests.
+     */
+    protected static class AssetRequest<T> extends FutureTask<T> {
+
+        private final AssetKey<T> assetKey;
+        private final AssetLoadPriority priority;
+        private final AssetLoadCallback<T> callback;
+        private final Executor callbackExecutor;
+        private LoadingTask<T> task;
+
+        public AssetRequest(AssetKey<T> assetKey, AssetLoadPriority priority,
+                            AssetLoadCallback<T> callback, Executor callbackExecutor) {
+            super(NO_OP, null);
+            this.assetKey = assetKey;
+            this.priority = priority;
+            this.callback = callback;
+            this.callbackExecutor = callbackExecutor;
+        }
+
+        void succeed(T asset) {
+            set(asset);
+        }
+
+        void fail(Throwable cause) {
+            setException(cause);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(false);
+            if (cancelled && task != null) {
+                task.requestCancelled();
+            }
+            return cancelled;
+        }
+
+        @Override
+        protected void done() {
+            if (callback == null || isCancelled()) {
+                return;
+            }
+            
+            Runnable notification = new Runnable() {
+                public void run() {
+                    T asset;
+                    try {
+                        asset = get();
+                    } catch (ExecutionException ex) {
+                        callback.assetLoadFailed(assetKey, ex.getCause());
+                        return;
+                    } catch (InterruptedException ex) {
+                        // cannot happen, the request is done
+                        throw new AssertionError(ex);
+                    }
+                    callback.assetLoaded(assetKey, asset);
+                }
+            };
+            
+            if (callbackExecutor != null) {
+                callbackExecutor.execute(notification);
+            } else {
+                notification.run();
+            }
         }
     }
 
     public <T> Future<T> loadAsset(AssetKey<T> assetKey) {
-        return executor.submit(new LoadingTask(assetKey));
+        return loadAsset(assetKey, AssetLoadPriority.Normal, null, null);
+    }
+
+    /**
+     * Loads an asset in the background.
+     * 
+     * @param assetKey The key of the asset to load
+     * @param priority The priority of the request
+     * @param callback Notified once the asset is loaded, may be null
+     * @param callbackExecutor The executor to notify the callback on, 
+     * if null it is notified on the loading thread.
+     * @return The future result of the request
+     */
+    public <T> Future<T> loadAsset(AssetKey<T> assetKey, AssetLoadPriority priority,
+                                   AssetLoadCallback<T> callback, Executor callbackExecutor) {
+        if (priority == null) {
+            priority = AssetLoadPriority.Normal;
+        }
+        
+        AssetRequest<T> request = new AssetRequest<T>(assetKey, priority, callback, callbackExecutor);
+        
+        if (assetKey.getCacheType() == null) {
+            // Without a cache, requests cannot share the loaded asset.
+            LoadingTask<T> task = new LoadingTask<T>(assetKey, priority);
+            task.addRequest(request);
+            executor.execute(task);
+            return request;
+        }
+        
+        while (true) {
+            // the task of a key loads the same type as the key
+            @SuppressWarnings("unchecked")
+            LoadingTask<T> task = (LoadingTask<T>) pendingTasks.get(assetKey);
+            if (task == null) {
+                task = new LoadingTask<T>(assetKey, priority);
+                task.addRequest(request);
+                if (pendingTasks.putIfAbsent(assetKey, task) == null) {
+                    executor.execute(task);
+                    return request;
+                }
+            } else if (task.addRequest(request)) {
+                return request;
+            } else {
+                // finished meanwhile, remove it if it is still registered
+                pendingTasks.remove(assetKey, task);
+            }
+        }
+    }
+
+    /**
+     * Waits for a pending background load of the given key, if any.
+     * If the load has not started yet, it is run on the calling thread.
+     * Called before an asset is loaded synchronously.
+     * 
+     * @param assetKey The key about to be loaded
+     */
+    public void awaitPendingLoad(AssetKey<?> assetKey) {
+        LoadingTask<?> task = pendingTasks.get(assetKey);
+        if (task != null) {
+            task.await();
+        }
     }
 
     public static boolean isLoadingThread() {
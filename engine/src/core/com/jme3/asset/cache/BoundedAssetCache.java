@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.audio.AudioBuffer;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>BoundedAssetCache</code> is an asset cache that keeps the
+ * estimated memory of the cached assets within a budget.
+ * Once the budget is exceeded, assets are evicted according to the
+ * {@link Policy eviction policy}, regardless of whether they are still
+ * referenced in user code.
+ * <p>
+ * The memory of an asset is estimated from its data buffers, see
+ * {@link #estimateSize(java.lang.Object) }. Like {@link SimpleAssetCache},
+ * the cache stores the original asset and does not track clones.
+ * <p>
+ * To use it, return <code>BoundedAssetCache.class</code> (or a subclass
+ * with a different budget) from {@link AssetKey#getCacheType() }.
+ * The instance used by an asset manager can be configured through 
+ * {@link com.jme3.asset.DesktopAssetManager#getCache(java.lang.Class) }.
+ */
+public class BoundedAssetCache implements AssetCache {
+
+    /**
+     * The eviction policy of a {@link BoundedAssetCache}.
+     */
+    public enum Policy {
+        /**
+         * Evicts the least recently used asset.
+         */
+        LRU,
+        
+        /**
+         * Adaptive replacement cache. Splits the cache between assets
+         * used once and assets used repeatedly and adapts the split 
+         * based on recently evicted assets, so that a scan through many
+         * assets does not evict the ones that are used all the time.
+         */
+        ARC;
+    }
+
+    /**
+     * The default memory budget, 256 MB.
+     */
+    public static final long DEFAULT_MAX_MEMORY = 256L * 1024 * 1024;
+    
+    /**
+     * The size assumed for assets without data buffers.
+     */
+    protected static final long DEFAULT_ASSET_SIZE = 1024;
+
+    private static final Logger logger = Logger.getLogger(BoundedAssetCache.class.getName());
+
+    private static class Entry {
+        
+        final Object asset;
+        final long size;
+
+        Entry(Object asset, long size) {
+            this.asset = asset;
+            this.size = size;
+        }
+    }
+
+    // Resident assets in LRU order, the eldest entry is evicted first.
+    // With the LRU policy, all assets are in the recent list.
+    private final LinkedHashMap<AssetKey<?>, Entry> recent = new LinkedHashMap<AssetKey<?>, Entry>();
+    private final LinkedHashMap<AssetKey<?>, Entry> frequent = new LinkedHashMap<AssetKey<?>, Entry>();
+    
+    // Sizes of recently evicted assets, only used by ARC
+    private final LinkedHashMap<AssetKey<?>, Long> recentGhosts = new LinkedHashMap<AssetKey<?>, Long>();
+    private final LinkedHashMap<AssetKey<?>, Long> frequentGhosts = new LinkedHashMap<AssetKey<?>, Long>();
+    
+    private long recentMemory = 0;
+    private long frequentMemory = 0;
+    private long recentGhostMemory = 0;
+    private long frequentGhostMemory = 0;
+    
+    // ARC target size of the recent list
+    private long targetRecentMemory = 0;
+    
+    private long maxMemory;
+    private Policy policy;
+    
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_MEMORY} and the LRU policy.
+     */
+    public BoundedAssetCache() {
+        this(DEFAULT_MAX_MEMORY, Policy.LRU);
+    }
+
+    /**
+     * Creates a cache with the given budget and eviction policy.
+     * 
+     * @param maxMemory The memory budget in bytes
+     * @param policy The eviction policy
+     */
+    public BoundedAssetCache(long maxMemory, Policy policy) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("maxMemory must be positive");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy cannot be null");
+        }
+        this.maxMemory = maxMemory;
+        this.policy = policy;
+    }
+
+    /**
+     * Estimates the memory used by an asset.
+     * Textures, images, audio buffers, meshes and models are measured by 
+     * the size of their data buffers, other assets are assumed to use
+     * {@link #DEFAULT_ASSET_SIZE} bytes.
+     * <p>
+     * Subclasses can override this method to measure other asset types.
+     * 
+     * @param asset The asset to measure
+     * @return The estimated size in bytes
+     */
+    protected long estimateSize(Object asset) {
+        if (asset instanceof Texture) {
+            Image image = ((Texture) asset).getImage();
+            return image != null ? estimateSize(image) : DEFAULT_ASSET_SIZE;
+        } else if (asset instanceof Image) {
+            long size = 0;
+            for (ByteBuffer data : ((Image) asset).getData()) {
+                if (data != null) {
+                    size += data.capacity();
+                }
+            }
+            return Math.max(size, DEFAULT_ASSET_SIZE);
+        } else if (asset instanceof AudioBuffer) {
+            ByteBuffer data = ((AudioBuffer) asset).getData();
+            return data != null ? Math.max(data.capacity(), DEFAULT_ASSET_SIZE) : DEFAULT_ASSET_SIZE;
+        } else if (asset instanceof Mesh) {
+            return Math.max(getMeshSize((Mesh) asset), DEFAULT_ASSET_SIZE);
+        } else if (asset instanceof Spatial) {
+            // Meshes can be shared between geometries
+            final IdentityHashMap<Mesh, Mesh> meshes = new IdentityHashMap<Mesh, Mesh>();
+            ((Spatial) asset).depthFirstTraversal(new SceneGraphVisitorAdapter() {
+                @Override
+                public void visit(Geometry geom) {
+                    if (geom.getMesh() != null) {
+                        meshes.put(geom.getMesh(), geom.getMesh());
+                    }
+                }
+            });
+            long size = 0;
+            for (Mesh mesh : meshes.keySet()) {
+                size += getMeshSize(mesh);
+            }
+            return Math.max(size, DEFAULT_ASSET_SIZE);
+        }
+        return DEFAULT_ASSET_SIZE;
+    }
+
+    private static long getMeshSize(Mesh mesh) {
+        long size = 0;
+        for (VertexBuffer vb : mesh.getBufferList()) {
+            size += getBufferSize(vb);
+        }
+        for (int i = 0; i < mesh.getNumLodLevels(); i++) {
+            size += getBufferSize(mesh.getLodLevel(i));
+        }
+        return size;
+    }
+
+    private static long getBufferSize(VertexBuffer vb) {
+        Buffer data = vb.getData();
+        if (data == null) {
+            return 0;
+        }
+        return (long) data.capacity() * vb.getFormat().getComponentSize();
+    }
+
+    public <T> void addToCache(AssetKey<T> key, T obj) {
+        long size = estimateSize(obj);
+        
+        synchronized (this) {
+            // A re-added asset counts as a repeated use
+            boolean reused = removeResident(key);
+            
+            if (size > maxMemory) {
+                removeGhost(key);
+                evictions++;
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.log(Level.FINE, "BoundedAssetCache: {0} ({1} bytes) exceeds the budget and was not cached.",
+                               new Object[]{key, size});
+                }
+                return;
+            }
+            
+            Entry entry = new Entry(obj, size);
+            if (policy == Policy.ARC) {
+                if (reused) {
+                    insertFrequent(key, entry);
+                } else if (recentGhosts.containsKey(key)) {
+                    // Evicted from the recent list too early, grow it
+                    double ratio = recentGhostMemory > 0 ? (double) frequentGhostMemory / recentGhostMemory : 1.0;
+                    targetRecentMemory = Math.min(maxMemory, 
+                            targetRecentMemory + (long) (size * Math.max(ratio, 1.0)));
+                    removeGhost(key);
+                    insertFrequent(key, entry);
+                } else if (frequentGhosts.containsKey(key)) {
+                    // Evicted from the frequent list too early, shrink the recent list
+                    double ratio = frequentGhostMemory > 0 ? (double) recentGhostMemory / frequentGhostMemory : 1.0;
+                    targetRecentMemory = Math.max(0, 
+                            targetRecentMemory - (long) (size * Math.max(ratio, 1.0)));
+                    removeGhost(key);
+                    insertFrequent(key, entry);
+                } else {
+                    recent.put(key, entry);
+                    recentMemory += size;
+                }
+            } else {
+                recent.put(key, entry);
+                recentMemory += size;
+            }
+            
+            evict(key);
+        }
+    }
+
+    private void insertFrequent(AssetKey<?> key, Entry entry) {
+        frequent.put(key, entry);
+        frequentMemory += entry.size;
+    }
+
+    private boolean removeResident(AssetKey<?> key) {
+        Entry entry = recent.remove(key);
+        if (entry != null) {
+            recentMemory -= entry.size;
+            return true;
+        }
+        entry = frequent.remove(key);
+        if (entry != null) {
+            frequentMemory -= entry.size;
+            return true;
+        }
+        return false;
+    }
+
+    private void removeGhost(AssetKey<?> key) {
+        Long size = recentGhosts.remove(key);
+        if (size != null) {
+            recentGhostMemory -= size;
+        }
+        size = frequentGhosts.remove(key);
+        if (size != null) {
+            frequentGhostMemory -= size;
+        }
+    }
+
+    /**
+     * Evicts assets until the budget is met.
+     * 
+     * @param newKey The key just added, evicted last
+     */
+    private void evict(AssetKey<?> newKey) {
+        while (recentMemory + frequentMemory > maxMemory) {
+            boolean fromRecent;
+            if (frequent.isEmpty()) {
+                fromRecent = true;
+            } else if (recent.isEmpty()) {
+                fromRecent = false;
+            } else {
+                fromRecent = recentMemory > targetRecentMemory;
+            }
+            
+            LinkedHashMap<AssetKey<?>, Entry> list = fromRecent ? recent : frequent;
+            if (list.size() == 1 && list.containsKey(newKey)) {
+                fromRecent = !fromRecent;
+                list = fromRecent ? recent : frequent;
+            }
+            
+            Iterator<Map.Entry<AssetKey<?>, Entry>> it = list.entrySet().iterator();
+            Map.Entry<AssetKey<?>, Entry> eldest = it.next();
+            it.remove();
+            long size = eldest.getValue().size;
+            evictions++;
+            
+            if (fromRecent) {
+                recentMemory -= size;
+                if (policy == Policy.ARC) {
+                    recentGhosts.put(eldest.getKey(), size);
+                    recentGhostMemory += size;
+                    recentGhostMemory -= trimGhosts(recentGhosts, recentGhostMemory);
+                }
+            } else {
+                frequentMemory -= size;
+                frequentGhosts.put(eldest.getKey(), size);
+                frequentGhostMemory += size;
+                frequentGhostMemory -= trimGhosts(frequentGhosts, frequentGhostMemory);
+            }
+            
+            if (logger.isLoggable(Level.FINER)) {
+                logger.log(Level.FINER, "BoundedAssetCache: {0} was evicted from the cache.", eldest.getKey());
+            }
+        }
+    }
+
+    private long trimGhosts(LinkedHashMap<AssetKey<?>, Long> ghosts, long ghostMemory) {
+        long removed = 0;
+        Iterator<Long> it = ghosts.values().iterator();
+        while (ghostMemory - removed > maxMemory && it.hasNext()) {
+            removed += it.next();
+            it.remove();
+        }
+        return removed;
+    }
+
+    public synchronized <T> T getFromCache(AssetKey<T> key) {
+        Entry entry = recent.remove(key);
+        if (entry != null) {
+            if (policy == Policy.ARC) {
+                // Second use, promote to the frequent list
+                recentMemory -= entry.size;
+                insertFrequent(key, entry);
+            } else {
+                recent.put(key, entry);
+            }
+            hits++;
+            return (T) entry.asset;
+        }
+        entry = frequent.remove(key);
+        if (entry != null) {
+            frequent.put(key, entry);
+            hits++;
+            return (T) entry.asset;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized boolean deleteFromCache(AssetKey key) {
+        removeGhost(key);
+        return removeResident(key);
+    }
+
+    public synchronized void clearCache() {
+        recent.clear();
+        frequent.clear();
+        recentGhosts.clear();
+        frequentGhosts.clear();
+        recentMemory = 0;
+        frequentMemory = 0;
+        recentGhostMemory = 0;
+        frequentGhostMemory = 0;
+        targetRecentMemory = 0;
+    }
+
+    public <T> void registerAssetClone(AssetKey<T> key, T clone) {
+    }
+
+    public void notifyNoAssetClone() {
+    }
+
+    /**
+     * Sets the memory budget, evicting assets if needed.
+     * 
+     * @param maxMemory The memory budget in bytes
+     */
+    public synchronized void setMaxMemory(long maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("maxMemory must be positive");
+        }
+        this.maxMemory = maxMemory;
+        targetRecentMemory = Math.min(targetRecentMemory, maxMemory);
+        evict(null);
+        recentGhostMemory -= trimGhosts(recentGhosts, recentGhostMemory);
+        frequentGhostMemory -= trimGhosts(frequentGhosts, frequentGhostMemory);
+    }
+
+    /**
+     * @return The memory budget in bytes
+     */
+    public synchronized long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Sets the eviction policy. The cached assets are kept.
+     * 
+     * @param policy The eviction policy
+     */
+    public synchronized void setPolicy(Policy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy cannot be null");
+        }
+        if (policy == Policy.LRU && this.policy == Policy.ARC) {
+            // The frequent assets were used last
+            recent.putAll(frequent);
+            recentMemory += frequentMemory;
+            frequent.clear();
+            frequentMemory = 0;
+            recentGhosts.clear();
+            frequentGhosts.clear();
+            recentGhostMemory = 0;
+            frequentGhostMemory = 0;
+            targetRecentMemory = 0;
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * @return The eviction policy
+     */
+    public synchronized Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return The estimated memory of the cached assets in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        return recentMemory + frequentMemory;
+    }
+
+    /**
+     * @return The number of cached assets
+     */
+    public synchronized int getAssetCount() {
+        return recent.size() + frequent.size();
+    }
+
+    /**
+     * @return The number of lookups that found the asset in the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that did not find the asset
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The number of assets evicted to meet the budget
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[policy=" + policy
+                + ", memory=" + (recentMemory + frequentMemory) + "/" + maxMemory
+                + ", assets=" + (recent.size() + frequent.size())
+                + ", hits=" + hits + ", misses=" + misses 
+                + ", evictions=" + evictions + "]";
+    }
+}
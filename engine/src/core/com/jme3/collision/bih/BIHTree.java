@@ -35,6 +35,7 @@ import com.jme3.bounding.BoundingBox;
 import com.jme3.bounding.BoundingSphere;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.collision.UnsupportedCollisionException;
 import com.jme3.export.InputCapsule;
@@ -44,6 +45,7 @@ import com.jme3.export.OutputCapsule;
 import com.jme3.math.FastMath;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Ray;
+import com.jme3.math.Triangle;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.CollisionData;
 import com.jme3.scene.Mesh;
@@ -56,20 +58,48 @@ import com.jme3.util.TempVars;
 import java.io.IOException;
 import static java.lang.Math.max;
 import java.nio.FloatBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
 
 public class BIHTree implements CollisionData {
 
+    // Version #1: tree is stored as flat node and plane arrays
+    // instead of nested BIHNode savables.
+    public static final int SAVABLE_VERSION = 1;
     public static final int MAX_TREE_DEPTH = 100;
     public static final int MAX_TRIS_PER_NODE = 21;
+    
+    /**
+     * Subtrees with at least this many triangles are built as separate
+     * tasks by {@link #construct(java.util.concurrent.Executor) }.
+     */
+    public static final int PARALLEL_THRESHOLD = 4096;
+    
     private Mesh mesh;
-    private BIHNode root;
+    /**
+     * The tree in depth-first order, so the left child of a node directly
+     * follows it. 3 ints per node: the axis (3 for leaves) followed by
+     * the indices of the children or, for leaves, the triangle range.
+     */
+    private int[] nodes;
+    /**
+     * The left and right plane of every node.
+     */
+    private float[] planes;
+    /**
+     * Number of levels of the tree.
+     */
+    private int depth;
+    /**
+     * Min and max corner of the triangles' bound.
+     */
+    private float[] treeBounds;
     private int maxTrisPerNode;
     private int numTris;
     private float[] pointData;
     private int[] triIndices;
     
     private transient CollisionResults boundResults = new CollisionResults();
-    private transient float[] bihSwapTmp;
     
     private static final TriangleAxisComparator[] comparators = new TriangleAxisComparator[]
     {
@@ -112,8 +142,6 @@ public class BIHTree implements CollisionData {
             throw new IllegalArgumentException();
         }
 
-        bihSwapTmp = new float[9];
-
         FloatBuffer vb = (FloatBuffer) mesh.getBuffer(Type.Position).getData();
         IndexBuffer ib = mesh.getIndexBuffer();
         if (ib == null) {
@@ -135,7 +163,66 @@ public class BIHTree implements CollisionData {
 
     public void construct() {
         BoundingBox sceneBbox = createBox(0, numTris - 1);
-        root = createNode(0, numTris - 1, sceneBbox, 0);
+        setTree(createNode(0, numTris - 1, sceneBbox, 0, null));
+    }
+
+    /**
+     * Constructs the tree using the given executor. Subtrees larger than
+     * {@link #PARALLEL_THRESHOLD} triangles are built as separate tasks,
+     * the calling thread takes part in the work and returns once the 
+     * whole tree is built. The resulting tree is identical to the one
+     * built by {@link #construct() }.
+     * 
+     * @param executor The executor to run subtree tasks on, if null
+     * the tree is built on the calling thread.
+     */
+    public void construct(Executor executor) {
+        if (executor == null || numTris < PARALLEL_THRESHOLD) {
+            construct();
+            return;
+        }
+        
+        ParallelBuild build = new ParallelBuild(executor);
+        BoundingBox sceneBbox = createBox(0, numTris - 1);
+        BIHNode root = createNode(0, numTris - 1, sceneBbox, 0, build);
+        build.join();
+        setTree(root);
+    }
+
+    /**
+     * Stores the given tree in the flat node layout.
+     */
+    private void setTree(BIHNode root) {
+        int count = countNodes(root);
+        nodes = new int[count * 3];
+        planes = new float[count * 2];
+        flatten(root, 0, nodes, planes);
+        depth = computeDepth(0);
+        computeTreeBounds();
+    }
+
+    private int computeDepth(int node) {
+        int n = node * 3;
+        if (nodes[n] == 3) {
+            return 1;
+        }
+        return 1 + max(computeDepth(nodes[n + 1]), computeDepth(nodes[n + 2]));
+    }
+
+    private void computeTreeBounds() {
+        treeBounds = new float[]{Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                                 Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int i = 0; i < pointData.length; i += 3) {
+            for (int a = 0; a < 3; a++) {
+                float v = pointData[i + a];
+                if (v < treeBounds[a]) {
+                    treeBounds[a] = v;
+                }
+                if (v > treeBounds[a + 3]) {
+                    treeBounds[a + 3] = v;
+                }
+            }
+        }
     }
 
     private BoundingBox createBox(int l, int r) {
@@ -288,7 +375,7 @@ public class BIHTree implements CollisionData {
 //
 //        return node;
 //    }
-    private BIHNode createNode(int l, int r, BoundingBox nodeBbox, int depth) {
+    private BIHNode createNode(int l, int r, BoundingBox nodeBbox, int depth, ParallelBuild build) {
         if ((r - l) < maxTrisPerNode || depth > MAX_TREE_DEPTH) {
             return new BIHNode(l, r);
         }
@@ -329,12 +416,12 @@ public class BIHTree implements CollisionData {
             //Only right
             BoundingBox rbbox = new BoundingBox(currentBox);
             setMinMax(rbbox, true, axis, split);
-            return createNode(l, r, rbbox, depth + 1);
+            return createNode(l, r, rbbox, depth + 1, build);
         } else if (pivot > r) {
             //Only left
             BoundingBox lbbox = new BoundingBox(currentBox);
             setMinMax(lbbox, false, axis, split);
-            return createNode(l, r, lbbox, depth + 1);
+            return createNode(l, r, lbbox, depth + 1, build);
         } else {
             //Build the node
             BIHNode node = new BIHNode(axis);
@@ -345,14 +432,22 @@ public class BIHTree implements CollisionData {
 
             //The left node right border is the plane most right
             node.setLeftPlane(getMinMax(createBox(l, max(l, pivot - 1)), false, axis));
-            node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1)); //Recursive call
+            if (build != null && max(l, pivot - 1) - l >= PARALLEL_THRESHOLD) {
+                build.fork(node, true, l, max(l, pivot - 1), lbbox, depth + 1);
+            } else {
+                node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1, build)); //Recursive call
+            }
 
             //Right Child
             BoundingBox rbbox = new BoundingBox(currentBox);
             setMinMax(rbbox, true, axis, split);
             //The right node left border is the plane most left
             node.setRightPlane(getMinMax(createBox(pivot, r), true, axis));
-            node.setRightChild(createNode(pivot, r, rbbox, depth + 1)); //Recursive call
+            if (build != null && r - pivot >= PARALLEL_THRESHOLD) {
+                build.fork(node, false, pivot, r, rbbox, depth + 1);
+            } else {
+                node.setRightChild(createNode(pivot, r, rbbox, depth + 1, build)); //Recursive call
+            }
 
             return node;
         }
@@ -378,14 +473,12 @@ public class BIHTree implements CollisionData {
         int p1 = index1 * 9;
         int p2 = index2 * 9;
 
-        // store p1 in tmp
-        System.arraycopy(pointData, p1, bihSwapTmp, 0, 9);
-
-        // copy p2 to p1
-        System.arraycopy(pointData, p2, pointData, p1, 9);
-
-        // copy tmp to p2
-        System.arraycopy(bihSwapTmp, 0, pointData, p2, 9);
+        // swap in place, several subtrees can be sorted concurrently
+        for (int i = 0; i < 9; i++) {
+            float tmp = pointData[p1 + i];
+            pointData[p1 + i] = pointData[p2 + i];
+            pointData[p2 + i] = tmp;
+        }
 
         // swap indices
         int tmp2 = triIndices[index1];
@@ -421,12 +514,425 @@ public class BIHTree implements CollisionData {
                 }
             }
 
-//            return root.intersectBrute(r, worldMatrix, this, tMin, tMax, results);
-            return root.intersectWhere(r, worldMatrix, this, tMin, tMax, results);
+            return intersectWhere(r, worldMatrix, tMin, tMax, results);
         }
         return 0;
     }
 
+    /**
+     * Intersects the triangle stored at the given offset of the array
+     * with a ray. Same as {@link Ray#intersects(com.jme3.math.Vector3f, com.jme3.math.Vector3f, com.jme3.math.Vector3f) }.
+     * 
+     * @return The distance along the ray in units of the direction's length,
+     * or positive infinity if the triangle is not hit.
+     */
+    private static float intersectTriangle(float ox, float oy, float oz,
+                                           float dx, float dy, float dz,
+                                           float[] tris, int p) {
+        float v0X = tris[p], v0Y = tris[p + 1], v0Z = tris[p + 2];
+        
+        float edge1X = tris[p + 3] - v0X;
+        float edge1Y = tris[p + 4] - v0Y;
+        float edge1Z = tris[p + 5] - v0Z;
+
+        float edge2X = tris[p + 6] - v0X;
+        float edge2Y = tris[p + 7] - v0Y;
+        float edge2Z = tris[p + 8] - v0Z;
+
+        float normX = ((edge1Y * edge2Z) - (edge1Z * edge2Y));
+        float normY = ((edge1Z * edge2X) - (edge1X * edge2Z));
+        float normZ = ((edge1X * edge2Y) - (edge1Y * edge2X));
+
+        float dirDotNorm = dx * normX + dy * normY + dz * normZ;
+
+        float diffX = ox - v0X;
+        float diffY = oy - v0Y;
+        float diffZ = oz - v0Z;
+
+        float sign;
+        if (dirDotNorm > FastMath.FLT_EPSILON) {
+            sign = 1;
+        } else if (dirDotNorm < -FastMath.FLT_EPSILON) {
+            sign = -1f;
+            dirDotNorm = -dirDotNorm;
+        } else {
+            // ray and triangle are parallel
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float crossX = ((diffY * edge2Z) - (diffZ * edge2Y));
+        float crossY = ((diffZ * edge2X) - (diffX * edge2Z));
+        float crossZ = ((diffX * edge2Y) - (diffY * edge2X));
+
+        float dirDotDiffxEdge2 = sign * (dx * crossX + dy * crossY + dz * crossZ);
+        if (dirDotDiffxEdge2 < 0.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        
+        crossX = ((edge1Y * diffZ) - (edge1Z * diffY));
+        crossY = ((edge1Z * diffX) - (edge1X * diffZ));
+        crossZ = ((edge1X * diffY) - (edge1Y * diffX));
+
+        float dirDotEdge1xDiff = sign * (dx * crossX + dy * crossY + dz * crossZ);
+        if (dirDotEdge1xDiff < 0.0f || dirDotDiffxEdge2 + dirDotEdge1xDiff > dirDotNorm) {
+            return Float.POSITIVE_INFINITY;
+        }
+        
+        float diffDotNorm = -sign * (diffX * normX + diffY * normY + diffZ * normZ);
+        if (diffDotNorm < 0.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        
+        float inv = 1f / dirDotNorm;
+        return diffDotNorm * inv;
+    }
+
+    private int[] getNodeStack(TempVars vars) {
+        return depth <= vars.bihNodeStack.length ? vars.bihNodeStack : new int[depth];
+    }
+
+    private float[] getRangeStack(TempVars vars) {
+        return depth * 2 <= vars.bihRangeStack.length ? vars.bihRangeStack : new float[depth * 2];
+    }
+
+    /**
+     * Collides a ray with the tree, adding every hit to the results.
+     * The ray is transformed into model space for traversing the tree,
+     * the distances of the hits are measured in world space.
+     */
+    private int intersectWhere(Ray r,
+            Matrix4f worldMatrix,
+            float sceneMin,
+            float sceneMax,
+            CollisionResults results) {
+
+        TempVars vars = TempVars.get();
+        int[] nodeStack = getNodeStack(vars);
+        float[] rangeStack = getRangeStack(vars);
+        float[] worldTri = vars.bihSwapTmp;
+
+        Vector3f o = vars.vect1.set(r.getOrigin());
+        Vector3f d = vars.vect2.set(r.getDirection());
+
+        Matrix4f inv = vars.tempMat4.set(worldMatrix).invertLocal();
+        Vector3f localOrigin = inv.mult(o, vars.vect3);
+        Vector3f localDir = inv.multNormal(d, vars.vect4);
+
+        // traversal uses the unnormalized direction so distances
+        // match the world space ones.
+        float ox = localOrigin.x, oy = localOrigin.y, oz = localOrigin.z;
+        float invDirX = 1f / localDir.x,
+              invDirY = 1f / localDir.y,
+              invDirZ = 1f / localDir.z;
+
+        localDir.normalizeLocal();
+        float dx = localDir.x, dy = localDir.y, dz = localDir.z;
+
+        Vector3f v1 = vars.vect5,
+                v2 = vars.vect6,
+                v3 = vars.vect7;
+        int cols = 0;
+
+        int top = 0;
+        nodeStack[top] = 0;
+        rangeStack[0] = sceneMin;
+        rangeStack[1] = sceneMax;
+        top++;
+        
+        stackloop:
+        while (top > 0) {
+            top--;
+            int node = nodeStack[top];
+            float tMin = rangeStack[top * 2],
+                  tMax = rangeStack[top * 2 + 1];
+
+            if (tMax < tMin) {
+                continue;
+            }
+
+            int n = node * 3;
+            int a;
+            while ((a = nodes[n]) != 3) { // while node is not a leaf
+                float origin, invDirection;
+                if (a == 0) {
+                    origin = ox;
+                    invDirection = invDirX;
+                } else if (a == 1) {
+                    origin = oy;
+                    invDirection = invDirY;
+                } else {
+                    origin = oz;
+                    invDirection = invDirZ;
+                }
+
+                float tNearSplit = (planes[node * 2] - origin) * invDirection;
+                float tFarSplit = (planes[node * 2 + 1] - origin) * invDirection;
+                int nearNode = nodes[n + 1];
+                int farNode = nodes[n + 2];
+
+                if (invDirection < 0) {
+                    float tmpSplit = tNearSplit;
+                    tNearSplit = tFarSplit;
+                    tFarSplit = tmpSplit;
+
+                    int tmpNode = nearNode;
+                    nearNode = farNode;
+                    farNode = tmpNode;
+                }
+
+                if (tMin > tNearSplit && tMax < tFarSplit) {
+                    continue stackloop;
+                }
+
+                if (tMin > tNearSplit) {
+                    tMin = max(tMin, tFarSplit);
+                    node = farNode;
+                } else if (tMax < tFarSplit) {
+                    tMax = Math.min(tMax, tNearSplit);
+                    node = nearNode;
+                } else {
+                    nodeStack[top] = farNode;
+                    rangeStack[top * 2] = max(tMin, tFarSplit);
+                    rangeStack[top * 2 + 1] = tMax;
+                    top++;
+                    tMax = Math.min(tMax, tNearSplit);
+                    node = nearNode;
+                }
+                n = node * 3;
+            }
+
+            // a leaf
+            for (int i = nodes[n + 1]; i <= nodes[n + 2]; i++) {
+                float t = intersectTriangle(ox, oy, oz, dx, dy, dz, pointData, i * 9);
+                if (!Float.isInfinite(t)) {
+                    getTriangle(i, v1, v2, v3);
+                    worldMatrix.mult(v1, v1);
+                    worldMatrix.mult(v2, v2);
+                    worldMatrix.mult(v3, v3);
+                    worldTri[0] = v1.x;
+                    worldTri[1] = v1.y;
+                    worldTri[2] = v1.z;
+                    worldTri[3] = v2.x;
+                    worldTri[4] = v2.y;
+                    worldTri[5] = v2.z;
+                    worldTri[6] = v3.x;
+                    worldTri[7] = v3.y;
+                    worldTri[8] = v3.z;
+                    t = intersectTriangle(o.x, o.y, o.z, d.x, d.y, d.z, worldTri, 0);
+
+                    Vector3f contactNormal = Triangle.computeTriangleNormal(v1, v2, v3, null);
+                    Vector3f contactPoint = new Vector3f(d).multLocal(t).addLocal(o);
+                    float worldSpaceDist = o.distance(contactPoint);
+
+                    CollisionResult cr = new CollisionResult(contactPoint, worldSpaceDist);
+                    cr.setContactNormal(contactNormal);
+                    cr.setTriangleIndex(getTriangleIndex(i));
+                    results.addCollision(cr);
+                    cols++;
+                }
+            }
+        }
+        vars.release();
+        return cols;
+    }
+
+    /**
+     * Finds the closest triangle hit by each ray of a batch of rays.
+     * <p>
+     * Unlike {@link #collideWith(com.jme3.collision.Collidable, com.jme3.math.Matrix4f, com.jme3.bounding.BoundingVolume, com.jme3.collision.CollisionResults) },
+     * this method does not allocate any objects per ray and does not 
+     * modify the tree, so it can be called from several threads at once
+     * on the same constructed tree.
+     * 
+     * @param worldMatrix The world transform of the mesh, or null if the
+     * rays are given in model space.
+     * @param origins The origins of the rays, 3 floats per ray.
+     * @param directions The directions of the rays, 3 floats per ray. 
+     * Distances are measured in multiples of the direction's length, 
+     * so directions should be normalized to get world space distances.
+     * @param limits The maximum distance of each ray, or null if the rays 
+     * are unlimited.
+     * @param count The number of rays.
+     * @param distances Receives the distance of each ray's closest hit,
+     * or positive infinity if the ray hits nothing.
+     * @param triangles Receives the index of the triangle closest hit by 
+     * each ray, or -1 if it hits nothing. May be null.
+     * @return The number of rays that hit a triangle.
+     * 
+     * @throws IllegalStateException If the tree was not constructed.
+     */
+    public int collideWithRays(Matrix4f worldMatrix,
+            float[] origins,
+            float[] directions,
+            float[] limits,
+            int count,
+            float[] distances,
+            int[] triangles) {
+        
+        if (nodes == null) {
+            throw new IllegalStateException("The tree has not been constructed");
+        }
+        
+        TempVars vars = TempVars.get();
+        int[] nodeStack = getNodeStack(vars);
+        float[] rangeStack = getRangeStack(vars);
+        Matrix4f inv = null;
+        if (worldMatrix != null) {
+            inv = vars.tempMat4.set(worldMatrix).invertLocal();
+        }
+        Vector3f origin = vars.vect1;
+        Vector3f direction = vars.vect2;
+        
+        int hits = 0;
+        for (int ray = 0; ray < count; ray++) {
+            int p = ray * 3;
+            origin.set(origins[p], origins[p + 1], origins[p + 2]);
+            direction.set(directions[p], directions[p + 1], directions[p + 2]);
+            if (inv != null) {
+                // the linear transform keeps distances along the ray
+                inv.mult(origin, origin);
+                inv.multNormal(direction, direction);
+            }
+            float limit = limits != null ? limits[ray] : Float.POSITIVE_INFINITY;
+            
+            int triangle = intersectClosest(origin, direction, limit, nodeStack, rangeStack);
+            if (triangle >= 0) {
+                distances[ray] = rangeStack[0];
+                if (triangles != null) {
+                    triangles[ray] = getTriangleIndex(triangle);
+                }
+                hits++;
+            } else {
+                distances[ray] = Float.POSITIVE_INFINITY;
+                if (triangles != null) {
+                    triangles[ray] = -1;
+                }
+            }
+        }
+        vars.release();
+        return hits;
+    }
+
+    /**
+     * Finds the closest triangle hit by a ray in model space.
+     * 
+     * @return The position of the triangle in the tree, or -1 if nothing
+     * is hit. The distance of the hit is stored in the first element of
+     * the range stack.
+     */
+    private int intersectClosest(Vector3f origin, Vector3f direction, float limit,
+                                 int[] nodeStack, float[] rangeStack) {
+        float ox = origin.x, oy = origin.y, oz = origin.z;
+        float dx = direction.x, dy = direction.y, dz = direction.z;
+        float invDirX = 1f / dx, invDirY = 1f / dy, invDirZ = 1f / dz;
+        
+        // clip the ray against the bound of the triangles
+        float tMin = 0, tMax = limit;
+        for (int a = 0; a < 3; a++) {
+            float o = a == 0 ? ox : a == 1 ? oy : oz;
+            float inv = a == 0 ? invDirX : a == 1 ? invDirY : invDirZ;
+            float t1 = (treeBounds[a] - o) * inv;
+            float t2 = (treeBounds[a + 3] - o) * inv;
+            if (inv < 0) {
+                float tmp = t1;
+                t1 = t2;
+                t2 = tmp;
+            }
+            if (t1 > tMin) {
+                tMin = t1;
+            }
+            if (t2 < tMax) {
+                tMax = t2;
+            }
+        }
+        if (tMin > tMax) {
+            return -1;
+        }
+        
+        float closest = Float.POSITIVE_INFINITY;
+        int closestTriangle = -1;
+        
+        int top = 0;
+        nodeStack[top] = 0;
+        rangeStack[0] = tMin;
+        rangeStack[1] = tMax;
+        top++;
+
+        stackloop:
+        while (top > 0) {
+            top--;
+            int node = nodeStack[top];
+            tMin = rangeStack[top * 2];
+            tMax = Math.min(rangeStack[top * 2 + 1], closest);
+
+            if (tMax < tMin) {
+                continue;
+            }
+
+            int n = node * 3;
+            int a;
+            while ((a = nodes[n]) != 3) {
+                float o, invDirection;
+                if (a == 0) {
+                    o = ox;
+                    invDirection = invDirX;
+                } else if (a == 1) {
+                    o = oy;
+                    invDirection = invDirY;
+                } else {
+                    o = oz;
+                    invDirection = invDirZ;
+                }
+
+                float tNearSplit = (planes[node * 2] - o) * invDirection;
+                float tFarSplit = (planes[node * 2 + 1] - o) * invDirection;
+                int nearNode = nodes[n + 1];
+                int farNode = nodes[n + 2];
+
+                if (invDirection < 0) {
+                    float tmpSplit = tNearSplit;
+                    tNearSplit = tFarSplit;
+                    tFarSplit = tmpSplit;
+
+                    int tmpNode = nearNode;
+                    nearNode = farNode;
+                    farNode = tmpNode;
+                }
+
+                if (tMin > tNearSplit && tMax < tFarSplit) {
+                    continue stackloop;
+                }
+
+                if (tMin > tNearSplit) {
+                    tMin = max(tMin, tFarSplit);
+                    node = farNode;
+                } else if (tMax < tFarSplit) {
+                    tMax = Math.min(tMax, tNearSplit);
+                    node = nearNode;
+                } else {
+                    nodeStack[top] = farNode;
+                    rangeStack[top * 2] = max(tMin, tFarSplit);
+                    rangeStack[top * 2 + 1] = tMax;
+                    top++;
+                    tMax = Math.min(tMax, tNearSplit);
+                    node = nearNode;
+                }
+                n = node * 3;
+            }
+
+            for (int i = nodes[n + 1]; i <= nodes[n + 2]; i++) {
+                float t = intersectTriangle(ox, oy, oz, dx, dy, dz, pointData, i * 9);
+                if (t < closest && t <= limit) {
+                    closest = t;
+                    closestTriangle = i;
+                }
+            }
+        }
+        
+        rangeStack[0] = closest;
+        return closestTriangle;
+    }
+
     private int collideWithBoundingVolume(BoundingVolume bv,
             Matrix4f worldMatrix,
             CollisionResults results) {
@@ -443,7 +949,100 @@ public class BIHTree implements CollisionData {
         }
 
         bbox.transform(worldMatrix.invert(), bbox);
-        return root.intersectWhere(bv, bbox, worldMatrix, this, results);
+        return intersectWhere(bv, bbox, worldMatrix, results);
+    }
+
+    /**
+     * Collides a bounding volume with every triangle of the leaves
+     * overlapping the given model space box.
+     */
+    private int intersectWhere(Collidable col,
+            BoundingBox box,
+            Matrix4f worldMatrix,
+            CollisionResults results) {
+
+        TempVars vars = TempVars.get();
+        int[] nodeStack = getNodeStack(vars);
+
+        Vector3f center = box.getCenter();
+        float minX = center.x - box.getXExtent(),
+              minY = center.y - box.getYExtent(),
+              minZ = center.z - box.getZExtent();
+        float maxX = center.x + box.getXExtent(),
+              maxY = center.y + box.getYExtent(),
+              maxZ = center.z + box.getZExtent();
+
+        Triangle t = new Triangle();
+        int cols = 0;
+
+        int top = 0;
+        nodeStack[top++] = 0;
+        
+        stackloop:
+        while (top > 0) {
+            int node = nodeStack[--top];
+            int n = node * 3;
+            int a;
+            while ((a = nodes[n]) != 3) {
+                float minExt, maxExt;
+                if (a == 0) {
+                    minExt = minX;
+                    maxExt = maxX;
+                } else if (a == 1) {
+                    minExt = minY;
+                    maxExt = maxY;
+                } else {
+                    minExt = minZ;
+                    maxExt = maxZ;
+                }
+                
+                float leftPlane = planes[node * 2];
+                float rightPlane = planes[node * 2 + 1];
+
+                if (leftPlane < rightPlane) {
+                    // means there's a gap in the middle
+                    // if the box is in that gap, we stop there
+                    if (minExt > leftPlane && maxExt < rightPlane) {
+                        continue stackloop;
+                    }
+                }
+
+                if (maxExt < rightPlane) {
+                    node = nodes[n + 1];
+                } else if (minExt > leftPlane) {
+                    node = nodes[n + 2];
+                } else {
+                    nodeStack[top++] = nodes[n + 2];
+                    node = nodes[n + 1];
+                }
+                n = node * 3;
+            }
+
+            for (int i = nodes[n + 1]; i <= nodes[n + 2]; i++) {
+                getTriangle(i, t.get1(), t.get2(), t.get3());
+                if (worldMatrix != null) {
+                    worldMatrix.mult(t.get1(), t.get1());
+                    worldMatrix.mult(t.get2(), t.get2());
+                    worldMatrix.mult(t.get3(), t.get3());
+                }
+
+                int added = col.collideWith(t, results);
+
+                if (added > 0) {
+                    int index = getTriangleIndex(i);
+                    int start = results.size() - added;
+
+                    for (int j = start; j < results.size(); j++) {
+                        CollisionResult cr = results.getCollisionDirect(j);
+                        cr.setTriangleIndex(index);
+                    }
+
+                    cols += added;
+                }
+            }
+        }
+        vars.release();
+        return cols;
     }
 
     public int collideWith(Collidable other,
@@ -462,21 +1061,183 @@ public class BIHTree implements CollisionData {
         }
     }
 
+    /**
+     * Builds subtrees of a tree as separate tasks. Tasks never wait for
+     * each other, the thread calling {@link #join() } runs queued tasks
+     * itself so the build completes even if the executor is busy.
+     */
+    private final class ParallelBuild implements Runnable {
+
+        private final Executor executor;
+        private final LinkedList<SubtreeTask> queue = new LinkedList<SubtreeTask>();
+        private int pending = 0;
+        private Throwable error;
+
+        ParallelBuild(Executor executor) {
+            this.executor = executor;
+        }
+
+        void fork(BIHNode parent, boolean left, int l, int r, BoundingBox bbox, int depth) {
+            synchronized (this) {
+                queue.add(new SubtreeTask(parent, left, l, r, bbox, depth));
+                pending++;
+                notifyAll();
+            }
+            executor.execute(this);
+        }
+
+        /**
+         * Runs one queued task, if any is left.
+         */
+        public void run() {
+            SubtreeTask task;
+            synchronized (this) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                task = queue.removeFirst();
+            }
+            execute(task);
+        }
+
+        private void execute(SubtreeTask task) {
+            try {
+                BIHNode node = createNode(task.l, task.r, task.bbox, task.depth, this);
+                if (task.left) {
+                    task.parent.setLeftChild(node);
+                } else {
+                    task.parent.setRightChild(node);
+                }
+            } catch (Throwable t) {
+                synchronized (this) {
+                    if (error == null) {
+                        error = t;
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    pending--;
+                    notifyAll();
+                }
+            }
+        }
+
+        void join() {
+            boolean interrupted = false;
+            while (true) {
+                SubtreeTask task;
+                synchronized (this) {
+                    while (queue.isEmpty() && pending > 0) {
+                        try {
+                            wait();
+                        } catch (InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
+                    if (queue.isEmpty()) {
+                        break;
+                    }
+                    task = queue.removeFirst();
+                }
+                execute(task);
+            }
+            
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error != null) {
+                throw new RuntimeException("Failed to build BIH tree", error);
+            }
+        }
+    }
+
+    private static final class SubtreeTask {
+
+        private final BIHNode parent;
+        private final boolean left;
+        private final int l, r, depth;
+        private final BoundingBox bbox;
+
+        SubtreeTask(BIHNode parent, boolean left, int l, int r, BoundingBox bbox, int depth) {
+            this.parent = parent;
+            this.left = left;
+            this.l = l;
+            this.r = r;
+            this.bbox = bbox;
+            this.depth = depth;
+        }
+    }
+
+    private static int countNodes(BIHNode node) {
+        if (node.getAxis() == 3) {
+            return 1;
+        }
+        return 1 + countNodes(node.getLeftChild()) + countNodes(node.getRightChild());
+    }
+
+    /**
+     * Stores the subtree in depth-first order, 3 ints and 2 planes per node.
+     * Interior nodes store their axis and the indices of their children,
+     * leaves store 3 and their triangle range.
+     * 
+     * @return the index following the last node of the subtree
+     */
+    private static int flatten(BIHNode node, int index, int[] nodes, float[] planes) {
+        int i = index * 3;
+        int p = index * 2;
+        if (node.getAxis() == 3) {
+            nodes[i] = 3;
+            nodes[i + 1] = node.getLeftIndex();
+            nodes[i + 2] = node.getRightIndex();
+            return index + 1;
+        }
+        
+        nodes[i] = node.getAxis();
+        planes[p] = node.getLeftPlane();
+        planes[p + 1] = node.getRightPlane();
+        
+        nodes[i + 1] = index + 1;
+        int next = flatten(node.getLeftChild(), index + 1, nodes, planes);
+        nodes[i + 2] = next;
+        return flatten(node.getRightChild(), next, nodes, planes);
+    }
+
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(mesh, "mesh", null);
-        oc.write(root, "root", null);
         oc.write(maxTrisPerNode, "tris_per_node", 0);
         oc.write(pointData, "points", null);
         oc.write(triIndices, "indices", null);
+        
+        oc.write(nodes, "nodes", null);
+        oc.write(planes, "planes", null);
     }
 
     public void read(JmeImporter im) throws IOException {
         InputCapsule ic = im.getCapsule(this);
         mesh = (Mesh) ic.readSavable("mesh", null);
-        root = (BIHNode) ic.readSavable("root", null);
         maxTrisPerNode = ic.readInt("tris_per_node", 0);
         pointData = ic.readFloatArray("points", null);
         triIndices = ic.readIntArray("indices", null);
+        numTris = triIndices != null ? triIndices.length : 0;
+        
+        if (ic.getSavableVersion(BIHTree.class) == 0) {
+            BIHNode root = (BIHNode) ic.readSavable("root", null);
+            if (root != null) {
+                setTree(root);
+            }
+        } else {
+            nodes = ic.readIntArray("nodes", null);
+            planes = ic.readFloatArray("planes", null);
+            if (nodes != null) {
+                depth = computeDepth(0);
+                computeTreeBounds();
+            }
+        }
     }
 }
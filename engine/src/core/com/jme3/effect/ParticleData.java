@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.effect;
+
+/**
+ * Stores the particles of a {@link ParticleEmitter} as a structure of
+ * arrays, one primitive array per attribute, instead of one
+ * {@link Particle} object per particle.
+ * <p>
+ * Live particles are always packed at indices <code>0</code> to
+ * <code>size() - 1</code>.  Removing a particle moves the last one
+ * into its place, so particle order is not preserved.
+ * <p>
+ * The arrays are public so that influencers and meshes can work
+ * on them directly.  Different threads may update disjoint index
+ * ranges at the same time, but adding and removing particles is
+ * not thread safe.
+ *
+ * @see ParticleEmitter#setDataOriented(boolean) 
+ */
+public class ParticleData {
+
+    public final float[] positionX, positionY, positionZ;
+    public final float[] velocityX, velocityY, velocityZ;
+    public final float[] colorR, colorG, colorB, colorA;
+    public final float[] size;
+    public final float[] life;
+    public final float[] startLife;
+    public final float[] angle;
+    public final float[] rotateSpeed;
+    public final int[] imageIndex;
+
+    private int capacity;
+    private int count;
+    private Particle[] particles;
+
+    public ParticleData(int capacity) {
+        this.capacity = capacity;
+        positionX = new float[capacity];
+        positionY = new float[capacity];
+        positionZ = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        velocityZ = new float[capacity];
+        colorR = new float[capacity];
+        colorG = new float[capacity];
+        colorB = new float[capacity];
+        colorA = new float[capacity];
+        size = new float[capacity];
+        life = new float[capacity];
+        startLife = new float[capacity];
+        angle = new float[capacity];
+        rotateSpeed = new float[capacity];
+        imageIndex = new int[capacity];
+    }
+
+    /**
+     * @return The maximum number of particles that can be stored.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of live particles.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Adds a particle with the values of the given one.
+     * 
+     * @return The index of the new particle, or -1 if the store is full.
+     */
+    public int add(Particle p) {
+        if (count == capacity) {
+            return -1;
+        }
+        int i = count++;
+        set(i, p);
+        return i;
+    }
+
+    /**
+     * Copies the values of the given particle into index <code>i</code>.
+     */
+    public void set(int i, Particle p) {
+        positionX[i] = p.position.x;
+        positionY[i] = p.position.y;
+        positionZ[i] = p.position.z;
+        velocityX[i] = p.velocity.x;
+        velocityY[i] = p.velocity.y;
+        velocityZ[i] = p.velocity.z;
+        colorR[i] = p.color.r;
+        colorG[i] = p.color.g;
+        colorB[i] = p.color.b;
+        colorA[i] = p.color.a;
+        size[i] = p.size;
+        life[i] = p.life;
+        startLife[i] = p.startlife;
+        angle[i] = p.angle;
+        rotateSpeed[i] = p.rotateSpeed;
+        imageIndex[i] = p.imageIndex;
+    }
+
+    /**
+     * Copies the values at index <code>i</code> into the given particle.
+     */
+    public Particle get(int i, Particle store) {
+        if (store == null) {
+            store = new Particle();
+        }
+        store.position.set(positionX[i], positionY[i], positionZ[i]);
+        store.velocity.set(velocityX[i], velocityY[i], velocityZ[i]);
+        store.color.set(colorR[i], colorG[i], colorB[i], colorA[i]);
+        store.size = size[i];
+        store.life = life[i];
+        store.startlife = startLife[i];
+        store.angle = angle[i];
+        store.rotateSpeed = rotateSpeed[i];
+        store.imageIndex = imageIndex[i];
+        return store;
+    }
+
+    /**
+     * Removes the particle at index <code>i</code> by moving the last
+     * live particle into its place.
+     */
+    public void remove(int i) {
+        int last = --count;
+        if (i != last) {
+            positionX[i] = positionX[last];
+            positionY[i] = positionY[last];
+            positionZ[i] = positionZ[last];
+            velocityX[i] = velocityX[last];
+            velocityY[i] = velocityY[last];
+            velocityZ[i] = velocityZ[last];
+            colorR[i] = colorR[last];
+            colorG[i] = colorG[last];
+            colorB[i] = colorB[last];
+            colorA[i] = colorA[last];
+            size[i] = size[last];
+            life[i] = life[last];
+            startLife[i] = startLife[last];
+            angle[i] = angle[last];
+            rotateSpeed[i] = rotateSpeed[last];
+            imageIndex[i] = imageIndex[last];
+        }
+        life[last] = 0;
+    }
+
+    /**
+     * Removes every particle whose life is 0 or less.
+     */
+    public void removeDead() {
+        for (int i = count - 1; i >= 0; i--) {
+            if (life[i] <= 0) {
+                remove(i);
+            }
+        }
+    }
+
+    /**
+     * Removes all particles.
+     */
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            life[i] = 0;
+        }
+        count = 0;
+    }
+
+    /**
+     * Returns the particles as <code>Particle</code> objects, for code
+     * that has not been written against the arrays.  The returned array
+     * has one entry per possible particle, is reused between calls and
+     * entries past <code>size()</code> are dead particles with a life
+     * of 0.  Changes to it are not copied back.
+     */
+    public Particle[] toParticles() {
+        if (particles == null) {
+            particles = new Particle[capacity];
+            for (int i = 0; i < capacity; i++) {
+                particles[i] = new Particle();
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            get(i, particles[i]);
+        }
+        for (int i = count; i < capacity; i++) {
+            Particle p = particles[i];
+            p.life = 0;
+            p.size = 0;
+            p.color.set(0, 0, 0, 0);
+        }
+        return particles;
+    }
+}
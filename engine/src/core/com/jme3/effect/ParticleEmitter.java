@@ -34,6 +34,7 @@ package com.jme3.effect;
 import com.jme3.bounding.BoundingBox;
 import com.jme3.effect.ParticleMesh.Type;
 import com.jme3.effect.influencers.DefaultParticleInfluencer;
+import com.jme3.effect.influencers.ParticleDataInfluencer;
 import com.jme3.effect.influencers.ParticleInfluencer;
 import com.jme3.effect.shapes.EmitterPointShape;
 import com.jme3.effect.shapes.EmitterShape;
@@ -55,6 +56,10 @@ import com.jme3.scene.Spatial;
 import com.jme3.scene.control.Control;
 import com.jme3.util.TempVars;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * <code>ParticleEmitter</code> is a special kind of geometry which simulates
@@ -73,6 +78,14 @@ import java.io.IOException;
  */
 public class ParticleEmitter extends Geometry {
 
+    /**
+     * The default number of live particles above which a data oriented
+     * emitter splits its update across several threads.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
+    // smallest number of particles worth handing to another thread
+    private static final int MIN_CHUNK_SIZE = 4096;
+
     private boolean enabled = true;
     private static final EmitterShape DEFAULT_SHAPE = new EmitterPointShape(Vector3f.ZERO);
     private static final ParticleInfluencer DEFAULT_INFLUENCER = new DefaultParticleInfluencer();
@@ -82,6 +95,9 @@ public class ParticleEmitter extends Geometry {
     private ParticleInfluencer particleInfluencer = DEFAULT_INFLUENCER;
     private ParticleMesh.Type meshType;
     private Particle[] particles;
+    private ParticleData particleData;
+    private boolean dataOriented = false;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
     private int firstUnUsed;
     private int lastUsed;
 //    private int next = 0;
@@ -106,6 +122,10 @@ public class ParticleEmitter extends Geometry {
     private boolean worldSpace = true;
     //variable that helps with computations
     private transient Vector3f temp = new Vector3f();
+    private transient Particle spawned = new Particle();
+    private transient float[] bounds = new float[6];
+    private transient UpdateChunk[] chunks;
+    private transient Executor updateExecutor;
 
     public static class ParticleEmitterControl implements Control {
 
@@ -160,7 +180,10 @@ public class ParticleEmitter extends Geometry {
         clone.shape = shape.deepClone();
 
         // Reinitialize particle list
-        clone.setNumParticles(particles.length);
+        clone.spawned = new Particle();
+        clone.bounds = new float[6];
+        clone.chunks = null;
+        clone.setNumParticles(getMaxNumParticles());
 
         clone.faceNormal = faceNormal.clone();
         clone.startColor = startColor.clone();
@@ -186,7 +209,7 @@ public class ParticleEmitter extends Geometry {
             default:
                 throw new IllegalStateException("Unrecognized particle type: " + meshType);
         }
-        clone.particleMesh.initParticleData(clone, clone.particles.length);
+        clone.particleMesh.initParticleData(clone, clone.getMaxNumParticles());
         clone.particleMesh.setImagesXY(clone.imagesX, clone.imagesY);
 
         return clone;
@@ -302,7 +325,7 @@ public class ParticleEmitter extends Geometry {
             default:
                 throw new IllegalStateException("Unrecognized particle type: " + meshType);
         }
-        this.setNumParticles(particles.length);
+        this.setNumParticles(getMaxNumParticles());
     }
 
     /**
@@ -339,9 +362,107 @@ public class ParticleEmitter extends Geometry {
      */
     public int getNumVisibleParticles() {
 //        return unusedIndices.size() + next;
+        if (dataOriented) {
+            return particleData.size();
+        }
         return lastUsed + 1;
     }
 
+    /**
+     * Set to true to store the particles as a {@link ParticleData},
+     * one primitive array per attribute, instead of one {@link Particle}
+     * object each.
+     * 
+     * <p>Data oriented emitters update their particles in a tight loop
+     * over the arrays, split the update across several threads once there
+     * are more than {@link #setParallelThreshold(int) a threshold} of live
+     * particles, and write the arrays straight into the mesh buffers.
+     * They are meant for effects with tens of thousands of particles.
+     * {@link #getParticles() } still works but has to copy every particle.
+     * Changing the setting kills all existing particles.
+     * 
+     * @param dataOriented true to store particles in arrays
+     */
+    public void setDataOriented(boolean dataOriented) {
+        if (this.dataOriented == dataOriented) {
+            return;
+        }
+        int numParticles = getMaxNumParticles();
+        this.dataOriented = dataOriented;
+        this.setNumParticles(numParticles);
+    }
+
+    /**
+     * @return true if particles are stored in arrays.
+     * 
+     * @see ParticleEmitter#setDataOriented(boolean) 
+     */
+    public boolean isDataOriented() {
+        return dataOriented;
+    }
+
+    /**
+     * Returns the particle arrays of a data oriented emitter.
+     * 
+     * @return the particle arrays, or null if the emitter is not
+     * data oriented.
+     * 
+     * @see ParticleEmitter#setDataOriented(boolean) 
+     */
+    public ParticleData getParticleData() {
+        return particleData;
+    }
+
+    /**
+     * Set the number of live particles above which a data oriented 
+     * emitter with an update executor updates its particles on several
+     * threads at once. Each thread gets at least a few thousand particles
+     * and no more threads are used than there are processors.
+     * 
+     * @param parallelThreshold the particle count, or 
+     * <code>Integer.MAX_VALUE</code> to always update on the calling thread.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return the number of live particles above which the update is
+     * split across threads.
+     * 
+     * @see ParticleEmitter#setParallelThreshold(int) 
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the executor a data oriented emitter splits its update across
+     * when it has more live particles than the parallel threshold. The
+     * updating thread works on one of the chunks itself and waits for
+     * the others before returning.
+     * <p>
+     * Without an executor (the default), the particles are updated on
+     * the updating thread.
+     * 
+     * @param executor The executor to use, or null to update on the
+     * updating thread.
+     * 
+     * @see ParticleEmitter#setParallelThreshold(int) 
+     */
+    public void setUpdateExecutor(Executor executor) {
+        updateExecutor = executor;
+    }
+
+    /**
+     * @return The executor the update is split across, null by default.
+     * 
+     * @see ParticleEmitter#setUpdateExecutor(java.util.concurrent.Executor) 
+     */
+    public Executor getUpdateExecutor() {
+        return updateExecutor;
+    }
+
     /**
      * Set the maximum amount of particles that
      * can exist at the same time with this emitter.
@@ -351,19 +472,28 @@ public class ParticleEmitter extends Geometry {
      * can exist at the same time with this emitter.
      */
     public final void setNumParticles(int numParticles) {
-        particles = new Particle[numParticles];
-        for (int i = 0; i < numParticles; i++) {
-            particles[i] = new Particle();
+        if (dataOriented) {
+            particles = null;
+            particleData = new ParticleData(numParticles);
+        } else {
+            particleData = null;
+            particles = new Particle[numParticles];
+            for (int i = 0; i < numParticles; i++) {
+                particles[i] = new Particle();
+            }
         }
         //We have to reinit the mesh's buffers with the new size
-        particleMesh.initParticleData(this, particles.length);
+        particleMesh.initParticleData(this, numParticles);
         particleMesh.setImagesXY(this.imagesX, this.imagesY);
         firstUnUsed = 0;
         lastUsed = -1;
     }
 
     public int getMaxNumParticles() {
-        return particles.length;
+        if (particleData != null) {
+            return particleData.getCapacity();
+        }
+        return particles == null ? 0 : particles.length;
     }
 
     /**
@@ -375,9 +505,17 @@ public class ParticleEmitter extends Geometry {
      * specified in the constructor or {@link ParticleEmitter#setNumParticles(int) }
      * method. 
      * 
+     * <p>
+     * For a {@link #setDataOriented(boolean) data oriented} emitter this
+     * is a copy of the particle arrays that is rebuilt on every call, 
+     * changes made to it have no effect.
+     * 
      * @return a list of all particles.
      */
     public Particle[] getParticles() {
+        if (dataOriented) {
+            return particleData.toParticles();
+        }
         return particles;
     }
 
@@ -826,11 +964,23 @@ public class ParticleEmitter extends Geometry {
 
     private Particle emitParticle(Vector3f min, Vector3f max) {
         int idx = lastUsed + 1;
-        if (idx >= particles.length) {
-            return null;
+        Particle p;
+        if (dataOriented) {
+            if (particleData.size() == particleData.getCapacity()) {
+                return null;
+            }
+            // reset what freeParticle() would have
+            p = spawned;
+            p.imageIndex = 0;
+            p.angle = 0;
+            p.rotateSpeed = 0;
+        } else {
+            if (idx >= particles.length) {
+                return null;
+            }
+            p = particles[idx];
         }
 
-        Particle p = particles[idx];
         if (selectRandomImage) {
             p.imageIndex = FastMath.nextRandomInt(0, imagesY - 1) * imagesX + FastMath.nextRandomInt(0, imagesX - 1);
         }
@@ -858,6 +1008,11 @@ public class ParticleEmitter extends Geometry {
         temp.set(p.position).subtractLocal(p.size, p.size, p.size);
         min.minLocal(temp);
 
+        if (dataOriented) {
+            particleData.add(p);
+            return p;
+        }
+
         ++lastUsed;
         firstUnUsed = idx + 1;
         return p;
@@ -901,6 +1056,10 @@ public class ParticleEmitter extends Geometry {
      * particles will be dead and no longer visible.
      */
     public void killAllParticles() {
+        if (dataOriented) {
+            particleData.clear();
+            return;
+        }
         for (int i = 0; i < particles.length; ++i) {
             if (particles[i].life > 0) {
                 this.freeParticle(i);
@@ -915,6 +1074,12 @@ public class ParticleEmitter extends Geometry {
      * @see #getParticles() 
      */
     public void killParticle(int index){
+        if (dataOriented) {
+            if (index < particleData.size()) {
+                particleData.remove(index);
+            }
+            return;
+        }
         freeParticle(index);
     }
 
@@ -968,7 +1133,209 @@ public class ParticleEmitter extends Geometry {
         }
     }
     
+    private void influenceParticles(ParticleData d, int start, int end, float tpf) {
+        if (particleInfluencer instanceof ParticleDataInfluencer) {
+            ((ParticleDataInfluencer) particleInfluencer).influenceParticles(d, start, end, tpf);
+        }
+    }
+
+    /**
+     * Updates the live particles from <code>start</code> to
+     * <code>end - 1</code> in the particle arrays, taking <code>age</code>
+     * off their life and moving them by <code>tpf</code>.  The ones
+     * that die are marked with a life of 0 and <code>bounds</code>
+     * (min xyz, max xyz) grows to contain the rest.  Safe to call from
+     * several threads at once for disjoint ranges.
+     */
+    private void updateParticles(ParticleData d, int start, int end, float tpf, float age, float[] bounds) {
+        float gx = gravity.x * tpf, gy = gravity.y * tpf, gz = gravity.z * tpf;
+        float sr = startColor.r, sg = startColor.g, sb = startColor.b, sa = startColor.a;
+        float er = endColor.r, eg = endColor.g, eb = endColor.b, ea = endColor.a;
+        int images = imagesX * imagesY;
+        float minX = bounds[0], minY = bounds[1], minZ = bounds[2];
+        float maxX = bounds[3], maxY = bounds[4], maxZ = bounds[5];
+
+        float[] life = d.life;
+        float[] px = d.positionX, py = d.positionY, pz = d.positionZ;
+        float[] vx = d.velocityX, vy = d.velocityY, vz = d.velocityZ;
+        float[] size = d.size;
+        for (int i = start; i < end; i++) {
+            float l = life[i] - age;
+            if (l <= 0) {
+                life[i] = 0;
+                continue;
+            }
+            life[i] = l;
+
+            // applying gravity
+            float x = px[i] + (vx[i] -= gx) * tpf;
+            float y = py[i] + (vy[i] -= gy) * tpf;
+            float z = pz[i] + (vz[i] -= gz) * tpf;
+            px[i] = x;
+            py[i] = y;
+            pz[i] = z;
+
+            // affecting color, size and angle
+            float b = (d.startLife[i] - l) / d.startLife[i];
+            float a = 1 - b;
+            d.colorR[i] = a * sr + b * er;
+            d.colorG[i] = a * sg + b * eg;
+            d.colorB[i] = a * sb + b * eb;
+            d.colorA[i] = a * sa + b * ea;
+            float s = FastMath.interpolateLinear(b, startSize, endSize);
+            size[i] = s;
+            d.angle[i] += d.rotateSpeed[i] * tpf;
+
+            // Computing bounding volume
+            if (x - s < minX) minX = x - s;
+            if (y - s < minY) minY = y - s;
+            if (z - s < minZ) minZ = z - s;
+            if (x + s > maxX) maxX = x + s;
+            if (y + s > maxY) maxY = y + s;
+            if (z + s > maxZ) maxZ = z + s;
+
+            if (!selectRandomImage) {
+                d.imageIndex[i] = (int) (b * images);
+            }
+        }
+
+        bounds[0] = minX; bounds[1] = minY; bounds[2] = minZ;
+        bounds[3] = maxX; bounds[4] = maxY; bounds[5] = maxZ;
+    }
+
+    private static void resetBounds(float[] bounds) {
+        bounds[0] = bounds[1] = bounds[2] = Float.POSITIVE_INFINITY;
+        bounds[3] = bounds[4] = bounds[5] = Float.NEGATIVE_INFINITY;
+    }
+
+    private class UpdateChunk implements Callable<Void> {
+
+        int start;
+        int end;
+        float tpf;
+        float[] bounds = new float[6];
+
+        public Void call() {
+            resetBounds(bounds);
+            influenceParticles(particleData, start, end, tpf);
+            updateParticles(particleData, start, end, tpf, tpf, bounds);
+            return null;
+        }
+    }
+
+    /**
+     * The update for data oriented emitters, the live particles
+     * are split into chunks for the update executor when there are
+     * enough of them.
+     */
+    private void updateParticleData(float tpf) {
+        // Force world transform to update
+        this.getWorldTransform();
+
+        TempVars vars = TempVars.get();
+
+        Vector3f min = vars.vect1.set(Vector3f.POSITIVE_INFINITY);
+        Vector3f max = vars.vect2.set(Vector3f.NEGATIVE_INFINITY);
+
+        ParticleData d = particleData;
+        int count = d.size();
+        int chunkCount = 1;
+        if (updateExecutor != null && count >= parallelThreshold) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            chunkCount = Math.max(1, Math.min(processors, count / MIN_CHUNK_SIZE));
+        }
+
+        resetBounds(bounds);
+        if (chunkCount == 1) {
+            influenceParticles(d, 0, count, tpf);
+            updateParticles(d, 0, count, tpf, tpf, bounds);
+        } else {
+            if (chunks == null || chunks.length < chunkCount) {
+                chunks = new UpdateChunk[chunkCount];
+                for (int i = 0; i < chunkCount; i++) {
+                    chunks[i] = new UpdateChunk();
+                }
+            }
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i].start = (int) ((long) count * i / chunkCount);
+                chunks[i].end = (int) ((long) count * (i + 1) / chunkCount);
+                chunks[i].tpf = tpf;
+            }
+
+            // The first chunk runs here while the executor does the rest
+            FutureTask<?>[] results = new FutureTask<?>[chunkCount];
+            for (int i = 1; i < chunkCount; i++) {
+                FutureTask<Void> task = new FutureTask<Void>(chunks[i]);
+                results[i] = task;
+                updateExecutor.execute(task);
+            }
+            chunks[0].call();
+            try {
+                for (int i = 1; i < chunkCount; i++) {
+                    results[i].get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while updating particles", ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Error updating particles", ex.getCause());
+            }
+
+            for (int i = 0; i < chunkCount; i++) {
+                float[] b = chunks[i].bounds;
+                for (int j = 0; j < 3; j++) {
+                    bounds[j] = Math.min(bounds[j], b[j]);
+                    bounds[j + 3] = Math.max(bounds[j + 3], b[j + 3]);
+                }
+            }
+        }
+        d.removeDead();
+
+        // Spawns particles within the tpf timeslot with proper age
+        int first = d.size();
+        float oldest = 0;
+        float interval = 1f / particlesPerSec;
+        tpf += timeDifference;
+        while (tpf > interval){
+            tpf -= interval;
+            if (emitParticle(min, max) != null){
+                int i = d.size() - 1;
+                d.life[i] -= tpf;
+                if (d.life[i] <= 0){
+                    d.remove(i);
+                }else if (oldest == 0){
+                    oldest = tpf;
+                }
+            }
+        }
+        timeDifference = tpf;
+
+        // The new particles are influenced together, then each one moves
+        // for the part of the frame it has lived without aging it again
+        int end = d.size();
+        if (first < end) {
+            influenceParticles(d, first, end, oldest);
+            for (int i = first; i < end; i++) {
+                updateParticles(d, i, i + 1, d.startLife[i] - d.life[i], 0, bounds);
+            }
+        }
+
+        min.minLocal(temp.set(bounds[0], bounds[1], bounds[2]));
+        max.maxLocal(temp.set(bounds[3], bounds[4], bounds[5]));
+
+        BoundingBox bbox = (BoundingBox) this.getMesh().getBound();
+        bbox.setMinMax(min, max);
+        this.setBoundRefresh();
+
+        vars.release();
+    }
+    
     private void updateParticleState(float tpf) {
+        if (dataOriented) {
+            updateParticleData(tpf);
+            return;
+        }
+
         // Force world transform to update
         this.getWorldTransform();
 
@@ -1082,7 +1449,11 @@ public class ParticleEmitter extends Geometry {
 
             inverseRotation = this.getWorldRotation().toRotationMatrix(vars.tempMat3).invertLocal();
         }
-        particleMesh.updateParticleData(particles, cam, inverseRotation);
+        if (dataOriented) {
+            particleMesh.updateParticleData(particleData, cam, inverseRotation);
+        } else {
+            particleMesh.updateParticleData(particles, cam, inverseRotation);
+        }
         if (!worldSpace) {
             vars.release();
         }
@@ -1090,7 +1461,11 @@ public class ParticleEmitter extends Geometry {
 
     public void preload(RenderManager rm, ViewPort vp) {
         this.updateParticleState(0);
-        particleMesh.updateParticleData(particles, vp.getCamera(), Matrix3f.IDENTITY);
+        if (dataOriented) {
+            particleMesh.updateParticleData(particleData, vp.getCamera(), Matrix3f.IDENTITY);
+        } else {
+            particleMesh.updateParticleData(particles, vp.getCamera(), Matrix3f.IDENTITY);
+        }
     }
 
     @Override
@@ -1100,7 +1475,9 @@ public class ParticleEmitter extends Geometry {
         oc.write(shape, "shape", DEFAULT_SHAPE);
         oc.write(meshType, "meshType", ParticleMesh.Type.Triangle);
         oc.write(enabled, "enabled", true);
-        oc.write(particles.length, "numParticles", 0);
+        oc.write(getMaxNumParticles(), "numParticles", 0);
+        oc.write(dataOriented, "dataOriented", false);
+        oc.write(parallelThreshold, "parallelThreshold", DEFAULT_PARALLEL_THRESHOLD);
         oc.write(particlesPerSec, "particlesPerSec", 0);
         oc.write(lowLife, "lowLife", 0);
         oc.write(highLife, "highLife", 0);
@@ -1135,6 +1512,8 @@ public class ParticleEmitter extends Geometry {
 
         meshType = ic.readEnum("meshType", ParticleMesh.Type.class, ParticleMesh.Type.Triangle);
         int numParticles = ic.readInt("numParticles", 0);
+        dataOriented = ic.readBoolean("dataOriented", false);
+        parallelThreshold = ic.readInt("parallelThreshold", DEFAULT_PARALLEL_THRESHOLD);
 
 
         enabled = ic.readBoolean("enabled", true);
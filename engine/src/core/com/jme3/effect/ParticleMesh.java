@@ -82,4 +82,14 @@ public abstract class ParticleMesh extends Mesh {
      */
     public abstract void updateParticleData(Particle[] particles, Camera cam, Matrix3f inverseRotation);
 
+    /**
+     * Update the particle visual data from the arrays of a data oriented
+     * emitter. The default implementation goes through 
+     * {@link ParticleData#toParticles() }, subclasses should write the
+     * arrays into their buffers directly.
+     */
+    public void updateParticleData(ParticleData data, Camera cam, Matrix3f inverseRotation) {
+        updateParticleData(data.toParticles(), cam, inverseRotation);
+    }
+
 }
@@ -39,6 +39,7 @@ import com.jme3.scene.VertexBuffer.Usage;
 import com.jme3.util.BufferUtils;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 
 public class ParticlePointMesh extends ParticleMesh {
 
@@ -164,4 +165,69 @@ public class ParticlePointMesh extends ParticleMesh {
         svb.updateData(sizes);
         tvb.updateData(texcoords);
     }
+
+    @Override
+    public void updateParticleData(ParticleData data, Camera cam, Matrix3f inverseRotation) {
+        VertexBuffer pvb = getBuffer(VertexBuffer.Type.Position);
+        FloatBuffer positions = (FloatBuffer) pvb.getData();
+
+        VertexBuffer cvb = getBuffer(VertexBuffer.Type.Color);
+        ByteBuffer colors = (ByteBuffer) cvb.getData();
+
+        VertexBuffer svb = getBuffer(VertexBuffer.Type.Size);
+        FloatBuffer sizes = (FloatBuffer) svb.getData();
+
+        VertexBuffer tvb = getBuffer(VertexBuffer.Type.TexCoord);
+        FloatBuffer texcoords = (FloatBuffer) tvb.getData();
+
+        float sizeScale = emitter.getWorldScale().x;
+
+        // write straight into the vertex buffers, dead particles
+        // keep stale positions but are drawn with no size and no color
+        positions.clear();
+        colors.clear();
+        sizes.clear();
+        texcoords.clear();
+        IntBuffer colorInts = colors.asIntBuffer();
+
+        int count = data.size();
+        for (int i = 0; i < count; i++){
+            positions.put(data.positionX[i])
+                     .put(data.positionY[i])
+                     .put(data.positionZ[i]);
+
+            sizes.put(data.size[i] * sizeScale);
+            colorInts.put((((int) (data.colorA[i] * 255) & 0xFF) << 24)
+                        | (((int) (data.colorB[i] * 255) & 0xFF) << 16)
+                        | (((int) (data.colorG[i] * 255) & 0xFF) << 8)
+                        | (((int) (data.colorR[i] * 255) & 0xFF)));
+
+            int imageIndex = data.imageIndex[i];
+            int imgX = imageIndex % imagesX;
+            int imgY = (imageIndex - imgX) / imagesY;
+
+            float startX = ((float) imgX) / imagesX;
+            float startY = ((float) imgY) / imagesY;
+
+            texcoords.put(startX).put(startY)
+                     .put(startX + (1f / imagesX))
+                     .put(startY + (1f / imagesY));
+        }
+        while (colorInts.hasRemaining()){
+            colorInts.put(0);
+        }
+        while (sizes.hasRemaining()){
+            sizes.put(0);
+        }
+        positions.clear();
+        colors.clear();
+        sizes.clear();
+        texcoords.clear();
+
+        // force renderer to re-send data to GPU
+        pvb.updateData(positions);
+        cvb.updateData(colors);
+        svb.updateData(sizes);
+        tvb.updateData(texcoords);
+    }
 }
@@ -42,6 +42,7 @@ import com.jme3.util.BufferUtils;
 import com.jme3.util.TempVars;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 
 public class ParticleTriMesh extends ParticleMesh {
@@ -52,12 +53,16 @@ public class ParticleTriMesh extends ParticleMesh {
 //    private ParticleComparator comparator = new ParticleComparator();
     private ParticleEmitter emitter;
 //    private Particle[] particlesCopy;
+    
+    // particles written by the last ParticleData update
+    private int lastCount;
 
     @Override
     public void initParticleData(ParticleEmitter emitter, int numParticles) {
         setMode(Mode.Triangles);
 
         this.emitter = emitter;
+        lastCount = 0;
 
 //        particlesCopy = new Particle[numParticles];
 
@@ -285,4 +290,129 @@ public class ParticleTriMesh extends ParticleMesh {
         cvb.updateData(colors);
     }
 
+    @Override
+    public void updateParticleData(ParticleData data, Camera cam, Matrix3f inverseRotation) {
+        VertexBuffer pvb = getBuffer(VertexBuffer.Type.Position);
+        FloatBuffer positions = (FloatBuffer) pvb.getData();
+
+        VertexBuffer cvb = getBuffer(VertexBuffer.Type.Color);
+        ByteBuffer colors = (ByteBuffer) cvb.getData();
+
+        VertexBuffer tvb = getBuffer(VertexBuffer.Type.TexCoord);
+        FloatBuffer texcoords = (FloatBuffer) tvb.getData();
+
+        Vector3f camUp   = cam.getUp();
+        Vector3f camLeft = cam.getLeft();
+        Vector3f camDir  = cam.getDirection();
+
+        inverseRotation.multLocal(camUp);
+        inverseRotation.multLocal(camLeft);
+        inverseRotation.multLocal(camDir);
+
+        boolean facingVelocity = emitter.isFacingVelocity();
+        Vector3f faceNormal = emitter.getFaceNormal();
+
+        int count = data.size();
+        float[] px = data.positionX, py = data.positionY, pz = data.positionZ;
+        float[] sizes = data.size, angles = data.angle;
+
+        TempVars vars = TempVars.get();
+        Vector3f up = vars.vect1, left = vars.vect2;
+
+        // write straight into the vertex buffers
+        positions.clear();
+        colors.clear();
+        texcoords.clear();
+        IntBuffer colorInts = colors.asIntBuffer();
+
+        for (int i = 0; i < count; i++){
+            float size = sizes[i];
+            float angle = angles[i];
+            float ux, uy, uz, lx, ly, lz;
+
+            if (facingVelocity){
+                left.set(data.velocityX[i], data.velocityY[i], data.velocityZ[i]).normalizeLocal();
+                camDir.cross(left, up);
+                up.multLocal(size);
+                left.multLocal(size);
+                ux = up.x; uy = up.y; uz = up.z;
+                lx = left.x; ly = left.y; lz = left.z;
+            }else if (faceNormal != null){
+                up.set(faceNormal).crossLocal(Vector3f.UNIT_X);
+                faceNormal.cross(up, left);
+                up.multLocal(size);
+                left.multLocal(size);
+                if (angle != 0) {
+                    vars.vect3.set(faceNormal).normalizeLocal();
+                    vars.quat1.fromAngleNormalAxis(angle, vars.vect3);
+                    vars.quat1.multLocal(left);
+                    vars.quat1.multLocal(up);
+                }
+                ux = up.x; uy = up.y; uz = up.z;
+                lx = left.x; ly = left.y; lz = left.z;
+            }else if (angle != 0){
+                float cos = FastMath.cos(angle) * size;
+                float sin = FastMath.sin(angle) * size;
+
+                lx = camLeft.x * cos + camUp.x * sin;
+                ly = camLeft.y * cos + camUp.y * sin;
+                lz = camLeft.z * cos + camUp.z * sin;
+
+                ux = camLeft.x * -sin + camUp.x * cos;
+                uy = camLeft.y * -sin + camUp.y * cos;
+                uz = camLeft.z * -sin + camUp.z * cos;
+            }else{
+                ux = camUp.x * size; uy = camUp.y * size; uz = camUp.z * size;
+                lx = camLeft.x * size; ly = camLeft.y * size; lz = camLeft.z * size;
+            }
+
+            float x = px[i], y = py[i], z = pz[i];
+            positions.put(x + lx + ux).put(y + ly + uy).put(z + lz + uz);
+            positions.put(x - lx + ux).put(y - ly + uy).put(z - lz + uz);
+            positions.put(x + lx - ux).put(y + ly - uy).put(z + lz - uz);
+            positions.put(x - lx - ux).put(y - ly - uy).put(z - lz - uz);
+
+            if (uniqueTexCoords){
+                int imageIndex = data.imageIndex[i];
+                int imgX = imageIndex % imagesX;
+                int imgY = (imageIndex - imgX) / imagesY;
+
+                float startX = ((float) imgX) / imagesX;
+                float startY = ((float) imgY) / imagesY;
+                float endX   = startX + (1f / imagesX);
+                float endY   = startY + (1f / imagesY);
+
+                texcoords.put(startX).put(endY);
+                texcoords.put(endX).put(endY);
+                texcoords.put(startX).put(startY);
+                texcoords.put(endX).put(startY);
+            }
+
+            int abgr = (((int) (data.colorA[i] * 255) & 0xFF) << 24)
+                     | (((int) (data.colorB[i] * 255) & 0xFF) << 16)
+                     | (((int) (data.colorG[i] * 255) & 0xFF) << 8)
+                     | (((int) (data.colorR[i] * 255) & 0xFF));
+            colorInts.put(abgr).put(abgr).put(abgr).put(abgr);
+        }
+        vars.release();
+
+        // collapse the quads of particles that died since last time
+        for (int i = count * 12, end = lastCount * 12; i < end; i++){
+            positions.put(0);
+        }
+        lastCount = count;
+
+        positions.clear();
+        colors.clear();
+
+        texcoords.clear();
+        if (uniqueTexCoords){
+            tvb.updateData(texcoords);
+        }
+
+        // force renderer to re-send data to GPU
+        pvb.updateData(positions);
+        cvb.updateData(colors);
+    }
+
 }
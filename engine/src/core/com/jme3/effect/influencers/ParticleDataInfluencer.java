@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.effect.influencers;
+
+import com.jme3.effect.ParticleData;
+import com.jme3.effect.ParticleEmitter;
+
+/**
+ * An optional interface for {@link ParticleInfluencer}s that also
+ * affect live particles every frame when the emitter stores its particles
+ * in a {@link ParticleData}.
+ * 
+ * @see ParticleEmitter#setDataOriented(boolean) 
+ */
+public interface ParticleDataInfluencer {
+
+    /**
+     * Influences the live particles at indices <code>start</code> to
+     * <code>end - 1</code>.  Called before the emitter moves and ages
+     * the particles.  The particles spawned during a frame are influenced
+     * once as a range, with the time since the oldest of them was emitted.
+     * Large emitters call this from several threads at
+     * once for disjoint ranges, so implementations must only touch
+     * their own range and must not change shared state.
+     * 
+     * @param data the particle arrays
+     * @param start the first particle index
+     * @param end one past the last particle index
+     * @param tpf the time step, in seconds
+     */
+    void influenceParticles(ParticleData data, int start, int end, float tpf);
+}
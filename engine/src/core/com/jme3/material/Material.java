@@ -45,8 +45,10 @@ import com.jme3.renderer.Caps;
 import com.jme3.renderer.GL1Renderer;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.Renderer;
+import com.jme3.renderer.Statistics;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.InstancedGeometry;
 import com.jme3.shader.Shader;
 import com.jme3.shader.Uniform;
 import com.jme3.shader.UniformBindingManager;
@@ -100,6 +102,8 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
     private boolean transparent = false;
     private boolean receivesShadows = false;
     private int sortingId = -1;
+    private long sortingKey = -1;
+    private int paramsGeneration = 0;
     private transient ColorRGBA ambientLightColor = new ColorRGBA(0, 0, 0, 1);
 
     public Material(MaterialDef def) {
@@ -193,6 +197,80 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         return sortingId;
     }
 
+    /**
+     * Returns the render state sort key of this material.
+     *
+     * <p>The key packs, from the most significant bits, the id of the
+     * shader of the active technique (16 bits), the id of the first texture
+     * (16 bits), a hash of the other textures (8 bits) and the face cull
+     * mode, blend mode, depth write and wireframe flags of the additional
+     * render state (8 bits). Sorting by this key draws geometries using the
+     * same shader and textures one after another. Shaders and textures that
+     * were not uploaded yet use an id with all bits set.
+     *
+     * @return The sort key, in the lower 48 bits.
+     *
+     * @see com.jme3.renderer.queue.OpaqueComparator
+     */
+    public long getSortKey() {
+        Technique t = getActiveTechnique();
+        int shaderId = -1;
+        if (t != null && t.getShader() != null) {
+            shaderId = t.getShader().getId();
+        }
+
+        // the shader is reloaded when the defines change
+        if (sortingKey == -1 || (sortingKey >>> 32) != (shaderId & 0xffff)) {
+            int firstTexId = -2;
+            int otherTexHash = 0;
+            boolean uploaded = shaderId != -1;
+            for (int i = 0; i < paramValues.size(); i++) {
+                MatParam param = paramValues.getValue(i);
+                if (param instanceof MatParamTexture) {
+                    Texture tex = ((MatParamTexture) param).getTextureValue();
+                    if (tex != null && tex.getImage() != null) {
+                        int imageId = tex.getImage().getId();
+                        uploaded &= imageId != -1;
+                        if (firstTexId == -2) {
+                            firstTexId = imageId;
+                        } else {
+                            otherTexHash = otherTexHash * 31 + imageId;
+                        }
+                    }
+                }
+            }
+            if (firstTexId == -2) {
+                // no textures
+                firstTexId = 0;
+            }
+            otherTexHash ^= (otherTexHash >>> 16);
+            otherTexHash ^= (otherTexHash >>> 8);
+
+            long key = ((long) (shaderId & 0xffff) << 32)
+                     | ((long) (firstTexId & 0xffff) << 16)
+                     | ((otherTexHash & 0xff) << 8);
+            if (!uploaded) {
+                // the ids are only known after the first render
+                return key | getRenderStateSortBits();
+            }
+            sortingKey = key;
+        }
+        return sortingKey | getRenderStateSortBits();
+    }
+
+    private int getRenderStateSortBits() {
+        if (additionalState == null) {
+            return 0;
+        }
+        // the additional state can be changed without notifying
+        // the material, so it is not cached.
+        int bits = additionalState.getFaceCullMode().ordinal() & 0x3;
+        bits |= (additionalState.getBlendMode().ordinal() & 0xf) << 2;
+        bits |= additionalState.isDepthWrite() ? 0x40 : 0;
+        bits |= additionalState.isWireframe() ? 0x80 : 0;
+        return bits;
+    }
+
     /**
      * Clones this material. The result is returned.
      */
@@ -205,6 +283,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                 mat.additionalState = additionalState.clone();
             }
             mat.technique = null;
+            mat.sortingKey = -1;
             mat.techniques = new HashMap<String, Technique>();
 
             mat.paramValues = new ListMap<String, MatParam>();
@@ -482,6 +561,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             } else {
                 val.setValue(value);
             }
+            paramsGeneration++;
 
             if (technique != null) {
                 technique.notifyParamChanged(name, type, value);
@@ -501,6 +581,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         }
         
         paramValues.remove(name);
+        paramsGeneration++;
         if (matParam instanceof MatParamTexture) {
             int texUnit = ((MatParamTexture) matParam).getUnit();
             nextTexUnit--;
@@ -513,6 +594,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                 }
             }
             sortingId = -1;
+            sortingKey = -1;
         }
         if (technique != null) {
             technique.notifyParamChanged(name, null, null);
@@ -540,6 +622,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         } else {
             val.setTextureValue(value);
         }
+        paramsGeneration++;
 
         if (technique != null) {
             technique.notifyParamChanged(name, type, nextTexUnit - 1);
@@ -547,6 +630,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         // need to recompute sort ID
         sortingId = -1;
+        sortingKey = -1;
     }
 
     /**
@@ -850,7 +934,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             }
             vars.release();
             r.setShader(shader);
-            r.renderMesh(g.getMesh(), g.getLodLevel(), 1);
+            r.renderMesh(g.getMesh(), g.getLodLevel(), getInstanceCount(g));
         }
 
         if (isFirstLight && lightList.size() > 0) {
@@ -860,7 +944,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             lightColor.setValue(VarType.Vector4, ColorRGBA.BlackNoAlpha);
             lightPos.setValue(VarType.Vector4, nullDirLight);
             r.setShader(shader);
-            r.renderMesh(g.getMesh(), g.getLodLevel(), 1);
+            r.renderMesh(g.getMesh(), g.getLodLevel(), getInstanceCount(g));
         }
     }
 
@@ -944,6 +1028,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         // shader was changed
         sortingId = -1;
+        sortingKey = -1;
     }
 
     private void autoSelectTechnique(RenderManager rm) {
@@ -985,6 +1070,8 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         Shader shader = technique.getShader();
         if (techDef.isUsingShaders()) {
+            // the uniforms were set without the material render path
+            shader.setParamsOwner(null, 0);
             r.setShader(shader);
         }
     }
@@ -1039,7 +1126,9 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
      * - i.e. renderstate requested by a {@link com.jme3.post.SceneProcessor} or
      * post-processing filter.</li></ol>
      * <li>If the technique {@link TechniqueDef#isUsingShaders() uses a shader}, then the uniforms of the shader must be updated.<ul>
-     * <li>Uniforms bound to material parameters are updated based on the current material parameter values.</li>
+     * <li>Uniforms bound to material parameters are updated based on the current material parameter values.
+     * This is skipped if the shader still holds the values set by this material
+     * in the same viewport render pass and no parameter was changed since.</li>
      * <li>Uniforms bound to world parameters are updated from the RenderManager.
      * Internally {@link UniformBindingManager} is used for this task.</li>
      * <li>Uniforms bound to textures will cause the texture to be uploaded as necessary. 
@@ -1061,6 +1150,9 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
      * based on the light list on the geometry, otherwise OpenGL lighting is disabled.</li>
      * <li>The mesh is uploaded and rendered.</li>
      * </ul>
+     * <li>An {@link InstancedGeometry} is culled per instance and its visible
+     * instances are rendered at once, if the technique supports instancing,
+     * otherwise it is not rendered.</li>
      * </ul>
      *
      * @param geom The geometry to render
@@ -1078,6 +1170,16 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             return;
         }
 
+        if (geom instanceof InstancedGeometry) {
+            if (techDef.getShaderParamDefine("UseInstancing") == null
+                    || !r.getCaps().contains(Caps.MeshInstancing)) {
+                return;
+            }
+            if (((InstancedGeometry) geom).updateInstances(rm.getCurrentCamera()) == 0) {
+                return;
+            }
+        }
+
         if (rm.getForcedRenderState() != null) {
             r.applyRenderState(rm.getForcedRenderState());
         } else {
@@ -1089,22 +1191,34 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         }
 
 
+        Shader shader = technique.getShader();
+
+        // the shader may still hold the parameters of this material
+        // if nothing else used it since
+        boolean paramsApplied = false;
+        long paramsVersion = ((long) rm.getRenderPassId() << 32) | (paramsGeneration & 0xffffffffL);
+
         // update camera and world matrices
         // NOTE: setWorldTransform should have been called already
         if (techDef.isUsingShaders()) {
-            // reset unchanged uniform flag
-            clearUniformsSetByCurrent(technique.getShader());
+            paramsApplied = shader.isParamsOwner(technique, paramsVersion);
+            if (!paramsApplied) {
+                // reset unchanged uniform flag
+                clearUniformsSetByCurrent(shader);
+            }
             rm.updateUniformBindings(technique.getWorldBindUniforms());
         }
 
         // setup textures and uniforms
-        for (int i = 0; i < paramValues.size(); i++) {
-            MatParam param = paramValues.getValue(i);
-            param.apply(r, technique);
+        if (paramsApplied) {
+            applyTextureParams(r, shader);
+        } else {
+            for (int i = 0; i < paramValues.size(); i++) {
+                MatParam param = paramValues.getValue(i);
+                param.apply(r, technique);
+            }
         }
 
-        Shader shader = technique.getShader();
-
         // send lighting information, if needed
         switch (techDef.getLightMode()) {
             case Disable:
@@ -1118,7 +1232,10 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                 break;
             case MultiPass:
                 // NOTE: Special case!
-                resetUniformsNotSetByCurrent(shader);
+                if (!paramsApplied) {
+                    resetUniformsNotSetByCurrent(shader);
+                    shader.setParamsOwner(technique, paramsVersion);
+                }
                 renderMultipassLighting(shader, geom, rm);
                 // very important, notice the return statement!
                 return;
@@ -1126,12 +1243,54 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         // upload and bind shader
         if (techDef.isUsingShaders()) {
-            // any unset uniforms will be set to 0
-            resetUniformsNotSetByCurrent(shader);
+            if (!paramsApplied) {
+                // any unset uniforms will be set to 0
+                resetUniformsNotSetByCurrent(shader);
+                shader.setParamsOwner(technique, paramsVersion);
+            }
             r.setShader(shader);
         }
 
-        r.renderMesh(geom.getMesh(), geom.getLodLevel(), 1);
+        r.renderMesh(geom.getMesh(), geom.getLodLevel(), getInstanceCount(geom));
+    }
+
+    /**
+     * Binds the textures of this material when the shader still holds
+     * its other parameters. Texture units are shared by all shaders,
+     * so they must always be set.
+     */
+    private void applyTextureParams(Renderer r, Shader shader) {
+        Statistics stats = r.getStatistics();
+        int skipped = 0;
+        for (int i = 0; i < paramValues.size(); i++) {
+            MatParam param = paramValues.getValue(i);
+            if (param instanceof MatParamTexture) {
+                param.apply(r, technique);
+            } else if (stats.isEnabled()) {
+                // count the uniforms that setValue() would have
+                // marked for upload
+                Uniform u = shader.getUniformMap().get(param.getPrefixedName());
+                if (u != null && u.getLocation() != Uniform.LOC_NOT_DEFINED) {
+                    switch (param.getVarType()) {
+                        case Int:
+                        case Float:
+                        case Boolean:
+                            // only uploaded when the value changed
+                            break;
+                        default:
+                            skipped++;
+                    }
+                }
+            }
+        }
+        stats.onUniformsSkipped(skipped);
+    }
+
+    private static int getInstanceCount(Geometry geom) {
+        if (geom instanceof InstancedGeometry) {
+            return ((InstancedGeometry) geom).getNumVisibleInstances();
+        }
+        return 1;
     }
 
     public void write(JmeExporter ex) throws IOException {
@@ -216,6 +216,10 @@ public enum Caps {
     NonPowerOfTwoTextures,
 
     /// Vertex Buffer features
+    /**
+     * Supports instanced rendering of meshes, including per-instance
+     * vertex buffers (see {@link com.jme3.scene.VertexBuffer#setInstanceSpan(int) }).
+     */
     MeshInstancing,
 
     /**
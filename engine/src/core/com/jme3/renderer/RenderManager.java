@@ -79,6 +79,7 @@ public class RenderManager {
     private Matrix4f orthoMatrix = new Matrix4f();
     private String tmpTech;
     private boolean handleTranlucentBucket = true;
+    private int renderPassId = 0;
 
     /**
      * Create a high-level rendering interface over the
@@ -461,6 +462,18 @@ public class RenderManager {
         }
     }
 
+    /**
+     * Internal use only.
+     * Returns a number that changes every time a viewport is rendered.
+     * A material does not apply its parameters again to a shader that
+     * still holds them from the same render pass.
+     * 
+     * @return The id of the current render pass
+     */
+    public int getRenderPassId() {
+        return renderPassId;
+    }
+
     /**
      * Internal use only.
      * Updates the given list of uniforms with {@link UniformBinding uniform bindings}
@@ -573,6 +586,10 @@ public class RenderManager {
             }
         } else if (s instanceof Geometry) {
             Geometry gm = (Geometry) s;
+            if (gm.isInstanced()) {
+                // rendered by its InstancedGeometry
+                return;
+            }
 
             RenderQueue.ShadowMode shadowMode = s.getShadowMode();
             if (shadowMode != RenderQueue.ShadowMode.Off && shadowMode != RenderQueue.ShadowMode.Receive) {
@@ -962,6 +979,9 @@ public class RenderManager {
         if (!vp.isEnabled()) {
             return;
         }
+        // parameter values may have been modified in place since the
+        // last pass, so materials must apply them again
+        renderPassId++;
         List<SceneProcessor> processors = vp.getProcessors();
         if (processors.isEmpty()) {
             processors = null;
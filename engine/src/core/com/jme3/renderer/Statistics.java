@@ -55,6 +55,7 @@ public class Statistics {
     protected int numTextureBinds;
     protected int numFboSwitches;
     protected int numUniformsSet;
+    protected int numUniformsSkipped;
 
     protected int memoryShaders;
     protected int memoryFrameBuffers;
@@ -88,7 +89,9 @@ public class Statistics {
 
                              "FrameBuffers (S)",
                              "FrameBuffers (F)",
-                             "FrameBuffers (M)" };
+                             "FrameBuffers (M)",
+
+                             "Uniforms (skipped)" };
 
     }
 
@@ -116,6 +119,8 @@ public class Statistics {
         data[10] = numFboSwitches;
         data[11] = fbosUsed.size();
         data[12] = memoryFrameBuffers;
+
+        data[13] = numUniformsSkipped;
     }
 
     /**
@@ -159,6 +164,18 @@ public class Statistics {
         numUniformsSet ++;
     }
 
+    /**
+     * Called by the Material when uniforms did not need to be set again
+     * because the shader still holds the values of the material.
+     * 
+     * @param count The number of uniform uploads that were saved
+     */
+    public void onUniformsSkipped(int count){
+        if( !enabled )
+            return;
+        numUniformsSkipped += count;
+    }
+
     /**
      * Called by the Renderer when a texture has been set.
      * 
@@ -214,6 +231,7 @@ public class Statistics {
         numTextureBinds = 0;
         numFboSwitches = 0;
         numUniformsSet = 0;
+        numUniformsSkipped = 0;
     }
 
     /**
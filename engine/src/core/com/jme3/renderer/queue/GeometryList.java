@@ -34,6 +34,7 @@ package com.jme3.renderer.queue;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 import com.jme3.util.ListSort;
+import java.util.Arrays;
 
 /**
  * This class is a special purpose list of {@link Geometry} objects for render
@@ -49,6 +50,10 @@ public class GeometryList {
 
     private Geometry[] geometries;    
     private ListSort listSort;
+    private long[] keys = new long[0];
+    private long[] tempKeys = new long[0];
+    private Geometry[] tempGeometries = new Geometry[0];
+    private int[] counts;
     private int size;
     private GeometryComparator comparator;
 
@@ -135,9 +140,16 @@ public class GeometryList {
 
     /**
      * Sorts the elements in the list according to their Comparator.
+     * If the comparator is a {@link SortKeyComparator}, the list is
+     * radix sorted by the key of each geometry.
      */
     public void sort() {
         if (size > 1) {
+            if (comparator instanceof SortKeyComparator) {
+                radixSort((SortKeyComparator) comparator);
+                return;
+            }
+            
             // sort the spatial list using the comparator
             if(listSort.getLength() != size){
                 listSort.allocateStack(size);
@@ -145,4 +157,68 @@ public class GeometryList {
             listSort.sort(geometries,comparator);
         }
     }
+
+    /**
+     * Stable LSD radix sort on the unsigned keys, one byte per pass.
+     * Passes where all keys have the same byte are skipped, which is
+     * common for the shader bits.
+     */
+    private void radixSort(SortKeyComparator keyComparator) {
+        if (keys.length < size) {
+            keys = new long[geometries.length];
+            tempKeys = new long[geometries.length];
+            tempGeometries = new Geometry[geometries.length];
+        }
+        if (counts == null) {
+            counts = new int[8 * 256];
+        } else {
+            Arrays.fill(counts, 0);
+        }
+
+        for (int i = 0; i < size; i++) {
+            long key = keyComparator.getSortKey(geometries[i]);
+            keys[i] = key;
+            for (int b = 0; b < 8; b++) {
+                counts[(b << 8) + ((int) (key >>> (b << 3)) & 0xff)]++;
+            }
+        }
+
+        long[] srcKeys = keys, dstKeys = tempKeys;
+        Geometry[] src = geometries, dst = tempGeometries;
+        for (int b = 0; b < 8; b++) {
+            int offset = b << 8;
+            int shift = b << 3;
+            if (counts[offset + ((int) (srcKeys[0] >>> shift) & 0xff)] == size) {
+                continue;
+            }
+
+            int sum = 0;
+            for (int j = 0; j < 256; j++) {
+                int count = counts[offset + j];
+                counts[offset + j] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long key = srcKeys[i];
+                int pos = counts[offset + ((int) (key >>> shift) & 0xff)]++;
+                dstKeys[pos] = key;
+                dst[pos] = src[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            Geometry[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        if (src != geometries) {
+            System.arraycopy(src, 0, geometries, 0, size);
+        }
+        // don't keep references to the geometries
+        for (int i = 0; i < size; i++) {
+            tempGeometries[i] = null;
+        }
+    }
 }
\ No newline at end of file
@@ -36,7 +36,15 @@ import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 
-public class OpaqueComparator implements GeometryComparator {
+/**
+ * <code>OpaqueComparator</code> sorts geometries to reduce render state
+ * changes, then front to back.
+ * <p>
+ * The sort key holds the {@link Material#getSortKey() material sort key}
+ * in the upper 48 bits and the distance to the camera, quantized to 16
+ * bits, in the lower bits.
+ */
+public class OpaqueComparator implements SortKeyComparator {
 
     private Camera cam;
     private final Vector3f tempVec  = new Vector3f();
@@ -69,26 +77,27 @@ public class OpaqueComparator implements GeometryComparator {
         return spat.queueDistance;
     }
 
-    public int compare(Geometry o1, Geometry o2) {
-        Material m1 = o1.getMaterial();
-        Material m2 = o2.getMaterial();
-
-        int compareResult = m2.getSortId() - m1.getSortId();
-        if (compareResult == 0){
-            // use the same shader.
-            // sort front-to-back then.
-            float d1 = distanceToCam(o1);
-            float d2 = distanceToCam(o2);
-
-            if (d1 == d2)
-                return 0;
-            else if (d1 < d2)
-                return -1;
-            else
-                return 1;
-        }else{
-            return compareResult;
+    public long getSortKey(Geometry geom) {
+        long key = geom.getMaterial().getSortKey() << 16;
+        float distance = distanceToCam(geom);
+        if (distance > 0) {
+            // positive floats sort like their bits, keep the exponent
+            // and the highest bits of the mantissa
+            key |= Float.floatToIntBits(distance) >>> 15;
         }
+        return key;
+    }
+
+    public int compare(Geometry o1, Geometry o2) {
+        // flip the sign bit to compare as unsigned values
+        long k1 = getSortKey(o1) ^ Long.MIN_VALUE;
+        long k2 = getSortKey(o2) ^ Long.MIN_VALUE;
+        if (k1 == k2)
+            return 0;
+        else if (k1 < k2)
+            return -1;
+        else
+            return 1;
     }
 
 }
@@ -79,6 +79,14 @@ public class Geometry extends Spatial {
      * the start index of this geom's mesh in the batchNode mesh
      */
     protected int startIndex;    
+    /**
+     * used when geometry is rendered by an InstancedNode
+     */
+    protected transient InstancedGeometry instancedGeometry = null;
+    /**
+     * the index of this geom's world matrix in the instanced geometry
+     */
+    protected transient int instanceIndex = -1;
     /**
      * Serialization only. Do not use.
      */
@@ -195,6 +203,9 @@ public class Geometry extends Spatial {
         if (isBatched()) {
             throw new UnsupportedOperationException("Cannot set the mesh of a batched geometry");
         }
+        if (isInstanced()) {
+            throw new UnsupportedOperationException("Cannot set the mesh of an instanced geometry");
+        }
 
         this.mesh = mesh;
         setBoundRefresh();
@@ -221,6 +232,9 @@ public class Geometry extends Spatial {
         if (isBatched()) {
             throw new UnsupportedOperationException("Cannot set the material of a batched geometry, change the material of the parent BatchNode.");
         }
+        if (isInstanced()) {
+            throw new UnsupportedOperationException("Cannot set the material of an instanced geometry, detach it from the InstancedNode first.");
+        }
         this.material = material;
     }
 
@@ -285,6 +299,9 @@ public class Geometry extends Spatial {
         if (isBatched()) {        
             batchNode.updateSubBatch(this);     
         }
+        if (isInstanced()) {
+            instancedGeometry.onTransformChange(this);
+        }
         // geometry requires lights to be sorted
         worldLights.sort(true);
     }
@@ -313,6 +330,26 @@ public class Geometry extends Spatial {
         setCullHint(CullHint.Dynamic);
     }
 
+    /**
+     * Instance this geometry, should only be called by the InstancedGeometry.
+     * @param geometry the instanced geometry rendering this geometry
+     * @param index the index of this geometry in the instanced geometry
+     */
+    protected void instance(InstancedGeometry geometry, int index) {
+        this.instancedGeometry = geometry;
+        this.instanceIndex = index;
+        setCullHint(CullHint.Always);
+    }
+
+    /**
+     * unInstance this geometry, should only be called by the InstancedGeometry.
+     */
+    protected void unInstance() {
+        this.instancedGeometry = null;
+        this.instanceIndex = -1;
+        setCullHint(CullHint.Dynamic);
+    }
+
     @Override
     public boolean removeFromParent() {
         return super.removeFromParent();
@@ -325,6 +362,10 @@ public class Geometry extends Spatial {
         if (parent == null && isBatched()) {
             unBatch();
         }
+        //same for instancing
+        if (parent == null && isInstanced()) {
+            instancedGeometry.removeInstance(this);
+        }
     }
 
 
@@ -428,6 +469,13 @@ public class Geometry extends Spatial {
         return batchNode != null;
     }
 
+    /**
+     * @return True if this geometry is rendered by an {@link InstancedNode}.
+     */
+    public boolean isInstanced() {
+        return instancedGeometry != null;
+    }
+
     /**
      * This version of clone is a shallow clone, in other words, the
      * same mesh is referenced as the original geometry.
@@ -443,6 +491,9 @@ public class Geometry extends Spatial {
             geomClone.batchNode = null;
             geomClone.unBatch();
         }
+        if (isInstanced()) {
+            geomClone.unInstance();
+        }
         geomClone.cachedWorldMat = cachedWorldMat.clone();
         if (material != null) {
             if (cloneMaterial) {
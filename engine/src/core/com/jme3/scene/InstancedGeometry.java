@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.material.Material;
+import com.jme3.math.Matrix4f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Camera.FrustumIntersect;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+
+/**
+ * <code>InstancedGeometry</code> renders a group of geometries sharing 
+ * the same mesh and material in a single draw call, using hardware instancing.
+ * It is created and managed by an {@link InstancedNode}.
+ * <p>
+ * The world matrices of the instances are stored in a 
+ * {@link Type#InstanceData} buffer with an instance span of 1. 
+ * The matrix of an instance is only read again when its transform changed, 
+ * and the instances are culled against the camera before rendering,
+ * so that only the visible instances are drawn and the buffer is only
+ * uploaded when the visible instances or their transforms changed.
+ */
+public class InstancedGeometry extends Geometry {
+
+    private static final int MATRIX_SIZE = 16;
+
+    private Mesh sourceMesh;
+    private VertexBuffer instanceData;
+    
+    private Geometry[] instances = new Geometry[1];
+    private int numInstances = 0;
+    
+    // world matrices of all instances, column major
+    private float[] matrices = new float[MATRIX_SIZE];
+    private boolean[] dirty = new boolean[1];
+    private boolean anyDirty = false;
+    
+    // instances stored in the instance data buffer
+    private int[] visible = new int[1];
+    private int numVisible = 0;
+    private boolean needsUpload = true;
+    private boolean needsBoundUpdate = false;
+
+    /**
+     * Serialization only. Do not use.
+     */
+    public InstancedGeometry() {
+    }
+
+    /**
+     * Create an instanced geometry without instances.
+     * 
+     * @param name The name of the geometry
+     * @param mesh The mesh shared by the instances
+     * @param material The material shared by the instances
+     */
+    public InstancedGeometry(String name, Mesh mesh, Material material) {
+        super(name);
+        this.sourceMesh = mesh;
+        this.mesh = createMesh(mesh);
+        this.material = material;
+        setIgnoreTransform(true);
+        setBatchHint(BatchHint.Never);
+    }
+
+    private Mesh createMesh(Mesh source) {
+        // share the vertex buffers of the original mesh
+        Mesh instancedMesh = source.clone();
+        instanceData = new VertexBuffer(Type.InstanceData);
+        instanceData.setInstanceSpan(1);
+        instanceData.setupData(Usage.Stream, MATRIX_SIZE, Format.Float, 
+                               BufferUtils.createFloatBuffer(MATRIX_SIZE));
+        instancedMesh.setBuffer(instanceData);
+        return instancedMesh;
+    }
+
+    /**
+     * @return The mesh shared by the instances, without the instance data.
+     */
+    public Mesh getSourceMesh() {
+        return sourceMesh;
+    }
+
+    /**
+     * @return The number of instances.
+     */
+    public int getNumInstances() {
+        return numInstances;
+    }
+
+    /**
+     * @param index The index of the instance
+     * @return The geometry rendered as the instance
+     */
+    public Geometry getInstance(int index) {
+        if (index < 0 || index >= numInstances) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numInstances);
+        }
+        return instances[index];
+    }
+
+    /**
+     * @return The number of instances drawn by the last render.
+     */
+    public int getNumVisibleInstances() {
+        return numVisible;
+    }
+
+    void addInstance(Geometry geom) {
+        if (numInstances == instances.length) {
+            int capacity = numInstances * 2;
+            Geometry[] newInstances = new Geometry[capacity];
+            System.arraycopy(instances, 0, newInstances, 0, numInstances);
+            instances = newInstances;
+            float[] newMatrices = new float[capacity * MATRIX_SIZE];
+            System.arraycopy(matrices, 0, newMatrices, 0, numInstances * MATRIX_SIZE);
+            matrices = newMatrices;
+            boolean[] newDirty = new boolean[capacity];
+            System.arraycopy(dirty, 0, newDirty, 0, numInstances);
+            dirty = newDirty;
+            visible = new int[capacity];
+            numVisible = 0;
+        }
+        instances[numInstances] = geom;
+        dirty[numInstances] = true;
+        geom.instance(this, numInstances);
+        numInstances++;
+        
+        anyDirty = true;
+        needsUpload = true;
+        needsBoundUpdate = true;
+    }
+
+    void removeInstance(Geometry geom) {
+        int index = geom.instanceIndex;
+        assert instances[index] == geom;
+        
+        // move the last instance in place of the removed one
+        int last = numInstances - 1;
+        if (index != last) {
+            instances[index] = instances[last];
+            instances[index].instanceIndex = index;
+            System.arraycopy(matrices, last * MATRIX_SIZE, matrices, index * MATRIX_SIZE, MATRIX_SIZE);
+            dirty[index] = dirty[last];
+        }
+        instances[last] = null;
+        numInstances--;
+        geom.unInstance();
+        
+        needsUpload = true;
+        needsBoundUpdate = true;
+    }
+
+    void onTransformChange(Geometry geom) {
+        dirty[geom.instanceIndex] = true;
+        anyDirty = true;
+        needsBoundUpdate = true;
+    }
+
+    boolean needsBoundUpdate() {
+        return needsBoundUpdate;
+    }
+
+    /**
+     * The world bound of an instanced geometry contains the world bounds
+     * of all its instances.
+     */
+    @Override
+    protected void updateWorldBound() {
+        super.updateWorldBound();
+        needsBoundUpdate = false;
+        
+        BoundingVolume bound = null;
+        for (int i = 0; i < numInstances; i++) {
+            BoundingVolume instanceBound = instances[i].getWorldBound();
+            if (instanceBound == null) {
+                continue;
+            }
+            if (bound == null) {
+                bound = instanceBound.clone(worldBound);
+            } else {
+                bound.mergeLocal(instanceBound);
+            }
+        }
+        if (bound != null) {
+            worldBound = bound;
+        }
+    }
+
+    private static void storeMatrix(Matrix4f m, float[] store, int offset) {
+        store[offset     ] = m.m00;
+        store[offset +  1] = m.m10;
+        store[offset +  2] = m.m20;
+        store[offset +  3] = m.m30;
+        store[offset +  4] = m.m01;
+        store[offset +  5] = m.m11;
+        store[offset +  6] = m.m21;
+        store[offset +  7] = m.m31;
+        store[offset +  8] = m.m02;
+        store[offset +  9] = m.m12;
+        store[offset + 10] = m.m22;
+        store[offset + 11] = m.m32;
+        store[offset + 12] = m.m03;
+        store[offset + 13] = m.m13;
+        store[offset + 14] = m.m23;
+        store[offset + 15] = m.m33;
+    }
+
+    /**
+     * Culls the instances against the camera and updates the instance data
+     * buffer with the world matrices of the visible instances.
+     * Called by the material before rendering.
+     * 
+     * @param cam The camera the geometry is rendered with
+     * @return The number of visible instances to render
+     */
+    public int updateInstances(Camera cam) {
+        if (anyDirty) {
+            for (int i = 0; i < numInstances; i++) {
+                if (dirty[i]) {
+                    storeMatrix(instances[i].getWorldMatrix(), matrices, i * MATRIX_SIZE);
+                }
+            }
+        }
+        
+        boolean changed = needsUpload;
+        int count = 0;
+        int planeState = cam.getPlaneState();
+        for (int i = 0; i < numInstances; i++) {
+            BoundingVolume bound = instances[i].getWorldBound();
+            if (bound != null) {
+                cam.setPlaneState(0);
+                if (cam.contains(bound) == FrustumIntersect.Outside) {
+                    continue;
+                }
+            }
+            if (count >= numVisible || visible[count] != i || dirty[i]) {
+                changed = true;
+            }
+            visible[count++] = i;
+        }
+        cam.setPlaneState(planeState);
+        
+        if (anyDirty) {
+            for (int i = 0; i < numInstances; i++) {
+                dirty[i] = false;
+            }
+            anyDirty = false;
+        }
+        
+        if (count != numVisible) {
+            changed = true;
+        }
+        numVisible = count;
+        
+        if (changed && count > 0) {
+            FloatBuffer data = (FloatBuffer) instanceData.getData();
+            if (data.capacity() < count * MATRIX_SIZE) {
+                data = BufferUtils.createFloatBuffer(numInstances * MATRIX_SIZE);
+            }
+            data.clear();
+            for (int i = 0; i < count; i++) {
+                data.put(matrices, visible[i] * MATRIX_SIZE, MATRIX_SIZE);
+            }
+            data.flip();
+            instanceData.updateData(data);
+            needsUpload = false;
+        }
+        return count;
+    }
+
+    @Override
+    public InstancedGeometry clone(boolean cloneMaterial) {
+        InstancedGeometry clone = (InstancedGeometry) super.clone(cloneMaterial);
+        // the clone has no instances
+        if (sourceMesh != null) {
+            clone.mesh = clone.createMesh(sourceMesh);
+        }
+        clone.instances = new Geometry[1];
+        clone.numInstances = 0;
+        clone.matrices = new float[MATRIX_SIZE];
+        clone.dirty = new boolean[1];
+        clone.anyDirty = false;
+        clone.visible = new int[1];
+        clone.numVisible = 0;
+        clone.needsUpload = true;
+        clone.needsBoundUpdate = false;
+        return clone;
+    }
+}
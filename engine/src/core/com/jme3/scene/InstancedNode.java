@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.export.JmeImporter;
+import com.jme3.material.MatParam;
+import com.jme3.material.Material;
+import com.jme3.scene.VertexBuffer.Type;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * <code>InstancedNode</code> renders the geometries of its sub scene graph
+ * that share the same mesh and material with hardware instancing, in one
+ * draw call per mesh and material.
+ * <p>
+ * Attach the geometries, then call {@link #instance()}. Only geometries 
+ * whose material has the <code>UseInstancing</code> parameter set to true
+ * are instanced (supported by Unshaded.j3md and Lighting.j3md), 
+ * the others are rendered as usual. Geometries attached afterwards are 
+ * rendered as usual until instance() is called again.
+ * <p>
+ * The instances keep their own transforms and can be moved freely, only 
+ * the world matrices of moved instances are updated. They are culled 
+ * individually against the camera before each render. 
+ * To hide an instance, detach it. When a sub node is detached, call
+ * instance() again to remove its geometries.
+ * <p>
+ * Requires {@link com.jme3.renderer.Caps#MeshInstancing}. Techniques 
+ * of the material that do not support instancing, such as shadows and glow,
+ * do not render the instanced geometries.
+ * 
+ * @see InstancedGeometry
+ */
+public class InstancedNode extends Node {
+
+    /**
+     * the instanced geometries attached to this node
+     */
+    protected transient ArrayList<InstancedGeometry> instancedGeometries = 
+            new ArrayList<InstancedGeometry>();
+
+    /**
+     * Serialization only. Do not use.
+     */
+    public InstancedNode() {
+        super();
+    }
+
+    public InstancedNode(String name) {
+        super(name);
+    }
+
+    @Override
+    public void updateGeometricState() {
+        if ((refreshFlags & RF_LIGHTLIST) != 0) {
+            updateWorldLightList();
+        }
+
+        if ((refreshFlags & RF_TRANSFORM) != 0) {
+            // combine with parent transforms- same for all spatial
+            // subclasses.
+            updateWorldTransforms();
+        }
+
+        if (!children.isEmpty()) {
+            for (Spatial child : children.getArray()) {
+                child.updateGeometricState();
+            }
+
+            // the instances are up to date, now the bounds containing
+            // them can be updated
+            for (InstancedGeometry geom : instancedGeometries) {
+                if (geom.needsBoundUpdate()) {
+                    geom.setBoundRefresh();
+                    geom.updateGeometricState();
+                }
+            }
+        }
+
+        if ((refreshFlags & RF_BOUND) != 0) {
+            updateWorldBound();
+        }
+
+        assert refreshFlags == 0;
+    }
+
+    /**
+     * Instance this node. Every geometry of the sub scene graph of this node
+     * using a material with instancing enabled is rendered by the
+     * instanced geometry of its mesh and material.
+     */
+    public void instance() {
+        // drop instances that are no longer in the sub scene graph
+        for (InstancedGeometry geom : instancedGeometries) {
+            for (int i = geom.getNumInstances() - 1; i >= 0; i--) {
+                Geometry instance = geom.getInstance(i);
+                if (!instance.hasAncestor(this)) {
+                    geom.removeInstance(instance);
+                }
+            }
+        }
+        
+        gatherInstances(this);
+        
+        for (int i = instancedGeometries.size() - 1; i >= 0; i--) {
+            InstancedGeometry geom = instancedGeometries.get(i);
+            if (geom.getNumInstances() == 0) {
+                instancedGeometries.remove(i);
+                detachChild(geom);
+            }
+        }
+    }
+
+    private void gatherInstances(Node node) {
+        for (Spatial child : node.children.getArray()) {
+            if (child instanceof InstancedGeometry || child instanceof InstancedNode) {
+                continue;
+            }
+            if (child instanceof Node) {
+                gatherInstances((Node) child);
+            } else if (child instanceof Geometry) {
+                Geometry geom = (Geometry) child;
+                if (!geom.isInstanced() && !geom.isBatched() && canInstance(geom)) {
+                    getInstancedGeometry(geom.getMesh(), geom.getMaterial()).addInstance(geom);
+                }
+            }
+        }
+    }
+
+    private static boolean canInstance(Geometry geom) {
+        Material material = geom.getMaterial();
+        if (material == null || geom.getMesh() == null) {
+            return false;
+        }
+        MatParam param = material.getParam("UseInstancing");
+        if (param == null || !Boolean.TRUE.equals(param.getValue())) {
+            return false;
+        }
+        Mesh mesh = geom.getMesh();
+        return mesh.getBuffer(Type.InterleavedData) == null
+                && mesh.getBuffer(Type.InstanceData) == null;
+    }
+
+    private InstancedGeometry getInstancedGeometry(Mesh mesh, Material material) {
+        for (InstancedGeometry geom : instancedGeometries) {
+            if (geom.getSourceMesh() == mesh && geom.getMaterial() == material) {
+                return geom;
+            }
+        }
+        InstancedGeometry geom = new InstancedGeometry(name + "-instanced-" + instancedGeometries.size(), 
+                                                       mesh, material);
+        instancedGeometries.add(geom);
+        attachChild(geom);
+        return geom;
+    }
+
+    /**
+     * @return The instanced geometries of this node.
+     */
+    public ArrayList<InstancedGeometry> getInstancedGeometries() {
+        return instancedGeometries;
+    }
+
+    /**
+     * Removes the instanced geometries copied from the original node
+     * and instances the copied geometries instead.
+     */
+    private void reinstance() {
+        for (int i = children.size() - 1; i >= 0; i--) {
+            if (children.get(i) instanceof InstancedGeometry) {
+                detachChildAt(i);
+            }
+        }
+        instancedGeometries = new ArrayList<InstancedGeometry>();
+        instance();
+    }
+
+    @Override
+    public Node clone(boolean cloneMaterials) {
+        InstancedNode clone = (InstancedNode) super.clone(cloneMaterials);
+        clone.reinstance();
+        return clone;
+    }
+
+    @Override
+    public Spatial deepClone() {
+        InstancedNode clone = (InstancedNode) super.deepClone();
+        clone.reinstance();
+        return clone;
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        reinstance();
+    }
+}
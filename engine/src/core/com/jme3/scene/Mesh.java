@@ -53,6 +53,11 @@ import com.jme3.util.SafeArrayList;
 import java.io.IOException;
 import java.nio.*;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * <code>Mesh</code> is used to store rendering data.
@@ -163,6 +168,7 @@ public class Mesh implements Savable, Cloneable {
     private BoundingVolume meshBound =  new BoundingBox();
 
     private CollisionData collisionTree = null;
+    private transient Future<CollisionData> pendingCollisionTree = null;
 
     private SafeArrayList<VertexBuffer> buffersList = new SafeArrayList<VertexBuffer>(VertexBuffer.class);
     private IntMap<VertexBuffer> buffers = new IntMap<VertexBuffer>();
@@ -230,6 +236,7 @@ public class Mesh implements Savable, Cloneable {
             // TODO: Collision tree cloning
             //clone.collisionTree = collisionTree != null ? collisionTree : null;
             clone.collisionTree = null; // it will get re-generated in any case
+            clone.pendingCollisionTree = null;
 
             clone.buffers = new IntMap<VertexBuffer>();
             clone.buffersList = new SafeArrayList<VertexBuffer>(VertexBuffer.class);
@@ -885,6 +892,48 @@ public class Mesh implements Savable, Cloneable {
         BIHTree tree = new BIHTree(this);
         tree.construct();
         collisionTree = tree;
+        pendingCollisionTree = null;
+    }
+
+    /**
+     * Generates a collision tree for the mesh, building large subtrees
+     * in parallel on the given executor.
+     * 
+     * @param executor The executor to use
+     * 
+     * @see BIHTree#construct(java.util.concurrent.Executor) 
+     */
+    public void createCollisionData(Executor executor){
+        BIHTree tree = new BIHTree(this);
+        tree.construct(executor);
+        collisionTree = tree;
+        pendingCollisionTree = null;
+    }
+
+    /**
+     * Starts generating the collision tree for the mesh in the background
+     * so that the first collision with it does not have to build it.
+     * If a collision happens before the build is complete, it waits
+     * for the background build instead of starting another one.
+     * <p>
+     * The mesh data must not be modified until the build is complete.
+     * 
+     * @param executor The executor to run the build on, large subtrees
+     * are built in parallel on it as well.
+     * @return A future completing once the collision data is ready.
+     */
+    public Future<CollisionData> createCollisionDataInBackground(final Executor executor){
+        FutureTask<CollisionData> task = new FutureTask<CollisionData>(new Callable<CollisionData>() {
+            public CollisionData call() {
+                BIHTree tree = new BIHTree(Mesh.this);
+                tree.construct(executor);
+                return tree;
+            }
+        });
+        collisionTree = null;
+        pendingCollisionTree = task;
+        executor.execute(task);
+        return task;
     }
 
     /**
@@ -894,6 +943,19 @@ public class Mesh implements Savable, Cloneable {
      */
     public void clearCollisionData() {
         collisionTree = null;
+        pendingCollisionTree = null;
+    }
+
+    private void waitForCollisionData() {
+        try {
+            collisionTree = pendingCollisionTree.get();
+            pendingCollisionTree = null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            createCollisionData();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Failed to generate collision data", ex.getCause());
+        }
     }
 
     /**
@@ -911,7 +973,11 @@ public class Mesh implements Savable, Cloneable {
         }
         
         if (collisionTree == null){
-            createCollisionData();
+            if (pendingCollisionTree != null) {
+                waitForCollisionData();
+            } else {
+                createCollisionData();
+            }
         }
         
         return collisionTree.collideWith(other, worldMatrix, worldBound, results);
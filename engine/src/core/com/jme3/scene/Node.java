@@ -66,6 +66,12 @@ public class Node extends Spatial implements Savable {
      */
     protected SafeArrayList<Spatial> children = new SafeArrayList<Spatial>(Spatial.class);
 
+    /**
+     * Optional index over the children's world bounds, used to
+     * accelerate {@link #collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) }.
+     */
+    transient SpatialIndex spatialIndex;
+
     /**
      * Serialization only. Do not use.
      */
@@ -138,6 +144,11 @@ public class Node extends Spatial implements Savable {
             }
         }
         this.worldBound = resultBound;
+        
+        if (spatialIndex != null) {
+            // children bounds are up to date, refit the index
+            spatialIndex.update();
+        }
     }
 
     @Override
@@ -241,6 +252,9 @@ public class Node extends Spatial implements Savable {
             }
             child.setParent(this);
             children.add(child);
+            if (spatialIndex != null) {
+                spatialIndex.markDirty(child);
+            }
 
             // XXX: Not entirely correct? Forces bound update up the
             // tree stemming from the attached child. Also forces
@@ -279,6 +293,9 @@ public class Node extends Spatial implements Savable {
             }
             child.setParent(this);
             children.add(index, child);
+            if (spatialIndex != null) {
+                spatialIndex.markDirty(child);
+            }
             child.setTransformRefresh();
             child.setLightListRefresh();
             if (logger.isLoggable(Level.FINE)) {
@@ -349,6 +366,9 @@ public class Node extends Spatial implements Savable {
         Spatial child =  children.remove(index);
         if ( child != null ) {
             child.setParent( null );
+            if (spatialIndex != null) {
+                spatialIndex.remove(child);
+            }
             logger.log(Level.FINE, "{0}: Child removed.", this.toString());
 
             // since a child with a bound was detached;
@@ -488,7 +508,53 @@ public class Node extends Spatial implements Savable {
         }
     }
 
+    /**
+     * Enables or disables the spatial index of this node.
+     * <p>
+     * When enabled, the world bounds of the direct children are kept in
+     * a dynamic AABB tree, so that collisions with a {@link com.jme3.math.Ray}
+     * or a {@link BoundingVolume} only visit the children whose bound
+     * can be hit. This is worthwhile for nodes with many mostly static
+     * children, such as a level's root node used for picking. The index
+     * is refreshed together with the world bound of this node and adds
+     * a small cost to every bound update.
+     * 
+     * @param enabled True to build and maintain an index.
+     */
+    public void setSpatialIndexEnabled(boolean enabled) {
+        if (enabled && spatialIndex == null) {
+            spatialIndex = new SpatialIndex(this);
+            setBoundRefresh();
+        } else if (!enabled) {
+            spatialIndex = null;
+        }
+    }
+
+    /**
+     * @return True if this node maintains a spatial index of its children.
+     * 
+     * @see #setSpatialIndexEnabled(boolean) 
+     */
+    public boolean isSpatialIndexEnabled() {
+        return spatialIndex != null;
+    }
+
+    /**
+     * @return The spatial index of this node, or null if it is disabled.
+     * 
+     * @see #setSpatialIndexEnabled(boolean) 
+     */
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
     public int collideWith(Collidable other, CollisionResults results){
+        if (spatialIndex != null && spatialIndex.supports(other)) {
+            // Make sure the index reflects the current bounds
+            checkDoBoundUpdate();
+            return spatialIndex.collideWith(other, results);
+        }
+        
         int total = 0;
         for (Spatial child : children.getArray()){
             total += child.collideWith(other, results);
@@ -563,6 +629,9 @@ public class Node extends Spatial implements Savable {
     @Override
     public Node clone(boolean cloneMaterials){
         Node nodeClone = (Node) super.clone(cloneMaterials);
+        if (spatialIndex != null) {
+            nodeClone.spatialIndex = new SpatialIndex(nodeClone);
+        }
 //        nodeClone.children = new ArrayList<Spatial>();
 //        for (Spatial child : children){
 //            Spatial childClone = child.clone();
@@ -581,6 +650,9 @@ public class Node extends Spatial implements Savable {
             childClone.parent = nodeClone;
             nodeClone.children.add(childClone);
         }
+        if (spatialIndex != null) {
+            nodeClone.spatialIndex = new SpatialIndex(nodeClone);
+        }
         return nodeClone;
     }
 
@@ -588,6 +660,7 @@ public class Node extends Spatial implements Savable {
     public void write(JmeExporter e) throws IOException {
         super.write(e);
         e.getCapsule(this).writeSavableArrayList(new ArrayList(children), "children", null);
+        e.getCapsule(this).write(spatialIndex != null, "spatialIndex", false);
     }
 
     @Override
@@ -607,6 +680,10 @@ public class Node extends Spatial implements Savable {
         }
         
         super.read(e);
+        
+        if (e.getCapsule(this).readBoolean("spatialIndex", false)) {
+            spatialIndex = new SpatialIndex(this);
+        }
     }
 
     @Override
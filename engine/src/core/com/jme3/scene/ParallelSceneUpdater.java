@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * <code>ParallelSceneUpdater</code> updates the logical and geometric state
+ * of a scene graph with several threads.
+ * <p>
+ * The top levels of the tree are visited on the calling thread until there
+ * are enough independent subtrees, which are then updated as tasks on the
+ * given executor. The calling thread takes part in the work, so the update
+ * completes even if the executor is busy or has a single thread.
+ * <p>
+ * Only plain {@link Node}s are split. Subclasses of Node may override the
+ * update methods and nodes with a spatial index share it between their
+ * children, so such nodes are always updated as a whole by one thread.
+ * The geometric state is identical to the one computed by
+ * {@link Spatial#updateGeometricState() }.
+ * <p>
+ * Controls of different subtrees run concurrently and in no specific order.
+ * A control may only modify the spatial it is attached to and its
+ * descendants. Attaching or detaching children of other spatials, or
+ * changing spatials outside of its own subtree, must be deferred, for
+ * example with {@link com.jme3.app.Application#enqueue(java.util.concurrent.Callable) }.
+ */
+public class ParallelSceneUpdater {
+
+    /**
+     * Number of subtrees gathered per thread before the work is split,
+     * so that threads finishing early can balance the load.
+     */
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Creates an updater using as many threads as available processors.
+     * 
+     * @param executor The executor running the update tasks
+     */
+    public ParallelSceneUpdater(Executor executor) {
+        this(executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an updater.
+     * 
+     * @param executor The executor running the update tasks
+     * @param parallelism The number of threads, including the calling one,
+     * that should work on an update at the same time
+     */
+    public ParallelSceneUpdater(Executor executor, int parallelism) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return The number of threads working on an update at the same time.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Runs the controls of the given spatial and all its descendants,
+     * like {@link Spatial#updateLogicalState(float) }.
+     * 
+     * @param root The spatial to update
+     * @param tpf Time per frame
+     */
+    public void updateLogicalState(Spatial root, float tpf) {
+        ArrayList<Spatial> work = new ArrayList<Spatial>();
+        work.add(root);
+        while (work.size() < parallelism * TASKS_PER_THREAD) {
+            ArrayList<Spatial> next = new ArrayList<Spatial>(work.size() * 4);
+            boolean split = false;
+            for (int i = 0; i < work.size(); i++) {
+                Spatial spatial = work.get(i);
+                if (isSplittable(spatial)) {
+                    // same as Node.updateLogicalState() without the recursion,
+                    // the controls may modify the children
+                    spatial.runControlUpdate(tpf);
+                    addChildren((Node) spatial, next);
+                    split = true;
+                } else {
+                    next.add(spatial);
+                }
+            }
+            work = next;
+            if (!split) {
+                break;
+            }
+        }
+
+        new UpdatePass(work, false, tpf).execute();
+    }
+
+    /**
+     * Updates the light lists, world transforms and world bounds of the
+     * given spatial and all its descendants, like
+     * {@link Spatial#updateGeometricState() }.
+     * User code should only call this method on spatials having no parent.
+     * 
+     * @param root The spatial to update
+     */
+    public void updateGeometricState(Spatial root) {
+        ArrayList<Node> splitNodes = new ArrayList<Node>();
+        ArrayList<Spatial> work = new ArrayList<Spatial>();
+        work.add(root);
+        while (work.size() < parallelism * TASKS_PER_THREAD) {
+            ArrayList<Spatial> next = new ArrayList<Spatial>(work.size() * 4);
+            boolean split = false;
+            for (int i = 0; i < work.size(); i++) {
+                Spatial spatial = work.get(i);
+                if (isSplittable(spatial)) {
+                    // first half of Node.updateGeometricState(), the
+                    // bound is updated once the children are done
+                    if ((spatial.refreshFlags & Spatial.RF_LIGHTLIST) != 0) {
+                        spatial.updateWorldLightList();
+                    }
+                    if ((spatial.refreshFlags & Spatial.RF_TRANSFORM) != 0) {
+                        spatial.updateWorldTransforms();
+                    }
+                    splitNodes.add((Node) spatial);
+                    addChildren((Node) spatial, next);
+                    split = true;
+                } else {
+                    next.add(spatial);
+                }
+            }
+            work = next;
+            if (!split) {
+                break;
+            }
+        }
+
+        new UpdatePass(work, true, 0).execute();
+
+        // children were split after their parents, so going backwards
+        // updates every bound after the bounds of its children
+        for (int i = splitNodes.size() - 1; i >= 0; i--) {
+            Node node = splitNodes.get(i);
+            if ((node.refreshFlags & Spatial.RF_BOUND) != 0) {
+                node.updateWorldBound();
+            }
+            assert node.refreshFlags == 0;
+        }
+    }
+
+    private static boolean isSplittable(Spatial spatial) {
+        return spatial.getClass() == Node.class
+                && ((Node) spatial).spatialIndex == null;
+    }
+
+    private static void addChildren(Node node, ArrayList<Spatial> list) {
+        for (Spatial child : node.children.getArray()) {
+            list.add(child);
+        }
+    }
+
+    /**
+     * Updates a list of independent subtrees. Threads claim chunks of the
+     * list until it is exhausted.
+     */
+    private final class UpdatePass implements Runnable {
+
+        private final Spatial[] work;
+        private final boolean geometric;
+        private final float tpf;
+        private final int chunkSize;
+        private int next = 0;
+        private int running = 0;
+        private Throwable error;
+
+        UpdatePass(ArrayList<Spatial> work, boolean geometric, float tpf) {
+            this.work = work.toArray(new Spatial[work.size()]);
+            this.geometric = geometric;
+            this.tpf = tpf;
+            this.chunkSize = Math.max(1, this.work.length / (parallelism * TASKS_PER_THREAD));
+        }
+
+        public void run() {
+            while (runChunk()) {
+            }
+        }
+
+        private boolean runChunk() {
+            int start, end;
+            synchronized (this) {
+                if (next >= work.length) {
+                    return false;
+                }
+                start = next;
+                end = Math.min(start + chunkSize, work.length);
+                next = end;
+                running++;
+            }
+
+            try {
+                for (int i = start; i < end; i++) {
+                    if (geometric) {
+                        work[i].updateGeometricState();
+                    } else {
+                        work[i].updateLogicalState(tpf);
+                    }
+                }
+            } catch (Throwable t) {
+                synchronized (this) {
+                    if (error == null) {
+                        error = t;
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    running--;
+                    notifyAll();
+                }
+            }
+            return true;
+        }
+
+        void execute() {
+            int chunks = (work.length + chunkSize - 1) / chunkSize;
+            int helpers = Math.min(parallelism, chunks) - 1;
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(this);
+            }
+
+            run();
+
+            boolean interrupted = false;
+            synchronized (this) {
+                while (running > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+            }
+            
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error != null) {
+                throw new RuntimeException("Failed to update scene graph", error);
+            }
+        }
+    }
+}
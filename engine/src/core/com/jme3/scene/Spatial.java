@@ -454,6 +454,11 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         // bounds
         // -> handled by subclass
         refreshFlags &= ~RF_BOUND;
+        
+        if (parent != null && parent.spatialIndex != null) {
+            // the parent refits its index when updating its own bound
+            parent.spatialIndex.markDirty(this);
+        }
     }
 
     protected void updateWorldLightList() {
@@ -561,7 +566,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         updateWorldBound();
     }
 
-    private void runControlUpdate(float tpf) {
+    void runControlUpdate(float tpf) {
         if (controls.isEmpty()) {
             return;
         }
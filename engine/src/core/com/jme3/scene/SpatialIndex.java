@@ -0,0 +1,620 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * <code>SpatialIndex</code> is a dynamic AABB tree over the children of
+ * a {@link Node}, used to accelerate {@link Node#collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) }
+ * for rays and bounding volumes.
+ * <p>
+ * Each child with a world bound is stored as a leaf holding a slightly
+ * enlarged ("fat") box of that bound. The index is refreshed lazily
+ * from the regular bound refresh: whenever a child recomputes its world
+ * bound it is queued, and the queue is processed when the owning node
+ * updates its own world bound. A queued child is only re-inserted if its
+ * new bound has left its fat box, so small movements cost nothing.
+ * <p>
+ * The index is enabled with {@link Node#setSpatialIndexEnabled(boolean) }
+ * and is not meant to be used directly.
+ */
+public class SpatialIndex {
+
+    private static final int NULL_NODE = -1;
+    
+    /**
+     * Fraction of a bound's extent added on every side of its fat box.
+     */
+    private static final float FAT_MARGIN = 0.1f;
+
+    private final Node owner;
+    
+    // tree nodes, stored as flat arrays: 6 floats of min/max per node
+    private float[] bounds;
+    private int[] parents;
+    private int[] child1s;
+    private int[] child2s;
+    private int[] heights;
+    private Spatial[] spatials;
+    private int nodeCapacity = 0;
+    private int nodeCount = 0;
+    private int freeList = NULL_NODE;
+    private int root = NULL_NODE;
+
+    private final IdentityHashMap<Spatial, Integer> proxies = new IdentityHashMap<Spatial, Integer>();
+    private final ArrayList<Spatial> dirty = new ArrayList<Spatial>();
+    private final ArrayList<Spatial> unbounded = new ArrayList<Spatial>();
+    
+    private int[] stack = new int[64];
+    private final float[] aabb = new float[6];
+    private final float[] query = new float[6];
+
+    /**
+     * Creates an index for the given node. All current children
+     * are queued for insertion.
+     * 
+     * @param owner The node whose children are indexed
+     */
+    SpatialIndex(Node owner) {
+        this.owner = owner;
+        ensureCapacity(16);
+        for (Spatial child : owner.children.getArray()) {
+            dirty.add(child);
+        }
+    }
+
+    /**
+     * @return The number of children stored as leaves in the tree.
+     */
+    public int getLeafCount() {
+        return proxies.size();
+    }
+
+    /**
+     * @return The height of the tree, 0 for a single leaf and
+     * -1 if the tree is empty.
+     */
+    public int getHeight() {
+        return root == NULL_NODE ? -1 : heights[root];
+    }
+
+    /**
+     * Queues a child for re-evaluation, called when its world bound
+     * was recomputed or when it was attached.
+     */
+    void markDirty(Spatial child) {
+        dirty.add(child);
+    }
+
+    /**
+     * Removes a detached child from the index.
+     */
+    void remove(Spatial child) {
+        Integer proxy = proxies.remove(child);
+        if (proxy != null) {
+            removeLeaf(proxy);
+            freeNode(proxy);
+        } else {
+            unbounded.remove(child);
+        }
+    }
+
+    /**
+     * Processes all queued children. Called by the owner once the world
+     * bounds of its children are up to date.
+     */
+    void update() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        
+        for (int i = 0, size = dirty.size(); i < size; i++) {
+            Spatial child = dirty.get(i);
+            if (child.parent != owner) {
+                // detached since it was queued
+                continue;
+            }
+            
+            Integer proxy = proxies.get(child);
+            boolean hasBound = toAABB(child.getWorldBound(), aabb);
+            if (proxy == null) {
+                if (hasBound) {
+                    unbounded.remove(child);
+                    proxies.put(child, insert(child, aabb));
+                } else if (!unbounded.contains(child)) {
+                    unbounded.add(child);
+                }
+            } else if (!hasBound) {
+                proxies.remove(child);
+                removeLeaf(proxy);
+                freeNode(proxy);
+                unbounded.add(child);
+            } else if (!contains(proxy, aabb)) {
+                removeLeaf(proxy);
+                setFatBounds(proxy, aabb);
+                insertLeaf(proxy);
+            }
+        }
+        dirty.clear();
+    }
+
+    /**
+     * @return True if the index can answer queries for the given collidable.
+     */
+    boolean supports(Collidable other) {
+        return other instanceof Ray
+            || other instanceof BoundingBox
+            || other instanceof BoundingSphere;
+    }
+
+    /**
+     * Collides the given ray or bounding volume against all children whose
+     * leaf is hit, as well as against all children without a bound.
+     * The index must be up to date.
+     */
+    int collideWith(Collidable other, CollisionResults results) {
+        assert dirty.isEmpty();
+        
+        int total = 0;
+        for (int i = 0, size = unbounded.size(); i < size; i++) {
+            total += unbounded.get(i).collideWith(other, results);
+        }
+        
+        if (root == NULL_NODE) {
+            return total;
+        }
+        
+        int top = 0;
+        stack[top++] = root;
+        if (other instanceof Ray) {
+            Ray ray = (Ray) other;
+            Vector3f o = ray.getOrigin();
+            Vector3f d = ray.getDirection();
+            float invX = 1f / d.x, invY = 1f / d.y, invZ = 1f / d.z;
+            float limit = ray.getLimit();
+            
+            while (top > 0) {
+                int node = stack[--top];
+                if (!intersectsRay(node, o, invX, invY, invZ, limit)) {
+                    continue;
+                }
+                if (child1s[node] == NULL_NODE) {
+                    total += spatials[node].collideWith(other, results);
+                } else {
+                    top = push(top, child1s[node], child2s[node]);
+                }
+            }
+        } else {
+            toAABB((BoundingVolume) other, query);
+            
+            while (top > 0) {
+                int node = stack[--top];
+                if (!overlaps(node, query)) {
+                    continue;
+                }
+                if (child1s[node] == NULL_NODE) {
+                    total += spatials[node].collideWith(other, results);
+                } else {
+                    top = push(top, child1s[node], child2s[node]);
+                }
+            }
+        }
+        return total;
+    }
+
+    private int push(int top, int a, int b) {
+        if (top + 2 > stack.length) {
+            int[] newStack = new int[stack.length * 2];
+            System.arraycopy(stack, 0, newStack, 0, top);
+            stack = newStack;
+        }
+        stack[top++] = a;
+        stack[top++] = b;
+        return top;
+    }
+
+    /**
+     * Slab test of the ray against the box of the given node.
+     */
+    private boolean intersectsRay(int node, Vector3f o, float invX, float invY, float invZ, float limit) {
+        int b = node * 6;
+        float tMin = 0, tMax = limit;
+        
+        float t1 = (bounds[b] - o.x) * invX;
+        float t2 = (bounds[b + 3] - o.x) * invX;
+        if (invX < 0) {
+            float tmp = t1; t1 = t2; t2 = tmp;
+        }
+        // NaN (0 * infinity) means the origin lies on the slab plane,
+        // which does not restrict the interval
+        if (t1 > tMin) tMin = t1;
+        if (t2 < tMax) tMax = t2;
+        
+        t1 = (bounds[b + 1] - o.y) * invY;
+        t2 = (bounds[b + 4] - o.y) * invY;
+        if (invY < 0) {
+            float tmp = t1; t1 = t2; t2 = tmp;
+        }
+        if (t1 > tMin) tMin = t1;
+        if (t2 < tMax) tMax = t2;
+        
+        t1 = (bounds[b + 2] - o.z) * invZ;
+        t2 = (bounds[b + 5] - o.z) * invZ;
+        if (invZ < 0) {
+            float tmp = t1; t1 = t2; t2 = tmp;
+        }
+        if (t1 > tMin) tMin = t1;
+        if (t2 < tMax) tMax = t2;
+        
+        return tMin <= tMax;
+    }
+
+    private boolean overlaps(int node, float[] box) {
+        int b = node * 6;
+        return bounds[b] <= box[3] && bounds[b + 3] >= box[0]
+            && bounds[b + 1] <= box[4] && bounds[b + 4] >= box[1]
+            && bounds[b + 2] <= box[5] && bounds[b + 5] >= box[2];
+    }
+
+    private boolean contains(int node, float[] box) {
+        int b = node * 6;
+        return bounds[b] <= box[0] && bounds[b + 1] <= box[1] && bounds[b + 2] <= box[2]
+            && bounds[b + 3] >= box[3] && bounds[b + 4] >= box[4] && bounds[b + 5] >= box[5];
+    }
+
+    /**
+     * Converts a bounding volume into min/max form.
+     * 
+     * @return false if the volume is null or of an unsupported type.
+     */
+    private static boolean toAABB(BoundingVolume bv, float[] store) {
+        if (bv == null) {
+            return false;
+        }
+        Vector3f c = bv.getCenter();
+        float x, y, z;
+        if (bv instanceof BoundingBox) {
+            BoundingBox bbox = (BoundingBox) bv;
+            x = bbox.getXExtent();
+            y = bbox.getYExtent();
+            z = bbox.getZExtent();
+        } else if (bv instanceof BoundingSphere) {
+            x = y = z = ((BoundingSphere) bv).getRadius();
+        } else {
+            return false;
+        }
+        store[0] = c.x - x;
+        store[1] = c.y - y;
+        store[2] = c.z - z;
+        store[3] = c.x + x;
+        store[4] = c.y + y;
+        store[5] = c.z + z;
+        return true;
+    }
+
+    private void setFatBounds(int node, float[] box) {
+        int b = node * 6;
+        for (int i = 0; i < 3; i++) {
+            float margin = (box[i + 3] - box[i]) * FAT_MARGIN;
+            bounds[b + i] = box[i] - margin;
+            bounds[b + i + 3] = box[i + 3] + margin;
+        }
+    }
+
+    private void combine(int store, int a, int b) {
+        int s = store * 6, ia = a * 6, ib = b * 6;
+        for (int i = 0; i < 3; i++) {
+            bounds[s + i] = Math.min(bounds[ia + i], bounds[ib + i]);
+            bounds[s + i + 3] = Math.max(bounds[ia + i + 3], bounds[ib + i + 3]);
+        }
+    }
+
+    /**
+     * Half surface area of the box of a node.
+     */
+    private float area(int node) {
+        int b = node * 6;
+        float x = bounds[b + 3] - bounds[b];
+        float y = bounds[b + 4] - bounds[b + 1];
+        float z = bounds[b + 5] - bounds[b + 2];
+        return x * y + y * z + z * x;
+    }
+
+    /**
+     * Half surface area of the union of the boxes of two nodes.
+     */
+    private float combinedArea(int a, int b) {
+        int ia = a * 6, ib = b * 6;
+        float x = Math.max(bounds[ia + 3], bounds[ib + 3]) - Math.min(bounds[ia], bounds[ib]);
+        float y = Math.max(bounds[ia + 4], bounds[ib + 4]) - Math.min(bounds[ia + 1], bounds[ib + 1]);
+        float z = Math.max(bounds[ia + 5], bounds[ib + 5]) - Math.min(bounds[ia + 2], bounds[ib + 2]);
+        return x * y + y * z + z * x;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= nodeCapacity) {
+            return;
+        }
+        float[] newBounds = new float[capacity * 6];
+        int[] newParents = new int[capacity];
+        int[] newChild1s = new int[capacity];
+        int[] newChild2s = new int[capacity];
+        int[] newHeights = new int[capacity];
+        Spatial[] newSpatials = new Spatial[capacity];
+        if (nodeCapacity > 0) {
+            System.arraycopy(bounds, 0, newBounds, 0, nodeCapacity * 6);
+            System.arraycopy(parents, 0, newParents, 0, nodeCapacity);
+            System.arraycopy(child1s, 0, newChild1s, 0, nodeCapacity);
+            System.arraycopy(child2s, 0, newChild2s, 0, nodeCapacity);
+            System.arraycopy(heights, 0, newHeights, 0, nodeCapacity);
+            System.arraycopy(spatials, 0, newSpatials, 0, nodeCapacity);
+        }
+        bounds = newBounds;
+        parents = newParents;
+        child1s = newChild1s;
+        child2s = newChild2s;
+        heights = newHeights;
+        spatials = newSpatials;
+        
+        // chain the new nodes into the free list
+        for (int i = capacity - 1; i >= nodeCapacity; i--) {
+            parents[i] = freeList;
+            heights[i] = -1;
+            freeList = i;
+        }
+        nodeCapacity = capacity;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            ensureCapacity(nodeCapacity * 2);
+        }
+        int node = freeList;
+        freeList = parents[node];
+        parents[node] = NULL_NODE;
+        child1s[node] = NULL_NODE;
+        child2s[node] = NULL_NODE;
+        heights[node] = 0;
+        spatials[node] = null;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parents[node] = freeList;
+        heights[node] = -1;
+        spatials[node] = null;
+        freeList = node;
+        nodeCount--;
+    }
+
+    private int insert(Spatial spatial, float[] box) {
+        int leaf = allocateNode();
+        spatials[leaf] = spatial;
+        setFatBounds(leaf, box);
+        insertLeaf(leaf);
+        return leaf;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parents[root] = NULL_NODE;
+            return;
+        }
+
+        // find the best sibling using the surface area heuristic
+        int index = root;
+        while (child1s[index] != NULL_NODE) {
+            int c1 = child1s[index];
+            int c2 = child2s[index];
+
+            float area = area(index);
+            float combined = combinedArea(index, leaf);
+
+            // cost of creating a new parent for this node and the new leaf
+            float cost = 2f * combined;
+            // minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2f * (combined - area);
+
+            float cost1 = combinedArea(leaf, c1) + inheritanceCost;
+            if (child1s[c1] != NULL_NODE) {
+                cost1 -= area(c1);
+            }
+            float cost2 = combinedArea(leaf, c2) + inheritanceCost;
+            if (child1s[c2] != NULL_NODE) {
+                cost2 -= area(c2);
+            }
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        combine(newParent, leaf, sibling);
+        heights[newParent] = heights[sibling] + 1;
+
+        if (oldParent != NULL_NODE) {
+            if (child1s[oldParent] == sibling) {
+                child1s[oldParent] = newParent;
+            } else {
+                child2s[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1s[newParent] = sibling;
+        child2s[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        refitAncestors(parents[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = child1s[parent] == leaf ? child2s[parent] : child1s[parent];
+
+        if (grandParent != NULL_NODE) {
+            if (child1s[grandParent] == parent) {
+                child1s[grandParent] = sibling;
+            } else {
+                child2s[grandParent] = sibling;
+            }
+            parents[sibling] = grandParent;
+            freeNode(parent);
+            refitAncestors(grandParent);
+        } else {
+            root = sibling;
+            parents[sibling] = NULL_NODE;
+            freeNode(parent);
+        }
+    }
+
+    private void refitAncestors(int index) {
+        while (index != NULL_NODE) {
+            index = balance(index);
+            int c1 = child1s[index];
+            int c2 = child2s[index];
+            heights[index] = 1 + Math.max(heights[c1], heights[c2]);
+            combine(index, c1, c2);
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if node A is imbalanced.
+     * 
+     * @return The new root of the rotated subtree.
+     */
+    private int balance(int a) {
+        if (child1s[a] == NULL_NODE || heights[a] < 2) {
+            return a;
+        }
+
+        int b = child1s[a];
+        int c = child2s[a];
+        int diff = heights[c] - heights[b];
+
+        if (diff > 1) {
+            // rotate C up
+            int f = child1s[c];
+            int g = child2s[c];
+
+            child1s[c] = a;
+            parents[c] = parents[a];
+            parents[a] = c;
+            replaceChild(parents[c], a, c);
+
+            if (heights[f] > heights[g]) {
+                child2s[c] = f;
+                child2s[a] = g;
+                parents[g] = a;
+                combine(a, b, g);
+                combine(c, a, f);
+                heights[a] = 1 + Math.max(heights[b], heights[g]);
+                heights[c] = 1 + Math.max(heights[a], heights[f]);
+            } else {
+                child2s[c] = g;
+                child2s[a] = f;
+                parents[f] = a;
+                combine(a, b, f);
+                combine(c, a, g);
+                heights[a] = 1 + Math.max(heights[b], heights[f]);
+                heights[c] = 1 + Math.max(heights[a], heights[g]);
+            }
+            return c;
+        }
+
+        if (diff < -1) {
+            // rotate B up
+            int d = child1s[b];
+            int e = child2s[b];
+
+            child1s[b] = a;
+            parents[b] = parents[a];
+            parents[a] = b;
+            replaceChild(parents[b], a, b);
+
+            if (heights[d] > heights[e]) {
+                child2s[b] = d;
+                child1s[a] = e;
+                parents[e] = a;
+                combine(a, c, e);
+                combine(b, a, d);
+                heights[a] = 1 + Math.max(heights[c], heights[e]);
+                heights[b] = 1 + Math.max(heights[a], heights[d]);
+            } else {
+                child2s[b] = e;
+                child1s[a] = d;
+                parents[d] = a;
+                combine(a, c, d);
+                combine(b, a, e);
+                heights[a] = 1 + Math.max(heights[c], heights[d]);
+                heights[b] = 1 + Math.max(heights[a], heights[e]);
+            }
+            return b;
+        }
+
+        return a;
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (parent == NULL_NODE) {
+            root = newChild;
+        } else if (child1s[parent] == oldChild) {
+            child1s[parent] = newChild;
+        } else {
+            child2s[parent] = newChild;
+        }
+    }
+}
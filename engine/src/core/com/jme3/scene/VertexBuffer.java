@@ -205,6 +205,16 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
          * either an int or float buffer due to shader attribute types restrictions.
          */
         HWBoneIndex,
+
+        /**
+         * Per-instance world matrices, used with hardware instancing
+         * (16 floats, a mat4 attribute, per instance).
+         * The buffer must have an instance span of 1.
+         * 
+         * @see #setInstanceSpan(int) 
+         * @see com.jme3.scene.InstancedNode
+         */
+        InstanceData,
     }
 
     /**
@@ -324,8 +334,16 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
     protected Type bufType;
     protected Format format;
     protected boolean normalized = false;
+    protected int instanceSpan = 0;
     protected transient boolean dataSizeChanged = false;
 
+    /**
+     * element range modified since the last upload, updateEnd &lt; 0 marks
+     * the whole buffer
+     */
+    protected transient int updateStart = 0;
+    protected transient int updateEnd = -1;
+
     /**
      * Creates an empty, uninitialized buffer.
      * Must call setupData() to initialize.
@@ -530,6 +548,41 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         return normalized;
     }
 
+    /**
+     * Sets the instance span of the buffer. 
+     * With an instance span of 0 (the default), the buffer holds one element 
+     * per vertex. Otherwise the buffer holds one element per 
+     * <code>instanceSpan</code> instances when the mesh is rendered 
+     * with hardware instancing.
+     * 
+     * @param instanceSpan The number of instances sharing each element, 
+     * or 0 for per-vertex data.
+     * 
+     * @see com.jme3.renderer.Caps#MeshInstancing
+     */
+    public void setInstanceSpan(int instanceSpan){
+        if (instanceSpan < 0)
+            throw new IllegalArgumentException("instanceSpan cannot be negative");
+        
+        this.instanceSpan = instanceSpan;
+    }
+
+    /**
+     * @return The instance span of the buffer.
+     * @see VertexBuffer#setInstanceSpan(int) 
+     */
+    public int getInstanceSpan(){
+        return instanceSpan;
+    }
+
+    /**
+     * @return True if the buffer holds per-instance data.
+     * @see VertexBuffer#setInstanceSpan(int) 
+     */
+    public boolean isInstanced(){
+        return instanceSpan != 0;
+    }
+
     /**
      * @return The type of information that this buffer has.
      */
@@ -584,7 +637,8 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         if (data.isReadOnly()) 
             throw new IllegalArgumentException( "VertexBuffer data cannot be read-only." );
 
-        if (components < 1 || components > 4)
+        if ((components < 1 || components > 4) 
+                && !(bufType == Type.InstanceData && components == 16))
             throw new IllegalArgumentException("components must be between 1 and 4");
 
         this.data = data;
@@ -640,10 +694,63 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         return dataSizeChanged;
     }
 
+    @Override
+    public void setUpdateNeeded(){
+        super.setUpdateNeeded();
+        updateStart = 0;
+        updateEnd = -1;
+    }
+
+    /**
+     * Indicates that only the data between the buffer positions
+     * <code>start</code> (inclusive) and <code>end</code> (exclusive)
+     * was modified. Renderers that support partial uploads will only send
+     * that range to the GPU. Ranges marked before the next upload are merged,
+     * marking the whole buffer with {@link #setUpdateNeeded() } takes
+     * precedence.
+     *
+     * @param start The first modified position in the data buffer
+     * @param end The position after the last modified one
+     */
+    public void setUpdateNeeded(int start, int end){
+        if (start < 0 || end < start)
+            throw new IllegalArgumentException("Invalid update range: " + start + " to " + end);
+
+        if (!isUpdateNeeded()){
+            updateStart = start;
+            updateEnd = end;
+        }else if (updateEnd >= 0){
+            updateStart = Math.min(updateStart, start);
+            updateEnd = Math.max(updateEnd, end);
+        }
+        super.setUpdateNeeded();
+    }
+
+    /**
+     * @return The first position of the data that must be sent to the GPU
+     * on the next update.
+     * Internal use only.
+     */
+    public int getUpdateStart(){
+        return updateEnd < 0 ? 0 : updateStart;
+    }
+
+    /**
+     * @return The position after the last element of the data that must be
+     * sent to the GPU on the next update.
+     * Internal use only.
+     */
+    public int getUpdateEnd(){
+        int limit = data.limit();
+        return updateEnd < 0 ? limit : Math.min(updateEnd, limit);
+    }
+
     @Override
     public void clearUpdateNeeded(){
         super.clearUpdateNeeded();
         dataSizeChanged = false;
+        updateStart = 0;
+        updateEnd = -1;
     }
 
     /**
@@ -1038,6 +1145,7 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         oc.write(normalized, "normalized", false);
         oc.write(offset, "offset", 0);
         oc.write(stride, "stride", 0);
+        oc.write(instanceSpan, "instanceSpan", 0);
 
         String dataName = "data" + format.name();
         Buffer roData = getDataReadOnly();
@@ -1072,6 +1180,7 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         normalized = ic.readBoolean("normalized", false);
         offset = ic.readInt("offset", 0);
         stride = ic.readInt("stride", 0);
+        instanceSpan = ic.readInt("instanceSpan", 0);
         componentsLength = components * format.getComponentSize();
 
         String dataName = "data" + format.name();
@@ -57,6 +57,9 @@ public final class Shader extends NativeObject {
      */
     private IntMap<Attribute> attribs;
 
+    private Object paramsOwner;
+    private long paramsVersion;
+
     /**
      * Type of shader. The shader will control the pipeline of it's type.
      */
@@ -313,11 +316,37 @@ public final class Shader extends NativeObject {
         }
     }
 
+    /**
+     * Internal use only. Records that the uniforms of this shader hold
+     * the parameters applied by the given owner, usually a material
+     * technique, in the given version of its parameters.
+     * 
+     * @param owner The owner of the parameters, or null if unknown
+     * @param version The version of the parameters
+     */
+    public void setParamsOwner(Object owner, long version) {
+        this.paramsOwner = owner;
+        this.paramsVersion = version;
+    }
+
+    /**
+     * Internal use only. Checks whether the uniforms of this shader still
+     * hold the parameters applied by the given owner in the given version.
+     * 
+     * @param owner The owner of the parameters
+     * @param version The version of the parameters
+     * @return True if the parameters do not need to be applied again
+     */
+    public boolean isParamsOwner(Object owner, long version) {
+        return paramsOwner == owner && paramsVersion == version;
+    }
+
     /**
      * Usually called when the shader itself changes or during any
      * time when the variable locations need to be refreshed.
      */
     public void resetLocations() {
+        paramsOwner = null;
         if (uniforms != null) {
             // NOTE: Shader sources will be reset seperately from the shader itself.
             for (Uniform uniform : uniforms.values()) {
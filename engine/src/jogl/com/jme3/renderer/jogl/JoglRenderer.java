@@ -301,7 +301,11 @@ public class JoglRenderer implements Renderer {
             caps.add(Caps.PackedDepthStencilBuffer);
         }
 
-        if (gl.isExtensionAvailable("GL_ARB_draw_instanced")) {
+        // the attribute divisor is only exposed through the GL3ES3 interface,
+        // plain GL2 contexts cannot draw instanced meshes
+        if (gl.isGL3ES3()
+                && gl.isExtensionAvailable("GL_ARB_draw_instanced")
+                && gl.isExtensionAvailable("GL_ARB_instanced_arrays")) {
             caps.add(Caps.MeshInstancing);
         }
 
@@ -2214,6 +2218,9 @@ public class JoglRenderer implements Renderer {
             int idx = attribList.oldList[i];
             GL gl = GLContext.getCurrentGL();
             gl.getGL2ES2().glDisableVertexAttribArray(idx);
+            if (context.boundAttribs[idx] != null && context.boundAttribs[idx].isInstanced() && gl.isGL3ES3()) {
+                gl.getGL3ES3().glVertexAttribDivisor(idx, 0);
+            }
             context.boundAttribs[idx] = null;
         }
         context.attribIndexList.copyNewToOld();
@@ -2252,12 +2259,21 @@ public class JoglRenderer implements Renderer {
                 updateBufferData(vb);
             }
 
+            // Matrix attributes take one location per column
+            int slots = vb.getNumComponents() > 4 ? vb.getNumComponents() / 4 : 1;
+
             VertexBuffer[] attribs = context.boundAttribs;
-            if (!context.attribIndexList.moveToNew(loc)) {
-                gl.getGL2ES2().glEnableVertexAttribArray(loc);
-                //System.out.println("Enabled ATTRIB IDX: "+loc);
+            for (int i = 0; i < slots; i++) {
+                if (!context.attribIndexList.moveToNew(loc + i)) {
+                    gl.getGL2ES2().glEnableVertexAttribArray(loc + i);
+                    //System.out.println("Enabled ATTRIB IDX: "+loc);
+                }
             }
-            if (attribs[loc] != vb) {
+            boolean bound = true;
+            for (int i = 0; i < slots; i++) {
+                bound &= attribs[loc + i] == vb;
+            }
+            if (!bound) {
                 // NOTE: Use id from interleaved buffer if specified
                 int bufId = idb != null ? idb.getId() : vb.getId();
                 assert bufId != -1;
@@ -2269,14 +2285,33 @@ public class JoglRenderer implements Renderer {
                     //statistics.onVertexBufferUse(vb, false);
                 }
 
-                gl.getGL2ES2().glVertexAttribPointer(loc,
-                        vb.getNumComponents(),
-                        convertFormat(vb.getFormat()),
-                        vb.isNormalized(),
-                        vb.getStride(),
-                        vb.getOffset());
+                if (slots == 1) {
+                    gl.getGL2ES2().glVertexAttribPointer(loc,
+                            vb.getNumComponents(),
+                            convertFormat(vb.getFormat()),
+                            vb.isNormalized(),
+                            vb.getStride(),
+                            vb.getOffset());
+                } else {
+                    int columnSize = 4 * vb.getFormat().getComponentSize();
+                    int stride = vb.getStride() != 0 ? vb.getStride() : columnSize * slots;
+                    for (int i = 0; i < slots; i++) {
+                        gl.getGL2ES2().glVertexAttribPointer(loc + i,
+                                4,
+                                convertFormat(vb.getFormat()),
+                                vb.isNormalized(),
+                                stride,
+                                vb.getOffset() + i * columnSize);
+                    }
+                }
 
-                attribs[loc] = vb;
+                for (int i = 0; i < slots; i++) {
+                    int oldSpan = attribs[loc + i] != null ? attribs[loc + i].getInstanceSpan() : 0;
+                    if (oldSpan != vb.getInstanceSpan() && gl.isGL3ES3()) {
+                        gl.getGL3ES3().glVertexAttribDivisor(loc + i, vb.getInstanceSpan());
+                    }
+                    attribs[loc + i] = vb;
+                }
             }
         } else {
             throw new IllegalStateException("Cannot render mesh without shader bound");
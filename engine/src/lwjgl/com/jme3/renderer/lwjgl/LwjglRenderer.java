@@ -282,7 +282,7 @@ public class LwjglRenderer implements Renderer {
             caps.add(Caps.PackedDepthStencilBuffer);
         }
 
-        if (ctxCaps.GL_ARB_draw_instanced) {
+        if (ctxCaps.GL_ARB_draw_instanced && ctxCaps.GL_ARB_instanced_arrays) {
             caps.add(Caps.MeshInstancing);
         }
 
@@ -2119,28 +2119,37 @@ public class LwjglRenderer implements Renderer {
                     throw new UnsupportedOperationException("Unknown buffer format.");
             }
         } else {
+            // only send the range modified since the last upload
+            Buffer data = vb.getData();
+            int limit = data.limit();
+            int start = vb.getUpdateStart();
+            data.limit(vb.getUpdateEnd());
+            data.position(start);
+            long offset = (long) start * vb.getFormat().getComponentSize();
             switch (vb.getFormat()) {
                 case Byte:
                 case UnsignedByte:
-                    glBufferSubData(target, 0, (ByteBuffer) vb.getData());
+                    glBufferSubData(target, offset, (ByteBuffer) data);
                     break;
                 case Short:
                 case UnsignedShort:
-                    glBufferSubData(target, 0, (ShortBuffer) vb.getData());
+                    glBufferSubData(target, offset, (ShortBuffer) data);
                     break;
                 case Int:
                 case UnsignedInt:
-                    glBufferSubData(target, 0, (IntBuffer) vb.getData());
+                    glBufferSubData(target, offset, (IntBuffer) data);
                     break;
                 case Float:
-                    glBufferSubData(target, 0, (FloatBuffer) vb.getData());
+                    glBufferSubData(target, offset, (FloatBuffer) data);
                     break;
                 case Double:
-                    glBufferSubData(target, 0, (DoubleBuffer) vb.getData());
+                    glBufferSubData(target, offset, (DoubleBuffer) data);
                     break;
                 default:
                     throw new UnsupportedOperationException("Unknown buffer format.");
             }
+            data.limit(limit);
+            data.rewind();
         }
 
         vb.clearUpdateNeeded();
@@ -2164,6 +2173,9 @@ public class LwjglRenderer implements Renderer {
         for (int i = 0; i < attribList.oldLen; i++) {
             int idx = attribList.oldList[i];
             glDisableVertexAttribArray(idx);
+            if (context.boundAttribs[idx] != null && context.boundAttribs[idx].isInstanced()) {
+                ARBInstancedArrays.glVertexAttribDivisorARB(idx, 0);
+            }
             context.boundAttribs[idx] = null;
         }
         context.attribIndexList.copyNewToOld();
@@ -2201,12 +2213,21 @@ public class LwjglRenderer implements Renderer {
                 updateBufferData(vb);
             }
 
+            // Matrix attributes take one location per column
+            int slots = vb.getNumComponents() > 4 ? vb.getNumComponents() / 4 : 1;
+
             VertexBuffer[] attribs = context.boundAttribs;
-            if (!context.attribIndexList.moveToNew(loc)) {
-                glEnableVertexAttribArray(loc);
-                //System.out.println("Enabled ATTRIB IDX: "+loc);
+            for (int i = 0; i < slots; i++) {
+                if (!context.attribIndexList.moveToNew(loc + i)) {
+                    glEnableVertexAttribArray(loc + i);
+                    //System.out.println("Enabled ATTRIB IDX: "+loc);
+                }
             }
-            if (attribs[loc] != vb) {
+            boolean bound = true;
+            for (int i = 0; i < slots; i++) {
+                bound &= attribs[loc + i] == vb;
+            }
+            if (!bound) {
                 // NOTE: Use id from interleaved buffer if specified
                 int bufId = idb != null ? idb.getId() : vb.getId();
                 assert bufId != -1;
@@ -2218,14 +2239,33 @@ public class LwjglRenderer implements Renderer {
                     //statistics.onVertexBufferUse(vb, false);
                 }
 
-                glVertexAttribPointer(loc,
-                        vb.getNumComponents(),
-                        convertFormat(vb.getFormat()),
-                        vb.isNormalized(),
-                        vb.getStride(),
-                        vb.getOffset());
+                if (slots == 1) {
+                    glVertexAttribPointer(loc,
+                            vb.getNumComponents(),
+                            convertFormat(vb.getFormat()),
+                            vb.isNormalized(),
+                            vb.getStride(),
+                            vb.getOffset());
+                } else {
+                    int columnSize = 4 * vb.getFormat().getComponentSize();
+                    int stride = vb.getStride() != 0 ? vb.getStride() : columnSize * slots;
+                    for (int i = 0; i < slots; i++) {
+                        glVertexAttribPointer(loc + i,
+                                4,
+                                convertFormat(vb.getFormat()),
+                                vb.isNormalized(),
+                                stride,
+                                vb.getOffset() + i * columnSize);
+                    }
+                }
 
-                attribs[loc] = vb;
+                for (int i = 0; i < slots; i++) {
+                    int oldSpan = attribs[loc + i] != null ? attribs[loc + i].getInstanceSpan() : 0;
+                    if (oldSpan != vb.getInstanceSpan()) {
+                        ARBInstancedArrays.glVertexAttribDivisorARB(loc + i, vb.getInstanceSpan());
+                    }
+                    attribs[loc + i] = vb;
+                }
             }
         } else {
             throw new IllegalStateException("Cannot render mesh without shader bound");
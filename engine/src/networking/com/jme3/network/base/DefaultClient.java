@@ -42,6 +42,10 @@ import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -79,6 +83,13 @@ public class DefaultClient implements Client
     private List<ConnectorAdapter> channels = new ArrayList<ConnectorAdapter>();    
  
     private ConnectorFactory connectorFactory;
+
+    // Outbound batching, disabled when batchSize is 0
+    private int batchSize = 0;
+    private long batchWindow = 0;
+    private MessageBatcher[] batchers = new MessageBatcher[0];
+    private ScheduledExecutorService flusher;
+    private TransmitStats stats = new TransmitStats();
     
     public DefaultClient( String gameName, int version )
     {
@@ -112,6 +123,77 @@ public class DefaultClient implements Client
         }
     }  
 
+    /**
+     *  Enables coalescing of outbound messages.  Messages are accumulated
+     *  per channel into frames of up to maxFrameSize bytes, or
+     *  MessageBatcher.MAX_DATAGRAM_SIZE for the unreliable channel, and
+     *  a frame is written when it is full, when flush() is called or,
+     *  if windowMillis is greater than 0, at most windowMillis after its
+     *  first message was queued.  A maxFrameSize of 0, the default, sends
+     *  every message as it is sent.  Must be called before start().
+     */
+    public void setMessageBatching( long windowMillis, int maxFrameSize )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Batching cannot be changed once client is started." );
+        this.batchWindow = windowMillis;
+        this.batchSize = maxFrameSize;
+    }
+
+    public boolean isMessageBatching()
+    {
+        return batchSize > 0;
+    }
+
+    public long getBatchWindow()
+    {
+        return batchWindow;
+    }
+
+    public int getBatchFrameSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     *  Returns the counts and rates of messages and frames written
+     *  by this client.
+     */
+    public TransmitStats getTransmitStats()
+    {
+        return stats;
+    }
+
+    /**
+     *  Writes out any messages that are still being batched.
+     */
+    public void flush()
+    {
+        MessageBatcher[] current;
+        synchronized( this ) {
+            current = batchers;
+        }
+        for( MessageBatcher b : current ) {
+            if( b != null )
+                b.flush();
+        }
+    }
+
+    protected synchronized MessageBatcher getBatcher( int channel )
+    {
+        if( channel >= batchers.length ) {
+            MessageBatcher[] temp = new MessageBatcher[channel + 1];
+            System.arraycopy(batchers, 0, temp, 0, batchers.length);
+            batchers = temp;
+        }
+        if( batchers[channel] == null ) {
+            int size = channel == CH_UNRELIABLE ? Math.min(batchSize, MessageBatcher.MAX_DATAGRAM_SIZE) 
+                                                : batchSize;
+            batchers[channel] = new ConnectorBatcher(channel, size);
+        }
+        return batchers[channel];
+    }
+
     protected void checkRunning()
     {
         if( !isRunning )
@@ -148,6 +230,27 @@ public class DefaultClient implements Client
 
         // Set it true here so we can send some messages.
         isRunning = true;        
+
+        if( batchSize > 0 && batchWindow > 0 ) {
+            flusher = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+                    public Thread newThread( Runnable r )
+                    {
+                        Thread t = new Thread( r, "MessageFlusher" );
+                        t.setDaemon( true );
+                        return t;
+                    }
+                } );
+            flusher.scheduleWithFixedDelay( new Runnable() {
+                    public void run()
+                    {
+                        try {
+                            flush();
+                        } catch( RuntimeException e ) {
+                            log.log( Level.WARNING, "Error flushing messages", e );
+                        }
+                    }
+                }, batchWindow, batchWindow, TimeUnit.MILLISECONDS );
+        }
                 
         ClientRegistrationMessage reg;
         reg = new ClientRegistrationMessage();
@@ -245,6 +348,14 @@ public class DefaultClient implements Client
  
         // Convert the message to bytes
         buffer = MessageProtocol.messageToBuffer(message, buffer);
+        stats.messageSent();
+
+        // Registration messages skip the batcher so that the
+        // connection isn't held up waiting for a flush
+        if( batchSize > 0 && waitForConnected ) {
+            getBatcher(channel).send(buffer);
+            return;
+        }
                 
         // Since we share the buffer between invocations, we will need to 
         // copy this message's part out of it.  This is because we actually
@@ -254,6 +365,7 @@ public class DefaultClient implements Client
         buffer = ByteBuffer.wrap(temp);
         
         channels.get(channel).write(buffer);
+        stats.frameSent(temp.length);
     }
  
     public void close()
@@ -268,6 +380,15 @@ public class DefaultClient implements Client
         if( !isRunning )
             return;
 
+        if( flusher != null ) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+        if( info == null ) {
+            // A normal close so anything still batched can go out
+            flush();
+        }
+
         // Send a close message
     
         // Tell the thread it's ok to die
@@ -434,4 +555,24 @@ public class DefaultClient implements Client
             DefaultClient.this.handleError( t );   
         }
     }    
+
+    protected class ConnectorBatcher extends MessageBatcher
+    {
+        private int channel;
+
+        public ConnectorBatcher( int channel, int maxFrameSize )
+        {
+            super( maxFrameSize, stats );
+            this.channel = channel;
+        }
+
+        protected void sendFrame( ByteBuffer frame )
+        {
+            // The adapter writes on its own thread so it gets
+            // its own copy
+            byte[] temp = new byte[frame.remaining()];
+            frame.get(temp);
+            channels.get(channel).write(ByteBuffer.wrap(temp));
+        }
+    }
 }
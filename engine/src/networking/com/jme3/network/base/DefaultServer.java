@@ -32,8 +32,10 @@
 package com.jme3.network.base;
 
 import com.jme3.network.*;
+import com.jme3.network.kernel.BufferPool;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.SharedBuffer;
 import com.jme3.network.message.ChannelInfoMessage;
 import com.jme3.network.message.ClientRegistrationMessage;
 import com.jme3.network.message.DisconnectMessage;
@@ -42,6 +44,10 @@ import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -84,6 +90,19 @@ public class DefaultServer implements Server
     private MessageListenerRegistry<HostedConnection> messageListeners 
                             = new MessageListenerRegistry<HostedConnection>();                        
     private List<ConnectionListener> connectionListeners = new CopyOnWriteArrayList<ConnectionListener>();
+
+    // Direct buffers that outbound messages are serialized into.  Broadcasts
+    // share one pooled buffer across all endpoints until they've all
+    // written it.
+    private BufferPool bufferPool = new BufferPool( 32767 + 2, 64 );
+
+    private int dispatchThreadCount = 0;
+
+    // Outbound batching, disabled when batchSize is 0
+    private int batchSize = 0;
+    private long batchWindow = 0;
+    private ScheduledExecutorService flusher;
+    private TransmitStats stats = new TransmitStats();
     
     public DefaultServer( String gameName, int version, Kernel reliable, Kernel fast )
     {
@@ -141,6 +160,83 @@ public class DefaultServer implements Server
         } 
     } 
 
+    /**
+     *  Sets the number of worker threads each channel uses to deserialize
+     *  and dispatch incoming messages.  0, the default, dispatches on the
+     *  channel's single reader thread.  Messages from any one connection
+     *  are always delivered in order.  Must be called before start().
+     */
+    public void setDispatchThreadCount( int count )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Dispatch threads cannot be changed once server is started." );
+        this.dispatchThreadCount = count;
+    }
+
+    public int getDispatchThreadCount()
+    {
+        return dispatchThreadCount;
+    }
+
+    /**
+     *  Enables per-connection coalescing of outbound messages.  Messages
+     *  sent through a HostedConnection are accumulated into frames of
+     *  up to maxFrameSize bytes, or MessageBatcher.MAX_DATAGRAM_SIZE for
+     *  the unreliable channel, and a frame is written when it is full,
+     *  when flushMessages() is called or, if windowMillis is greater than
+     *  0, at most windowMillis after its first message was queued.
+     *  A maxFrameSize of 0, the default, sends every message as it is
+     *  sent.  Must be called before start().
+     */
+    public void setMessageBatching( long windowMillis, int maxFrameSize )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Batching cannot be changed once server is started." );
+        this.batchWindow = windowMillis;
+        this.batchSize = maxFrameSize;
+    }
+
+    public boolean isMessageBatching()
+    {
+        return batchSize > 0;
+    }
+
+    public long getBatchWindow()
+    {
+        return batchWindow;
+    }
+
+    public int getBatchFrameSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     *  Returns the counts and rates of messages and frames written through
+     *  HostedConnection.send().  Broadcasts are not included.
+     */
+    public TransmitStats getTransmitStats()
+    {
+        return stats;
+    }
+
+    /**
+     *  Writes out any messages that are still being batched for
+     *  any connection.
+     */
+    public void flushMessages()
+    {
+        if( batchSize <= 0 )
+            return;
+        for( HostedConnection hc : connections.values() ) {
+            try {
+                ((Connection)hc).flush();
+            } catch( RuntimeException e ) {
+                log.log( Level.WARNING, "Error flushing messages for:" + hc, e );
+            }
+        }
+    }
+
     protected void checkChannel( int channel )
     {
         if( channel < MessageConnection.CHANNEL_DEFAULT_RELIABLE 
@@ -156,6 +252,7 @@ public class DefaultServer implements Server
             
         // Initialize the kernels
         for( KernelAdapter ka : channels ) {
+            ka.setDispatchThreadCount( dispatchThreadCount );
             ka.initialize();
         }
  
@@ -163,6 +260,16 @@ public class DefaultServer implements Server
         for( KernelAdapter ka : channels ) {
             ka.start();
         }
+
+        if( batchSize > 0 && batchWindow > 0 ) {
+            flusher = Executors.newSingleThreadScheduledExecutor( new FlusherFactory() );
+            flusher.scheduleWithFixedDelay( new Runnable() {
+                    public void run()
+                    {
+                        flushMessages();
+                    }
+                }, batchWindow, batchWindow, TimeUnit.MILLISECONDS );
+        }
         
         isRunning = true;             
     }
@@ -177,6 +284,12 @@ public class DefaultServer implements Server
         if( !isRunning )
             throw new IllegalStateException( "Server is not started." );
  
+        if( flusher != null ) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+        flushMessages();
+ 
         try {
             // Kill the adpaters, they will kill the kernels
             for( KernelAdapter ka : channels ) {
@@ -198,17 +311,25 @@ public class DefaultServer implements Server
     {
         if( connections.isEmpty() )
             return;
+
+        // Batched messages have to go out first to keep their
+        // order relative to the broadcast
+        flushMessages();
             
-        ByteBuffer buffer = MessageProtocol.messageToBuffer(message, null);
+        SharedBuffer buffer = MessageProtocol.messageToSharedBuffer(message, bufferPool);
  
         FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
                
-        if( message.isReliable() || fastAdapter == null ) {
-            // Don't need to copy the data because message protocol is already
-            // giving us a fresh buffer
-            reliableAdapter.broadcast( adapter, buffer, true, false );
-        } else {
-            fastAdapter.broadcast( adapter, buffer, false, false );
+        try {
+            // The kernels retain the shared buffer for as long as their
+            // endpoints need it so we can let go of ours right away
+            if( message.isReliable() || fastAdapter == null ) {
+                reliableAdapter.broadcast( adapter, buffer, true );
+            } else {
+                fastAdapter.broadcast( adapter, buffer, false );
+            }
+        } finally {
+            buffer.release();
         }               
     }
 
@@ -218,12 +339,17 @@ public class DefaultServer implements Server
             return;
 
         checkChannel(channel);
+        flushMessages();
         
-        ByteBuffer buffer = MessageProtocol.messageToBuffer(message, null);
+        SharedBuffer buffer = MessageProtocol.messageToSharedBuffer(message, bufferPool);
  
         FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
 
-        channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true, false );               
+        try {
+            channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true );
+        } finally {
+            buffer.release();
+        }               
     }
 
     public HostedConnection getConnection( int id )
@@ -351,6 +477,7 @@ public class DefaultServer implements Server
                 if( !alternatePorts.isEmpty() ) {
                     ChannelInfoMessage cim = new ChannelInfoMessage( m.getId(), alternatePorts );
                     c.send(cim);
+                    c.flush();
                 }
             }
 
@@ -384,6 +511,7 @@ public class DefaultServer implements Server
             m.setId( addedConnection.getId() );
             m.setReliable(true);
             addedConnection.send(m);
+            addedConnection.flush();
             
             // Now we can notify the listeners about the
             // new connection.
@@ -444,6 +572,7 @@ public class DefaultServer implements Server
         private boolean closed;
         private Endpoint[] channels;
         private int setChannelCount = 0; 
+        private MessageBatcher[] batchers;
        
         private Map<String,Object> sessionData = new ConcurrentHashMap<String,Object>();       
         
@@ -451,6 +580,14 @@ public class DefaultServer implements Server
         {
             id = nextId.getAndIncrement();
             channels = new Endpoint[channelCount];
+            if( batchSize > 0 ) {
+                batchers = new MessageBatcher[channelCount];
+                for( int i = 0; i < channelCount; i++ ) {
+                    int size = i == CH_UNRELIABLE ? Math.min(batchSize, MessageBatcher.MAX_DATAGRAM_SIZE) 
+                                                  : batchSize;
+                    batchers[i] = new EndpointBatcher(i, size);
+                }
+            }
         }
  
         void setChannel( int channel, Endpoint p )
@@ -486,19 +623,48 @@ public class DefaultServer implements Server
        
         public void send( Message message )
         {
-            ByteBuffer buffer = MessageProtocol.messageToBuffer(message, null);
             if( message.isReliable() || channels[CH_UNRELIABLE] == null ) {
-                channels[CH_RELIABLE].send( buffer );
+                write( CH_RELIABLE, message );
             } else {
-                channels[CH_UNRELIABLE].send( buffer );
+                write( CH_UNRELIABLE, message );
             }
         }
 
         public void send( int channel, Message message )
         {
             checkChannel(channel);
-            ByteBuffer buffer = MessageProtocol.messageToBuffer(message, null);
-            channels[channel+CH_FIRST].send(buffer);
+            write( channel + CH_FIRST, message );
+        }
+
+        protected void write( int channel, Message message )
+        {
+            // Endpoints and batchers copy what they need during send() 
+            // so the pooled buffer can be given back right after
+            ByteBuffer buffer = MessageProtocol.messageToBuffer(message, bufferPool.acquire());
+            try {
+                stats.messageSent();
+                if( batchers != null ) {
+                    batchers[channel].send( buffer );
+                } else {
+                    int size = buffer.remaining();
+                    channels[channel].send( buffer );
+                    stats.frameSent( size );
+                }
+            } finally {
+                bufferPool.release( buffer );
+            }
+        }
+
+        /**
+         *  Writes out any messages batched for this connection.
+         */
+        public void flush()
+        {
+            if( batchers == null )
+                return;
+            for( MessageBatcher b : batchers ) {
+                b.flush();
+            }
         }
  
         protected void closeConnection()
@@ -506,6 +672,12 @@ public class DefaultServer implements Server
             if( closed ) 
                 return;
             closed = true;
+
+            if( batchers != null ) {
+                for( MessageBatcher b : batchers ) {
+                    b.clear();
+                }
+            }
             
             // Make sure all endpoints are closed.  Note: reliable
             // should always already be closed through all paths that I
@@ -527,6 +699,7 @@ public class DefaultServer implements Server
             m.setReason( reason );
             m.setReliable( true );
             send( m );
+            flush();
             
             // Just close the reliable endpoint
             // fast will be cleaned up as a side-effect
@@ -561,9 +734,35 @@ public class DefaultServer implements Server
         {
             return "Connection[ id=" + id + ", reliable=" + channels[CH_RELIABLE] 
                                      + ", fast=" + channels[CH_UNRELIABLE] + " ]"; 
-        }  
+        }
+
+        protected class EndpointBatcher extends MessageBatcher
+        {
+            private int channel;
+
+            public EndpointBatcher( int channel, int maxFrameSize )
+            {
+                super( maxFrameSize, stats );
+                this.channel = channel;
+            }
+
+            protected void sendFrame( ByteBuffer frame )
+            {
+                channels[channel].send( frame );
+            }
+        }
     } 
 
+    protected static class FlusherFactory implements ThreadFactory
+    {
+        public Thread newThread( Runnable r )
+        {
+            Thread t = new Thread( r, "MessageFlusher" );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+
     protected class Redispatch implements MessageListener<HostedConnection>
     {
         public void messageReceived( HostedConnection source, Message m )
@@ -39,10 +39,13 @@ import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.EndpointEvent;
 import com.jme3.network.kernel.Envelope;
 import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.SharedBuffer;
 import com.jme3.network.message.ClientRegistrationMessage;
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -59,6 +62,11 @@ import java.util.logging.Logger;
  *  objects to 32676 bytes... even though, for example,
  *  datagram packets can hold twice that. :P</p>  
  *
+ *  <p>By default, messages are deserialized and dispatched on the
+ *  adapter's own thread.  setDispatchThreadCount() moves that work to
+ *  a set of worker threads.  Each endpoint is always handled by the same
+ *  worker so its messages are still delivered in order.</p>
+ *
  *  @version   $Revision$
  *  @author    Paul Speed
  */
@@ -78,6 +86,9 @@ public class KernelAdapter extends Thread
     // Marks the messages as reliable or not if they came
     // through this connector.
     private boolean reliable;
+
+    private int dispatchThreadCount = 0;
+    private DispatchThread[] dispatchThreads;
     
     public KernelAdapter( DefaultServer server, Kernel kernel, MessageListener<HostedConnection> messageDispatcher,
                           boolean reliable )
@@ -95,9 +106,36 @@ public class KernelAdapter extends Thread
         return kernel;
     }
 
+    /**
+     *  Sets the number of worker threads that deserialize and dispatch
+     *  incoming messages.  0, the default, dispatches them on the
+     *  adapter thread itself.  Must be called before initialize().
+     */
+    public void setDispatchThreadCount( int count )
+    {
+        if( dispatchThreads != null )
+            throw new IllegalStateException( "Adapter already initialized." );
+        if( count < 0 )
+            throw new IllegalArgumentException( "Dispatch thread count cannot be negative:" + count );
+        this.dispatchThreadCount = count;
+    }
+
+    public int getDispatchThreadCount()
+    {
+        return dispatchThreadCount;
+    }
+
     public void initialize()
     {
         kernel.initialize();
+
+        if( dispatchThreadCount > 0 ) {
+            dispatchThreads = new DispatchThread[dispatchThreadCount];
+            for( int i = 0; i < dispatchThreadCount; i++ ) {
+                dispatchThreads[i] = new DispatchThread( getName() + "-dispatch" + i );
+                dispatchThreads[i].start();
+            }
+        }
     }
  
     public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, boolean reliable, 
@@ -105,6 +143,11 @@ public class KernelAdapter extends Thread
     {
         kernel.broadcast( filter, data, reliable, copy );
     }                           
+
+    public void broadcast( Filter<? super Endpoint> filter, SharedBuffer data, boolean reliable )
+    {
+        kernel.broadcast( filter, data, reliable );
+    }
  
     public void close() throws InterruptedException
     {
@@ -112,6 +155,16 @@ public class KernelAdapter extends Thread
         
         // Kill the kernel
         kernel.terminate();
+
+        // And the dispatch workers
+        if( dispatchThreads != null ) {
+            for( DispatchThread t : dispatchThreads ) {
+                t.interrupt();
+            }
+            for( DispatchThread t : dispatchThreads ) {
+                t.join();
+            }
+        }
     }
 
     protected void reportError( Endpoint p, Object context, Exception e )
@@ -246,15 +299,63 @@ public class KernelAdapter extends Thread
         }            
     }
  
+    /**
+     *  Returns the worker that handles the specified endpoint or
+     *  null if dispatching happens on the adapter thread.
+     */
+    protected DispatchThread getDispatchThread( Endpoint p )
+    {
+        if( dispatchThreads == null )
+            return null;
+        int i = (int)((p.getId() & Long.MAX_VALUE) % dispatchThreads.length);
+        return dispatchThreads[i];
+    }
+
+    /**
+     *  Dispatches the envelope directly or hands it to the
+     *  worker for its endpoint.
+     */
+    protected void dispatchEnvelope( Envelope env )
+    {
+        DispatchThread worker = getDispatchThread(env.getSource());
+        if( worker != null ) {
+            worker.queue.add(env);
+            return;
+        }
+
+        try {
+            createAndDispatch( env );
+        } catch( Exception ex ) {
+            reportError(env.getSource(), env, ex);        
+        }
+    }
+
+    /**
+     *  Dispatches the event directly or hands it to the worker for
+     *  its endpoint so that it stays ordered with the endpoint's
+     *  messages.  A removed connection must not be closed out while
+     *  its last messages are still waiting to be dispatched.
+     */
+    protected void dispatchEvent( EndpointEvent event )
+    {
+        DispatchThread worker = getDispatchThread(event.getEndpoint());
+        if( worker != null ) {
+            worker.queue.add(event);
+            return;
+        }
+
+        try {
+            createAndDispatch( event );
+        } catch( Exception e ) {
+            reportError(event.getEndpoint(), event, e);        
+        }
+    }
+ 
     protected void flushEvents()
     {
         EndpointEvent event;
         while( (event = kernel.nextEvent()) != null ) {
-            try {
-                createAndDispatch( event );
-            } catch( Exception e ) {
-                reportError(event.getEndpoint(), event, e);        
-            }
+            dispatchEvent( event );
         }
     }
  
@@ -276,11 +377,7 @@ public class KernelAdapter extends Thread
                 // when the connection add events come through
                 flushEvents();
             
-                try {
-                    createAndDispatch( e );
-                } catch( Exception ex ) {
-                    reportError(e.getSource(), e, ex);        
-                }
+                dispatchEnvelope( e );
                         
             } catch( InterruptedException ex ) {
                 if( !go.get() )
@@ -289,7 +386,51 @@ public class KernelAdapter extends Thread
             }
         }
     }
-        
+
+    /**
+     *  Deserializes and dispatches the envelopes and events for
+     *  the endpoints assigned to it, in the order they were queued.
+     */
+    protected class DispatchThread extends Thread
+    {
+        private BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        public DispatchThread( String name )
+        {
+            super( name );
+            setDaemon(true);
+        }
+
+        public void run()
+        {
+            while( go.get() ) {
+                Object next;
+                try {
+                    next = queue.take();
+                } catch( InterruptedException ex ) {
+                    if( !go.get() )
+                        return;
+                    throw new RuntimeException( "Unexpected interruption", ex );
+                }
+
+                if( next instanceof Envelope ) {
+                    Envelope env = (Envelope)next;
+                    try {
+                        createAndDispatch( env );
+                    } catch( Exception ex ) {
+                        reportError(env.getSource(), env, ex);        
+                    }
+                } else {
+                    EndpointEvent event = (EndpointEvent)next;
+                    try {
+                        createAndDispatch( event );
+                    } catch( Exception ex ) {
+                        reportError(event.getEndpoint(), event, ex);        
+                    }
+                }
+            }
+        }
+    }
 }
 
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.base;
+
+import java.nio.ByteBuffer;
+
+/**
+ *  Coalesces the serialized messages sent over one channel into
+ *  larger frames.  Messages are appended with their length prefix
+ *  exactly as MessageProtocol writes them so the receiving side's
+ *  MessageProtocol unpacks a frame like any other run of messages.
+ *  A frame is sent when the next message would not fit in the byte
+ *  budget or when flush() is called, either directly or from a timer.
+ *
+ *  <p>For unreliable channels the budget should stay under the path
+ *  MTU so that every frame goes out as a single unfragmented
+ *  datagram.</p>
+ *
+ *  @version   $Revision$
+ */
+public abstract class MessageBatcher
+{
+    /**
+     *  The largest datagram payload that safely fits in a 1500 byte
+     *  Ethernet MTU after IP and UDP headers, with some room left
+     *  for options and tunnels.
+     */
+    public static final int MAX_DATAGRAM_SIZE = 1400;
+
+    private ByteBuffer frame;
+    private TransmitStats stats;
+
+    public MessageBatcher( int maxFrameSize, TransmitStats stats )
+    {
+        if( maxFrameSize < 2 )
+            throw new IllegalArgumentException( "Frame size too small:" + maxFrameSize );
+        // Direct so that endpoints always copy the frame out before
+        // we reuse it
+        this.frame = ByteBuffer.allocateDirect( maxFrameSize );
+        this.stats = stats;
+    }
+
+    public int getMaxFrameSize()
+    {
+        return frame.capacity();
+    }
+
+    public synchronized int getPendingBytes()
+    {
+        return frame.position();
+    }
+
+    /**
+     *  Appends the length-prefixed message in the specified buffer
+     *  to the current frame, sending the frame first if the message
+     *  does not fit.  Messages larger than the whole budget are
+     *  sent on their own.  The buffer's contents are copied.
+     */
+    public synchronized void send( ByteBuffer message )
+    {
+        int size = message.remaining();
+        if( size > frame.remaining() )
+            flush();
+
+        if( size > frame.capacity() ) {
+            sendFrame( message );
+            stats.frameSent( size );
+            return;
+        }
+
+        frame.put( message );
+    }
+
+    /**
+     *  Sends any messages that have been accumulated as one frame.
+     */
+    public synchronized void flush()
+    {
+        if( frame.position() == 0 )
+            return;
+
+        frame.flip();
+        int size = frame.remaining();
+        try {
+            sendFrame( frame );
+        } finally {
+            frame.clear();
+        }
+        stats.frameSent( size );
+    }
+
+    /**
+     *  Drops any accumulated messages without sending them.
+     */
+    public synchronized void clear()
+    {
+        frame.clear();
+    }
+
+    /**
+     *  Writes the frame to the underlying channel.  Implementations
+     *  must copy whatever they need before returning since the
+     *  frame buffer is reused.
+     */
+    protected abstract void sendFrame( ByteBuffer frame );
+}
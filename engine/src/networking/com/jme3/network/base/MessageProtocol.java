@@ -32,6 +32,8 @@
 package com.jme3.network.base;
 
 import com.jme3.network.Message;
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.kernel.SharedBuffer;
 import com.jme3.network.serializing.Serializer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -48,6 +50,10 @@ import java.util.LinkedList;
  *  where two bytes represent the (short) length of the data
  *  and the rest is the raw data for the Serializers class.</p>
  *
+ *  <p>A single buffer or datagram may carry any number of these
+ *  length-prefixed messages back to back, which is how the frames
+ *  built by MessageBatcher are unpacked.</p>
+ *
  *  @version   $Revision$
  *  @author    Paul Speed
  */
@@ -81,6 +87,24 @@ public class MessageProtocol
             throw new RuntimeException( "Error serializing message", e );
         }
     }
+
+    /**
+     *  Converts a message into a buffer taken from the specified pool
+     *  and wraps it as a read-only shared payload.  The caller owns
+     *  the returned reference and must release() it when done; the
+     *  buffer goes back to the pool once every holder has released it.
+     */
+    public static SharedBuffer messageToSharedBuffer( Message message, BufferPool pool )
+    {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            messageToBuffer( message, buffer );
+        } catch( RuntimeException e ) {
+            pool.release( buffer );
+            throw e;
+        }
+        return new SharedBuffer( buffer, pool );
+    }
  
     /**
      *  Retrieves and removes an extracted message from the accumulated buffer
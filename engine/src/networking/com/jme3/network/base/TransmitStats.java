@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.base;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Counts the messages and frames written by a client or server.
+ *  Without batching every message is its own frame; with batching
+ *  the frame count is the number of packets or datagrams actually
+ *  handed to the network.  Rates are averaged over the time since
+ *  they were last recalculated, which happens at most once a second
+ *  when they are read.
+ *
+ *  @version   $Revision$
+ */
+public class TransmitStats
+{
+    private static final long RATE_INTERVAL = 1000000000L;
+
+    private AtomicLong messages = new AtomicLong();
+    private AtomicLong frames = new AtomicLong();
+    private AtomicLong bytes = new AtomicLong();
+
+    private long rateStart = System.nanoTime();
+    private long rateMessages;
+    private long rateFrames;
+    private double messagesPerSecond;
+    private double framesPerSecond;
+
+    public void messageSent()
+    {
+        messages.incrementAndGet();
+    }
+
+    public void frameSent( int size )
+    {
+        frames.incrementAndGet();
+        bytes.addAndGet( size );
+    }
+
+    public long getMessageCount()
+    {
+        return messages.get();
+    }
+
+    public long getFrameCount()
+    {
+        return frames.get();
+    }
+
+    public long getByteCount()
+    {
+        return bytes.get();
+    }
+
+    public synchronized double getMessagesPerSecond()
+    {
+        updateRates();
+        return messagesPerSecond;
+    }
+
+    public synchronized double getFramesPerSecond()
+    {
+        updateRates();
+        return framesPerSecond;
+    }
+
+    protected void updateRates()
+    {
+        long time = System.nanoTime();
+        long elapsed = time - rateStart;
+        if( elapsed < RATE_INTERVAL )
+            return;
+
+        long m = messages.get();
+        long f = frames.get();
+        messagesPerSecond = (m - rateMessages) * 1e9 / elapsed;
+        framesPerSecond = (f - rateFrames) * 1e9 / elapsed;
+        rateStart = time;
+        rateMessages = m;
+        rateFrames = f;
+    }
+
+    public String toString()
+    {
+        return "TransmitStats[messages=" + getMessageCount() + ", frames=" + getFrameCount()
+                + ", bytes=" + getByteCount() + "]";
+    }
+}
@@ -31,6 +31,8 @@
  */
 package com.jme3.network.kernel;
 
+import com.jme3.network.Filter;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
@@ -81,6 +83,20 @@ public abstract class AbstractKernel implements Kernel
         return nextId.getAndIncrement();
     }
 
+    /**
+     *  Default implementation that copies the payload once into a
+     *  heap buffer and delivers it through the regular ByteBuffer
+     *  broadcast.  Kernels that can queue the shared payload directly
+     *  should override this.
+     */
+    public void broadcast( Filter<? super Endpoint> filter, SharedBuffer data, boolean reliable )
+    {
+        ByteBuffer source = data.getData();
+        byte[] temp = new byte[source.remaining()];
+        source.get(temp);
+        broadcast( filter, ByteBuffer.wrap(temp), reliable, false );
+    }
+
     /**
      *  Returns true if there are waiting envelopes.
      */
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  A thread safe pool of fixed size, direct byte buffers used
+ *  to serialize outbound data without allocating a new buffer
+ *  for every message.  Buffers are handed out cleared and
+ *  may be returned from any thread.  At most maxPooled buffers
+ *  are kept around, any extra released buffers are left to
+ *  the garbage collector.
+ *
+ *  @version   $Revision$
+ */
+public class BufferPool
+{
+    private int bufferSize;
+    private int maxPooled;
+    private ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+    private AtomicInteger freeCount = new AtomicInteger();
+    private AtomicLong allocations = new AtomicLong();
+    private AtomicLong acquisitions = new AtomicLong();
+
+    public BufferPool( int bufferSize, int maxPooled )
+    {
+        if( bufferSize <= 0 )
+            throw new IllegalArgumentException( "Buffer size must be positive:" + bufferSize );
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     *  Returns a cleared buffer from the pool or allocates a new
+     *  direct buffer if the pool is empty.
+     */
+    public ByteBuffer acquire()
+    {
+        acquisitions.incrementAndGet();
+        ByteBuffer buffer = free.poll();
+        if( buffer == null ) {
+            allocations.incrementAndGet();
+            return ByteBuffer.allocateDirect( bufferSize );
+        }
+        freeCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     *  Returns a buffer to the pool.  The caller must not touch
+     *  the buffer or any of its views after this call.
+     */
+    public void release( ByteBuffer buffer )
+    {
+        if( buffer.capacity() != bufferSize || !buffer.isDirect() )
+            throw new IllegalArgumentException( "Buffer does not belong to this pool:" + buffer );
+        if( freeCount.incrementAndGet() > maxPooled ) {
+            freeCount.decrementAndGet();
+            return;
+        }
+        free.add( buffer );
+    }
+
+    /**
+     *  Returns the number of buffers this pool has had to
+     *  allocate because none were free.
+     */
+    public long getAllocationCount()
+    {
+        return allocations.get();
+    }
+
+    /**
+     *  Returns the total number of acquire() calls.
+     */
+    public long getAcquireCount()
+    {
+        return acquisitions.get();
+    }
+
+    public String toString()
+    {
+        return "BufferPool[size=" + bufferSize + ", free=" + freeCount.get() 
+                    + ", allocated=" + allocations.get() + "]";
+    }
+}
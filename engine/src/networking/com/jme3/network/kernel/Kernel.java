@@ -73,6 +73,15 @@ public interface Kernel
      */ 
     public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, boolean reliable, 
                            boolean copy );
+
+    /**
+     *  Dispatches the shared payload to all endpoints managed by the
+     *  kernel that match the specified endpoint filter.  Implementations
+     *  retain() the payload for as long as they need it and release()
+     *  it when done, so the caller can release its own reference as soon
+     *  as this call returns.  The payload is never modified.
+     */
+    public void broadcast( Filter<? super Endpoint> filter, SharedBuffer data, boolean reliable );
  
     /**
      *  Returns true if there are waiting envelopes.
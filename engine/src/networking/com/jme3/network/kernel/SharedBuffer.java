@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ *  A reference counted, read-only payload that can be queued
+ *  on any number of endpoints without copying it.  Each holder
+ *  gets its own view through getData() so that it can track
+ *  its own progress over the shared bytes.  When the last
+ *  reference is released the backing buffer goes back to the
+ *  pool it came from, if any.
+ *
+ *  <p>The creator owns the first reference.  Anything that keeps
+ *  the payload past the call it was handed in, such as an endpoint's
+ *  outbound queue, must retain() it and release() it when done.</p>
+ *
+ *  @version   $Revision$
+ */
+public class SharedBuffer
+{
+    private ByteBuffer data;
+    private ByteBuffer backing;
+    private BufferPool pool;
+    private AtomicInteger refs = new AtomicInteger(1);
+
+    /**
+     *  Wraps the bytes from data.position() to data.limit().  If pool
+     *  is not null then data is released to it when the last
+     *  reference goes away.
+     */
+    public SharedBuffer( ByteBuffer data, BufferPool pool )
+    {
+        this.data = data.asReadOnlyBuffer();
+        this.backing = data;
+        this.pool = pool;
+    }
+
+    /**
+     *  Returns a new read-only view of the payload with its own
+     *  position and limit.
+     */
+    public ByteBuffer getData()
+    {
+        return data.duplicate();
+    }
+
+    public int remaining()
+    {
+        return data.remaining();
+    }
+
+    public SharedBuffer retain()
+    {
+        if( refs.getAndIncrement() <= 0 )
+            throw new IllegalStateException( "Buffer already released." );
+        return this;
+    }
+
+    public void release()
+    {
+        int count = refs.decrementAndGet();
+        if( count < 0 )
+            throw new IllegalStateException( "Buffer released too many times." );
+        if( count == 0 && pool != null ) {
+            pool.release( backing );
+            backing = null;
+        }
+    }
+
+    public String toString()
+    {
+        return "SharedBuffer[" + data.remaining() + " bytes, refs=" + refs.get() + "]";
+    }
+}
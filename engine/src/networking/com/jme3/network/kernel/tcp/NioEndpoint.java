@@ -34,9 +34,11 @@ package com.jme3.network.kernel.tcp;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
 import com.jme3.network.kernel.KernelException;
+import com.jme3.network.kernel.SharedBuffer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 
@@ -55,8 +57,9 @@ public class NioEndpoint implements Endpoint
     private long id;
     private SocketChannel socket;
     private SelectorKernel kernel;
-    private ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+    private ConcurrentLinkedQueue<Pending> outbound = new ConcurrentLinkedQueue<Pending>();
     private boolean closing = false;
+    private volatile boolean removed = false;
 
     public NioEndpoint( SelectorKernel kernel, long id, SocketChannel socket )
     {
@@ -133,10 +136,31 @@ public class NioEndpoint implements Endpoint
         }
 
         // Queue it up
-        outbound.add(buffer);
+        outbound.add(new Pending(buffer, null));
 
         if( wakeup )
-            kernel.wakeupSelector();
+            kernel.wakeupSelector(this);
+    }
+
+    /**
+     *  Queues a view of the shared payload, retaining it until
+     *  the view has been completely written or the endpoint
+     *  is removed.
+     */
+    protected void send( SharedBuffer data, boolean wakeup )
+    {
+        outbound.add(new Pending(data.getData(), data.retain()));
+
+        // A broadcast can race with the removal of this endpoint.
+        // If the kernel already dropped our queue then nobody else
+        // will release what we just added.
+        if( removed ) {
+            clearPending();
+            return;
+        }
+
+        if( wakeup )
+            kernel.wakeupSelector(this);
     }
 
     /**
@@ -145,7 +169,26 @@ public class NioEndpoint implements Endpoint
      */
     protected ByteBuffer peekPending()
     {
-        return outbound.peek();
+        Pending p = outbound.peek();
+        return p == null ? null : p.data;
+    }
+
+    /**
+     *  Fills the array with the pending buffers, in order, stopping
+     *  at the end of the array or at a close marker.  Returns the
+     *  number of buffers filled.  Used by the SelectorKernel to 
+     *  write several queued buffers with one gathering write.
+     */
+    protected int peekPending( ByteBuffer[] target )
+    {
+        int count = 0;
+        for( Iterator<Pending> i = outbound.iterator(); i.hasNext() && count < target.length; ) {
+            ByteBuffer data = i.next().data;
+            if( data == CLOSE_MARKER )
+                break;
+            target[count++] = data;
+        }
+        return count;
     }
 
     /**
@@ -154,7 +197,38 @@ public class NioEndpoint implements Endpoint
      */
     protected ByteBuffer removePending()
     {
-        return outbound.poll();
+        Pending p = outbound.poll();
+        if( p == null )
+            return null;
+        if( p.source != null )
+            p.source.release();
+        return p.data;
+    }
+
+    /**
+     *  Removes all of the leading buffers that have been
+     *  completely written.
+     */
+    protected void removeWritten()
+    {
+        ByteBuffer current;
+        while( (current = peekPending()) != null && current != CLOSE_MARKER 
+                && current.remaining() == 0 ) {
+            removePending();
+        }
+    }
+
+    /**
+     *  Drops any queued data, releasing the shared payloads.  Called
+     *  by the SelectorKernel once the endpoint has been removed, from
+     *  whatever thread closed it.  Anything queued afterwards is
+     *  released by the sender.
+     */
+    protected void clearPending()
+    {
+        removed = true;
+        while( removePending() != null ) {
+        }
     }
 
     protected boolean hasPending()
@@ -177,4 +251,20 @@ public class NioEndpoint implements Endpoint
     {
         return "NioEndpoint[" + id + ", " + socket + "]";
     }
+
+    /**
+     *  An outbound buffer and the shared payload it is a view
+     *  of, if any.
+     */
+    private static class Pending
+    {
+        ByteBuffer data;
+        SharedBuffer source;
+
+        Pending( ByteBuffer data, SharedBuffer source )
+        {
+            this.data = data;
+            this.source = source;
+        }
+    }
 }
@@ -40,10 +40,13 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,6 +54,11 @@ import java.util.logging.Logger;
 /**
  *  A Kernel implementation based on NIO selectors.
  *
+ *  <p>The kernel can be configured to run several selector threads.
+ *  The first one accepts new connections and hands them out round-robin
+ *  to all of the selector threads, itself included.  An endpoint is
+ *  then read and written only by the thread that owns it.</p>
+ *
  *  @version   $Revision$
  *  @author    Paul Speed
  */
@@ -59,10 +67,17 @@ public class SelectorKernel extends AbstractKernel
     static Logger log = Logger.getLogger(SelectorKernel.class.getName());
 
     private InetSocketAddress address;
-    private SelectorThread thread;
+    private int selectorCount;
+    private SelectorThread[] threads;
+    private AtomicInteger nextThread = new AtomicInteger();
 
     private Map<Long,NioEndpoint> endpoints = new ConcurrentHashMap<Long,NioEndpoint>();
 
+    /**
+     *  The selector thread that services each endpoint.
+     */
+    private Map<NioEndpoint,SelectorThread> owners = new ConcurrentHashMap<NioEndpoint,SelectorThread>();
+
     public SelectorKernel( InetAddress host, int port )
     {
         this( new InetSocketAddress(host, port) );
@@ -73,26 +88,59 @@ public class SelectorKernel extends AbstractKernel
         this( new InetSocketAddress(port) );
     }
 
+    public SelectorKernel( int port, int selectorCount ) throws IOException
+    {
+        this( new InetSocketAddress(port), selectorCount );
+    }
+
     public SelectorKernel( InetSocketAddress address )
     {
+        this( address, 1 );
+    }
+
+    /**
+     *  Creates a kernel that spreads its endpoints over the specified
+     *  number of selector threads.
+     */
+    public SelectorKernel( InetSocketAddress address, int selectorCount )
+    {
+        if( selectorCount < 1 )
+            throw new IllegalArgumentException( "Selector count must be at least 1:" + selectorCount );
         this.address = address;
+        this.selectorCount = selectorCount;
     }
 
-    protected SelectorThread createSelectorThread()
+    public int getSelectorCount()
     {
-        return new SelectorThread();
+        return selectorCount;
+    }
+
+    /**
+     *  Creates the selector thread with the specified index.  The
+     *  thread at index 0 accepts connections for the whole kernel.
+     */
+    protected SelectorThread createSelectorThread( int index )
+    {
+        return new SelectorThread( index );
     }
 
     public void initialize()
     {
-        if( thread != null )
+        if( threads != null )
             throw new IllegalStateException( "Kernel already initialized." );
 
-        thread = createSelectorThread();
+        threads = new SelectorThread[selectorCount];
+        for( int i = 0; i < selectorCount; i++ ) {
+            threads[i] = createSelectorThread(i);
+        }
 
         try {
-            thread.connect();
-            thread.start();
+            for( SelectorThread t : threads ) {
+                t.connect();
+            }
+            for( SelectorThread t : threads ) {
+                t.start();
+            }
         } catch( IOException e ) {
             throw new KernelException( "Error hosting:" + address, e );
         }
@@ -100,12 +148,14 @@ public class SelectorKernel extends AbstractKernel
 
     public void terminate() throws InterruptedException
     {
-        if( thread == null )
+        if( threads == null )
             throw new IllegalStateException( "Kernel not initialized." );
 
         try {
-            thread.close();
-            thread = null;
+            for( SelectorThread t : threads ) {
+                t.close();
+            }
+            threads = null;
         } catch( IOException e ) {
             throw new KernelException( "Error closing host connection:" + address, e );
         }
@@ -141,13 +191,31 @@ public class SelectorKernel extends AbstractKernel
         wakeupSelector();
     }
 
-    protected NioEndpoint addEndpoint( SocketChannel c )
+    public void broadcast( Filter<? super Endpoint> filter, SharedBuffer data, boolean reliable )
+    {
+        if( !reliable )
+            throw new UnsupportedOperationException( "Unreliable send not supported by this kernel." );
+
+        // Every endpoint queues its own read-only view of the same
+        // bytes and holds a reference until it has written them.
+        for( NioEndpoint p : endpoints.values() ) {
+            if( filter != null && !filter.apply(p) )
+                continue;
+
+            p.send( data, false );
+        }
+
+        wakeupSelector();
+    }
+
+    protected NioEndpoint addEndpoint( SocketChannel c, SelectorThread owner )
     {
         // Note: we purposely do NOT put the key in the endpoint.
         //       SelectionKeys are dangerous outside the selector thread
         //       and this is safer.
         NioEndpoint p = new NioEndpoint( this, nextEndpointId(), c );
 
+        owners.put( p, owner );
         endpoints.put( p.getId(), p );
 
         // Enqueue an endpoint event for the listeners
@@ -159,8 +227,13 @@ public class SelectorKernel extends AbstractKernel
     protected void removeEndpoint( NioEndpoint p, SocketChannel c )
     {
         endpoints.remove( p.getId() );
+        owners.remove( p );
         log.log( Level.FINE, "Endpoints size:{0}", endpoints.size() );
 
+        // Let go of anything it still had queued so shared
+        // buffers can go back to their pool
+        p.clearPending();
+
         // Enqueue an endpoint event for the listeners
         addEvent( EndpointEvent.createRemove( this, p ) );
 
@@ -182,16 +255,42 @@ public class SelectorKernel extends AbstractKernel
     {
         //log.log( Level.FINE, "Closing endpoint:{0}.", p );
             
-        thread.cancel(p);
+        SelectorThread owner = owners.get(p);
+        if( owner == null )
+            return;  // already closed it
+        owner.cancel(p);
     }
 
     /**
-     *  Used internally by the endpoints to wakeup the selector
-     *  when they have data to send.
+     *  Wakes up all of the selectors so they can pick up newly
+     *  queued data.  Used after broadcasts.
      */
     protected void wakeupSelector()
     {
-        thread.wakeupSelector();
+        for( SelectorThread t : threads ) {
+            t.wakeupSelector();
+        }
+    }
+
+    /**
+     *  Used internally by the endpoints to wakeup the selector
+     *  that services them when they have data to send.
+     */
+    protected void wakeupSelector( NioEndpoint p )
+    {
+        SelectorThread owner = owners.get(p);
+        if( owner != null )
+            owner.wakeupSelector();
+    }
+
+    /**
+     *  Picks the selector thread that will service the next
+     *  accepted connection.
+     */
+    protected SelectorThread nextSelectorThread()
+    {
+        int i = (nextThread.getAndIncrement() & Integer.MAX_VALUE) % threads.length;
+        return threads[i];
     }
 
     protected void newData( NioEndpoint p, SocketChannel c, ByteBuffer shared, int size )
@@ -220,10 +319,19 @@ public class SelectorKernel extends AbstractKernel
      */
     protected class SelectorThread extends Thread
     {
+        private int index;
         private ServerSocketChannel serverChannel;
         private Selector selector;
         private AtomicBoolean go = new AtomicBoolean(true);
         private ByteBuffer working = ByteBuffer.allocate( 8192 );
+        private ByteBuffer[] gathered = new ByteBuffer[16];
+
+        /**
+         *  Accepted channels handed to this thread by the accepting
+         *  thread.  Channels can only be registered with a selector
+         *  safely from its own thread.
+         */
+        private ConcurrentLinkedQueue<SocketChannel> registrations = new ConcurrentLinkedQueue<SocketChannel>();
 
         /**
          *  Because we want to keep the keys to ourselves, we'll do
@@ -231,9 +339,10 @@ public class SelectorKernel extends AbstractKernel
          */
         private Map<NioEndpoint,SelectionKey> endpointKeys = new ConcurrentHashMap<NioEndpoint,SelectionKey>();
 
-        public SelectorThread()
+        public SelectorThread( int index )
         {
-            setName( "Selector@" + address );
+            this.index = index;
+            setName( selectorCount == 1 ? "Selector@" + address : "Selector" + index + "@" + address );
             setDaemon(true);
         }
 
@@ -242,6 +351,10 @@ public class SelectorKernel extends AbstractKernel
             // Create a new selector
             this.selector = SelectorProvider.provider().openSelector();
 
+            // Only the first thread hosts the server socket
+            if( index > 0 )
+                return;
+
             // Create a new non-blocking server socket channel
             this.serverChannel = ServerSocketChannel.open();
             serverChannel.configureBlocking(false);
@@ -262,7 +375,8 @@ public class SelectorKernel extends AbstractKernel
             go.set(false);
 
             // Make sure the channel is closed
-            serverChannel.close();
+            if( serverChannel != null )
+                serverChannel.close();
 
             // Force the selector to stop blocking
             wakeupSelector();
@@ -310,16 +424,48 @@ public class SelectorKernel extends AbstractKernel
             Socket sock = remoteChan.socket();
             sock.setTcpNoDelay(true);
 
+            SelectorThread target = nextSelectorThread();
+            if( target == this ) {
+                register( remoteChan );
+            } else {
+                target.registrations.add( remoteChan );
+                target.wakeupSelector();
+            }
+        }
+
+        protected void register( SocketChannel remoteChan ) throws IOException
+        {
             // Let the selector know we're interested in reading
             // data from the channel
             SelectionKey endKey = remoteChan.register( selector, SelectionKey.OP_READ );
 
             // And now create a new endpoint
-            NioEndpoint p = addEndpoint( remoteChan );
+            NioEndpoint p = addEndpoint( remoteChan, this );
             endKey.attach(p);
             endpointKeys.put(p, endKey);
         }
 
+        /**
+         *  Registers any channels handed to us by the accepting
+         *  thread.
+         */
+        protected void registerPending()
+        {
+            SocketChannel c;
+            while( (c = registrations.poll()) != null ) {
+                try {
+                    register( c );
+                } catch( IOException e ) {
+                    reportError( e );
+                    try {
+                        c.close();
+                    } catch( IOException e2 ) {
+                        log.log( Level.FINE, "Error closing unregistered channel", e2 );
+                    }
+                }
+            }
+        }
+
         protected void cancel( NioEndpoint p ) throws IOException
         {
             SelectionKey key = endpointKeys.remove(p);
@@ -394,12 +540,14 @@ public class SelectorKernel extends AbstractKernel
                 return;
             }
 
-            c.write( current );
+            // Write as many of the queued buffers as we can in one
+            // gathering write
+            int count = p.peekPending( gathered );
+            c.write( gathered, 0, count );
+            Arrays.fill( gathered, 0, count, null );
 
-            // If we wrote all of that packet then we need to remove it
-            if( current.remaining() == 0 ) {
-                p.removePending();
-            }
+            // Remove whatever we wrote completely
+            p.removeWritten();
 
             // If we happened to empty the pending queue then let's read
             // again.
@@ -450,6 +598,9 @@ public class SelectorKernel extends AbstractKernel
 
             // An atomic is safest and costs almost nothing
             while( go.get() ) {
+                // Pick up any newly assigned connections
+                registerPending();
+
                 // Setup any queued option changes
                 setupSelectorOptions();
 
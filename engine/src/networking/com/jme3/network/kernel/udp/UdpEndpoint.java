@@ -119,8 +119,17 @@ public class UdpEndpoint implements Endpoint
         
         
         try {
-            DatagramPacket p = new DatagramPacket( data.array(), data.position(), 
-                                                   data.remaining(), address );
+            DatagramPacket p;
+            if( data.hasArray() ) {
+                p = new DatagramPacket( data.array(), data.arrayOffset() + data.position(), 
+                                        data.remaining(), address );
+            } else {
+                // Direct and read-only buffers have to be copied
+                // since the write happens later on the kernel thread
+                byte[] temp = new byte[data.remaining()];
+                data.duplicate().get(temp);
+                p = new DatagramPacket( temp, 0, temp.length, address );
+            }
                                                    
             // Just queue it up for the kernel threads to write
             // out
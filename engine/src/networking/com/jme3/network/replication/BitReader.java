@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.replication;
+
+
+/**
+ *  Reads values written by a BitWriter.
+ *
+ *  @version   $Revision$
+ */
+final class BitReader
+{
+    private byte[] data;
+    private int position;
+    private long pending;
+    private int pendingBits;
+
+    public BitReader( byte[] data )
+    {
+        this.data = data;
+    }
+
+    /**
+     *  Reads 'count' bits, 0 to 32, as the low bits of
+     *  the returned int.
+     */
+    public int readBits( int count )
+    {
+        if( count == 0 )
+            return 0;
+        while( pendingBits < count ) {
+            if( position == data.length )
+                throw new IllegalStateException( "Read past the end of the data." );
+            pending = (pending << 8) | (data[position++] & 0xff);
+            pendingBits += 8;
+        }
+        pendingBits -= count;
+        return (int)((pending >>> pendingBits) & (0xffffffffL >>> (32 - count)));
+    }
+
+    public boolean readBit()
+    {
+        return readBits(1) != 0;
+    }
+
+    public int readVar()
+    {
+        int length = readBits(5);
+        if( length <= 1 )
+            return length;
+        return (1 << (length - 1)) | readBits(length - 1);
+    }
+
+    public int readSignedVar()
+    {
+        int value = readVar();
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.replication;
+
+
+/**
+ *  Packs values of arbitrary bit widths into a growable byte
+ *  array, most significant bit first.
+ *
+ *  @version   $Revision$
+ */
+final class BitWriter
+{
+    private byte[] data;
+    private int size;       // complete bytes written
+    private long pending;   // bits not yet flushed to data
+    private int pendingBits;
+
+    public BitWriter( int initialCapacity )
+    {
+        data = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public void reset()
+    {
+        size = 0;
+        pending = 0;
+        pendingBits = 0;
+    }
+
+    /**
+     *  Writes the low 'count' bits of value, 0 to 32 bits.
+     */
+    public void writeBits( int value, int count )
+    {
+        if( count == 0 )
+            return;
+        pending = (pending << count) | (value & (0xffffffffL >>> (32 - count)));
+        pendingBits += count;
+        while( pendingBits >= 8 ) {
+            pendingBits -= 8;
+            put( (byte)(pending >>> pendingBits) );
+        }
+    }
+
+    public void writeBit( boolean b )
+    {
+        writeBits( b ? 1 : 0, 1 );
+    }
+
+    /**
+     *  Writes a non-negative int using a 5 bit length prefix followed 
+     *  by the significant bits below the highest set bit.  Small values
+     *  take few bits: 0 and 1 take 5 bits, 2 and 3 take 6 and so on.
+     */
+    public void writeVar( int value )
+    {
+        if( value < 0 )
+            throw new IllegalArgumentException( "Value cannot be negative:" + value );
+        int length = 32 - Integer.numberOfLeadingZeros(value);
+        if( length <= 1 ) {
+            writeBits( value, 5 );
+            return;
+        }
+        writeBits( length, 5 );
+        writeBits( value, length - 1 );
+    }
+
+    /**
+     *  Writes a signed int in the range of +/- 2^30 with writeVar()
+     *  after mapping it so that small magnitudes stay small.
+     */
+    public void writeSignedVar( int value )
+    {
+        writeVar( (value << 1) ^ (value >> 31) );
+    }
+
+    private void put( byte b )
+    {
+        if( size == data.length ) {
+            byte[] grown = new byte[data.length * 2];
+            System.arraycopy(data, 0, grown, 0, size);
+            data = grown;
+        }
+        data[size++] = b;
+    }
+
+    /**
+     *  Returns the number of bytes needed for everything written
+     *  so far.
+     */
+    public int getByteCount()
+    {
+        return size + (pendingBits > 0 ? 1 : 0);
+    }
+
+    /**
+     *  Returns a copy of the written bytes, the last one padded
+     *  with zero bits.
+     */
+    public byte[] toByteArray()
+    {
+        byte[] result = new byte[getByteCount()];
+        System.arraycopy(data, 0, result, 0, size);
+        if( pendingBits > 0 )
+            result[size] = (byte)(pending << (8 - pendingBits));
+        return result;
+    }
+}
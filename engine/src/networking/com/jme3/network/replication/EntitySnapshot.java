@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.replication;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+
+
+/**
+ *  An immutable, quantized state of all replicated entities at one
+ *  sequence number.  Entities are kept sorted by ID.  Positions are stored
+ *  as fixed point values in units of the precision.  Rotations are stored
+ *  as "smallest three" packed ints: 2 bits give the index of the largest
+ *  component and 10 bits are used for each of the other three.
+ *
+ *  <p>Both ends compute deltas against the exact same quantized values,
+ *  so a baseline decoded by the client always matches the one the server
+ *  encoded against.</p>
+ *
+ *  @version   $Revision$
+ */
+public final class EntitySnapshot
+{
+    /**
+     *  The largest magnitude of a quantized position component.  Deltas
+     *  between two positions then still fit the signed var encoding.
+     */
+    public static final int MAX_QUANTIZED = 1 << 29;
+
+    private static final int ROTATION_BITS = 10;
+    private static final int ROTATION_MAX = (1 << ROTATION_BITS) - 1;
+    private static final float ROTATION_RANGE = 1f / FastMath.sqrt(2);
+
+    private int sequence;
+    private float precision;
+    private int[] ids;
+    private int[] positions;
+    private int[] rotations;
+
+    EntitySnapshot( int sequence, float precision, int[] ids, int[] positions, int[] rotations )
+    {
+        this.sequence = sequence;
+        this.precision = precision;
+        this.ids = ids;
+        this.positions = positions;
+        this.rotations = rotations;
+    }
+
+    public int getSequence()
+    {
+        return sequence;
+    }
+
+    public float getPrecision()
+    {
+        return precision;
+    }
+
+    public int size()
+    {
+        return ids.length;
+    }
+
+    public int getId( int index )
+    {
+        return ids[index];
+    }
+
+    /**
+     *  Returns the index of the entity with the specified ID or
+     *  a negative value if it is not part of this snapshot.
+     */
+    public int indexOf( int id )
+    {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    public Vector3f getPosition( int index, Vector3f store )
+    {
+        if( store == null )
+            store = new Vector3f();
+        int i = index * 3;
+        return store.set( positions[i] * precision, positions[i + 1] * precision, 
+                          positions[i + 2] * precision );
+    }
+
+    public Quaternion getRotation( int index, Quaternion store )
+    {
+        if( store == null )
+            store = new Quaternion();
+        return unpackRotation( rotations[index], store );
+    }
+
+    /**
+     *  Returns the entities with IDs from firstId to lastId, inclusive,
+     *  as a snapshot with the same sequence.
+     */
+    EntitySnapshot subset( int firstId, int lastId )
+    {
+        int from = indexOf(firstId);
+        if( from < 0 )
+            from = -from - 1;
+        int to = indexOf(lastId);
+        to = to < 0 ? -to - 1 : to + 1;
+        if( from == 0 && to == ids.length )
+            return this;
+
+        int size = to - from;
+        int[] subIds = new int[size];
+        int[] subPositions = new int[size * 3];
+        int[] subRotations = new int[size];
+        System.arraycopy(ids, from, subIds, 0, size);
+        System.arraycopy(positions, from * 3, subPositions, 0, size * 3);
+        System.arraycopy(rotations, from, subRotations, 0, size);
+        return new EntitySnapshot( sequence, precision, subIds, subPositions, subRotations );
+    }
+
+    /**
+     *  Joins snapshots of consecutive ID ranges, given in ID order,
+     *  into one.
+     */
+    static EntitySnapshot concat( int sequence, float precision, EntitySnapshot[] parts )
+    {
+        int size = 0;
+        for( EntitySnapshot part : parts ) {
+            size += part.ids.length;
+        }
+        int[] ids = new int[size];
+        int[] positions = new int[size * 3];
+        int[] rotations = new int[size];
+        int n = 0;
+        for( EntitySnapshot part : parts ) {
+            int count = part.ids.length;
+            System.arraycopy(part.ids, 0, ids, n, count);
+            System.arraycopy(part.positions, 0, positions, n * 3, count * 3);
+            System.arraycopy(part.rotations, 0, rotations, n, count);
+            n += count;
+        }
+        return new EntitySnapshot( sequence, precision, ids, positions, rotations );
+    }
+
+    static int quantize( float value, float precision )
+    {
+        int q = Math.round(value / precision);
+        if( q > MAX_QUANTIZED || q < -MAX_QUANTIZED )
+            throw new IllegalArgumentException( "Value out of range for precision " + precision + ":" + value );
+        return q;
+    }
+
+    static int packRotation( Quaternion q )
+    {
+        float x = q.getX(), y = q.getY(), z = q.getZ(), w = q.getW();
+        float length = FastMath.sqrt(x * x + y * y + z * z + w * w);
+        if( length == 0 )
+            return packRotation( Quaternion.IDENTITY );
+
+        // Find the largest component, it is rebuilt from the others
+        float[] c = { x / length, y / length, z / length, w / length };
+        int largest = 0;
+        for( int i = 1; i < 4; i++ ) {
+            if( Math.abs(c[i]) > Math.abs(c[largest]) )
+                largest = i;
+        }
+
+        // q and -q are the same rotation, flip so the largest is positive
+        float sign = c[largest] < 0 ? -1 : 1;
+        int packed = largest;
+        for( int i = 0; i < 4; i++ ) {
+            if( i == largest )
+                continue;
+            float v = c[i] * sign / ROTATION_RANGE;
+            int bits = Math.round((v * 0.5f + 0.5f) * ROTATION_MAX);
+            packed = (packed << ROTATION_BITS) | Math.max(0, Math.min(ROTATION_MAX, bits));
+        }
+        return packed;
+    }
+
+    static Quaternion unpackRotation( int packed, Quaternion store )
+    {
+        int largest = (packed >>> (ROTATION_BITS * 3)) & 3;
+        float[] c = new float[4];
+        float sum = 0;
+        int shift = ROTATION_BITS * 2;
+        for( int i = 0; i < 4; i++ ) {
+            if( i == largest )
+                continue;
+            int bits = (packed >>> shift) & ROTATION_MAX;
+            shift -= ROTATION_BITS;
+            float v = ((bits / (float)ROTATION_MAX) - 0.5f) * 2f * ROTATION_RANGE;
+            c[i] = v;
+            sum += v * v;
+        }
+        c[largest] = FastMath.sqrt(Math.max(0, 1 - sum));
+        return store.set(c[0], c[1], c[2], c[3]);
+    }
+
+    /**
+     *  Writes this snapshot as a delta against the baseline, or in
+     *  full if the baseline is null.  Entities that have not changed since
+     *  the baseline are not written at all.
+     */
+    void writeDelta( EntitySnapshot baseline, BitWriter out )
+    {
+        int[] baseIds = baseline == null ? new int[0] : baseline.ids;
+
+        // Removed entities first: IDs in the baseline that are gone now,
+        // written as gaps from the previous one
+        int removed = 0;
+        for( int i = 0; i < baseIds.length; i++ ) {
+            if( indexOf(baseIds[i]) < 0 )
+                removed++;
+        }
+        out.writeVar(removed);
+        int last = -1;
+        for( int i = 0; i < baseIds.length; i++ ) {
+            if( indexOf(baseIds[i]) < 0 ) {
+                out.writeVar(baseIds[i] - last - 1);
+                last = baseIds[i];
+            }
+        }
+
+        // Then the entities that are new or have changed
+        int[] baseIndex = new int[ids.length];
+        int updated = 0;
+        for( int i = 0; i < ids.length; i++ ) {
+            int b = baseline == null ? -1 : baseline.indexOf(ids[i]);
+            baseIndex[i] = b;
+            if( b < 0 || positionChanged(i, baseline, b) || rotations[i] != baseline.rotations[b] )
+                updated++;
+        }
+        out.writeVar(updated);
+        last = -1;
+        for( int i = 0; i < ids.length; i++ ) {
+            int b = baseIndex[i];
+            boolean moved = b < 0 || positionChanged(i, baseline, b);
+            boolean turned = b < 0 || rotations[i] != baseline.rotations[b];
+            if( !moved && !turned )
+                continue;
+
+            out.writeVar(ids[i] - last - 1);
+            last = ids[i];
+
+            if( b < 0 ) {
+                for( int k = 0; k < 3; k++ ) {
+                    out.writeSignedVar(positions[i * 3 + k]);
+                }
+                out.writeBits(rotations[i], 32);
+                continue;
+            }
+
+            out.writeBit(moved);
+            if( moved ) {
+                for( int k = 0; k < 3; k++ ) {
+                    out.writeSignedVar(positions[i * 3 + k] - baseline.positions[b * 3 + k]);
+                }
+            }
+            out.writeBit(turned);
+            if( turned ) {
+                out.writeBits(rotations[i], 32);
+            }
+        }
+    }
+
+    private boolean positionChanged( int i, EntitySnapshot baseline, int b )
+    {
+        return positions[i * 3] != baseline.positions[b * 3]
+            || positions[i * 3 + 1] != baseline.positions[b * 3 + 1]
+            || positions[i * 3 + 2] != baseline.positions[b * 3 + 2];
+    }
+
+    /**
+     *  Reads a snapshot written by writeDelta() against the same
+     *  baseline.
+     */
+    static EntitySnapshot readDelta( int sequence, float precision, EntitySnapshot baseline, 
+                                     BitReader in )
+    {
+        int[] baseIds = baseline == null ? new int[0] : baseline.ids;
+
+        int removedCount = in.readVar();
+        int[] removed = new int[removedCount];
+        int last = -1;
+        for( int i = 0; i < removedCount; i++ ) {
+            last += in.readVar() + 1;
+            removed[i] = last;
+        }
+
+        int updatedCount = in.readVar();
+        int[] updatedIds = new int[updatedCount];
+        int[] updatedPositions = new int[updatedCount * 3];
+        int[] updatedRotations = new int[updatedCount];
+        last = -1;
+        for( int i = 0; i < updatedCount; i++ ) {
+            last += in.readVar() + 1;
+            updatedIds[i] = last;
+            int b = baseline == null ? -1 : baseline.indexOf(last);
+            if( b < 0 ) {
+                for( int k = 0; k < 3; k++ ) {
+                    updatedPositions[i * 3 + k] = in.readSignedVar();
+                }
+                updatedRotations[i] = in.readBits(32);
+                continue;
+            }
+
+            if( in.readBit() ) {
+                for( int k = 0; k < 3; k++ ) {
+                    updatedPositions[i * 3 + k] = baseline.positions[b * 3 + k] + in.readSignedVar();
+                }
+            } else {
+                System.arraycopy(baseline.positions, b * 3, updatedPositions, i * 3, 3);
+            }
+            updatedRotations[i] = in.readBit() ? in.readBits(32) : baseline.rotations[b];
+        }
+
+        // Merge the surviving baseline entities with the updated ones,
+        // both are sorted by ID
+        int size = baseIds.length - removedCount;
+        for( int i = 0; i < updatedCount; i++ ) {
+            if( baseline == null || baseline.indexOf(updatedIds[i]) < 0 )
+                size++;
+        }
+        int[] ids = new int[size];
+        int[] positions = new int[size * 3];
+        int[] rotations = new int[size];
+        int b = 0, u = 0, r = 0;
+        for( int i = 0; i < size; i++ ) {
+            // Skip removed baseline entries
+            while( b < baseIds.length && r < removedCount && baseIds[b] == removed[r] ) {
+                b++;
+                r++;
+            }
+            boolean takeUpdate = u < updatedCount 
+                                 && (b >= baseIds.length || updatedIds[u] <= baseIds[b]);
+            if( takeUpdate ) {
+                if( b < baseIds.length && updatedIds[u] == baseIds[b] )
+                    b++;
+                ids[i] = updatedIds[u];
+                System.arraycopy(updatedPositions, u * 3, positions, i * 3, 3);
+                rotations[i] = updatedRotations[u];
+                u++;
+            } else {
+                ids[i] = baseIds[b];
+                System.arraycopy(baseline.positions, b * 3, positions, i * 3, 3);
+                rotations[i] = baseline.rotations[b];
+                b++;
+            }
+        }
+        return new EntitySnapshot( sequence, precision, ids, positions, rotations );
+    }
+
+    public String toString()
+    {
+        return "EntitySnapshot[sequence=" + sequence + ", entities=" + ids.length + "]";
+    }
+}
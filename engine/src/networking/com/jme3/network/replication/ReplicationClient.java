@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.replication;
+
+import com.jme3.network.Client;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Receives snapshot deltas from a ReplicationServer, rebuilds the
+ *  full snapshots from them and acknowledges each one it decodes.
+ *
+ *  <p>Snapshots arrive on the networking thread.  getSnapshot() can be
+ *  called from any thread and returns the newest one.  Snapshots are
+ *  immutable.  A snapshot split into several parts is complete once
+ *  all of them have arrived.  Parts that arrive after a newer snapshot,
+ *  or whose baseline is no longer known, are dropped.  The server only
+ *  encodes against acknowledged snapshots, so no data is lost by
+ *  dropping them.</p>
+ *
+ *  @version   $Revision$
+ */
+public class ReplicationClient
+{
+    /**
+     *  The number of decoded snapshots kept as baselines.  Must be at
+     *  least as large as the server's history.
+     */
+    public static final int HISTORY = ReplicationServer.HISTORY;
+
+    private Client client;
+    private Handler handler = new Handler();
+    private EntitySnapshot[] history = new EntitySnapshot[HISTORY];
+    private volatile EntitySnapshot latest;
+    private SnapshotAssembler assembler = new SnapshotAssembler();
+    private AtomicLong dropped = new AtomicLong();
+
+    public ReplicationClient( Client client )
+    {
+        SnapshotDeltaMessage.registerMessages();
+        this.client = client;
+        client.addMessageListener(handler, SnapshotDeltaMessage.class);
+    }
+
+    public void close()
+    {
+        client.removeMessageListener(handler, SnapshotDeltaMessage.class);
+    }
+
+    /**
+     *  Returns the newest decoded snapshot or null if none has
+     *  been received yet.
+     */
+    public EntitySnapshot getSnapshot()
+    {
+        return latest;
+    }
+
+    /**
+     *  Returns the number of delta parts that were dropped because
+     *  they were stale or their baseline was unknown.
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    protected synchronized void deltaReceived( SnapshotDeltaMessage msg )
+    {
+        EntitySnapshot current = latest;
+        if( current != null && msg.getSequence() <= current.getSequence() 
+            || msg.getSequence() < assembler.getSequence() ) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        EntitySnapshot baseline = null;
+        if( msg.getBaseline() >= 0 ) {
+            baseline = history[msg.getBaseline() % HISTORY];
+            if( baseline == null || baseline.getSequence() != msg.getBaseline() ) {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+
+        EntitySnapshot snapshot = assembler.add(msg, baseline);
+        if( snapshot == null )
+            return;
+        history[snapshot.getSequence() % HISTORY] = snapshot;
+        latest = snapshot;
+
+        client.send( new SnapshotAckMessage(snapshot.getSequence()) );
+    }
+
+    private class Handler implements MessageListener<Client>
+    {
+        public void messageReceived( Client source, Message m )
+        {
+            deltaReceived( (SnapshotDeltaMessage)m );
+        }
+    }
+}
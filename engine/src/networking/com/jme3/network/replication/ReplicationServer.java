@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.replication;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.ConnectionListener;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Server;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Replicates entity transforms to all connected clients as deltas
+ *  against the last snapshot each client has acknowledged.
+ *
+ *  <p>The game updates entities with setEntity()/removeEntity() and calls
+ *  sendUpdates() once per tick.  Each call takes a quantized snapshot.
+ *  For every client it sends only what changed since that client's last
+ *  acknowledged snapshot, bit-packed, over the unreliable channel.  Lost
+ *  packets need no resending.  The next delta is simply computed against
+ *  an older, acknowledged baseline.  Clients with no usable baseline get a
+ *  full snapshot.  Clients that share a baseline share the encoded bytes.
+ *  Deltas too large for one datagram are split by entity ID into parts
+ *  that each fit.</p>
+ *
+ *  <p>Positions are quantized to multiples of the precision passed to
+ *  the constructor and rotations to about 10 bits per component.</p>
+ *
+ *  <p>setEntity(), removeEntity() and sendUpdates() are meant to be called
+ *  from a single game thread.</p>
+ *
+ *  @version   $Revision$
+ */
+public class ReplicationServer
+{
+    /**
+     *  The number of past snapshots kept as possible baselines.
+     *  Must not be larger than the client's history.
+     */
+    public static final int HISTORY = 64;
+
+    private Server server;
+    private float precision;
+    private Handler handler = new Handler();
+
+    private TreeMap<Integer, int[]> entities = new TreeMap<Integer, int[]>();
+    private EntitySnapshot[] history = new EntitySnapshot[HISTORY];
+    private int nextSequence = 0;
+    private Map<HostedConnection, ClientState> clients = new ConcurrentHashMap<HostedConnection, ClientState>();
+    private BitWriter writer = new BitWriter(1024);
+    private AtomicLong bytesSent = new AtomicLong();
+    private AtomicLong messagesSent = new AtomicLong();
+
+    public ReplicationServer( Server server, float precision )
+    {
+        if( precision <= 0 )
+            throw new IllegalArgumentException( "Precision must be positive:" + precision );
+        SnapshotDeltaMessage.registerMessages();
+
+        this.server = server;
+        this.precision = precision;
+        server.addConnectionListener(handler);
+        server.addMessageListener(handler, SnapshotAckMessage.class);
+
+        // Pick up anyone that connected before we were created
+        for( HostedConnection conn : server.getConnections() ) {
+            clients.put(conn, new ClientState());
+        }
+    }
+
+    /**
+     *  Stops replicating and removes the listeners from the server.
+     */
+    public void close()
+    {
+        server.removeConnectionListener(handler);
+        server.removeMessageListener(handler, SnapshotAckMessage.class);
+        clients.clear();
+    }
+
+    public float getPrecision()
+    {
+        return precision;
+    }
+
+    /**
+     *  Sets the transform of the entity with the specified non-negative
+     *  ID, adding it if needed.  The change goes out with the next
+     *  sendUpdates().
+     */
+    public void setEntity( int id, Vector3f position, Quaternion rotation )
+    {
+        if( id < 0 )
+            throw new IllegalArgumentException( "Entity ID cannot be negative:" + id );
+        int[] state = entities.get(id);
+        if( state == null ) {
+            state = new int[4];
+            entities.put(id, state);
+        }
+        state[0] = EntitySnapshot.quantize(position.x, precision);
+        state[1] = EntitySnapshot.quantize(position.y, precision);
+        state[2] = EntitySnapshot.quantize(position.z, precision);
+        state[3] = EntitySnapshot.packRotation(rotation);
+    }
+
+    public void removeEntity( int id )
+    {
+        entities.remove(id);
+    }
+
+    public int getEntityCount()
+    {
+        return entities.size();
+    }
+
+    /**
+     *  Takes a snapshot of the current entity states and sends each
+     *  client the delta against its last acknowledged snapshot.
+     *  Returns the new snapshot.
+     */
+    public EntitySnapshot sendUpdates()
+    {
+        EntitySnapshot current = takeSnapshot();
+        history[current.getSequence() % HISTORY] = current;
+
+        // Clients acknowledging the same snapshot get the same messages
+        Map<Integer, SnapshotDeltaMessage[]> encoded = new HashMap<Integer, SnapshotDeltaMessage[]>();
+        for( Map.Entry<HostedConnection, ClientState> e : clients.entrySet() ) {
+            EntitySnapshot baseline = getBaseline( e.getValue().lastAcked, current.getSequence() );
+            int baselineSequence = baseline == null ? -1 : baseline.getSequence();
+
+            SnapshotDeltaMessage[] parts = encoded.get(baselineSequence);
+            if( parts == null ) {
+                parts = encodeDelta(current, baseline, writer);
+                encoded.put(baselineSequence, parts);
+            }
+
+            for( SnapshotDeltaMessage part : parts ) {
+                e.getKey().send(part);
+                bytesSent.addAndGet(part.getData().length);
+                messagesSent.incrementAndGet();
+            }
+        }
+        return current;
+    }
+
+    /**
+     *  Encodes the delta from the baseline, or the full snapshot if it
+     *  is null, as messages whose data fits SnapshotDeltaMessage.MAX_DATA_SIZE.
+     */
+    static SnapshotDeltaMessage[] encodeDelta( EntitySnapshot current, EntitySnapshot baseline, 
+                                               BitWriter writer )
+    {
+        List<int[]> ranges = new ArrayList<int[]>();
+        List<byte[]> data = new ArrayList<byte[]>();
+        encodeRange(current, baseline, 0, Integer.MAX_VALUE, writer, ranges, data);
+
+        int baselineSequence = baseline == null ? -1 : baseline.getSequence();
+        SnapshotDeltaMessage[] parts = new SnapshotDeltaMessage[data.size()];
+        for( int i = 0; i < parts.length; i++ ) {
+            int[] range = ranges.get(i);
+            parts[i] = new SnapshotDeltaMessage(current.getSequence(), baselineSequence, 
+                                                current.getPrecision(), range[0], range[1], 
+                                                i, parts.length, data.get(i));
+        }
+        return parts;
+    }
+
+    private static void encodeRange( EntitySnapshot current, EntitySnapshot baseline, 
+                                     int firstId, int lastId, BitWriter writer, 
+                                     List<int[]> ranges, List<byte[]> data )
+    {
+        current = current.subset(firstId, lastId);
+        baseline = baseline == null ? null : baseline.subset(firstId, lastId);
+        writer.reset();
+        current.writeDelta(baseline, writer);
+        int size = writer.getByteCount();
+        if( size <= SnapshotDeltaMessage.MAX_DATA_SIZE || firstId == lastId ) {
+            ranges.add( new int[] { firstId, lastId } );
+            data.add( writer.toByteArray() );
+            return;
+        }
+
+        // Split into about as many parts as needed with the same number
+        // of entities each, or halve the ID range when it is mostly removals
+        int count = size / SnapshotDeltaMessage.MAX_DATA_SIZE + 1;
+        if( current.size() < count ) {
+            int middle = firstId + (lastId - firstId) / 2;
+            encodeRange(current, baseline, firstId, middle, writer, ranges, data);
+            encodeRange(current, baseline, middle + 1, lastId, writer, ranges, data);
+            return;
+        }
+        int start = firstId;
+        for( int i = 1; i < count; i++ ) {
+            int next = current.getId(current.size() * i / count);
+            encodeRange(current, baseline, start, next - 1, writer, ranges, data);
+            start = next;
+        }
+        encodeRange(current, baseline, start, lastId, writer, ranges, data);
+    }
+
+    protected EntitySnapshot takeSnapshot()
+    {
+        int size = entities.size();
+        int[] ids = new int[size];
+        int[] positions = new int[size * 3];
+        int[] rotations = new int[size];
+        int i = 0;
+        for( Iterator<Map.Entry<Integer, int[]>> it = entities.entrySet().iterator(); it.hasNext(); i++ ) {
+            Map.Entry<Integer, int[]> e = it.next();
+            int[] state = e.getValue();
+            ids[i] = e.getKey();
+            positions[i * 3] = state[0];
+            positions[i * 3 + 1] = state[1];
+            positions[i * 3 + 2] = state[2];
+            rotations[i] = state[3];
+        }
+        return new EntitySnapshot(nextSequence++, precision, ids, positions, rotations);
+    }
+
+    /**
+     *  Returns the snapshot with the acknowledged sequence if it is still
+     *  in the history, else null.
+     */
+    protected EntitySnapshot getBaseline( int acked, int current )
+    {
+        if( acked < 0 || current - acked >= HISTORY )
+            return null;
+        EntitySnapshot s = history[acked % HISTORY];
+        return s != null && s.getSequence() == acked ? s : null;
+    }
+
+    /**
+     *  Returns the total number of delta payload bytes sent,
+     *  not counting message and transport headers.
+     */
+    public long getBytesSent()
+    {
+        return bytesSent.get();
+    }
+
+    /**
+     *  Returns the number of delta messages sent, counting
+     *  each part separately.
+     */
+    public long getMessagesSent()
+    {
+        return messagesSent.get();
+    }
+
+    /**
+     *  Returns the last snapshot sequence acknowledged by the
+     *  connection or -1 if none.
+     */
+    public int getLastAcknowledged( HostedConnection conn )
+    {
+        ClientState state = clients.get(conn);
+        return state == null ? -1 : state.lastAcked;
+    }
+
+    private static class ClientState
+    {
+        volatile int lastAcked = -1;
+    }
+
+    private class Handler implements ConnectionListener, MessageListener<HostedConnection>
+    {
+        public void connectionAdded( Server server, HostedConnection conn )
+        {
+            clients.put(conn, new ClientState());
+        }
+
+        public void connectionRemoved( Server server, HostedConnection conn )
+        {
+            clients.remove(conn);
+        }
+
+        public void messageReceived( HostedConnection source, Message m )
+        {
+            ClientState state = clients.get(source);
+            if( state == null )
+                return;
+            int sequence = ((SnapshotAckMessage)m).getSequence();
+            synchronized( state ) {
+                // Acks can arrive out of order, only ever move forward
+                if( sequence > state.lastAcked )
+                    state.lastAcked = sequence;
+            }
+        }
+    }
+}
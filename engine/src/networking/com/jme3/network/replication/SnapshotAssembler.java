@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.replication;
+
+
+/**
+ *  Puts a snapshot back together from the parts of its delta.  Only
+ *  the newest snapshot is assembled, the parts collected for an older
+ *  one are dropped as soon as a part of a newer one arrives.
+ *
+ *  @version   $Revision$
+ */
+final class SnapshotAssembler
+{
+    private int sequence = -1;
+    private EntitySnapshot[] parts;
+    private int received;
+
+    /**
+     *  Returns the sequence of the snapshot being assembled or
+     *  last assembled, or -1 if none.
+     */
+    public int getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     *  Decodes the part against the baseline the message was encoded
+     *  against and returns the full snapshot once all of its parts are
+     *  in, else null.  The part must not be older than getSequence().
+     */
+    public EntitySnapshot add( SnapshotDeltaMessage msg, EntitySnapshot baseline )
+    {
+        if( msg.getSequence() != sequence ) {
+            sequence = msg.getSequence();
+            parts = new EntitySnapshot[msg.getPartCount()];
+            received = 0;
+        } else if( parts == null || parts[msg.getPart()] != null ) {
+            // Already complete or a duplicate
+            return null;
+        }
+
+        if( baseline != null )
+            baseline = baseline.subset(msg.getFirstId(), msg.getLastId());
+        parts[msg.getPart()] = EntitySnapshot.readDelta( msg.getSequence(), msg.getPrecision(), 
+                                                         baseline, new BitReader(msg.getData()) );
+        if( ++received < parts.length )
+            return null;
+
+        EntitySnapshot snapshot = EntitySnapshot.concat( sequence, msg.getPrecision(), parts );
+        parts = null;
+        return snapshot;
+    }
+}
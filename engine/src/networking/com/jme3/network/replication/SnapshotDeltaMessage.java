@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.replication;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.base.MessageBatcher;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ *  Carries one part of a bit-packed snapshot delta from a
+ *  ReplicationServer to a ReplicationClient over the unreliable channel.
+ *  Each part covers a range of entity IDs and is encoded against the
+ *  same range of the baseline, so it can be decoded on its own.  The
+ *  snapshot is complete once all of its parts have arrived.
+ *
+ *  @version   $Revision$
+ */
+@Serializable
+public class SnapshotDeltaMessage extends AbstractMessage
+{
+    /**
+     *  The bytes the DeltaSerializer writes after the null marker,
+     *  besides the data itself.
+     */
+    private static final int FIELDS_SIZE = 5 * 4 + 3 * 2;
+
+    /**
+     *  The bytes a message takes besides its data: the length and
+     *  class ID written by MessageProtocol, the null marker and
+     *  the fields.
+     */
+    private static final int OVERHEAD = 2 + 2 + 1 + FIELDS_SIZE;
+
+    /**
+     *  The largest data size that still lets the whole message go
+     *  out as one unfragmented datagram.
+     */
+    public static final int MAX_DATA_SIZE = MessageBatcher.MAX_DATAGRAM_SIZE - OVERHEAD;
+
+    private static boolean registered;
+
+    private int sequence;
+    private int baseline;
+    private float precision;
+    private int firstId;
+    private int lastId;
+    private int part;
+    private int partCount;
+    private byte[] data;
+
+    public SnapshotDeltaMessage()
+    {
+        super(false);
+    }
+
+    public SnapshotDeltaMessage( int sequence, int baseline, float precision, int firstId, int lastId,
+                                 int part, int partCount, byte[] data )
+    {
+        super(false);
+        this.sequence = sequence;
+        this.baseline = baseline;
+        this.precision = precision;
+        this.firstId = firstId;
+        this.lastId = lastId;
+        this.part = part;
+        this.partCount = partCount;
+        this.data = data;
+    }
+
+    /**
+     *  Registers the replication messages.  Called by both the
+     *  server and the client side before they are used.
+     */
+    static synchronized void registerMessages()
+    {
+        if( registered )
+            return;
+        registered = true;
+        Serializer.registerClass(SnapshotDeltaMessage.class, new DeltaSerializer());
+        Serializer.registerClass(SnapshotAckMessage.class);
+    }
+
+    public int getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     *  Returns the sequence of the snapshot this delta was encoded
+     *  against, or -1 if it is a full snapshot.
+     */
+    public int getBaseline()
+    {
+        return baseline;
+    }
+
+    public float getPrecision()
+    {
+        return precision;
+    }
+
+    /**
+     *  Returns the first entity ID covered by this part.
+     */
+    public int getFirstId()
+    {
+        return firstId;
+    }
+
+    /**
+     *  Returns the last entity ID covered by this part, inclusive.
+     */
+    public int getLastId()
+    {
+        return lastId;
+    }
+
+    /**
+     *  Returns the index of this part, parts are numbered in
+     *  entity ID order.
+     */
+    public int getPart()
+    {
+        return part;
+    }
+
+    public int getPartCount()
+    {
+        return partCount;
+    }
+
+    public byte[] getData()
+    {
+        return data;
+    }
+
+    public String toString()
+    {
+        return "SnapshotDeltaMessage[sequence=" + sequence + ", baseline=" + baseline 
+                    + ", part=" + part + "/" + partCount + ", ids=" + firstId + "-" + lastId
+                    + ", bytes=" + data.length + "]";
+    }
+
+    /**
+     *  Writes the payload as raw bytes instead of element by
+     *  element like the default array handling would.
+     */
+    public static class DeltaSerializer extends Serializer
+    {
+        @SuppressWarnings("unchecked")
+        public <T> T readObject( ByteBuffer data, Class<T> c ) throws IOException
+        {
+            if( data.get() == 0x0 )
+                return null;
+
+            SnapshotDeltaMessage msg = new SnapshotDeltaMessage();
+            msg.sequence = data.getInt();
+            msg.baseline = data.getInt();
+            msg.precision = data.getFloat();
+            msg.firstId = data.getInt();
+            msg.lastId = data.getInt();
+            msg.part = data.getShort() & 0xffff;
+            msg.partCount = data.getShort() & 0xffff;
+            msg.data = new byte[data.getShort() & 0xffff];
+            data.get(msg.data);
+            return (T)msg;
+        }
+
+        public void writeObject( ByteBuffer buffer, Object object ) throws IOException
+        {
+            buffer.put( (byte)(object != null ? 0x1 : 0x0) );
+            if( object == null )
+                return;
+
+            SnapshotDeltaMessage msg = (SnapshotDeltaMessage)object;
+            if( FIELDS_SIZE + msg.data.length > buffer.remaining() )
+                throw new IOException( "Snapshot delta too large for the message buffer:" + msg.data.length );
+            if( msg.partCount > 0xffff )
+                throw new IOException( "Too many snapshot delta parts:" + msg.partCount );
+            buffer.putInt(msg.sequence);
+            buffer.putInt(msg.baseline);
+            buffer.putFloat(msg.precision);
+            buffer.putInt(msg.firstId);
+            buffer.putInt(msg.lastId);
+            buffer.putShort((short)msg.part);
+            buffer.putShort((short)msg.partCount);
+            buffer.putShort((short)msg.data.length);
+            buffer.put(msg.data);
+        }
+    }
+}
@@ -42,6 +42,12 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,14 +55,22 @@ public class ObjectStore {
 
     private static final Logger logger = Logger.getLogger(ObjectStore.class.getName());
 
-    private static final class Invocation {
+    /**
+     * The most calls or return values sent in one
+     * {@link RemoteMethodBatchMessage}.  Larger batches are split.
+     */
+    public static final int MAX_BATCH_SIZE = 128;
 
-        Object retVal;
-        boolean available = false;
+    private static final class PendingLookup {
 
-        @Override
-        public String toString(){
-            return "Invocation[" + retVal + "]";
+        String name;
+        Class<?> type;
+        RmiFuture<?> future;
+
+        PendingLookup(String name, Class<?> type, RmiFuture<?> future){
+            this.name = name;
+            this.type = type;
+            this.future = future;
         }
     }
 
@@ -69,11 +83,16 @@ public class ObjectStore {
     // Local object ID counter
     private volatile short objectIdCounter = 0;
     
-    // Local invocation ID counter
-    private volatile short invocationIdCounter = 0;
+    // Local invocation ID counter, guarded by pendingInvocations
+    private short invocationIdCounter = 0;
+
+    // Invocations waiting for their return value, guarded by itself
+    private IntMap<RmiFuture<Object>> pendingInvocations = new IntMap<RmiFuture<Object>>();
 
-    // Invocations waiting ..
-    private IntMap<Invocation> pendingInvocations = new IntMap<Invocation>();
+    // Calls collected since beginBatch() on the calling thread, by
+    // the connection they go to (null on the client)
+    private ThreadLocal<Map<HostedConnection, List<Message>>> batches
+            = new ThreadLocal<Map<HostedConnection, List<Message>>>();
     
     // Objects I share with other people
     private IntMap<LocalObject> localObjects = new IntMap<LocalObject>();
@@ -84,6 +103,9 @@ public class ObjectStore {
 
     private final Object receiveObjectLock = new Object();
 
+    // Lookups waiting for an object to be exposed, guarded by receiveObjectLock
+    private List<PendingLookup> pendingLookups = new ArrayList<PendingLookup>();
+
     public class ServerEventHandler implements MessageListener<HostedConnection>,
                                                       ConnectionListener {
 
@@ -96,6 +118,7 @@ public class ObjectStore {
         }
 
         public void connectionRemoved(Server server, HostedConnection conn) {
+            failInvocations(conn);
         }
         
     } 
@@ -112,6 +135,7 @@ public class ObjectStore {
         }
 
         public void clientDisconnected(Client c, DisconnectInfo info) {
+            failInvocations(null);
         }
         
     }
@@ -121,6 +145,7 @@ public class ObjectStore {
         Serializer.registerClass(RemoteObjectDefMessage.class, s);
         Serializer.registerClass(RemoteMethodCallMessage.class, s);
         Serializer.registerClass(RemoteMethodReturnMessage.class, s);
+        Serializer.registerClass(RemoteMethodBatchMessage.class, s);
     }
 
     public ObjectStore(Client client) {
@@ -128,7 +153,8 @@ public class ObjectStore {
         client.addMessageListener(clientEventHandler, 
                 RemoteObjectDefMessage.class,
                 RemoteMethodCallMessage.class,
-                RemoteMethodReturnMessage.class);
+                RemoteMethodReturnMessage.class,
+                RemoteMethodBatchMessage.class);
         client.addClientStateListener(clientEventHandler);
     }
 
@@ -137,7 +163,8 @@ public class ObjectStore {
         server.addMessageListener(serverEventHandler, 
                 RemoteObjectDefMessage.class,
                 RemoteMethodCallMessage.class,
-                RemoteMethodReturnMessage.class);
+                RemoteMethodReturnMessage.class,
+                RemoteMethodBatchMessage.class);
         server.addConnectionListener(serverEventHandler);
     }
 
@@ -181,70 +208,264 @@ public class ObjectStore {
         }
     }
 
+    /**
+     * Returns a proxy for the remote object with the given name.
+     * <p>
+     * Proxy methods declared to return a {@link Future} do not block,
+     * they return an {@link RmiFuture} right after the call is sent.
+     * Such an interface can mirror the remote one with
+     * <code>Future&lt;Integer&gt; add(int a, int b)</code> in place of
+     * <code>int add(int a, int b)</code>.  Any number of these calls can
+     * be in flight over one connection.  All other methods block until
+     * the remote side returns.
+     */
     public <T> T getExposedObject(String name, Class<T> type, boolean waitFor) throws InterruptedException{
-        RemoteObject ro = remoteObjects.get(name);
-        if (ro == null){
-            if (!waitFor)
-                throw new RuntimeException("Cannot find remote object named: " + name);
-            else{
-                do {
-                    synchronized (receiveObjectLock){
-                        receiveObjectLock.wait();
-                    }
-                } while ( (ro = remoteObjects.get(name)) == null );
+        RemoteObject ro;
+        synchronized (receiveObjectLock){
+            ro = remoteObjects.get(name);
+            if (ro == null){
+                if (!waitFor)
+                    throw new RuntimeException("Cannot find remote object named: " + name);
+                
+                while ( (ro = remoteObjects.get(name)) == null ){
+                    receiveObjectLock.wait();
+                }
             }
         }
-            
+        return createProxy(ro, type);
+    }
+
+    /**
+     * Returns a future for the proxy of the remote object with the given
+     * name that completes once the object has been exposed, without
+     * blocking the calling thread.
+     * 
+     * @see #getExposedObject(java.lang.String, java.lang.Class, boolean) 
+     */
+    public <T> RmiFuture<T> getExposedObjectLater(String name, Class<T> type){
+        RmiFuture<T> result = new RmiFuture<T>();
+        RemoteObject ro;
+        synchronized (receiveObjectLock){
+            ro = remoteObjects.get(name);
+            if (ro == null){
+                pendingLookups.add(new PendingLookup(name, type, result));
+                return result;
+            }
+        }
+        result.complete(createProxy(ro, type));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T createProxy(RemoteObject ro, Class<T> type){
         Object proxy = Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ type }, ro);
         ro.loadMethods(type);
         return (T) proxy;
     }
 
+    /**
+     * Starts collecting the remote calls made by the current thread so
+     * that {@link #sendBatch() } sends them together in one message.
+     * Only calls that do not block, to methods that return
+     * void or a {@link Future}, can be made while a batch is open.
+     */
+    public void beginBatch(){
+        if (batches.get() != null)
+            throw new IllegalStateException("A batch has already been started on this thread.");
+        batches.set(new LinkedHashMap<HostedConnection, List<Message>>());
+    }
+
+    /**
+     * Sends the calls collected since {@link #beginBatch() }, one
+     * message per connection.
+     */
+    public void sendBatch(){
+        Map<HostedConnection, List<Message>> batch = batches.get();
+        if (batch == null)
+            throw new IllegalStateException("No batch has been started on this thread.");
+        batches.remove();
+
+        for (Map.Entry<HostedConnection, List<Message>> e : batch.entrySet()){
+            sendAll(e.getKey(), e.getValue());
+        }
+    }
+
+    private void send(HostedConnection target, Message message){
+        if (server != null){
+            target.send(message);
+            logger.log(Level.FINE, "Server: Sending {0}", message);
+        }else{
+            client.send(message);
+            logger.log(Level.FINE, "Client: Sending {0}", message);
+        }
+    }
+
+    private void sendAll(HostedConnection target, List<Message> messages){
+        int size = messages.size();
+        for (int start = 0; start < size; start += MAX_BATCH_SIZE){
+            int end = Math.min(size, start + MAX_BATCH_SIZE);
+            if (end - start == 1){
+                send(target, messages.get(start));
+            }else{
+                RemoteMethodBatchMessage batch = new RemoteMethodBatchMessage();
+                batch.messages = messages.subList(start, end).toArray(new Message[end - start]);
+                send(target, batch);
+            }
+        }
+    }
+
+    private RmiFuture<Object> createInvocation(HostedConnection target){
+        synchronized (pendingInvocations){
+            if (pendingInvocations.size() >= 0xffff)
+                throw new IllegalStateException("Too many remote invocations in progress.");
+
+            // Skip 0, which marks calls without a return value, and
+            // any ID that is still in use after wrapping around
+            do {
+                invocationIdCounter++;
+            } while (invocationIdCounter == 0 || pendingInvocations.containsKey(invocationIdCounter));
+
+            RmiFuture<Object> invoke = new RmiFuture<Object>(this, invocationIdCounter, target);
+            pendingInvocations.put(invocationIdCounter, invoke);
+            return invoke;
+        }
+    }
+
+    void removeInvocation(RmiFuture<?> invoke){
+        synchronized (pendingInvocations){
+            if (pendingInvocations.get(invoke.invocationId) == invoke)
+                pendingInvocations.remove(invoke.invocationId);
+        }
+    }
+
+    private void failInvocations(HostedConnection target){
+        List<RmiFuture<Object>> failed = new ArrayList<RmiFuture<Object>>();
+        synchronized (pendingInvocations){
+            for (Entry<RmiFuture<Object>> entry : pendingInvocations){
+                if (entry.getValue().target == target)
+                    failed.add(entry.getValue());
+            }
+            for (RmiFuture<Object> invoke : failed){
+                pendingInvocations.remove(invoke.invocationId);
+            }
+        }
+        for (RmiFuture<Object> invoke : failed){
+            invoke.fail(new IOException("Connection closed before the remote method returned."));
+        }
+    }
+
     Object invokeRemoteMethod(RemoteObject remoteObj, Method method, Object[] args){
         Integer methodIdInt = remoteObj.methodMap.get(method);
         if (methodIdInt == null)
              throw new RuntimeException("Method not implemented by remote object owner: "+method);
 
-        boolean needReturn = method.getReturnType() != void.class;
         short objectId = remoteObj.objectId;
         short methodId = methodIdInt.shortValue();
+
+        // Methods returning a Future return right away and the remote
+        // definition tells whether a return value will come back
+        Class<?> returnType = method.getReturnType();
+        boolean async = Future.class.isAssignableFrom(returnType)
+                     && returnType.isAssignableFrom(RmiFuture.class);
+        boolean needReturn = async ? remoteObj.methodDefs[methodId].retType != void.class
+                                   : returnType != void.class;
+
+        Map<HostedConnection, List<Message>> batch = batches.get();
+        if (batch != null && needReturn && !async)
+            throw new IllegalStateException("Blocking remote calls cannot be batched: " + method);
+
         RemoteMethodCallMessage call = new RemoteMethodCallMessage();
         call.methodId = methodId;
         call.objectId = objectId;
         call.args = args;
 
-        Invocation invoke = null;
+        RmiFuture<Object> invoke = null;
         if (needReturn){
-            call.invocationId = invocationIdCounter++;
-            invoke = new Invocation();
-            // Note: could cause threading issues if used from multiple threads
-            pendingInvocations.put(call.invocationId, invoke);
+            invoke = createInvocation(remoteObj.client);
+            call.invocationId = invoke.invocationId;
         }
 
-        if (server != null){
-            remoteObj.client.send(call);
-            logger.log(Level.FINE, "Server: Sending {0}", call);
+        if (batch != null){
+            List<Message> calls = batch.get(remoteObj.client);
+            if (calls == null){
+                calls = new ArrayList<Message>();
+                batch.put(remoteObj.client, calls);
+            }
+            calls.add(call);
         }else{
-            client.send(call);
-            logger.log(Level.FINE, "Client: Sending {0}", call);
+            send(remoteObj.client, call);
         }
-       
-        if (invoke != null){
-            synchronized(invoke){
-                while (!invoke.available){
-                    try {
-                        invoke.wait();
-                    } catch (InterruptedException ex){
-                        ex.printStackTrace();
-                    }
+
+        if (async){
+            if (invoke == null){
+                invoke = new RmiFuture<Object>();
+                invoke.complete(null);
+            }
+            return invoke;
+        }else if (invoke == null){
+            return null;
+        }
+
+        boolean interrupted = false;
+        try {
+            while (true){
+                try {
+                    return invoke.get();
+                } catch (InterruptedException ex){
+                    // Keep waiting like before but let the
+                    // caller know about it afterwards
+                    interrupted = true;
+                } catch (ExecutionException ex){
+                    throw new RuntimeException("Remote invocation failed: " + method, ex.getCause());
                 }
             }
-            // Note: could cause threading issues if used from multiple threads
-            pendingInvocations.remove(call.invocationId);
-            return invoke.retVal;
-        }else{
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private RemoteMethodReturnMessage invokeLocalMethod(RemoteMethodCallMessage call){
+        LocalObject localObj = localObjects.get(call.objectId);
+        if (localObj == null)
+            return null;
+
+        if (call.methodId < 0 || call.methodId >= localObj.methods.length)
             return null;
+
+        Object obj = localObj.theObject;
+        Method method = localObj.methods[call.methodId];
+        Object[] args = call.args;
+        Object ret = null;
+        try {
+            ret = method.invoke(obj, args);
+        } catch (IllegalAccessException ex){
+            logger.log(Level.WARNING, "RMI: Error accessing method", ex);
+        } catch (IllegalArgumentException ex){
+            logger.log(Level.WARNING, "RMI: Invalid arguments", ex);
+        } catch (InvocationTargetException ex){
+            logger.log(Level.WARNING, "RMI: Invocation exception", ex);
         }
+
+        if (method.getReturnType() == void.class)
+            return null;
+
+        RemoteMethodReturnMessage retMsg = new RemoteMethodReturnMessage();
+        retMsg.invocationID = call.invocationId;
+        retMsg.retVal = ret;
+        return retMsg;
+    }
+
+    private void completeInvocation(RemoteMethodReturnMessage retMsg){
+        RmiFuture<Object> invoke;
+        synchronized (pendingInvocations){
+            invoke = pendingInvocations.remove(retMsg.invocationID);
+        }
+        if (invoke == null){
+            logger.log(Level.WARNING, "Cannot find invocation ID: {0}", retMsg.invocationID);
+            return;
+        }
+        invoke.complete(retMsg.retVal);
     }
 
     private void onMessage(HostedConnection source, Message message) {
@@ -255,66 +476,52 @@ public class ObjectStore {
             RemoteObjectDefMessage defMsg = (RemoteObjectDefMessage) message;
 
             ObjectDef[] defs = defMsg.objects;
-            for (ObjectDef def : defs){
-                RemoteObject remoteObject = new RemoteObject(this, source);
-                remoteObject.objectId = (short)def.objectId;
-                remoteObject.methodDefs = def.methodDefs;
-                remoteObjects.put(def.objectName, remoteObject);
-                remoteObjectsById.put(def.objectId, remoteObject);
-            }
-            
+            List<PendingLookup> found = new ArrayList<PendingLookup>();
             synchronized (receiveObjectLock){
+                for (ObjectDef def : defs){
+                    RemoteObject remoteObject = new RemoteObject(this, source);
+                    remoteObject.objectId = (short)def.objectId;
+                    remoteObject.methodDefs = def.methodDefs;
+                    remoteObjects.put(def.objectName, remoteObject);
+                    remoteObjectsById.put(def.objectId, remoteObject);
+                }
+                for (Iterator<PendingLookup> it = pendingLookups.iterator(); it.hasNext(); ){
+                    PendingLookup lookup = it.next();
+                    if (remoteObjects.containsKey(lookup.name)){
+                        found.add(lookup);
+                        it.remove();
+                    }
+                }
                 receiveObjectLock.notifyAll();
             }
-        }else if (message instanceof RemoteMethodCallMessage){
-            RemoteMethodCallMessage call = (RemoteMethodCallMessage) message;
-            LocalObject localObj = localObjects.get(call.objectId);
-            if (localObj == null)
-                return;
-
-            if (call.methodId < 0 || call.methodId >= localObj.methods.length)
-                return;
-
-            Object obj = localObj.theObject;
-            Method method = localObj.methods[call.methodId];
-            Object[] args = call.args;
-            Object ret = null;
-            try {
-                ret = method.invoke(obj, args);
-            } catch (IllegalAccessException ex){
-                logger.log(Level.WARNING, "RMI: Error accessing method", ex);
-            } catch (IllegalArgumentException ex){
-                logger.log(Level.WARNING, "RMI: Invalid arguments", ex);
-            } catch (InvocationTargetException ex){
-                logger.log(Level.WARNING, "RMI: Invocation exception", ex);
-            }
 
-            if (method.getReturnType() != void.class){
+            for (PendingLookup lookup : found){
+                RemoteObject ro = remoteObjects.get(lookup.name);
+                lookup.future.complete(createProxy(ro, lookup.type));
+            }
+        }else if (message instanceof RemoteMethodCallMessage){
+            RemoteMethodReturnMessage retMsg = invokeLocalMethod((RemoteMethodCallMessage) message);
+            if (retMsg != null){
                 // send return value back
-                RemoteMethodReturnMessage retMsg = new RemoteMethodReturnMessage();
-                retMsg.invocationID = call.invocationId;
-                retMsg.retVal = ret;
-                if (server != null){
-                    source.send(retMsg);
-                    logger.log(Level.FINE, "Server: Sending {0}", retMsg);
-                } else{
-                    client.send(retMsg);
-                    logger.log(Level.FINE, "Client: Sending {0}", retMsg);
-                }
+                send(source, retMsg);
             }
         }else if (message instanceof RemoteMethodReturnMessage){
-            RemoteMethodReturnMessage retMsg = (RemoteMethodReturnMessage) message;
-            Invocation invoke = pendingInvocations.get(retMsg.invocationID);
-            if (invoke == null){
-                logger.log(Level.WARNING, "Cannot find invocation ID: {0}", retMsg.invocationID);
-                return;
-            }
-
-            synchronized (invoke){
-                invoke.retVal = retMsg.retVal;
-                invoke.available = true;
-                invoke.notifyAll();
+            completeInvocation((RemoteMethodReturnMessage) message);
+        }else if (message instanceof RemoteMethodBatchMessage){
+            // Run the calls in order and send all of their
+            // return values back together
+            List<Message> returns = new ArrayList<Message>();
+            for (Message m : ((RemoteMethodBatchMessage) message).messages){
+                if (m instanceof RemoteMethodCallMessage){
+                    RemoteMethodReturnMessage retMsg = invokeLocalMethod((RemoteMethodCallMessage) m);
+                    if (retMsg != null)
+                        returns.add(retMsg);
+                }else{
+                    completeInvocation((RemoteMethodReturnMessage) m);
+                }
             }
+            if (!returns.isEmpty())
+                sendAll(source, returns);
         }
     }
 
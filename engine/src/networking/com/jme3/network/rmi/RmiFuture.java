@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.rmi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending result of a remote method invocation.  Proxies return
+ * one from any interface method declared to return {@link Future},
+ * without waiting for the remote side to answer.
+ * <p>
+ * Results arrive on the network thread, so listeners are called
+ * from it and should hand any real work off to another thread
+ * (for example with Application.enqueue()).  Code on the render
+ * thread can also just poll {@link #isDone() }.
+ *
+ * @param <T> The type of the remote method's return value.
+ */
+public class RmiFuture<T> implements Future<T> {
+
+    /**
+     * Notified once the future is done, whether it completed,
+     * failed or was cancelled.
+     */
+    public static interface Listener<T> {
+        public void completed(RmiFuture<T> future);
+    }
+
+    private ObjectStore store;
+    short invocationId;
+    Object target;
+
+    private boolean done = false;
+    private boolean cancelled = false;
+    private T value;
+    private Throwable error;
+    private List<Listener<T>> listeners;
+
+    RmiFuture(){
+    }
+
+    RmiFuture(ObjectStore store, short invocationId, Object target){
+        this.store = store;
+        this.invocationId = invocationId;
+        this.target = target;
+    }
+
+    public synchronized boolean isDone(){
+        return done;
+    }
+
+    public synchronized boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Stops waiting for the result.  The remote method may still run
+     * but its return value is ignored.
+     */
+    public boolean cancel(boolean mayInterruptIfRunning){
+        synchronized (this){
+            if (done)
+                return false;
+            cancelled = true;
+            done = true;
+            notifyAll();
+        }
+        if (store != null)
+            store.removeInvocation(this);
+        fireCompleted();
+        return true;
+    }
+
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done){
+            wait();
+        }
+        return report();
+    }
+
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        while (!done){
+            long remaining = end - System.nanoTime();
+            if (remaining <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    /**
+     * Adds a listener that is called when the future is done, or
+     * right away if it already is.
+     */
+    public void addListener(Listener<T> listener){
+        synchronized (this){
+            if (!done){
+                if (listeners == null)
+                    listeners = new ArrayList<Listener<T>>(1);
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.completed(this);
+    }
+
+    private T report() throws ExecutionException {
+        if (cancelled)
+            throw new CancellationException();
+        if (error != null)
+            throw new ExecutionException(error);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    void complete(Object value){
+        synchronized (this){
+            if (done)
+                return;
+            this.value = (T) value;
+            done = true;
+            notifyAll();
+        }
+        fireCompleted();
+    }
+
+    void fail(Throwable error){
+        synchronized (this){
+            if (done)
+                return;
+            this.error = error;
+            done = true;
+            notifyAll();
+        }
+        fireCompleted();
+    }
+
+    private void fireCompleted(){
+        List<Listener<T>> toNotify;
+        synchronized (this){
+            toNotify = listeners;
+            listeners = null;
+        }
+        if (toNotify == null)
+            return;
+        for (Listener<T> l : toNotify){
+            l.completed(this);
+        }
+    }
+
+    @Override
+    public String toString(){
+        return "RmiFuture[ID=" + invocationId + ", done=" + isDone() + "]";
+    }
+}
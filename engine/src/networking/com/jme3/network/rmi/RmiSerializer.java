@@ -31,6 +31,7 @@
  */
 package com.jme3.network.rmi;
 
+import com.jme3.network.Message;
 import com.jme3.network.serializing.Serializer;
 import com.jme3.network.serializing.SerializerRegistration;
 import java.io.IOException;
@@ -233,6 +234,37 @@ public class RmiSerializer extends Serializer {
         }
         return ret;
     }
+
+    private void writeBatch(ByteBuffer buffer, RemoteMethodBatchMessage batch) throws IOException{
+        buffer.putShort((short)batch.messages.length);
+        for (Message m : batch.messages){
+            if (m instanceof RemoteMethodCallMessage){
+                buffer.put((byte)0x00);
+                writeMethodCall(buffer, (RemoteMethodCallMessage) m);
+            }else if (m instanceof RemoteMethodReturnMessage){
+                buffer.put((byte)0x01);
+                writeMethodReturn(buffer, (RemoteMethodReturnMessage) m);
+            }else{
+                logger.log(Level.WARNING, "Cannot batch message: {0}", m);
+                throw new IOException(); // prevents message from being serialized
+            }
+        }
+    }
+
+    private RemoteMethodBatchMessage readBatch(ByteBuffer buffer) throws IOException{
+        RemoteMethodBatchMessage batch = new RemoteMethodBatchMessage();
+        int count = buffer.getShort() & 0xffff;
+        Message[] messages = new Message[count];
+        for (int i = 0; i < count; i++){
+            if (buffer.get() == (byte)0x00){
+                messages[i] = readMethodCall(buffer);
+            }else{
+                messages[i] = readMethodReturn(buffer);
+            }
+        }
+        batch.messages = messages;
+        return batch;
+    }
             
     @Override
     public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
@@ -242,6 +274,8 @@ public class RmiSerializer extends Serializer {
             return (T) readMethodCall(data);
         }else if (c == RemoteMethodReturnMessage.class){
             return (T) readMethodReturn(data);
+        }else if (c == RemoteMethodBatchMessage.class){
+            return (T) readBatch(data);
         }
         return null;
     }
@@ -258,6 +292,9 @@ public class RmiSerializer extends Serializer {
         }else if (object instanceof RemoteMethodReturnMessage){
             RemoteMethodReturnMessage ret = (RemoteMethodReturnMessage) object;
             writeMethodReturn(buffer, ret);
+        }else if (object instanceof RemoteMethodBatchMessage){
+            RemoteMethodBatchMessage batch = (RemoteMethodBatchMessage) object;
+            writeBatch(buffer, batch);
         }
 //        p = buffer.position() - p;
 //        System.out.println(object+": uses " + p + " bytes");
@@ -63,7 +63,12 @@ public abstract class Serializer {
     private static final Map<Class, SerializerRegistration> classRegistrations      = new HashMap<Class, SerializerRegistration>();
     private static final List<SerializerRegistration> registrations                 = new ArrayList<SerializerRegistration>();
 
+    // Registrations by ID for reading, paged on the high byte so
+    // that lookups don't box the short
+    private static final SerializerRegistration[][] idTable = new SerializerRegistration[256][];
+
     private static final Serializer                         fieldSerializer         = new FieldSerializer();
+    private static Serializer                               defaultSerializer       = fieldSerializer;
     private static final Serializer                         serializableSerializer  = new SerializableSerializer();
     private static final Serializer                         arraySerializer         = new ArraySerializer();
 
@@ -145,6 +150,21 @@ public abstract class Serializer {
         strictRegistration = b;
     }
 
+    /**
+     *  Sets the serializer used for classes that don't specify their own,
+     *  FieldSerializer by default.  For example, setting a CompiledFieldSerializer
+     *  avoids reflection for every field of every message while staying wire
+     *  compatible with FieldSerializer.  Only classes registered after this call 
+     *  are affected.
+     */
+    public static void setDefaultSerializer( Serializer serializer ) {
+        defaultSerializer = serializer == null ? fieldSerializer : serializer;
+    }
+
+    public static Serializer getDefaultSerializer() {
+        return defaultSerializer;
+    }
+
     public static SerializerRegistration registerClass(Class cls) {
         return registerClass(cls, true);
     }
@@ -180,6 +200,13 @@ public abstract class Serializer {
         idRegistrations.put(id, reg);
         classRegistrations.put(cls, reg);
         
+        SerializerRegistration[] page = idTable[(id >> 8) & 0xff];
+        if (page == null) {
+            page = new SerializerRegistration[256];
+            idTable[(id >> 8) & 0xff] = page;
+        }
+        page[id & 0xff] = reg;
+        
         log.log( Level.FINE, "Registered class[" + id + "]:{0} to:" + serializer, cls );
 
         serializer.initialize(cls);
@@ -206,7 +233,7 @@ public abstract class Serializer {
 
             Serializer serializer = getSerializer(serializerClass, false);
 
-            if (serializer == null) serializer = fieldSerializer;
+            if (serializer == null || serializer == fieldSerializer) serializer = defaultSerializer;
 
             SerializerRegistration existingReg = getExactSerializerRegistration(cls);
 
@@ -337,7 +364,7 @@ public abstract class Serializer {
         if( failOnMiss ) {
             throw new IllegalArgumentException( "Class has not been registered:" + cls );
         }
-        return registerClass(cls, fieldSerializer);
+        return registerClass(cls, defaultSerializer);
     }
 
 
@@ -353,7 +380,8 @@ public abstract class Serializer {
     public static SerializerRegistration readClass(ByteBuffer buffer) {
         short classID = buffer.getShort();
         if (classID == -1) return NULL_CLASS;
-        return idRegistrations.get(classID);
+        SerializerRegistration[] page = idTable[(classID >> 8) & 0xff];
+        return page == null ? null : page[classID & 0xff];
     }
 
     /**
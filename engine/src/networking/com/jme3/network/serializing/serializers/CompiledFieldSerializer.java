@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.SerializerException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A drop-in replacement for FieldSerializer that doesn't look up the
+ * handling of each field on every call.  When a class is registered, its
+ * fields are compiled into a plan that records how each one is written.
+ * Primitive and String fields are then read and written with the typed
+ * field accessors, without boxing or going through their serializers.
+ *
+ * <p>The fields, their order and their encoding are the same as
+ * FieldSerializer's, so the two can be mixed on either end of a
+ * connection.</p>
+ *
+ * <p>To use it for every class that doesn't name its own serializer:</p>
+ * <pre>
+ *   Serializer.setDefaultSerializer(new CompiledFieldSerializer());
+ * </pre>
+ */
+public class CompiledFieldSerializer extends FieldSerializer {
+
+    private static final byte BOOLEAN = 0;
+    private static final byte BYTE = 1;
+    private static final byte CHAR = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte STRING = 8;
+    private static final byte OBJECT = 9;
+
+    private Map<Class<?>, Plan> plans = new HashMap<Class<?>, Plan>();
+
+    @Override
+    public void initialize(Class clazz) {
+        super.initialize(clazz);
+
+        Class<?> type = clazz;
+        SavedField[] fields = getSavedFields(type);
+        Plan plan = new Plan(fields.length);
+        try {
+            plan.constructor = type.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException( "Registration error: no-argument constructor not found on:" + clazz ); 
+        }
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i].field;
+            Serializer serializer = fields[i].serializer;
+            plan.fields[i] = field;
+            plan.serializers[i] = serializer;
+            plan.kinds[i] = kindOf(field.getType(), serializer);
+        }
+        plans.put(type, plan);
+    }
+
+    /**
+     * Picks the direct encoding for a field if its type is still using
+     * the standard serializer, otherwise it goes through the registered
+     * serializer like it would with FieldSerializer.
+     */
+    private static byte kindOf(Class<?> type, Serializer serializer) {
+        Class<?> s = serializer == null ? null : serializer.getClass();
+        if (type == boolean.class && s == BooleanSerializer.class) return BOOLEAN;
+        if (type == byte.class && s == ByteSerializer.class) return BYTE;
+        if (type == char.class && s == CharSerializer.class) return CHAR;
+        if (type == short.class && s == ShortSerializer.class) return SHORT;
+        if (type == int.class && s == IntSerializer.class) return INT;
+        if (type == long.class && s == LongSerializer.class) return LONG;
+        if (type == float.class && s == FloatSerializer.class) return FLOAT;
+        if (type == double.class && s == DoubleSerializer.class) return DOUBLE;
+        if (type == String.class && s == StringSerializer.class) return STRING;
+        return OBJECT;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
+        Plan plan = plans.get(c);
+        if (plan == null)
+            return super.readObject(data, c);
+
+        // Read the null/non-null marker
+        if (data.get() == 0x0)
+            return null;
+
+        T object;
+        try {
+            object = (T)plan.constructor.newInstance();
+        } catch (Exception e) {
+            throw new SerializerException( "Error creating object of type:" + c, e );
+        }
+
+        Field[] fields = plan.fields;
+        Serializer[] serializers = plan.serializers;
+        byte[] kinds = plan.kinds;
+        try {
+            for (int i = 0; i < kinds.length; i++) {
+                Field field = fields[i];
+                switch (kinds[i]) {
+                    case BOOLEAN:
+                        field.setBoolean(object, data.get() == 1);
+                        break;
+                    case BYTE:
+                        field.setByte(object, data.get());
+                        break;
+                    case CHAR:
+                        field.setChar(object, data.getChar());
+                        break;
+                    case SHORT:
+                        field.setShort(object, data.getShort());
+                        break;
+                    case INT:
+                        field.setInt(object, data.getInt());
+                        break;
+                    case LONG:
+                        field.setLong(object, data.getLong());
+                        break;
+                    case FLOAT:
+                        field.setFloat(object, data.getFloat());
+                        break;
+                    case DOUBLE:
+                        field.setDouble(object, data.getDouble());
+                        break;
+                    case STRING:
+                        field.set(object, StringSerializer.readString(data));
+                        break;
+                    default:
+                        // anything else, including a primitive with a custom
+                        // serializer, is handled the same way FieldSerializer does
+                        Object value;
+                        if (serializers[i] != null) {
+                            value = serializers[i].readObject(data, field.getType());
+                        } else {
+                            value = Serializer.readClassAndObject(data);
+                        }
+                        field.set(object, value);
+                        break;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new SerializerException( "Error reading object", e);
+        }
+        return object;
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+        if (object == null) {
+            buffer.put((byte)0x0);
+            return;
+        }
+
+        Plan plan = plans.get(object.getClass());
+        if (plan == null) {
+            super.writeObject(buffer, object);
+            return;
+        }
+
+        // Add the null/non-null marker
+        buffer.put((byte)0x1);
+
+        Field[] fields = plan.fields;
+        Serializer[] serializers = plan.serializers;
+        byte[] kinds = plan.kinds;
+        for (int i = 0; i < kinds.length; i++) {
+            Field field = fields[i];
+            try {
+                switch (kinds[i]) {
+                    case BOOLEAN:
+                        buffer.put(field.getBoolean(object) ? (byte)1 : (byte)0);
+                        break;
+                    case BYTE:
+                        buffer.put(field.getByte(object));
+                        break;
+                    case CHAR:
+                        buffer.putChar(field.getChar(object));
+                        break;
+                    case SHORT:
+                        buffer.putShort(field.getShort(object));
+                        break;
+                    case INT:
+                        buffer.putInt(field.getInt(object));
+                        break;
+                    case LONG:
+                        buffer.putLong(field.getLong(object));
+                        break;
+                    case FLOAT:
+                        buffer.putFloat(field.getFloat(object));
+                        break;
+                    case DOUBLE:
+                        buffer.putDouble(field.getDouble(object));
+                        break;
+                    case STRING:
+                        StringSerializer.writeString((String)field.get(object), buffer);
+                        break;
+                    default:
+                        Object value = field.get(object);
+                        if (serializers[i] != null) {
+                            serializers[i].writeObject(buffer, value);
+                        } else {
+                            Serializer.writeClassAndObject(buffer, value);
+                        }
+                        break;
+                }
+            } catch (BufferOverflowException boe) {
+                throw boe;
+            } catch (Exception e) {
+                throw new SerializerException( "Error writing object for field:" + field, e );
+            }
+        }
+    }
+
+    /**
+     * The compiled form of a class: one entry per serialized field
+     * in wire order.
+     */
+    private static final class Plan {
+        Constructor<?> constructor;
+        Field[] fields;
+        Serializer[] serializers;
+        byte[] kinds;
+
+        Plan(int size) {
+            fields = new Field[size];
+            serializers = new Serializer[size];
+            kinds = new byte[size];
+        }
+    }
+}
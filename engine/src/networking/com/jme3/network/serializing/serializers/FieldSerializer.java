@@ -46,7 +46,10 @@ import java.util.*;
  * @author Lars Wesselius, Nathan Sweet
  */
 public class FieldSerializer extends Serializer {
-    private static Map<Class, SavedField[]> savedFields = new HashMap<Class, SavedField[]>();
+    // Created on first use: Serializer's static initializer registers classes
+    // with a FieldSerializer, which may be before this class's own static
+    // initializers have run if a subclass was loaded first.
+    private static Map<Class, SavedField[]> savedFields;
 
     protected void checkClass(Class clazz) {
     
@@ -105,6 +108,8 @@ public class FieldSerializer extends Serializer {
                     return o1.field.getName().compareTo(o2.field.getName());
             }
         });
+        if (savedFields == null)
+            savedFields = new HashMap<Class, SavedField[]>();
         savedFields.put(clazz, cachedFields.toArray(new SavedField[cachedFields.size()]));
 
         
@@ -182,7 +187,15 @@ public class FieldSerializer extends Serializer {
         }
     }
 
-    private final class SavedField {
+    /**
+     * Returns the fields of a registered class in the order they are
+     * written, or null if the class has not been initialized.
+     */
+    protected static SavedField[] getSavedFields(Class c) {
+        return savedFields == null ? null : savedFields.get(c);
+    }
+
+    protected static final class SavedField {
         public Field field;
         public Serializer serializer;
     }
@@ -658,9 +658,6 @@ public class LODGeomap extends GeoMap {
         }
         binormalStore.rewind();
 
-        Vector3f normal = new Vector3f();
-        Vector3f tangent = new Vector3f();
-        Vector3f binormal = new Vector3f();
         /*Vector3f v1 = new Vector3f();
         Vector3f v2 = new Vector3f();
         Vector3f v3 = new Vector3f();
@@ -668,18 +665,7 @@ public class LODGeomap extends GeoMap {
         Vector2f t2 = new Vector2f();
         Vector2f t3 = new Vector2f();*/
 
-        for (int r = 0; r < getHeight(); r++) {
-            for (int c = 0; c < getWidth(); c++) {
-                
-                int idx = (r * getWidth() + c) * 3;
-                normal.set(normalBuffer.get(idx), normalBuffer.get(idx+1), normalBuffer.get(idx+2));
-                tangent.set(normal.cross(new Vector3f(0,0,1)));
-                binormal.set(new Vector3f(1,0,0).cross(normal));
-                
-                BufferUtils.setInBuffer(tangent.normalizeLocal(), tangentStore, (r * getWidth() + c)); // save the tangent
-                BufferUtils.setInBuffer(binormal.normalizeLocal(), binormalStore, (r * getWidth() + c)); // save the binormal
-            }
-        }
+        updateTangentArray(normalBuffer, tangentStore, binormalStore, 0, 0, getWidth() - 1, getHeight() - 1);
 
 /*        for (int r = 0; r < getHeight(); r++) {
             for (int c = 0; c < getWidth(); c++) {
@@ -726,6 +712,30 @@ public class LODGeomap extends GeoMap {
         return new FloatBuffer[]{tangentStore, binormalStore};
     }
 
+    /**
+     * Recalculates the tangents and binormals of the vertices inside the
+     * given region (inclusive) from the normal buffer and writes them to
+     * already filled tangent and binormal buffers.
+     */
+    public void updateTangentArray(FloatBuffer normalBuffer, FloatBuffer tangentStore, FloatBuffer binormalStore, int minX, int minZ, int maxX, int maxZ) {
+        Vector3f normal = new Vector3f();
+        Vector3f tangent = new Vector3f();
+        Vector3f binormal = new Vector3f();
+
+        for (int r = minZ; r <= maxZ; r++) {
+            for (int c = minX; c <= maxX; c++) {
+                
+                int idx = (r * getWidth() + c) * 3;
+                normal.set(normalBuffer.get(idx), normalBuffer.get(idx+1), normalBuffer.get(idx+2));
+                tangent.set(normal.cross(Vector3f.UNIT_Z));
+                binormal.set(Vector3f.UNIT_X.cross(normal));
+                
+                BufferUtils.setInBuffer(tangent.normalizeLocal(), tangentStore, (r * getWidth() + c)); // save the tangent
+                BufferUtils.setInBuffer(binormal.normalizeLocal(), binormalStore, (r * getWidth() + c)); // save the binormal
+            }
+        }
+    }
+
     /**
      * 
      * @param v Takes 3 vertices: root, right, bottom
@@ -791,6 +801,17 @@ public class LODGeomap extends GeoMap {
         }
         store.rewind();
 
+        updateNormalArray(store, scale, 0, 0, getWidth() - 1, getHeight() - 1);
+        return store;
+    }
+
+    /**
+     * Recalculates the normals of the vertices inside the given region
+     * (inclusive) and writes them to an already filled normal buffer.
+     * Only the heights next to the region are read, so after an edit the
+     * region has to include one extra vertex around the modified heights.
+     */
+    public void updateNormalArray(FloatBuffer store, Vector3f scale, int minX, int minZ, int maxX, int maxZ) {
         TempVars vars = TempVars.get();
         
         Vector3f rootPoint = vars.vect1;
@@ -802,8 +823,8 @@ public class LODGeomap extends GeoMap {
         Vector3f tmp1 = vars.vect6;
 
         // calculate normals for each polygon
-        for (int r = 0; r < getHeight(); r++) {
-            for (int c = 0; c < getWidth(); c++) {
+        for (int r = minZ; r <= maxZ; r++) {
+            for (int c = minX; c <= maxX; c++) {
 
                 rootPoint.set(0, getValue(c, r), 0);
                 Vector3f normal = vars.vect8;
@@ -875,7 +896,6 @@ public class LODGeomap extends GeoMap {
         }
         vars.release();
         
-        return store;
     }
 
     private Vector3f getNormal(Vector3f firstPoint, Vector3f rootPoint, Vector3f secondPoint, Vector3f scale, Vector3f store) {
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared table of terrain patch index buffers.
+ * <p>
+ * The index layout of a patch only depends on the patch size, its own LOD
+ * and the LOD of its four neighbours, never on the heights. All patches of
+ * the same size can therefore use the same index buffer for the same LOD
+ * combination. The table is filled lazily from the LOD thread the first
+ * time a combination is requested; after that a re-index is only a
+ * reference swap and the GPU copy of the buffer is uploaded only once.
+ * <p>
+ * The returned buffers are shared, they must never be modified.
+ */
+public class LODIndexCache {
+
+    private static final ConcurrentHashMap<Long, VertexBuffer> buffers = new ConcurrentHashMap<Long, VertexBuffer>();
+
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong requestedBytes = new AtomicLong();
+    private static final AtomicLong memoryUsage = new AtomicLong();
+
+    private static volatile boolean enabled = true;
+
+    private LODIndexCache() {
+    }
+
+    /**
+     * Returns the index buffer for a patch of the geomap's size at the given
+     * LOD, building and storing it if it has not been requested before.
+     *
+     * @param geomap the geomap of the patch, only its size is used
+     * @param lod the patch LOD level
+     * @param right LOD level of the right neighbour
+     * @param top LOD level of the top neighbour
+     * @param left LOD level of the left neighbour
+     * @param bottom LOD level of the bottom neighbour
+     * @param totalSize total terrain size, passed on to the geomap
+     * @param variableLod true to stitch against the exact neighbour LOD,
+     * false to only stitch against neighbours with a lower detail.
+     * @return the index buffer, shared between all patches
+     */
+    public static VertexBuffer getIndexBuffer(LODGeomap geomap, int lod, int right, int top, int left, int bottom, int totalSize, boolean variableLod) {
+        if (!variableLod) {
+            // only the fact that a neighbour has a lower detail matters
+            right = right > lod ? 1 : 0;
+            top = top > lod ? 1 : 0;
+            left = left > lod ? 1 : 0;
+            bottom = bottom > lod ? 1 : 0;
+        }
+
+        requests.incrementAndGet();
+        if (!enabled) {
+            VertexBuffer vb = createIndexBuffer(geomap, lod, right, top, left, bottom, totalSize, variableLod);
+            requestedBytes.addAndGet(getSize(vb));
+            return vb;
+        }
+
+        Long key = Long.valueOf(getKey(geomap.getWidth(), lod, right, top, left, bottom, variableLod));
+        VertexBuffer vb = buffers.get(key);
+        if (vb == null) {
+            vb = createIndexBuffer(geomap, lod, right, top, left, bottom, totalSize, variableLod);
+            VertexBuffer existing = buffers.putIfAbsent(key, vb);
+            if (existing != null) {
+                vb = existing;
+            } else {
+                misses.incrementAndGet();
+                memoryUsage.addAndGet(getSize(vb));
+            }
+        }
+        requestedBytes.addAndGet(getSize(vb));
+        return vb;
+    }
+
+    private static long getKey(int size, int lod, int right, int top, int left, int bottom, boolean variableLod) {
+        // LOD levels are below 32 for any patch size that fits an int
+        long key = size;
+        key = (key << 5) | lod;
+        key = (key << 5) | right;
+        key = (key << 5) | top;
+        key = (key << 5) | left;
+        key = (key << 5) | bottom;
+        key = (key << 1) | (variableLod ? 1 : 0);
+        return key;
+    }
+
+    private static VertexBuffer createIndexBuffer(LODGeomap geomap, int lod, int right, int top, int left, int bottom, int totalSize, boolean variableLod) {
+        IndexBuffer idxB;
+        if (variableLod)
+            idxB = geomap.writeIndexArrayLodVariable(1 << lod, 1 << right, 1 << top, 1 << left, 1 << bottom, totalSize);
+        else
+            idxB = geomap.writeIndexArrayLodDiff(1 << lod, right != 0, top != 0, left != 0, bottom != 0, totalSize);
+
+        Buffer b = idxB.getBuffer();
+        VertexBuffer vb = new VertexBuffer(Type.Index);
+        if (b instanceof IntBuffer)
+            vb.setupData(Usage.Static, 3, Format.UnsignedInt, b);
+        else if (b instanceof ShortBuffer)
+            vb.setupData(Usage.Static, 3, Format.UnsignedShort, b);
+        else
+            vb.setupData(Usage.Static, 3, Format.UnsignedByte, b);
+        return vb;
+    }
+
+    private static long getSize(VertexBuffer vb) {
+        return (long) vb.getData().capacity() * vb.getFormat().getComponentSize();
+    }
+
+    /**
+     * Enables or disables sharing. When disabled every request builds a new
+     * buffer, as terrain did before the table existed. Enabled by default.
+     */
+    public static void setEnabled(boolean enabled) {
+        LODIndexCache.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the number of distinct index buffers held by the table
+     */
+    public static int getBufferCount() {
+        return buffers.size();
+    }
+
+    /**
+     * @return the memory, in bytes, used by the index buffers in the table
+     */
+    public static long getMemoryUsage() {
+        return memoryUsage.get();
+    }
+
+    /**
+     * @return the number of index buffers requested by terrain patches
+     */
+    public static long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests that had to build a new buffer
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the memory, in bytes, that would have been allocated if every
+     * request built its own buffer
+     */
+    public static long getRequestedBytes() {
+        return requestedBytes.get();
+    }
+
+    /**
+     * Empties the table and resets the statistics. Patches keep the
+     * buffers they currently use.
+     */
+    public static void clear() {
+        buffers.clear();
+        requests.set(0);
+        misses.set(0);
+        requestedBytes.set(0);
+        memoryUsage.set(0);
+    }
+}
@@ -19,11 +19,16 @@ package com.jme3.terrain.geomipmap;
 // This module is provided "as is", without warranties of any kind.
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * An LRU cache, based on <code>LinkedHashMap</code>.
+ * An LRU cache, based on <code>ConcurrentHashMap</code>.
  * 
  * <p>
  * This cache has a fixed maximum number of elements (<code>cacheSize</code>).
@@ -31,7 +36,9 @@ import java.util.Map;
  * used) entry is dropped.
  * 
  * <p>
- * This class is thread-safe. All methods of this class are synchronized.
+ * This class is thread-safe. Lookups do not lock, every entry records the
+ * time of its last access instead of being moved in a linked list. Only
+ * evicting the least recently used entry takes a lock.
  * 
  * <p>
  * Author: Christian d'Heureuse, Inventec Informatik AG, Zurich, Switzerland<br>
@@ -39,10 +46,22 @@ import java.util.Map;
  */
 public class LRUCache<K, V> {
 
-    private static final float hashTableLoadFactor = 0.75f;
-    private LinkedHashMap<K, V> map;
+    private final ConcurrentHashMap<K, CacheEntry<V>> map;
+    private final AtomicLong clock = new AtomicLong();
+    private final Object evictLock = new Object();
     private int cacheSize;
 
+    private static class CacheEntry<V> {
+
+        final V value;
+        volatile long lastAccess;
+
+        CacheEntry(V value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+
     /**
      * Creates a new LRU cache.
      * 
@@ -51,17 +70,7 @@ public class LRUCache<K, V> {
      */
     public LRUCache(int cacheSize) {
         this.cacheSize = cacheSize;
-        int hashTableCapacity = (int) Math.ceil(cacheSize / LRUCache.hashTableLoadFactor) + 1;
-        this.map = new LinkedHashMap<K, V>(hashTableCapacity, LRUCache.hashTableLoadFactor, true) {
-            // (an anonymous inner class)
-
-            private static final long serialVersionUID = 1;
-
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-                return this.size() > LRUCache.this.cacheSize;
-            }
-        };
+        this.map = new ConcurrentHashMap<K, CacheEntry<V>>(cacheSize + 1);
     }
 
     /**
@@ -73,8 +82,13 @@ public class LRUCache<K, V> {
      * @return the value associated to this key, or null if no value with this
      *         key exists in the cache.
      */
-    public synchronized V get(K key) {
-        return this.map.get(key);
+    public V get(K key) {
+        CacheEntry<V> entry = this.map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastAccess = clock.incrementAndGet();
+        return entry.value;
     }
 
     /**
@@ -90,14 +104,36 @@ public class LRUCache<K, V> {
      * @param value
      *            a value to be associated with the specified key.
      */
-    public synchronized void put(K key, V value) {
-        this.map.put(key, value);
+    public void put(K key, V value) {
+        this.map.put(key, new CacheEntry<V>(value, clock.incrementAndGet()));
+        if (this.map.size() > cacheSize) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        synchronized (evictLock) {
+            while (this.map.size() > cacheSize) {
+                K eldestKey = null;
+                CacheEntry<V> eldest = null;
+                for (Map.Entry<K, CacheEntry<V>> e : this.map.entrySet()) {
+                    if (eldest == null || e.getValue().lastAccess < eldest.lastAccess) {
+                        eldestKey = e.getKey();
+                        eldest = e.getValue();
+                    }
+                }
+                if (eldest == null) {
+                    return;
+                }
+                this.map.remove(eldestKey, eldest);
+            }
+        }
     }
 
     /**
      * Clears the cache.
      */
-    public synchronized void clear() {
+    public void clear() {
         this.map.clear();
     }
 
@@ -106,17 +142,47 @@ public class LRUCache<K, V> {
      * 
      * @return the number of entries currently in the cache.
      */
-    public synchronized int usedEntries() {
+    public int usedEntries() {
         return this.map.size();
     }
 
     /**
      * Returns a <code>Collection</code> that contains a copy of all cache
-     * entries.
+     * entries, from the least to the most recently used.
      * 
      * @return a <code>Collection</code> with a copy of the cache content.
      */
-    public synchronized Collection<Map.Entry<K, V>> getAll() {
-        return new ArrayList<Map.Entry<K, V>>(this.map.entrySet());
+    public Collection<Map.Entry<K, V>> getAll() {
+        // the access times are copied first, get() can change them
+        // while the copies are sorted
+        List<AccessStamp<K, V>> stamps = new ArrayList<AccessStamp<K, V>>(this.map.size());
+        for (Map.Entry<K, CacheEntry<V>> e : this.map.entrySet()) {
+            CacheEntry<V> entry = e.getValue();
+            stamps.add(new AccessStamp<K, V>(e.getKey(), entry.value, entry.lastAccess));
+        }
+        Collections.sort(stamps, new Comparator<AccessStamp<K, V>>() {
+
+            public int compare(AccessStamp<K, V> a, AccessStamp<K, V> b) {
+                return a.lastAccess < b.lastAccess ? -1 : (a.lastAccess == b.lastAccess ? 0 : 1);
+            }
+        });
+        LinkedHashMap<K, V> copy = new LinkedHashMap<K, V>();
+        for (AccessStamp<K, V> s : stamps) {
+            copy.put(s.key, s.value);
+        }
+        return new ArrayList<Map.Entry<K, V>>(copy.entrySet());
+    }
+
+    private static class AccessStamp<K, V> {
+
+        final K key;
+        final V value;
+        final long lastAccess;
+
+        AccessStamp(K key, V value, long lastAccess) {
+            this.key = key;
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
     }
 } // end class LRUCache
@@ -119,16 +119,14 @@ public class MultiTerrainLodControl extends TerrainLodControl {
         }
         
         @Override
-        public HashMap<String, UpdatedTerrainPatch> call() throws Exception {
+        public HashMap<TerrainPatch, UpdatedTerrainPatch> call() throws Exception {
             
             setLodCalcRunning(true);
             
-            HashMap<String,UpdatedTerrainPatch> updated = new HashMap<String,UpdatedTerrainPatch>();
+            HashMap<TerrainPatch,UpdatedTerrainPatch> updated = new HashMap<TerrainPatch,UpdatedTerrainPatch>();
             
-            for (TerrainQuad terrainQuad : terrains) {
-                // go through each patch and calculate its LOD based on camera distance
-                terrainQuad.calculateLod(camLocations, updated, lodCalculator); // 'updated' gets populated here
-            }
+            // go through each patch and calculate its LOD based on camera distance
+            calculateLod(terrains, camLocations, updated, lodCalculator); // 'updated' gets populated here
             
             for (TerrainQuad terrainQuad : terrains) {
                 // then calculate the neighbour LOD values for seaming
@@ -140,10 +138,8 @@ public class MultiTerrainLodControl extends TerrainLodControl {
                 terrainQuad.fixEdges(updated);
             }
             
-            for (TerrainQuad terrainQuad : terrains) {
-                // perform the edge seaming, if it requires it
-                terrainQuad.reIndexPages(updated, lodCalculator.usesVariableLod());
-            }
+            // perform the edge seaming, if it requires it
+            reIndexPages(terrains, updated, lodCalculator.usesVariableLod());
             
             //setUpdateQuadLODs(updated); // set back to main ogl thread
             setLodCalcRunning(false);
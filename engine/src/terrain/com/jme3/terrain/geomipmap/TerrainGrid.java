@@ -125,6 +125,8 @@ public class TerrainGrid extends TerrainQuad {
     protected int[] gridOffset;
     protected boolean runOnce = false;
     protected ExecutorService cacheExecutor;
+    protected float prefetchTime = 1;
+    protected Vector3f prefetchCell;
 
     protected class UpdateQuadCache implements Runnable {
 
@@ -150,18 +152,7 @@ public class TerrainGrid extends TerrainQuad {
                     final Vector3f quadCell = location.add(quadIndex[quadIdx]);
                     TerrainQuad q = cache.get(quadCell);
                     if (q == null) {
-                        if (heightMapGrid != null) {
-                            // create the new Quad since it doesn't exist
-                            HeightMap heightMapAt = heightMapGrid.getHeightMapAt(quadCell);
-                            q = new TerrainQuad(getName() + "Quad" + quadCell, patchSize, quadSize, heightMapAt == null ? null : heightMapAt.getHeightMap());
-                            q.setMaterial(material.clone());
-                            log.log(Level.FINE, "Loaded TerrainQuad {0} from HeightMapGrid", q.getName());
-                        } else if (gridTileLoader != null) {
-                            q = gridTileLoader.getTerrainQuadAt(quadCell);
-                            // only clone the material to the quad if it doesn't have a material of its own
-                            if(q.getMaterial()==null) q.setMaterial(material.clone());
-                            log.log(Level.FINE, "Loaded TerrainQuad {0} from TerrainQuadGrid", q.getName());
-                        }
+                        q = loadQuadAt(quadCell);
                     }
                     cache.put(quadCell, q);
 
@@ -211,6 +202,54 @@ public class TerrainGrid extends TerrainQuad {
         }
     }
 
+    /**
+     * Loads the tiles around a camera cell the camera is predicted to move
+     * into, so they are already in the cache when it gets there. Nothing
+     * gets attached.
+     */
+    protected class PrefetchQuadCache implements Runnable {
+
+        protected final Vector3f location;
+
+        public PrefetchQuadCache(Vector3f location) {
+            this.location = location;
+        }
+
+        public void run() {
+            for (int i = 0; i < quadIndex.length; i++) {
+                Vector3f quadCell = location.add(quadIndex[i]);
+                if (cache.get(quadCell) == null) {
+                    TerrainQuad q = loadQuadAt(quadCell);
+                    if (q != null) {
+                        cache.put(quadCell, q);
+                        log.log(Level.FINE, "Prefetched TerrainQuad {0}", q.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the terrain tile of the given cell from the HeightMapGrid or
+     * the TerrainGridTileLoader. Runs on the background thread.
+     */
+    protected TerrainQuad loadQuadAt(Vector3f quadCell) {
+        TerrainQuad q = null;
+        if (heightMapGrid != null) {
+            // create the new Quad since it doesn't exist
+            HeightMap heightMapAt = heightMapGrid.getHeightMapAt(quadCell);
+            q = new TerrainQuad(getName() + "Quad" + quadCell, patchSize, quadSize, heightMapAt == null ? null : heightMapAt.getHeightMap());
+            q.setMaterial(material.clone());
+            log.log(Level.FINE, "Loaded TerrainQuad {0} from HeightMapGrid", q.getName());
+        } else if (gridTileLoader != null) {
+            q = gridTileLoader.getTerrainQuadAt(quadCell);
+            // only clone the material to the quad if it doesn't have a material of its own
+            if(q.getMaterial()==null) q.setMaterial(material.clone());
+            log.log(Level.FINE, "Loaded TerrainQuad {0} from TerrainQuadGrid", q.getName());
+        }
+        return q;
+    }
+
     protected boolean isCenter(int quadIndex) {
         return quadIndex == 9 || quadIndex == 5 || quadIndex == 10 || quadIndex == 6;
     }
@@ -440,6 +479,36 @@ public class TerrainGrid extends TerrainQuad {
         this.currentCamCell = camCell;
     }
 
+    /**
+     * Loads the tiles around the given camera cell into the cache on the
+     * background thread, after any tile loading already queued. Called by
+     * the TerrainGridLodControl when the camera is heading into that cell.
+     */
+    protected void prefetch(Vector3f camCell) {
+        if (camCell.equals(prefetchCell))
+            return;
+        prefetchCell = camCell;
+
+        if (cacheExecutor == null) {
+            cacheExecutor = createExecutorService();
+        }
+
+        cacheExecutor.submit(new PrefetchQuadCache(camCell));
+    }
+
+    /**
+     * Sets how many seconds ahead the camera movement is extrapolated to
+     * load the tiles it is heading to before it reaches them. 0 turns
+     * prefetching off. Default is 1 second.
+     */
+    public void setPrefetchTime(float prefetchTime) {
+        this.prefetchTime = prefetchTime;
+    }
+
+    public float getPrefetchTime() {
+        return prefetchTime;
+    }
+
     public void addListener(TerrainGridListener listener) {
         this.listeners.add(listener);
     }
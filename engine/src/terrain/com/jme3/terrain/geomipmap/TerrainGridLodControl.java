@@ -44,6 +44,10 @@ import java.util.List;
  * @author sploreg
  */
 public class TerrainGridLodControl extends TerrainLodControl {
+
+    private Vector3f lastLocation;
+    private long lastTime;
+    private Vector3f velocity = new Vector3f();
     
     public TerrainGridLodControl(Terrain terrain, Camera camera) {
         super(terrain, camera);
@@ -72,6 +76,38 @@ public class TerrainGridLodControl extends TerrainLodControl {
             }
         }
         terrainGrid.runOnce = true;
+        prefetch(terrainGrid, cam, camCell);
         super.updateLOD(locations, lodCalculator);
     }
+
+    /**
+     * Extrapolates the camera movement by the prefetch time of the grid and
+     * lets it load the tiles of the neighbouring cell the camera is heading to.
+     */
+    private void prefetch(TerrainGrid terrainGrid, Vector3f cam, Vector3f camCell) {
+        long now = System.nanoTime();
+        if (lastLocation == null) {
+            lastLocation = cam.clone();
+            lastTime = now;
+            return;
+        }
+        if (now == lastTime)
+            return;
+
+        // smooth the velocity so a single long frame does not trigger loads
+        float dt = (now - lastTime) / 1000000000f;
+        Vector3f frameVelocity = cam.subtract(lastLocation).divideLocal(dt);
+        velocity.interpolateLocal(frameVelocity, 0.25f);
+        lastLocation.set(cam);
+        lastTime = now;
+
+        if (terrainGrid.getPrefetchTime() <= 0)
+            return;
+        Vector3f predicted = terrainGrid.getCamCell(velocity.mult(terrainGrid.getPrefetchTime()).addLocal(cam));
+        // the cache only has room for the tiles of a neighbouring cell
+        predicted.x = Math.max(camCell.x - 1, Math.min(camCell.x + 1, predicted.x));
+        predicted.z = Math.max(camCell.z - 1, Math.min(camCell.z + 1, predicted.z));
+        if (predicted.x != camCell.x || predicted.z != camCell.z)
+            terrainGrid.prefetch(predicted);
+    }
 }
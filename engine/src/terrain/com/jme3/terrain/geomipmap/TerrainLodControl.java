@@ -48,6 +48,7 @@ import com.jme3.terrain.geomipmap.lodcalc.DistanceLodCalculator;
 import com.jme3.terrain.geomipmap.lodcalc.LodCalculator;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -78,17 +79,27 @@ import java.util.logging.Logger;
  * to handle the LOD processing. If you supply your own executor service, then
  * you have to handle its thread termination yourself.
  * 
+ * The LOD calculation and the re-indexing of the patches can be split by
+ * quadrant across a pool of worker threads, see {@link #setLodThreads(int) }.
+ * By default they run on the terrain thread.
+ * 
  * @author Brent Owens
  */
 public class TerrainLodControl extends AbstractControl {
 
+    /**
+     * Quadrants near the camera have more patches to re-index, so the
+     * terrain is split into more pieces than there are threads.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
     private Terrain terrain;
     protected List<Camera> cameras;
     private List<Vector3f> cameraLocations = new ArrayList<Vector3f>();
     protected LodCalculator lodCalculator;
     private boolean hasResetLod = false; // used when enabled is set to false
 
-    private HashMap<String,UpdatedTerrainPatch> updatedPatches;
+    private HashMap<TerrainPatch,UpdatedTerrainPatch> updatedPatches;
     private final Object updatePatchesLock = new Object();
     
     protected List<Vector3f> lastCameraLocations; // used for LOD calc
@@ -96,8 +107,12 @@ public class TerrainLodControl extends AbstractControl {
     private int lodOffCount = 0;
     
     protected ExecutorService executor;
-    protected Future<HashMap<String, UpdatedTerrainPatch>> indexer;
+    protected Future<HashMap<TerrainPatch, UpdatedTerrainPatch>> indexer;
     private boolean forceUpdate = true;
+
+    protected ExecutorService workers;
+    private int workerCount;
+    private volatile int lodThreads = 1;
     
     public TerrainLodControl() {
     }
@@ -143,6 +158,46 @@ public class TerrainLodControl extends AbstractControl {
             }
         });
     }
+
+    /**
+     * Sets the number of threads the LOD calculation and re-indexing are
+     * split across. With 1, the default, the whole LOD pass runs on the
+     * terrain thread.
+     */
+    public void setLodThreads(int lodThreads) {
+        if (lodThreads < 1)
+            throw new IllegalArgumentException("lodThreads must be at least 1, was: "+lodThreads);
+        this.lodThreads = lodThreads;
+    }
+
+    public int getLodThreads() {
+        return lodThreads;
+    }
+
+    protected ExecutorService createWorkerService(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread th = new Thread(r);
+                th.setName("jME Terrain LOD Worker");
+                th.setDaemon(true);
+                return th;
+            }
+        });
+    }
+
+    /**
+     * Called from the terrain thread only, (re)creates the worker pool
+     * when the number of LOD threads changed.
+     */
+    private ExecutorService getWorkers(int threads) {
+        if (workers == null || workerCount != threads) {
+            if (workers != null)
+                workers.shutdown();
+            workers = createWorkerService(threads);
+            workerCount = threads;
+        }
+        return workers;
+    }
     
     @Override
     protected void controlUpdate(float tpf) {
@@ -177,6 +232,8 @@ public class TerrainLodControl extends AbstractControl {
     public void detachAndCleanUpControl() {
         if (executor != null)
             executor.shutdownNow();
+        if (workers != null)
+            workers.shutdownNow();
         getSpatial().removeControl(this);
     }
 
@@ -249,7 +306,7 @@ public class TerrainLodControl extends AbstractControl {
             if (indexer.isDone()) {
                 try {
                     
-                    HashMap<String, UpdatedTerrainPatch> updated = indexer.get();
+                    HashMap<TerrainPatch, UpdatedTerrainPatch> updated = indexer.get();
                     if (updated != null) {
                         // do the actual geometry update here
                         for (UpdatedTerrainPatch utp : updated.values()) {
@@ -268,6 +325,100 @@ public class TerrainLodControl extends AbstractControl {
         }
     }
     
+    /**
+     * Splits the terrains into sub quads that can have their LOD processed
+     * independently, until there are enough of them for the LOD threads
+     * or only quads made of patches are left.
+     */
+    protected List<TerrainQuad> splitForLod(List<TerrainQuad> terrains, int threads) {
+        List<TerrainQuad> quads = new ArrayList<TerrainQuad>(terrains);
+        int target = threads * TASKS_PER_THREAD;
+        boolean split = true;
+        while (split && quads.size() < target) {
+            split = false;
+            List<TerrainQuad> next = new ArrayList<TerrainQuad>();
+            for (TerrainQuad quad : quads) {
+                if (hasOnlyQuads(quad)) {
+                    for (Spatial child : quad.getChildren())
+                        next.add((TerrainQuad) child);
+                    split = true;
+                } else {
+                    next.add(quad);
+                }
+            }
+            quads = next;
+        }
+        return quads;
+    }
+
+    private boolean hasOnlyQuads(TerrainQuad quad) {
+        List<Spatial> children = quad.getChildren();
+        if (children.isEmpty())
+            return false;
+        for (Spatial child : children) {
+            if (!(child instanceof TerrainQuad))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the LOD of every patch of the terrains, on the worker
+     * threads if there is more than one LOD thread.
+     * @return true if any patch changed its LOD
+     */
+    protected boolean calculateLod(List<TerrainQuad> terrains, List<Vector3f> locations, HashMap<TerrainPatch,UpdatedTerrainPatch> updated, LodCalculator lodCalculator) throws InterruptedException, ExecutionException {
+        boolean lodChanged = false;
+        int threads = lodThreads;
+        if (threads == 1) {
+            for (TerrainQuad terrain : terrains) {
+                if (terrain.calculateLod(locations, updated, lodCalculator))
+                    lodChanged = true;
+            }
+            return lodChanged;
+        }
+
+        List<CalculateLod> tasks = new ArrayList<CalculateLod>();
+        for (TerrainQuad quad : splitForLod(terrains, threads))
+            tasks.add(new CalculateLod(quad, locations, lodCalculator));
+
+        List<Future<Boolean>> results = getWorkers(threads).invokeAll(tasks);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).get())
+                lodChanged = true;
+            // the quads do not share patches, so the results never overlap
+            updated.putAll(tasks.get(i).updated);
+        }
+        return lodChanged;
+    }
+
+    /**
+     * Re-indexes the patches of the terrains that need it, on the worker
+     * threads if there is more than one LOD thread. 'updated' is only read
+     * at this point so the quads can share it.
+     */
+    protected void reIndexPages(List<TerrainQuad> terrains, final HashMap<TerrainPatch,UpdatedTerrainPatch> updated, final boolean usesVariableLod) throws InterruptedException, ExecutionException {
+        int threads = lodThreads;
+        if (threads == 1) {
+            for (TerrainQuad terrain : terrains)
+                terrain.reIndexPages(updated, usesVariableLod);
+            return;
+        }
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final TerrainQuad quad : splitForLod(terrains, threads)) {
+            tasks.add(new Callable<Object>() {
+                public Object call() throws Exception {
+                    quad.reIndexPages(updated, usesVariableLod);
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Object> result : getWorkers(threads).invokeAll(tasks))
+            result.get(); // rethrows any failure
+    }
+
     private boolean lastCameraLocationsTheSame(List<Vector3f> locations) {
         boolean theSame = true;
         for (Vector3f l : locations) {
@@ -312,6 +463,7 @@ public class TerrainLodControl extends AbstractControl {
             }
             TerrainLodControl cloned = new TerrainLodControl((Terrain) spatial, cameraClone);
             cloned.setLodCalculator(lodCalculator.clone());
+            cloned.setLodThreads(lodThreads);
             return cloned;
         }
         return null;
@@ -367,7 +519,7 @@ public class TerrainLodControl extends AbstractControl {
     /**
      * Calculates the LOD of all child terrain patches.
      */
-    protected class UpdateLOD implements Callable<HashMap<String,UpdatedTerrainPatch>> {
+    protected class UpdateLOD implements Callable<HashMap<TerrainPatch,UpdatedTerrainPatch>> {
         protected List<Vector3f> camLocations;
         protected LodCalculator lodCalculator;
 
@@ -376,7 +528,7 @@ public class TerrainLodControl extends AbstractControl {
             this.lodCalculator = lodCalculator;
         }
 
-        public HashMap<String, UpdatedTerrainPatch> call() throws Exception {
+        public HashMap<TerrainPatch, UpdatedTerrainPatch> call() throws Exception {
             //long start = System.currentTimeMillis();
             //if (isLodCalcRunning()) {
             //    return null;
@@ -384,10 +536,11 @@ public class TerrainLodControl extends AbstractControl {
             setLodCalcRunning(true);
 
             TerrainQuad terrainQuad = (TerrainQuad)getSpatial();
+            List<TerrainQuad> terrains = Collections.singletonList(terrainQuad);
             
             // go through each patch and calculate its LOD based on camera distance
-            HashMap<String,UpdatedTerrainPatch> updated = new HashMap<String,UpdatedTerrainPatch>();
-            boolean lodChanged = terrainQuad.calculateLod(camLocations, updated, lodCalculator); // 'updated' gets populated here
+            HashMap<TerrainPatch,UpdatedTerrainPatch> updated = new HashMap<TerrainPatch,UpdatedTerrainPatch>();
+            boolean lodChanged = calculateLod(terrains, camLocations, updated, lodCalculator); // 'updated' gets populated here
 
             if (!lodChanged) {
                 // not worth updating anything else since no one's LOD changed
@@ -401,7 +554,7 @@ public class TerrainLodControl extends AbstractControl {
 
             terrainQuad.fixEdges(updated); // 'updated' can get added to here
 
-            terrainQuad.reIndexPages(updated, lodCalculator.usesVariableLod());
+            reIndexPages(terrains, updated, lodCalculator.usesVariableLod());
 
             //setUpdateQuadLODs(updated); // set back to main ogl thread
 
@@ -411,6 +564,26 @@ public class TerrainLodControl extends AbstractControl {
         }
     }
 
+    /**
+     * Calculates the LOD of the patches of one quad into its own map.
+     */
+    protected static class CalculateLod implements Callable<Boolean> {
+        protected final TerrainQuad quad;
+        protected final List<Vector3f> camLocations;
+        protected final LodCalculator lodCalculator;
+        protected final HashMap<TerrainPatch,UpdatedTerrainPatch> updated = new HashMap<TerrainPatch,UpdatedTerrainPatch>();
+
+        protected CalculateLod(TerrainQuad quad, List<Vector3f> camLocations, LodCalculator lodCalculator) {
+            this.quad = quad;
+            this.camLocations = camLocations;
+            this.lodCalculator = lodCalculator;
+        }
+
+        public Boolean call() throws Exception {
+            return quad.calculateLod(camLocations, updated, lodCalculator);
+        }
+    }
+
     @Override
     public void write(JmeExporter ex) throws IOException {
         super.write(ex);
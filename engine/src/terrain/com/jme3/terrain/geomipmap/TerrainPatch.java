@@ -114,6 +114,13 @@ public class TerrainPatch extends Geometry {
 
     protected float[] lodEntropy;
 
+    // vertex region whose heights changed since the normals were last
+    // updated, dirtyMaxX < 0 when nothing changed
+    private int dirtyMinX, dirtyMinZ, dirtyMaxX = -1, dirtyMaxZ = -1;
+
+    // the heights changed since the model bound was last computed
+    private boolean boundStale = false;
+
     public TerrainPatch() {
         super("TerrainPatch");
         setBatchHint(BatchHint.Never);
@@ -240,29 +247,14 @@ public class TerrainPatch extends Geometry {
         return maxLod;
     }
 
-    protected void reIndexGeometry(HashMap<String,UpdatedTerrainPatch> updated, boolean useVariableLod) {
+    protected void reIndexGeometry(HashMap<TerrainPatch,UpdatedTerrainPatch> updated, boolean useVariableLod) {
 
-        UpdatedTerrainPatch utp = updated.get(getName());
+        UpdatedTerrainPatch utp = updated.get(this);
 
         if (utp != null && utp.isReIndexNeeded() ) {
-            int pow = (int) Math.pow(2, utp.getNewLod());
-            boolean left = utp.getLeftLod() > utp.getNewLod();
-            boolean top = utp.getTopLod() > utp.getNewLod();
-            boolean right = utp.getRightLod() > utp.getNewLod();
-            boolean bottom = utp.getBottomLod() > utp.getNewLod();
-
-            IndexBuffer idxB;
-            if (useVariableLod)
-                idxB = geomap.writeIndexArrayLodVariable(pow, (int) Math.pow(2, utp.getRightLod()), (int) Math.pow(2, utp.getTopLod()), (int) Math.pow(2, utp.getLeftLod()), (int) Math.pow(2, utp.getBottomLod()), totalSize);
-            else
-                idxB = geomap.writeIndexArrayLodDiff(pow, right, top, left, bottom, totalSize);
-            
-            Buffer b;
-            if (idxB.getBuffer() instanceof IntBuffer)
-                b = (IntBuffer)idxB.getBuffer();
-            else
-                b = (ShortBuffer)idxB.getBuffer();
-            utp.setNewIndexBuffer(b);
+            // index layouts only depend on size and LODs, share them between patches
+            VertexBuffer idxB = LODIndexCache.getIndexBuffer(geomap, utp.getNewLod(), utp.getRightLod(), utp.getTopLod(), utp.getLeftLod(), utp.getBottomLod(), totalSize, useVariableLod);
+            utp.setNewIndexBuffer(idxB);
         }
 
     }
@@ -305,39 +297,156 @@ public class TerrainPatch extends Geometry {
         return geomap.getGridTrianglesAtPoint(x, z, getWorldScale() , getWorldTranslation());
     }
 
+    /**
+     * Changes the heights in place: only the modified vertices are written
+     * and only the rows holding them are sent to the GPU. The edited region
+     * is remembered so {@link #updateDirtyNormals() } can recalculate just
+     * the normals around it, and the model bound is grown to contain the
+     * new heights without scanning the vertices.
+     */
     protected void setHeight(List<LocationHeight> locationHeights, boolean overrideHeight) {
-        
+        float[] heights = geomap.getHeightArray();
+        VertexBuffer positionBuffer = getMesh().getBuffer(Type.Position);
+        FloatBuffer positions = (FloatBuffer) positionBuffer.getData();
+
+        int minX = size, minZ = size, maxX = -1, maxZ = -1;
+        float minHeight = Float.MAX_VALUE, maxHeight = -Float.MAX_VALUE;
         for (LocationHeight lh : locationHeights) {
             if (lh.x < 0 || lh.z < 0 || lh.x >= size || lh.z >= size)
                 continue;
             int idx = lh.z * size + lh.x;
-            if (overrideHeight) {
-                geomap.getHeightArray()[idx] = lh.h;
-            } else {
-                float h = getMesh().getFloatBuffer(Type.Position).get(idx*3+1);
-                geomap.getHeightArray()[idx] = h+lh.h;
-            }
-            
+            float h = overrideHeight ? lh.h : heights[idx] + lh.h;
+            heights[idx] = h;
+
+            float y = h * stepScale.y;
+            positions.put(idx*3+1, y);
+            minHeight = Math.min(minHeight, y);
+            maxHeight = Math.max(maxHeight, y);
+            minX = Math.min(minX, lh.x);
+            minZ = Math.min(minZ, lh.z);
+            maxX = Math.max(maxX, lh.x);
+            maxZ = Math.max(maxZ, lh.z);
+        }
+        if (maxX < 0)
+            return;
+
+        positionBuffer.setUpdateNeeded(minZ * size * 3, (maxZ + 1) * size * 3);
+        markHeightsChanged(minX, minZ, maxX, maxZ);
+        growBound(minHeight, maxHeight);
+    }
+
+    private void markHeightsChanged(int minX, int minZ, int maxX, int maxZ) {
+        if (dirtyMaxX < 0) {
+            dirtyMinX = minX;
+            dirtyMinZ = minZ;
+            dirtyMaxX = maxX;
+            dirtyMaxZ = maxZ;
+        } else {
+            dirtyMinX = Math.min(dirtyMinX, minX);
+            dirtyMinZ = Math.min(dirtyMinZ, minZ);
+            dirtyMaxX = Math.max(dirtyMaxX, maxX);
+            dirtyMaxZ = Math.max(dirtyMaxZ, maxZ);
+        }
+    }
+
+    /**
+     * Grows the model bound to contain the given height range. The bound
+     * stays conservative until {@link #updateDirtyBound() } makes it tight
+     * again.
+     */
+    private void growBound(float minHeight, float maxHeight) {
+        BoundingVolume bound = getMesh().getBound();
+        if (!(bound instanceof BoundingBox)) {
+            updateModelBound();
+            return;
         }
 
-        FloatBuffer newVertexBuffer = geomap.writeVertexArray(null, stepScale, false);
-        getMesh().clearBuffer(Type.Position);
-        getMesh().setBuffer(Type.Position, 3, newVertexBuffer);
+        boundStale = true;
+        BoundingBox box = (BoundingBox) bound;
+        Vector3f center = box.getCenter();
+        float low = center.y - box.getYExtent();
+        float high = center.y + box.getYExtent();
+        if (minHeight >= low && maxHeight <= high)
+            return;
+
+        low = Math.min(low, minHeight);
+        high = Math.max(high, maxHeight);
+        center.y = (low + high) * 0.5f;
+        box.setYExtent((high - low) * 0.5f);
+        setBoundRefresh();
+    }
+
+    /**
+     * @return true if heights changed since the normals were last updated
+     */
+    protected boolean isNormalUpdateNeeded() {
+        return dirtyMaxX >= 0;
+    }
+
+    /**
+     * @return true if the normals around the heights changed since the last
+     * update reach the edge of the patch, so the neighbours' edges
+     * have to be matched again
+     */
+    protected boolean isDirtyRegionOnEdge() {
+        return dirtyMaxX >= 0
+                && (dirtyMinX <= 1 || dirtyMinZ <= 1 || dirtyMaxX >= size - 2 || dirtyMaxZ >= size - 2);
+    }
+
+    /**
+     * Recalculates the normals, tangents and binormals around the heights
+     * changed since the last update, only the rows holding them are
+     * sent to the GPU.
+     */
+    protected void updateDirtyNormals() {
+        if (dirtyMaxX < 0)
+            return;
+
+        // a height is shared by the normals of its direct neighbours
+        int minX = Math.max(0, dirtyMinX - 1);
+        int minZ = Math.max(0, dirtyMinZ - 1);
+        int maxX = Math.min(size - 1, dirtyMaxX + 1);
+        int maxZ = Math.min(size - 1, dirtyMaxZ + 1);
+        updateNormals(minX, minZ, maxX, maxZ);
+
+        int start = minZ * size * 3;
+        int end = (maxZ + 1) * size * 3;
+        getMesh().getBuffer(Type.Normal).setUpdateNeeded(start, end);
+        getMesh().getBuffer(Type.Tangent).setUpdateNeeded(start, end);
+        getMesh().getBuffer(Type.Binormal).setUpdateNeeded(start, end);
     }
 
     /**
      * recalculate all of the normal vectors in this terrain patch
      */
     protected void updateNormals() {
-        FloatBuffer newNormalBuffer = geomap.writeNormalArray(null, getWorldScale());
-        getMesh().getBuffer(Type.Normal).updateData(newNormalBuffer);
-        FloatBuffer newTangentBuffer = null;
-        FloatBuffer newBinormalBuffer = null;
-        FloatBuffer[] tb = geomap.writeTangentArray(newNormalBuffer, newTangentBuffer, newBinormalBuffer, (FloatBuffer)getMesh().getBuffer(Type.TexCoord).getData(), getWorldScale());
-        newTangentBuffer = tb[0];
-        newBinormalBuffer = tb[1];
-        getMesh().getBuffer(Type.Tangent).updateData(newTangentBuffer);
-        getMesh().getBuffer(Type.Binormal).updateData(newBinormalBuffer);
+        updateNormals(0, 0, size - 1, size - 1);
+        getMesh().getBuffer(Type.Normal).setUpdateNeeded();
+        getMesh().getBuffer(Type.Tangent).setUpdateNeeded();
+        getMesh().getBuffer(Type.Binormal).setUpdateNeeded();
+    }
+
+    private void updateNormals(int minX, int minZ, int maxX, int maxZ) {
+        FloatBuffer normals = getMesh().getFloatBuffer(Type.Normal);
+        geomap.updateNormalArray(normals, getWorldScale(), minX, minZ, maxX, maxZ);
+        geomap.updateTangentArray(normals, getMesh().getFloatBuffer(Type.Tangent), getMesh().getFloatBuffer(Type.Binormal), minX, minZ, maxX, maxZ);
+        dirtyMaxX = -1;
+        dirtyMaxZ = -1;
+    }
+
+    /**
+     * Recomputes a tight model bound if heights changed since it was last
+     * computed.
+     */
+    protected void updateDirtyBound() {
+        if (boundStale)
+            updateModelBound();
+    }
+
+    @Override
+    public void updateModelBound() {
+        super.updateModelBound();
+        boundStale = false;
     }
 
     private void setInBuffer(Mesh mesh, int index, Vector3f normal, Vector3f tangent, Vector3f binormal) {
@@ -347,9 +456,9 @@ public class TerrainPatch extends Geometry {
         BufferUtils.setInBuffer(normal, (FloatBuffer)NB.getData(), index);
         BufferUtils.setInBuffer(tangent, (FloatBuffer)TB.getData(), index);
         BufferUtils.setInBuffer(binormal, (FloatBuffer)BB.getData(), index);
-        NB.setUpdateNeeded();
-        TB.setUpdateNeeded();
-        BB.setUpdateNeeded();
+        NB.setUpdateNeeded(index * 3, index * 3 + 3);
+        TB.setUpdateNeeded(index * 3, index * 3 + 3);
+        BB.setUpdateNeeded(index * 3, index * 3 + 3);
     }
     
     /**
@@ -121,6 +121,7 @@ public class TerrainQuad extends Node implements Terrain {
     protected int quadrant = 0; // 1=upper left, 2=lower left, 3=upper right, 4=lower right
     private int maxLod = -1;
     private BoundingBox affectedAreaBBox; // only set in the root quad
+    private boolean heightsChanged = false; // only set in the root quad
 
     private TerrainPicker picker;
     private Vector3f lastScale = Vector3f.UNIT_XYZ;
@@ -260,15 +261,55 @@ public class TerrainQuad extends Node implements Terrain {
     /**
      * update the normals if there were any height changes recently.
      * Should only be called on the root quad
+     * <p>
+     * Height edits only mark the vertices they changed, so all the edits
+     * made since the last update are handled here at once: the normals
+     * around the changed vertices are recalculated, the patch edges they
+     * reach are matched again, and the patch bounds are made tight.
      */
     protected void updateNormals() {
 
         if (needToRecalculateNormals()) {
-            //TODO background-thread this if it ends up being expensive
-            fixNormals(affectedAreaBBox); // the affected patches
-            fixNormalEdges(affectedAreaBBox); // the edges between the patches
-            
-            setNormalRecalcNeeded(null); // set to false
+            if (affectedAreaBBox != null) {
+                fixNormals(affectedAreaBBox); // the affected patches
+                fixNormalEdges(affectedAreaBBox); // the edges between the patches
+
+                setNormalRecalcNeeded(null); // set to false
+            }
+
+            if (heightsChanged) {
+                List<TerrainPatch> edgePatches = new ArrayList<TerrainPatch>();
+                updateDirtyPatches(edgePatches);
+                // edges only once every patch's own normals are up to date
+                for (TerrainPatch tp : edgePatches)
+                    ((TerrainQuad) tp.getParent()).fixNormalEdges(tp);
+                heightsChanged = false;
+            }
+        }
+    }
+
+    /**
+     * Recalculates the normals and bounds of the patches whose heights
+     * changed since the last update, and collects the patches with
+     * changes near their edges.
+     */
+    protected void updateDirtyPatches(List<TerrainPatch> edgePatches) {
+        if (children == null)
+            return;
+
+        for (int x = children.size(); --x >= 0;) {
+            Spatial child = children.get(x);
+            if (child instanceof TerrainQuad) {
+                ((TerrainQuad) child).updateDirtyPatches(edgePatches);
+            } else if (child instanceof TerrainPatch) {
+                TerrainPatch tp = (TerrainPatch) child;
+                tp.updateDirtyBound();
+                if (!tp.isNormalUpdateNeeded())
+                    continue;
+                if (tp.isDirtyRegionOnEdge())
+                    edgePatches.add(tp);
+                tp.updateDirtyNormals();
+            }
         }
     }
     
@@ -364,7 +405,7 @@ public class TerrainQuad extends Node implements Terrain {
     }
     
 
-    protected boolean calculateLod(List<Vector3f> location, HashMap<String,UpdatedTerrainPatch> updates, LodCalculator lodCalculator) {
+    protected boolean calculateLod(List<Vector3f> location, HashMap<TerrainPatch,UpdatedTerrainPatch> updates, LodCalculator lodCalculator) {
 
         boolean lodChanged = false;
 
@@ -386,7 +427,7 @@ public class TerrainQuad extends Node implements Terrain {
         return lodChanged;
     }
 
-    protected synchronized void findNeighboursLod(HashMap<String,UpdatedTerrainPatch> updated) {
+    protected synchronized void findNeighboursLod(HashMap<TerrainPatch,UpdatedTerrainPatch> updated) {
         if (children != null) {
             for (int x = children.size(); --x >= 0;) {
                 Spatial child = children.get(x);
@@ -408,27 +449,27 @@ public class TerrainQuad extends Node implements Terrain {
                     TerrainPatch left = patch.leftNeighbour;
                     TerrainPatch top = patch.topNeighbour;
 
-                    UpdatedTerrainPatch utp = updated.get(patch.getName());
+                    UpdatedTerrainPatch utp = updated.get(patch);
                     if (utp == null) {
                         utp = new UpdatedTerrainPatch(patch, patch.lod);
-                        updated.put(utp.getName(), utp);
+                        updated.put(patch, utp);
                     }
 
                     if (right != null) {
-                        UpdatedTerrainPatch utpR = updated.get(right.getName());
+                        UpdatedTerrainPatch utpR = updated.get(right);
                         if (utpR == null) {
                             utpR = new UpdatedTerrainPatch(right);
-                            updated.put(utpR.getName(), utpR);
+                            updated.put(right, utpR);
                             utpR.setNewLod(right.lod);
                         }
                         utp.setRightLod(utpR.getNewLod());
                         utpR.setLeftLod(utp.getNewLod());
                     }
                     if (down != null) {
-                        UpdatedTerrainPatch utpD = updated.get(down.getName());
+                        UpdatedTerrainPatch utpD = updated.get(down);
                         if (utpD == null) {
                             utpD = new UpdatedTerrainPatch(down);
-                            updated.put(utpD.getName(), utpD);
+                            updated.put(down, utpD);
                             utpD.setNewLod(down.lod);
                         }
                         utp.setBottomLod(utpD.getNewLod());
@@ -436,20 +477,20 @@ public class TerrainQuad extends Node implements Terrain {
                     }
                     
                     if (left != null) {
-                        UpdatedTerrainPatch utpL = updated.get(left.getName());
+                        UpdatedTerrainPatch utpL = updated.get(left);
                         if (utpL == null) {
                             utpL = new UpdatedTerrainPatch(left);
-                            updated.put(utpL.getName(), utpL);
+                            updated.put(left, utpL);
                             utpL.setNewLod(left.lod);
                         }
                         utp.setLeftLod(utpL.getNewLod());
                         utpL.setRightLod(utp.getNewLod());
                     }
                     if (top != null) {
-                        UpdatedTerrainPatch utpT = updated.get(top.getName());
+                        UpdatedTerrainPatch utpT = updated.get(top);
                         if (utpT == null) {
                             utpT = new UpdatedTerrainPatch(top);
-                            updated.put(utpT.getName(), utpT);
+                            updated.put(top, utpT);
                             utpT.setNewLod(top.lod);
                         }
                         utp.setTopLod(utpT.getNewLod());
@@ -483,7 +524,7 @@ public class TerrainQuad extends Node implements Terrain {
      * Find any neighbours that should have their edges seamed because another neighbour
      * changed its LOD to a greater value (less detailed)
      */
-    protected synchronized void fixEdges(HashMap<String,UpdatedTerrainPatch> updated) {
+    protected synchronized void fixEdges(HashMap<TerrainPatch,UpdatedTerrainPatch> updated) {
         if (children != null) {
             for (int x = children.size(); --x >= 0;) {
                 Spatial child = children.get(x);
@@ -491,7 +532,7 @@ public class TerrainQuad extends Node implements Terrain {
                     ((TerrainQuad) child).fixEdges(updated);
                 } else if (child instanceof TerrainPatch) {
                     TerrainPatch patch = (TerrainPatch) child;
-                    UpdatedTerrainPatch utp = updated.get(patch.getName());
+                    UpdatedTerrainPatch utp = updated.get(patch);
 
                     if(utp != null && utp.lodChanged()) {
                         if (!patch.searchedForNeighboursAlready) {
@@ -507,40 +548,40 @@ public class TerrainQuad extends Node implements Terrain {
                         TerrainPatch top = patch.topNeighbour;
                         TerrainPatch left = patch.leftNeighbour;
                         if (right != null) {
-                            UpdatedTerrainPatch utpR = updated.get(right.getName());
+                            UpdatedTerrainPatch utpR = updated.get(right);
                             if (utpR == null) {
                                 utpR = new UpdatedTerrainPatch(right);
-                                updated.put(utpR.getName(), utpR);
+                                updated.put(right, utpR);
                                 utpR.setNewLod(right.lod);
                             }
                             utpR.setLeftLod(utp.getNewLod());
                             utpR.setFixEdges(true);
                         }
                         if (down != null) {
-                            UpdatedTerrainPatch utpD = updated.get(down.getName());
+                            UpdatedTerrainPatch utpD = updated.get(down);
                             if (utpD == null) {
                                 utpD = new UpdatedTerrainPatch(down);
-                                updated.put(utpD.getName(), utpD);
+                                updated.put(down, utpD);
                                 utpD.setNewLod(down.lod);
                             }
                             utpD.setTopLod(utp.getNewLod());
                             utpD.setFixEdges(true);
                         }
                         if (top != null){
-                            UpdatedTerrainPatch utpT = updated.get(top.getName());
+                            UpdatedTerrainPatch utpT = updated.get(top);
                             if (utpT == null) {
                                 utpT = new UpdatedTerrainPatch(top);
-                                updated.put(utpT.getName(), utpT);
+                                updated.put(top, utpT);
                                 utpT.setNewLod(top.lod);
                             }
                             utpT.setBottomLod(utp.getNewLod());
                             utpT.setFixEdges(true);
                         }
                         if (left != null){
-                            UpdatedTerrainPatch utpL = updated.get(left.getName());
+                            UpdatedTerrainPatch utpL = updated.get(left);
                             if (utpL == null) {
                                 utpL = new UpdatedTerrainPatch(left);
-                                updated.put(utpL.getName(), utpL);
+                                updated.put(left, utpL);
                                 utpL.setNewLod(left.lod);
                             }
                             utpL.setRightLod(utp.getNewLod());
@@ -552,7 +593,7 @@ public class TerrainQuad extends Node implements Terrain {
         }
     }
 
-    protected synchronized void reIndexPages(HashMap<String,UpdatedTerrainPatch> updated, boolean usesVariableLod) {
+    protected synchronized void reIndexPages(HashMap<TerrainPatch,UpdatedTerrainPatch> updated, boolean usesVariableLod) {
         if (children != null) {
             for (int i = children.size(); --i >= 0;) {
                 Spatial child = children.get(i);
@@ -883,7 +924,7 @@ public class TerrainQuad extends Node implements Terrain {
     }
 
     protected boolean needToRecalculateNormals() {
-        if (affectedAreaBBox != null)
+        if (affectedAreaBBox != null || heightsChanged)
             return true;
         if (!lastScale.equals(getWorldScale())) {
             affectedAreaBBox = new BoundingBox(getWorldTranslation(), Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
@@ -1179,9 +1220,10 @@ public class TerrainQuad extends Node implements Terrain {
 
         setHeight(locations, overrideHeight); // adjust height of the actual mesh
 
-        // signal that the normals need updating
-        for (int i=0; i<xz.size(); i++)
-            setNormalRecalcNeeded(xz.get(i) );
+        // signal that the normals need updating, the patches keep track
+        // of the vertices that changed
+        if (!locations.isEmpty())
+            heightsChanged = true;
     }
 
     protected class LocationHeight {
@@ -1628,31 +1670,36 @@ public class TerrainQuad extends Node implements Terrain {
                 if (affectedArea != null && !affectedArea.intersects(((TerrainPatch) child).getWorldBound()) ) // if doesn't intersect, continue
                     continue;
 
-                TerrainPatch tp = (TerrainPatch) child;
-                TerrainPatch right = findRightPatch(tp);
-                TerrainPatch bottom = findDownPatch(tp);
-                TerrainPatch top = findTopPatch(tp);
-                TerrainPatch left = findLeftPatch(tp);
-                TerrainPatch topLeft = null;
-                if (top != null)
-                    topLeft = findLeftPatch(top);
-                TerrainPatch bottomRight = null;
-                if (right != null)
-                    bottomRight = findDownPatch(right);
-                TerrainPatch topRight = null;
-                if (top != null)
-                    topRight = findRightPatch(top);
-                TerrainPatch bottomLeft = null;
-                if (left != null)
-                    bottomLeft = findDownPatch(left);
-
-                tp.fixNormalEdges(right, bottom, top, left, bottomRight, bottomLeft, topRight, topLeft);
-
+                fixNormalEdges((TerrainPatch) child);
             }
         } // for each child
 
     }
 
+    /**
+     * fix the normals on the edges of the given child patch
+     */
+    protected void fixNormalEdges(TerrainPatch tp) {
+        TerrainPatch right = findRightPatch(tp);
+        TerrainPatch bottom = findDownPatch(tp);
+        TerrainPatch top = findTopPatch(tp);
+        TerrainPatch left = findLeftPatch(tp);
+        TerrainPatch topLeft = null;
+        if (top != null)
+            topLeft = findLeftPatch(top);
+        TerrainPatch bottomRight = null;
+        if (right != null)
+            bottomRight = findDownPatch(right);
+        TerrainPatch topRight = null;
+        if (top != null)
+            topRight = findRightPatch(top);
+        TerrainPatch bottomLeft = null;
+        if (left != null)
+            bottomLeft = findDownPatch(left);
+
+        tp.fixNormalEdges(right, bottom, top, left, bottomRight, bottomLeft, topRight, topLeft);
+    }
+
 
 
     @Override
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+
+/**
+ * Height, normal and ray queries against a TerrainQuad that are safe to
+ * use from any thread.
+ * <p>
+ * The query works on its own snapshot of the heightmap, so worker threads
+ * never touch the scene graph the render thread is updating. Next to the
+ * heights the snapshot holds a min/max pyramid: level 0 stores the lowest
+ * and highest corner of every grid cell, each following level the range of
+ * 2x2 blocks of the level below. Ray casts descend the pyramid nearest block
+ * first and only test the triangles of cells whose height range the ray
+ * passes through, instead of walking every cell along the ray.
+ * <p>
+ * Heights and normals are interpolated over the same triangles as
+ * {@link TerrainQuad#getHeight(Vector2f) }, but all results are in world
+ * space: the terrain's translation and scale are captured with the heights.
+ * Rotation is not supported. After the terrain was edited or moved, call
+ * {@link #update() } from the render thread; queries already running keep
+ * using the previous snapshot.
+ */
+public class TerrainQuery {
+
+    private final TerrainQuad terrain;
+    private volatile HeightField field;
+
+    /**
+     * Creates a query for the given terrain and takes the first snapshot.
+     * Must be called from the thread that owns the terrain.
+     */
+    public TerrainQuery(TerrainQuad terrain) {
+        this.terrain = terrain;
+        update();
+    }
+
+    /**
+     * Takes a new snapshot of the terrain heights and world transform. Must
+     * be called from the thread that owns the terrain. This copies the whole
+     * heightmap, so while the terrain is being edited continuously, update
+     * only every now and then instead of every frame.
+     */
+    public void update() {
+        field = new HeightField(terrain.getHeightMap(), terrain.getTerrainSize(), terrain.getPatchSize(),
+                                terrain.getWorldTranslation(), terrain.getWorldScale());
+    }
+
+    public TerrainQuad getTerrain() {
+        return terrain;
+    }
+
+    /**
+     * Get the interpolated height of the terrain at the specified point.
+     * @param x world x coordinate
+     * @param z world z coordinate
+     * @return the world height, or Float.NaN if the point is outside of the terrain
+     */
+    public float getHeight(float x, float z) {
+        return field.getHeight(x, z);
+    }
+
+    public float getHeight(Vector2f xz) {
+        return field.getHeight(xz.x, xz.y);
+    }
+
+    /**
+     * Gets the heights of many points at once, all taken from the same
+     * snapshot.
+     * @param xz the world x and z coordinates of the points, interleaved
+     * @param store receives the height of each point, Float.NaN for points
+     * outside of the terrain
+     */
+    public void getHeights(float[] xz, float[] store) {
+        int count = xz.length / 2;
+        if (store.length < count)
+            throw new IllegalArgumentException("store must hold " + count + " heights");
+
+        HeightField f = field;
+        for (int i = 0; i < count; i++)
+            store[i] = f.getHeight(xz[i * 2], xz[i * 2 + 1]);
+    }
+
+    /**
+     * Get the smooth normal of the terrain at the specified point.
+     * @param x world x coordinate
+     * @param z world z coordinate
+     * @param store the vector to store the normal in, can be null
+     * @return the normal, or null if the point is outside of the terrain
+     */
+    public Vector3f getNormal(float x, float z, Vector3f store) {
+        return field.getNormal(x, z, store);
+    }
+
+    /**
+     * Finds the first point where the ray hits the terrain. The ray's limit
+     * is respected.
+     * @param ray the ray in world space, its direction must be normalized
+     * @param store receives the intersection point, can be null
+     * @return the distance along the ray to the intersection, or -1 if the
+     * ray does not hit the terrain
+     */
+    public float getIntersection(Ray ray, Vector3f store) {
+        HeightField f = field;
+        float t = new RayCast(f, ray).cast();
+        if (t >= 0 && store != null)
+            store.set(ray.getDirection()).multLocal(t).addLocal(ray.getOrigin());
+        return t;
+    }
+
+    /**
+     * Immutable heightmap snapshot with its min/max pyramid.
+     */
+    private static final class HeightField {
+
+        final float[] heights;
+        final int size;
+        final int patchCells;
+        final float tx, ty, tz;
+        final float sx, sy, sz;
+        final float half;
+
+        // min/max height per block, level 0 holds the grid cells
+        final float[][] min;
+        final float[][] max;
+        final int[] width;
+
+        HeightField(float[] heights, int size, int patchSize, Vector3f translation, Vector3f scale) {
+            this.heights = heights;
+            this.size = size;
+            this.patchCells = patchSize - 1;
+            tx = translation.x;
+            ty = translation.y;
+            tz = translation.z;
+            sx = scale.x;
+            sy = scale.y;
+            sz = scale.z;
+            half = (size - 1) / 2f;
+
+            int levels = 1;
+            for (int w = size - 1; w > 1; w = (w + 1) / 2)
+                levels++;
+            min = new float[levels][];
+            max = new float[levels][];
+            width = new int[levels];
+
+            int cells = size - 1;
+            width[0] = cells;
+            min[0] = new float[cells * cells];
+            max[0] = new float[cells * cells];
+            for (int z = 0; z < cells; z++) {
+                for (int x = 0; x < cells; x++) {
+                    int i = z * size + x;
+                    float h1 = heights[i], h2 = heights[i + 1];
+                    float h3 = heights[i + size], h4 = heights[i + size + 1];
+                    min[0][z * cells + x] = Math.min(Math.min(h1, h2), Math.min(h3, h4));
+                    max[0][z * cells + x] = Math.max(Math.max(h1, h2), Math.max(h3, h4));
+                }
+            }
+
+            for (int l = 1; l < levels; l++) {
+                int below = width[l - 1];
+                int w = (below + 1) / 2;
+                width[l] = w;
+                min[l] = new float[w * w];
+                max[l] = new float[w * w];
+                for (int z = 0; z < w; z++) {
+                    for (int x = 0; x < w; x++) {
+                        float lo = Float.MAX_VALUE, hi = -Float.MAX_VALUE;
+                        for (int cz = z * 2; cz < Math.min(z * 2 + 2, below); cz++) {
+                            for (int cx = x * 2; cx < Math.min(x * 2 + 2, below); cx++) {
+                                lo = Math.min(lo, min[l - 1][cz * below + cx]);
+                                hi = Math.max(hi, max[l - 1][cz * below + cx]);
+                            }
+                        }
+                        min[l][z * w + x] = lo;
+                        max[l][z * w + x] = hi;
+                    }
+                }
+            }
+        }
+
+        /**
+         * The corner cells of every patch are split along the other
+         * diagonal, see LODGeomap.getGridTrianglesAtPoint()
+         */
+        boolean isFlipped(int cx, int cz) {
+            int lx = cx % patchCells;
+            int lz = cz % patchCells;
+            return (lx == 0 && lz == 0) || (lx == patchCells - 1 && lz == patchCells - 1);
+        }
+
+        float getHeight(float x, float z) {
+            float gx = (x - tx) / sx + half;
+            float gz = (z - tz) / sz + half;
+            if (!(gx >= 0 && gz >= 0 && gx <= size - 1 && gz <= size - 1))
+                return Float.NaN;
+
+            int cx = Math.min((int) gx, size - 2);
+            int cz = Math.min((int) gz, size - 2);
+            float xm = gx - cx;
+            float zm = gz - cz;
+
+            int index = cz * size + cx;
+            float h1 = heights[index];              // top left
+            float h2 = heights[index + 1];          // top right
+            float h3 = heights[index + size];       // bottom left
+            float h4 = heights[index + size + 1];   // bottom right
+
+            float h;
+            if (isFlipped(cx, cz)) {
+                if (xm < zm)
+                    h = h1 + xm*(h4-h3) + zm*(h3-h1);
+                else
+                    h = h1 + xm*(h2-h1) + zm*(h4-h2);
+            } else {
+                if (xm < (1-zm))
+                    h = h3 + xm*(h2-h1) + (1f-zm)*(h1-h3);
+                else
+                    h = h3 + xm*(h4-h3) + (1f-zm)*(h2-h4);
+            }
+            return ty + h * sy;
+        }
+
+        Vector3f getNormal(float x, float z, Vector3f store) {
+            float gx = (x - tx) / sx + half;
+            float gz = (z - tz) / sz + half;
+            if (!(gx >= 0 && gz >= 0 && gx <= size - 1 && gz <= size - 1))
+                return null;
+
+            int cx = Math.min((int) gx, size - 2);
+            int cz = Math.min((int) gz, size - 2);
+            float xm = gx - cx;
+            float zm = gz - cz;
+
+            if (store == null)
+                store = new Vector3f();
+            store.set(0, 0, 0);
+            // bilinear blend of the vertex normals of the cell
+            addVertexNormal(cx, cz, (1 - xm) * (1 - zm), store);
+            addVertexNormal(cx + 1, cz, xm * (1 - zm), store);
+            addVertexNormal(cx, cz + 1, (1 - xm) * zm, store);
+            addVertexNormal(cx + 1, cz + 1, xm * zm, store);
+            return store.normalizeLocal();
+        }
+
+        private void addVertexNormal(int x, int z, float weight, Vector3f store) {
+            // central differences, one sided on the border
+            int x0 = Math.max(x - 1, 0), x1 = Math.min(x + 1, size - 1);
+            int z0 = Math.max(z - 1, 0), z1 = Math.min(z + 1, size - 1);
+            float nx = -(heights[z * size + x1] - heights[z * size + x0]) * sy / ((x1 - x0) * sx);
+            float nz = -(heights[z1 * size + x] - heights[z0 * size + x]) * sy / ((z1 - z0) * sz);
+            float scale = weight / FastMath.sqrt(nx * nx + 1 + nz * nz);
+            store.x += nx * scale;
+            store.y += scale;
+            store.z += nz * scale;
+        }
+    }
+
+    /**
+     * State of a single ray cast, in the grid space of the height field.
+     * The ray parameter is the same as in world space.
+     */
+    private static final class RayCast {
+
+        private final HeightField f;
+        private final float ox, oy, oz;
+        private final float dx, dy, dz;
+        private float best;
+
+        // blocks still to visit, the nearest on top
+        private int[] stackLevel = new int[32];
+        private int[] stackX = new int[32];
+        private int[] stackZ = new int[32];
+        private float[] stackT = new float[32];
+        private int stackSize = 0;
+
+        RayCast(HeightField f, Ray ray) {
+            this.f = f;
+            Vector3f o = ray.getOrigin();
+            Vector3f d = ray.getDirection();
+            ox = (o.x - f.tx) / f.sx + f.half;
+            oy = (o.y - f.ty) / f.sy;
+            oz = (o.z - f.tz) / f.sz + f.half;
+            dx = d.x / f.sx;
+            dy = d.y / f.sy;
+            dz = d.z / f.sz;
+            best = ray.getLimit();
+        }
+
+        float cast() {
+            boolean hit = false;
+            int top = f.width.length - 1;
+            float t = enterBlock(top, 0, 0);
+            if (t < best)
+                push(top, 0, 0, t);
+
+            int[] childX = new int[4];
+            int[] childZ = new int[4];
+            float[] childT = new float[4];
+            while (stackSize > 0) {
+                stackSize--;
+                int level = stackLevel[stackSize];
+                int x = stackX[stackSize];
+                int z = stackZ[stackSize];
+                if (stackT[stackSize] >= best)
+                    continue;
+
+                if (level == 0) {
+                    if (intersectCell(x, z))
+                        hit = true;
+                    continue;
+                }
+
+                // push the children that are in reach, farthest first
+                int below = f.width[level - 1];
+                int count = 0;
+                for (int cz = z * 2; cz < Math.min(z * 2 + 2, below); cz++) {
+                    for (int cx = x * 2; cx < Math.min(x * 2 + 2, below); cx++) {
+                        float ct = enterBlock(level - 1, cx, cz);
+                        if (ct >= best)
+                            continue;
+                        int i = count++;
+                        while (i > 0 && childT[i - 1] < ct) {
+                            childX[i] = childX[i - 1];
+                            childZ[i] = childZ[i - 1];
+                            childT[i] = childT[i - 1];
+                            i--;
+                        }
+                        childX[i] = cx;
+                        childZ[i] = cz;
+                        childT[i] = ct;
+                    }
+                }
+                for (int i = 0; i < count; i++)
+                    push(level - 1, childX[i], childZ[i], childT[i]);
+            }
+            return hit ? best : -1;
+        }
+
+        private void push(int level, int x, int z, float t) {
+            if (stackSize == stackT.length) {
+                int[] l = new int[stackSize * 2];
+                int[] sx = new int[stackSize * 2];
+                int[] sz = new int[stackSize * 2];
+                float[] st = new float[stackSize * 2];
+                System.arraycopy(stackLevel, 0, l, 0, stackSize);
+                System.arraycopy(stackX, 0, sx, 0, stackSize);
+                System.arraycopy(stackZ, 0, sz, 0, stackSize);
+                System.arraycopy(stackT, 0, st, 0, stackSize);
+                stackLevel = l;
+                stackX = sx;
+                stackZ = sz;
+                stackT = st;
+            }
+            stackLevel[stackSize] = level;
+            stackX[stackSize] = x;
+            stackZ[stackSize] = z;
+            stackT[stackSize] = t;
+            stackSize++;
+        }
+
+        /**
+         * @return the ray parameter where the ray enters the bounds of the
+         * block, or Float.POSITIVE_INFINITY if it misses them
+         */
+        private float enterBlock(int level, int x, int z) {
+            int cells = f.size - 1;
+            float x0 = x << level, x1 = Math.min((x + 1) << level, cells);
+            float z0 = z << level, z1 = Math.min((z + 1) << level, cells);
+            int i = z * f.width[level] + x;
+            float y0 = f.min[level][i], y1 = f.max[level][i];
+
+            float near = 0, far = best;
+            if (dx == 0) {
+                if (ox < x0 || ox > x1)
+                    return Float.POSITIVE_INFINITY;
+            } else {
+                float a = (x0 - ox) / dx, b = (x1 - ox) / dx;
+                near = Math.max(near, Math.min(a, b));
+                far = Math.min(far, Math.max(a, b));
+            }
+            if (dy == 0) {
+                if (oy < y0 || oy > y1)
+                    return Float.POSITIVE_INFINITY;
+            } else {
+                float a = (y0 - oy) / dy, b = (y1 - oy) / dy;
+                near = Math.max(near, Math.min(a, b));
+                far = Math.min(far, Math.max(a, b));
+            }
+            if (dz == 0) {
+                if (oz < z0 || oz > z1)
+                    return Float.POSITIVE_INFINITY;
+            } else {
+                float a = (z0 - oz) / dz, b = (z1 - oz) / dz;
+                near = Math.max(near, Math.min(a, b));
+                far = Math.min(far, Math.max(a, b));
+            }
+            return near <= far ? near : Float.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Tests the two triangles of a grid cell, and keeps the hit if it
+         * is nearer than the best one so far.
+         */
+        private boolean intersectCell(int cx, int cz) {
+            int size = f.size;
+            int index = cz * size + cx;
+            float h1 = f.heights[index];
+            float h2 = f.heights[index + 1];
+            float h3 = f.heights[index + size];
+            float h4 = f.heights[index + size + 1];
+            float x1 = cx + 1, z1 = cz + 1;
+
+            float a, b;
+            if (f.isFlipped(cx, cz)) {
+                a = intersectTriangle(cx, h1, cz, cx, h3, z1, x1, h4, z1);
+                b = intersectTriangle(cx, h1, cz, x1, h4, z1, x1, h2, cz);
+            } else {
+                a = intersectTriangle(cx, h1, cz, x1, h2, cz, cx, h3, z1);
+                b = intersectTriangle(x1, h2, cz, x1, h4, z1, cx, h3, z1);
+            }
+            float t = Math.min(a, b);
+            if (t < best) {
+                best = t;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Double sided ray/triangle test (Moller-Trumbore).
+         * @return the ray parameter of the hit, or Float.POSITIVE_INFINITY
+         */
+        private float intersectTriangle(float ax, float ay, float az,
+                                        float bx, float by, float bz,
+                                        float cx, float cy, float cz) {
+            float e1x = bx - ax, e1y = by - ay, e1z = bz - az;
+            float e2x = cx - ax, e2y = cy - ay, e2z = cz - az;
+            float px = dy * e2z - dz * e2y;
+            float py = dz * e2x - dx * e2z;
+            float pz = dx * e2y - dy * e2x;
+            float det = e1x * px + e1y * py + e1z * pz;
+            if (det > -FastMath.FLT_EPSILON && det < FastMath.FLT_EPSILON)
+                return Float.POSITIVE_INFINITY;
+
+            float inv = 1f / det;
+            float sx = ox - ax, sy = oy - ay, sz = oz - az;
+            float u = (sx * px + sy * py + sz * pz) * inv;
+            if (u < 0 || u > 1)
+                return Float.POSITIVE_INFINITY;
+
+            float qx = sy * e1z - sz * e1y;
+            float qy = sz * e1x - sx * e1z;
+            float qz = sx * e1y - sy * e1x;
+            float v = (dx * qx + dy * qy + dz * qz) * inv;
+            if (v < 0 || u + v > 1)
+                return Float.POSITIVE_INFINITY;
+
+            float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+            return t >= 0 ? t : Float.POSITIVE_INFINITY;
+        }
+    }
+}
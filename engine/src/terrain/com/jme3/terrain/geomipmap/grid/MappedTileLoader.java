@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jme3.terrain.geomipmap.grid;
+
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.math.Vector3f;
+import com.jme3.terrain.geomipmap.TerrainGridTileLoader;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import com.jme3.terrain.heightmap.HeightTileFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads TerrainGrid tiles from a memory mapped {@link HeightTileFile}.
+ * Only the tiles the grid asks for are paged in, so the heightfield can be
+ * much larger than memory. The heights are copied straight from the mapped
+ * file into the array the TerrainQuad is built from, without decoding an
+ * image or going through a stream.
+ * <p>
+ * The tile size of the file must match the quad size of the grid.
+ */
+public class MappedTileLoader implements TerrainGridTileLoader {
+
+    private static final Logger logger = Logger.getLogger(MappedTileLoader.class.getName());
+    private String path;
+    private HeightTileFile file;
+    private int patchSize;
+    private int quadSize;
+    private float heightScale = 1;
+
+    public MappedTileLoader() {
+    }
+
+    public MappedTileLoader(File path) throws IOException {
+        this.path = path.getPath();
+        this.file = new HeightTileFile(path);
+    }
+
+    public MappedTileLoader(HeightTileFile file) {
+        this.path = file.getPath().getPath();
+        this.file = file;
+    }
+
+    /**
+     * Effects vertical scale of the height of the terrain when loaded.
+     */
+    public void setHeightScale(float heightScale) {
+        this.heightScale = heightScale;
+    }
+
+    public float getHeightScale() {
+        return heightScale;
+    }
+
+    public HeightTileFile getHeightTileFile() {
+        return file;
+    }
+
+    private float[] getHeightMapAt(Vector3f location) {
+        int x = (int) location.x;
+        int z = (int) location.z;
+        try {
+            float[] heights = file.readTile(x, z, null);
+            if (heights == null) {
+                logger.log(Level.FINE, "No tile at {0} in {1}, loading zero heightmap instead", new Object[]{location, path});
+                return null;
+            }
+            if (heightScale != 1) {
+                for (int i = 0; i < heights.length; i++)
+                    heights[i] *= heightScale;
+            }
+            return heights;
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Could not read tile " + location + " from " + path + ", loading zero heightmap instead", ex);
+            return null;
+        }
+    }
+
+    public TerrainQuad getTerrainQuadAt(Vector3f location) {
+        return new TerrainQuad("Quad" + location, patchSize, quadSize, getHeightMapAt(location));
+    }
+
+    public void setPatchSize(int patchSize) {
+        this.patchSize = patchSize;
+    }
+
+    public void setQuadSize(int quadSize) {
+        if (file != null && file.getTileSize() != quadSize)
+            throw new IllegalArgumentException("The tiles of " + path + " are " + file.getTileSize()
+                                               + " points wide but the grid quads are " + quadSize);
+        this.quadSize = quadSize;
+    }
+
+    public void write(JmeExporter ex) throws IOException {
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(path, "path", null);
+        oc.write(heightScale, "heightScale", 1);
+    }
+
+    public void read(JmeImporter im) throws IOException {
+        InputCapsule ic = im.getCapsule(this);
+        path = ic.readString("path", null);
+        heightScale = ic.readFloat("heightScale", 1);
+        if (path != null)
+            file = new HeightTileFile(new File(path));
+    }
+}
@@ -62,7 +62,7 @@ public class DistanceLodCalculator implements LodCalculator {
         this.lodMultiplier = multiplier;
     }
     
-    public boolean calculateLod(TerrainPatch terrainPatch, List<Vector3f> locations, HashMap<String, UpdatedTerrainPatch> updates) {
+    public boolean calculateLod(TerrainPatch terrainPatch, List<Vector3f> locations, HashMap<TerrainPatch, UpdatedTerrainPatch> updates) {
         if (locations == null || locations.isEmpty())
             return false;// no camera yet
         float distance = getCenterLocation(terrainPatch).distance(locations.get(0));
@@ -70,10 +70,10 @@ public class DistanceLodCalculator implements LodCalculator {
         if (turnOffLod) {
             // set to full detail
             int prevLOD = terrainPatch.getLod();
-            UpdatedTerrainPatch utp = updates.get(terrainPatch.getName());
+            UpdatedTerrainPatch utp = updates.get(terrainPatch);
             if (utp == null) {
                 utp = new UpdatedTerrainPatch(terrainPatch);
-                updates.put(utp.getName(), utp);
+                updates.put(terrainPatch, utp);
             }
             utp.setNewLod(0);
             utp.setPreviousLod(prevLOD);
@@ -91,10 +91,10 @@ public class DistanceLodCalculator implements LodCalculator {
                 }
                 int prevLOD = terrainPatch.getLod();
                 
-                UpdatedTerrainPatch utp = updates.get(terrainPatch.getName());
+                UpdatedTerrainPatch utp = updates.get(terrainPatch);
                 if (utp == null) {
                     utp = new UpdatedTerrainPatch(terrainPatch);//save in here, do not update actual variables
-                    updates.put(utp.getName(), utp);
+                    updates.put(terrainPatch, utp);
                 }
                 utp.setNewLod(i);
                 utp.setPreviousLod(prevLOD);
@@ -41,12 +41,16 @@ import java.util.List;
 /**
  * Calculate the Level of Detail of a terrain patch based on the
  * cameras, or other locations.
+ * <p>
+ * calculateLod() is called concurrently for different patches when the
+ * TerrainLodControl uses more than one LOD thread; it must only store the
+ * result of the patch it was given in 'updates', keyed by that patch.
  *
  * @author Brent Owens
  */
 public interface LodCalculator extends Savable, Cloneable {
 
-    public boolean calculateLod(TerrainPatch terrainPatch, List<Vector3f> locations, HashMap<String,UpdatedTerrainPatch> updates);
+    public boolean calculateLod(TerrainPatch terrainPatch, List<Vector3f> locations, HashMap<TerrainPatch,UpdatedTerrainPatch> updates);
     
     public LodCalculator clone();
     
@@ -72,14 +72,14 @@ public class PerspectiveLodCalculator implements LodCalculator {
         return A / T;
     }
     
-    public boolean calculateLod(TerrainPatch patch, List<Vector3f> locations, HashMap<String, UpdatedTerrainPatch> updates) {
+    public boolean calculateLod(TerrainPatch patch, List<Vector3f> locations, HashMap<TerrainPatch, UpdatedTerrainPatch> updates) {
         if (turnOffLod) {
             // set to full detail
             int prevLOD = patch.getLod();
-            UpdatedTerrainPatch utp = updates.get(patch.getName());
+            UpdatedTerrainPatch utp = updates.get(patch);
             if (utp == null) {
                 utp = new UpdatedTerrainPatch(patch);
-                updates.put(utp.getName(), utp);
+                updates.put(patch, utp);
             }
             utp.setNewLod(0);
             utp.setPreviousLod(prevLOD);
@@ -108,10 +108,10 @@ public class PerspectiveLodCalculator implements LodCalculator {
                 int prevLOD = patch.getLod();
 
                 
-                UpdatedTerrainPatch utp = updates.get(patch.getName());
+                UpdatedTerrainPatch utp = updates.get(patch);
                 if (utp == null) {
                     utp = new UpdatedTerrainPatch(patch);//save in here, do not update actual variables
-                    updates.put(utp.getName(), utp);
+                    updates.put(patch, utp);
                 }
                 utp.setNewLod(i);
                 utp.setPreviousLod(prevLOD);
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jme3.terrain.heightmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Converts a heightmap, such as a {@link RawHeightMap} or an
+ * {@link ImageBasedHeightMap}, into a {@link HeightTileFile} that a
+ * TerrainGrid can stream tile by tile.
+ * <p>
+ * From the command line it converts RAW files:
+ * <pre>
+ * HeightTileConverter input.raw size tileSize output.jmht [8bit|16le|16be]
+ * </pre>
+ * The tile size must match the quad size of the TerrainGrid that loads the
+ * file, (maxVisibleSize + 1) / 2.
+ */
+public class HeightTileConverter {
+
+    /**
+     * Splits the heightmap into tiles, the first one at cell (0, 0).
+     */
+    public static void convert(HeightMap source, int tileSize, File output) throws IOException {
+        convert(source, tileSize, 0, 0, output);
+    }
+
+    /**
+     * Splits the heightmap into tiles of tileSize points, sharing their edge
+     * row with their neighbours. The last row and column of tiles are padded
+     * with the edge heights of the source if it does not divide evenly.
+     * 
+     * @param source the heightmap, must be loaded
+     * @param tileSize the number of points along one side of a tile
+     * @param minX the cell coordinate of the first tile
+     * @param minZ the cell coordinate of the first tile
+     * @param output the file to write
+     */
+    public static void convert(HeightMap source, int tileSize, int minX, int minZ, File output) throws IOException {
+        if (tileSize < 2)
+            throw new IllegalArgumentException("tileSize must be at least 2, was: " + tileSize);
+        float[] heights = source.getHeightMap();
+        int size = source.getSize();
+        if (heights == null || heights.length < size * size)
+            throw new IllegalArgumentException("The heightmap is not loaded");
+
+        int tiles = Math.max(1, (size - 2) / (tileSize - 1) + 1);
+        int tileBytes = tileSize * tileSize * 4;
+        long dataStart = HeightTileFile.HEADER_SIZE + tiles * tiles * 8L;
+
+        RandomAccessFile file = new RandomAccessFile(output, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(HeightTileFile.MAGIC);
+            header.putInt(HeightTileFile.VERSION);
+            header.putInt(tileSize);
+            header.putInt(minX);
+            header.putInt(minZ);
+            header.putInt(tiles);
+            header.putInt(tiles);
+            header.putInt(0);
+            for (int i = 0; i < tiles * tiles; i++)
+                header.putLong(dataStart + (long) i * tileBytes);
+            header.flip();
+            channel.write(header, 0);
+
+            ByteBuffer tile = ByteBuffer.allocateDirect(tileBytes).order(ByteOrder.LITTLE_ENDIAN);
+            FloatBuffer tileHeights = tile.asFloatBuffer();
+            for (int tz = 0; tz < tiles; tz++) {
+                for (int tx = 0; tx < tiles; tx++) {
+                    tileHeights.clear();
+                    for (int z = 0; z < tileSize; z++) {
+                        int sz = Math.min(tz * (tileSize - 1) + z, size - 1);
+                        for (int x = 0; x < tileSize; x++) {
+                            int sx = Math.min(tx * (tileSize - 1) + x, size - 1);
+                            tileHeights.put(heights[sz * size + sx]);
+                        }
+                    }
+                    tile.clear();
+                    long position = dataStart + (long) (tz * tiles + tx) * tileBytes;
+                    while (tile.hasRemaining())
+                        position += channel.write(tile, position);
+                }
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Usage: HeightTileConverter input.raw size tileSize output.jmht [8bit|16le|16be]");
+            return;
+        }
+        int size = Integer.parseInt(args[1]);
+        int tileSize = Integer.parseInt(args[2]);
+        int format = RawHeightMap.FORMAT_8BIT;
+        if (args.length > 4) {
+            if (args[4].equals("16le"))
+                format = RawHeightMap.FORMAT_16BITLE;
+            else if (args[4].equals("16be"))
+                format = RawHeightMap.FORMAT_16BITBE;
+        }
+
+        RawHeightMap heightmap = new RawHeightMap(args[0], size, format, false);
+        convert(heightmap, tileSize, new File(args[3]));
+        int tiles = Math.max(1, (size - 2) / (tileSize - 1) + 1);
+        System.out.println("Wrote " + tiles + "x" + tiles + " tiles of " + tileSize + " to " + args[3]);
+    }
+}
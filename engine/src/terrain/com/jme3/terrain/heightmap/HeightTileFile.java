@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jme3.terrain.heightmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A large heightfield split into square tiles and stored in one file that
+ * is read through memory mapping, so only the tiles that are used get
+ * paged in. Meant for streaming open worlds far larger than memory into a
+ * TerrainGrid, see {@link com.jme3.terrain.geomipmap.grid.MappedTileLoader}.
+ * <p>
+ * Neighbouring tiles share their edge row, like the tiles of a TerrainGrid:
+ * tile (x, z) starts at heightfield point (x * (tileSize - 1), z * (tileSize - 1))
+ * relative to the first tile. The file is little endian:
+ * <pre>
+ * int    magic 'JMHT'
+ * int    version
+ * int    tileSize     points per tile side
+ * int    minX, minZ   cell coordinate of the first tile
+ * int    tilesX, tilesZ
+ * int    reserved
+ * long[] offsets      tilesX * tilesZ file offsets of the tiles, row by row, 0 if absent
+ * then the tiles, tileSize * tileSize float heights each, row by row
+ * </pre>
+ * Use {@link HeightTileConverter} to create the file from any HeightMap.
+ * <p>
+ * Instances are thread safe.
+ */
+public class HeightTileFile {
+
+    public static final int MAGIC = 0x4A4D4854; // JMHT
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    private final File path;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int tileSize;
+    private final int minX, minZ;
+    private final int tilesX, tilesZ;
+    private final long[] offsets;
+
+    public HeightTileFile(File path) throws IOException {
+        this.path = path;
+        this.file = new RandomAccessFile(path, "r");
+        this.channel = file.getChannel();
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a height tile file: " + path);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported height tile file version " + version + ": " + path);
+            tileSize = header.getInt();
+            minX = header.getInt();
+            minZ = header.getInt();
+            tilesX = header.getInt();
+            tilesZ = header.getInt();
+            if (tileSize < 2 || tilesX < 0 || tilesZ < 0)
+                throw new IOException("Corrupt height tile file header: " + path);
+
+            offsets = new long[tilesX * tilesZ];
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, offsets.length * 8L);
+            index.order(ByteOrder.LITTLE_ENDIAN);
+            index.asLongBuffer().get(offsets);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    public File getPath() {
+        return path;
+    }
+
+    /**
+     * @return the number of height points along one side of a tile
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    public int getTilesZ() {
+        return tilesZ;
+    }
+
+    private long getOffset(int x, int z) {
+        x -= minX;
+        z -= minZ;
+        if (x < 0 || z < 0 || x >= tilesX || z >= tilesZ)
+            return 0;
+        return offsets[z * tilesX + x];
+    }
+
+    /**
+     * @return true if the file holds the tile at the given cell
+     */
+    public boolean hasTile(int x, int z) {
+        return getOffset(x, z) != 0;
+    }
+
+    /**
+     * Maps the tile at the given cell. The heights are read straight from
+     * the page cache when the buffer is accessed, nothing is copied.
+     * 
+     * @return a read only view of the tile heights, row by row, or null
+     * if the file holds no tile at that cell.
+     */
+    public FloatBuffer getTile(int x, int z) throws IOException {
+        MappedByteBuffer tile = mapTile(x, z);
+        if (tile == null)
+            return null;
+        return tile.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /**
+     * Reads the tile at the given cell.
+     * 
+     * @param store the array to fill, a new one is created if it is null
+     * or too small.
+     * @return the tile heights, or null if the file holds no tile at that cell.
+     */
+    public float[] readTile(int x, int z, float[] store) throws IOException {
+        FloatBuffer tile = getTile(x, z);
+        if (tile == null)
+            return null;
+        if (store == null || store.length < tileSize * tileSize)
+            store = new float[tileSize * tileSize];
+        tile.get(store, 0, tileSize * tileSize);
+        return store;
+    }
+
+    private MappedByteBuffer mapTile(int x, int z) throws IOException {
+        long offset = getOffset(x, z);
+        if (offset == 0)
+            return null;
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) tileSize * tileSize * 4);
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+}
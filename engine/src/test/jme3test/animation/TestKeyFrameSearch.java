@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.animation;
+
+import com.jme3.animation.AnimChannel;
+import com.jme3.animation.AnimControl;
+import com.jme3.animation.Animation;
+import com.jme3.animation.AnimationUtils;
+import com.jme3.animation.Bone;
+import com.jme3.animation.BoneTrack;
+import com.jme3.animation.Skeleton;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+
+/**
+ * Measures the cost of sampling long animations, as recorded by motion
+ * capture, on a 60 bone skeleton. The keyframes are looked up through the
+ * cursor kept by the channel, which should make the update time depend
+ * on the number of bones and not on the length of the clip. The linear
+ * scan that was used before is timed for comparison.
+ */
+public class TestKeyFrameSearch {
+
+    private static final int BONES = 60;
+    private static final float FPS = 30;
+    private static final int FRAMES = 2000;
+    private static final int SEEKS = 2000;
+
+    private static float[] createTimes(int keys) {
+        float[] times = new float[keys];
+        for (int i = 0; i < keys; i++) {
+            times[i] = i / FPS;
+        }
+        return times;
+    }
+
+    private static AnimControl createModel(int keys) {
+        Bone[] bones = new Bone[BONES];
+        for (int i = 0; i < BONES; i++) {
+            bones[i] = new Bone("Bone " + i);
+            bones[i].setBindTransforms(new Vector3f(0, i == 0 ? 0 : 0.1f, 0),
+                    new Quaternion(), new Vector3f(1, 1, 1));
+            if (i > 0) {
+                bones[i - 1].addChild(bones[i]);
+            }
+        }
+        Skeleton skeleton = new Skeleton(bones);
+
+        float[] times = createTimes(keys);
+        Animation anim = new Animation("Mocap", times[keys - 1]);
+        for (int b = 0; b < BONES; b++) {
+            Vector3f[] translations = new Vector3f[keys];
+            Quaternion[] rotations = new Quaternion[keys];
+            for (int k = 0; k < keys; k++) {
+                translations[k] = new Vector3f(0, 0.1f, 0);
+                rotations[k] = new Quaternion().fromAngleAxis(
+                        FastMath.sin(k * 0.05f + b) * 0.3f, Vector3f.UNIT_X);
+            }
+            anim.addTrack(new BoneTrack(b, times, translations, rotations));
+        }
+
+        AnimControl control = new AnimControl(skeleton);
+        control.addAnim(anim);
+        new Node("Model").addControl(control);
+        return control;
+    }
+
+    /**
+     * The keyframe search previously done by the tracks.
+     */
+    private static int linearSearch(float[] times, float time) {
+        int startFrame = 0;
+        for (int i = 0; i < times.length - 1 && times[i] < time; i++) {
+            startFrame = i;
+        }
+        return startFrame;
+    }
+
+    private static double playback(AnimControl control) {
+        AnimChannel channel = control.createChannel();
+        channel.setAnim("Mocap", 0);
+        // start in the middle of the clip, linear scans are slower there
+        channel.setTime(channel.getAnimMaxTime() * 0.5f);
+        float tpf = 1f / 60f;
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            control.update(tpf);
+        }
+        return (System.nanoTime() - start) / 1e3 / FRAMES;
+    }
+
+    private static double seeks(AnimControl control) {
+        AnimChannel channel = control.getChannel(0);
+        float length = channel.getAnimMaxTime();
+        long start = System.nanoTime();
+        for (int i = 0; i < SEEKS; i++) {
+            channel.setTime((i * 7919 % SEEKS) * length / SEEKS);
+            control.update(0);
+        }
+        return (System.nanoTime() - start) / 1e3 / SEEKS;
+    }
+
+    private static double searchOnly(float[] times, boolean linear) {
+        float tpf = 1f / 60f;
+        float length = times[times.length - 1];
+        int[] cursors = new int[BONES];
+        int sum = 0;
+        long start = System.nanoTime();
+        float time = length * 0.5f;
+        for (int i = 0; i < FRAMES; i++) {
+            for (int b = 0; b < BONES; b++) {
+                if (linear) {
+                    sum += linearSearch(times, time);
+                } else {
+                    cursors[b] = AnimationUtils.findKeyFrame(times, time, cursors[b]);
+                    sum += cursors[b];
+                }
+            }
+            time = (time + tpf) % length;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sum == 42) {
+            System.out.println();
+        }
+        return elapsed / 1e3 / FRAMES;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Bones: " + BONES + ", frames: " + FRAMES + ", seeks: " + SEEKS);
+
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            AnimControl control = createModel(1000);
+            playback(control);
+            seeks(control);
+            searchOnly(createTimes(1000), false);
+            searchOnly(createTimes(1000), true);
+        }
+
+        System.out.println("keys    update (us)  seek (us)  search (us)  linear search (us)");
+        for (int keys : new int[]{100, 1000, 5000}) {
+            AnimControl control = createModel(keys);
+            double update = playback(control);
+            double seek = seeks(control);
+            double search = searchOnly(createTimes(keys), false);
+            double linear = searchOnly(createTimes(keys), true);
+            System.out.printf("%-7d %-12.1f %-10.1f %-12.1f %.1f%n", keys, update, seek, search, linear);
+        }
+    }
+}
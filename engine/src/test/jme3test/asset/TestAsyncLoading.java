@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.asset;
+
+import com.jme3.asset.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Demonstrates loading assets in the background with 
+ * {@link AssetManager#loadAssetAsync(com.jme3.asset.AssetKey) } and
+ * verifies that concurrent requests for the same asset share a single load.
+ */
+public class TestAsyncLoading {
+
+    private static final AtomicInteger loadCount = new AtomicInteger();
+
+    /**
+     * Locates every asset, the content is the asset name.
+     */
+    public static class DummyLocator implements AssetLocator {
+
+        public void setRootPath(String rootPath) {
+        }
+
+        public AssetInfo locate(AssetManager manager, final AssetKey key) {
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(key.getName().getBytes());
+                }
+            };
+        }
+    }
+
+    /**
+     * Takes a while to load, a "model" also loads its "tex".
+     */
+    public static class SlowLoader implements AssetLoader {
+
+        public Object load(AssetInfo assetInfo) throws IOException {
+            loadCount.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted");
+            }
+            String name = assetInfo.getKey().getName();
+            if (name.endsWith(".model")) {
+                String texture = name.replace(".model", ".tex");
+                return name + " using " + assetInfo.getManager().loadAsset(new AssetKey(texture));
+            }
+            return name;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator("/", DummyLocator.class);
+        assetManager.registerLoader(SlowLoader.class, "slow", "model", "tex");
+
+        // Concurrent requests for the same asset
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(assetManager.loadAssetAsync(new AssetKey<Object>("Shared.slow")));
+        }
+        // A synchronous load joins the pending load
+        Object sync = assetManager.loadAsset("Shared.slow");
+        for (Future<Object> future : futures) {
+            if (!sync.equals(future.get())) {
+                throw new AssertionError();
+            }
+        }
+        System.out.println("17 requests, loads: " + loadCount.getAndSet(0));
+
+        // The first load discovers the dependency of the model
+        assetManager.loadAsset("Character.model");
+        assetManager.clearCache();
+        loadCount.set(0);
+
+        // The second one prefetches the texture in parallel with the model
+        final CountDownLatch latch = new CountDownLatch(1);
+        Executor callbackExecutor = Executors.newSingleThreadExecutor();
+        long time = System.nanoTime();
+        assetManager.loadAssetAsync(new AssetKey<Object>("Character.model"),
+                                    AssetLoadPriority.High,
+                                    new AssetLoadCallback<Object>() {
+            public void assetLoaded(AssetKey<Object> key, Object asset) {
+                System.out.println("Loaded " + asset + " on " + Thread.currentThread().getName());
+                latch.countDown();
+            }
+
+            public void assetLoadFailed(AssetKey<Object> key, Throwable cause) {
+                cause.printStackTrace();
+                latch.countDown();
+            }
+        }, callbackExecutor);
+        latch.await();
+        time = System.nanoTime() - time;
+        System.out.println("Model with prefetched texture, loads: " + loadCount.get() 
+                           + ", time: " + (time / 1000000) + " ms");
+        System.exit(0);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.asset;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.cache.BoundedAssetCache;
+import com.jme3.asset.cache.BoundedAssetCache.Policy;
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import com.jme3.util.BufferUtils;
+import java.util.Random;
+
+/**
+ * Compares the hit rate of the eviction policies of {@link BoundedAssetCache}
+ * on a workload that keeps using a set of hot textures while scanning 
+ * through many textures that are used only once.
+ */
+public class TestBoundedAssetCache {
+
+    private static final int IMAGE_SIZE = 64;
+    private static final int HOT_IMAGES = 24;
+    private static final int REQUESTS = 20000;
+
+    private static Image createImage() {
+        return new Image(Format.RGBA8, IMAGE_SIZE, IMAGE_SIZE,
+                         BufferUtils.createByteBuffer(IMAGE_SIZE * IMAGE_SIZE * 4));
+    }
+
+    private static void runTest(Policy policy) {
+        long imageBytes = IMAGE_SIZE * IMAGE_SIZE * 4;
+        BoundedAssetCache cache = new BoundedAssetCache(imageBytes * 32, policy);
+        Random random = new Random(1234);
+        int scanned = 0;
+        
+        for (int i = 0; i < REQUESTS; i++) {
+            AssetKey<Image> key;
+            if (random.nextInt(3) == 0) {
+                key = new AssetKey<Image>("Textures/Hot" + random.nextInt(HOT_IMAGES) + ".png");
+            } else {
+                key = new AssetKey<Image>("Textures/Scan" + (scanned++) + ".png");
+            }
+            
+            // Same usage as the asset manager
+            if (cache.getFromCache(key) == null) {
+                cache.addToCache(key, createImage());
+            }
+            
+            if (cache.getMemoryUsage() > cache.getMaxMemory()) {
+                throw new AssertionError("Budget exceeded");
+            }
+        }
+        
+        float hitRate = 100f * cache.getHitCount() / (cache.getHitCount() + cache.getMissCount());
+        System.out.println(cache + String.format(", hit rate: %.1f%%", hitRate));
+    }
+
+    public static void main(String[] args) {
+        runTest(Policy.LRU);
+        runTest(Policy.ARC);
+    }
+}
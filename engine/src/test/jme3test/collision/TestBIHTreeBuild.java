@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.collision;
+
+import com.jme3.collision.CollisionResults;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Sphere;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures building the collision tree of a large mesh sequentially,
+ * in parallel and in the background, and loading a prebuilt tree 
+ * saved together with the mesh.
+ */
+public class TestBIHTreeBuild {
+
+    private static final int SAMPLES = 600;
+    private static final int RAYS = 1000;
+    private static final int NANOS_TO_MS = 1000000;
+
+    private static int[] pick(Mesh mesh, Ray[] rays) {
+        Geometry geom = new Geometry("Sphere", mesh);
+        geom.updateGeometricState();
+        CollisionResults results = new CollisionResults();
+        int[] hits = new int[rays.length];
+        for (int i = 0; i < rays.length; i++) {
+            results.clear();
+            geom.collideWith(rays[i], results);
+            hits[i] = results.size();
+        }
+        return hits;
+    }
+
+    private static void verify(int[] expected, int[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                throw new AssertionError("Ray " + i + " returned " + actual[i]
+                                       + " collisions instead of " + expected[i]);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        
+        Mesh mesh = new Sphere(SAMPLES, SAMPLES, 10f);
+        System.out.println(mesh.getTriangleCount() + " triangles, " + threads + " threads");
+        
+        Ray[] rays = new Ray[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            Vector3f origin = new Vector3f(FastMath.nextRandomFloat() - 0.5f,
+                                           FastMath.nextRandomFloat() - 0.5f,
+                                           FastMath.nextRandomFloat() - 0.5f).normalizeLocal().multLocal(20f);
+            rays[i] = new Ray(origin, origin.negate().normalizeLocal());
+        }
+
+        // warm up
+        for (int i = 0; i < 2; i++) {
+            mesh.createCollisionData();
+            mesh.createCollisionData(executor);
+        }
+
+        long nanos = System.nanoTime();
+        mesh.createCollisionData();
+        System.out.println("Sequential build: " + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        int[] expected = pick(mesh, rays);
+
+        nanos = System.nanoTime();
+        mesh.createCollisionData(executor);
+        System.out.println("Parallel build:   " + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        verify(expected, pick(mesh, rays));
+
+        nanos = System.nanoTime();
+        Future<?> future = mesh.createCollisionDataInBackground(executor);
+        System.out.println("Background build started in " + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        future.get();
+        System.out.println("Background build: " + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        verify(expected, pick(mesh, rays));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(mesh, out);
+        byte[] data = out.toByteArray();
+        
+        nanos = System.nanoTime();
+        Mesh loaded = (Mesh) load(data);
+        System.out.println("Loaded mesh with tree (" + data.length / 1024 + " KB): " 
+                         + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        verify(expected, pick(loaded, rays));
+        
+        executor.shutdown();
+        System.out.println("Results match");
+    }
+
+    private static Object load(byte[] data) throws IOException {
+        return BinaryImporter.getInstance().load(data);
+    }
+}
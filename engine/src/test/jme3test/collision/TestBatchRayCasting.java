@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.collision;
+
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Sphere;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares casting many line-of-sight rays one at a time through
+ * Geometry.collideWith with the batched BIHTree.collideWithRays,
+ * on one and on several threads sharing the same tree.
+ */
+public class TestBatchRayCasting {
+
+    private static final int RAYS = 5000;
+    private static final int THREADS = 4;
+    private static final int NANOS_TO_MS = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        Mesh mesh = new Sphere(200, 200, 10f);
+        Geometry geom = new Geometry("Sphere", mesh);
+        geom.setLocalTranslation(5, 2, -3);
+        geom.setLocalRotation(new Quaternion().fromAngles(0.3f, 1.2f, 0));
+        geom.setLocalScale(1.5f);
+        geom.updateGeometricState();
+
+        BIHTree tree = new BIHTree(mesh);
+        tree.construct();
+
+        final float[] origins = new float[RAYS * 3];
+        final float[] directions = new float[RAYS * 3];
+        final float[] limits = new float[RAYS];
+        Ray[] rays = new Ray[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            Vector3f origin = new Vector3f(FastMath.nextRandomFloat() * 60f - 30f,
+                                           FastMath.nextRandomFloat() * 60f - 30f,
+                                           FastMath.nextRandomFloat() * 60f - 30f);
+            Vector3f target = new Vector3f(FastMath.nextRandomFloat() * 20f - 10f,
+                                           FastMath.nextRandomFloat() * 20f - 10f,
+                                           FastMath.nextRandomFloat() * 20f - 10f);
+            Vector3f direction = target.subtract(origin);
+            limits[i] = direction.length();
+            direction.normalizeLocal();
+            
+            origins[i * 3] = origin.x;
+            origins[i * 3 + 1] = origin.y;
+            origins[i * 3 + 2] = origin.z;
+            directions[i * 3] = direction.x;
+            directions[i * 3 + 1] = direction.y;
+            directions[i * 3 + 2] = direction.z;
+            rays[i] = new Ray(origin, direction);
+            rays[i].setLimit(limits[i]);
+        }
+
+        float[] expected = new float[RAYS];
+        int[] expectedTris = new int[RAYS];
+        final float[] distances = new float[RAYS];
+        final int[] triangles = new int[RAYS];
+        
+        CollisionResults results = new CollisionResults();
+        for (int pass = 0; pass < 4; pass++) {
+            long nanos = System.nanoTime();
+            for (int i = 0; i < RAYS; i++) {
+                results.clear();
+                geom.collideWith(rays[i], results);
+                CollisionResult closest = results.size() > 0 ? results.getClosestCollision() : null;
+                if (closest != null && closest.getDistance() > limits[i]) {
+                    // leaves can report hits slightly past the limit
+                    closest = null;
+                }
+                expected[i] = closest != null ? closest.getDistance() : Float.POSITIVE_INFINITY;
+                expectedTris[i] = closest != null ? closest.getTriangleIndex() : -1;
+            }
+            long single = System.nanoTime() - nanos;
+
+            nanos = System.nanoTime();
+            int hits = tree.collideWithRays(geom.getWorldMatrix(), origins, directions, limits,
+                                            RAYS, distances, triangles);
+            long batch = System.nanoTime() - nanos;
+            
+            if (pass == 3) {
+                System.out.println(RAYS + " rays, " + hits + " hits, " + mesh.getTriangleCount() + " triangles");
+                System.out.println("collideWith:    " + (float) single / NANOS_TO_MS + " ms");
+                System.out.println("collideWithRays: " + (float) batch / NANOS_TO_MS + " ms");
+            }
+        }
+        verify(expected, expectedTris, distances, triangles);
+
+        // split the batch over several threads sharing the tree
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final BIHTree sharedTree = tree;
+        final int perThread = RAYS / THREADS;
+        final Matrix4f world = geom.getWorldMatrix().clone();
+        long nanos = System.nanoTime();
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int start = t * perThread;
+            final int count = t == THREADS - 1 ? RAYS - start : perThread;
+            futures.add(executor.submit(new Callable<Integer>() {
+                public Integer call() {
+                    float[] o = new float[count * 3];
+                    float[] d = new float[count * 3];
+                    float[] l = new float[count];
+                    float[] dist = new float[count];
+                    int[] tris = new int[count];
+                    System.arraycopy(origins, start * 3, o, 0, count * 3);
+                    System.arraycopy(directions, start * 3, d, 0, count * 3);
+                    System.arraycopy(limits, start, l, 0, count);
+                    int hits = sharedTree.collideWithRays(world, o, d, l, count, dist, tris);
+                    System.arraycopy(dist, 0, distances, start, count);
+                    System.arraycopy(tris, 0, triangles, start, count);
+                    return hits;
+                }
+            }));
+        }
+        for (Future<Integer> future : futures) {
+            future.get();
+        }
+        System.out.println(THREADS + " threads:       " + (float) (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        executor.shutdown();
+        verify(expected, expectedTris, distances, triangles);
+        System.out.println("Results match");
+    }
+
+    private static void verify(float[] expected, int[] expectedTris, float[] distances, int[] triangles) {
+        for (int i = 0; i < expected.length; i++) {
+            if (expectedTris[i] != triangles[i]
+             || FastMath.abs(expected[i] - distances[i]) > 0.001f) {
+                throw new AssertionError("Ray " + i + " hit triangle " + triangles[i] + " at " + distances[i]
+                                       + " instead of " + expectedTris[i] + " at " + expected[i]);
+            }
+        }
+    }
+}
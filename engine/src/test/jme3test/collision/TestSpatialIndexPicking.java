@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.collision;
+
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.FastMath;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+
+/**
+ * Compares picking against a node with a spatial index to the linear
+ * traversal of its children. Both scenes are identical; every query
+ * is checked to return the same results.
+ */
+public class TestSpatialIndexPicking {
+
+    private static final int GRID_SIZE = 150;
+    private static final int RAYS = 2000;
+    private static final int NANOS_TO_MS = 1000000;
+
+    private static Node createScene(Box box, boolean indexed) {
+        Node scene = new Node("Scene");
+        scene.setSpatialIndexEnabled(indexed);
+        for (int z = 0; z < GRID_SIZE; z++) {
+            for (int x = 0; x < GRID_SIZE; x++) {
+                Geometry geom = new Geometry("Box", box);
+                geom.setLocalTranslation(x * 4f, FastMath.nextRandomFloat() * 10f, z * 4f);
+                scene.attachChild(geom);
+            }
+        }
+        scene.updateGeometricState();
+        return scene;
+    }
+
+    private static Ray[] createRays() {
+        Ray[] rays = new Ray[RAYS];
+        float size = GRID_SIZE * 4f;
+        for (int i = 0; i < RAYS; i++) {
+            Vector3f origin = new Vector3f(FastMath.nextRandomFloat() * size, 50f,
+                                           FastMath.nextRandomFloat() * size);
+            Vector3f target = new Vector3f(FastMath.nextRandomFloat() * size, 0f,
+                                           FastMath.nextRandomFloat() * size);
+            rays[i] = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+        }
+        return rays;
+    }
+
+    private static long pick(Node scene, Ray[] rays, int[] hits) {
+        CollisionResults results = new CollisionResults();
+        long nanos = System.nanoTime();
+        for (int i = 0; i < rays.length; i++) {
+            results.clear();
+            scene.collideWith(rays[i], results);
+            hits[i] = results.size();
+        }
+        return System.nanoTime() - nanos;
+    }
+
+    private static void verify(int[] linear, int[] indexed) {
+        for (int i = 0; i < linear.length; i++) {
+            if (linear[i] != indexed[i]) {
+                throw new AssertionError("Query " + i + " returned " + indexed[i]
+                                       + " collisions instead of " + linear[i]);
+            }
+        }
+    }
+
+    private static void moveSome(Node linear, Node indexed) {
+        for (int i = 0; i < linear.getQuantity(); i += 10) {
+            Vector3f offset = new Vector3f(FastMath.nextRandomFloat() * 20f - 10f, 0,
+                                           FastMath.nextRandomFloat() * 20f - 10f);
+            linear.getChild(i).move(offset);
+            indexed.getChild(i).move(offset);
+        }
+        linear.updateGeometricState();
+        indexed.updateGeometricState();
+    }
+
+    public static void main(String[] args) {
+        Box box = new Box(1, 1, 1);
+        
+        long nanos = System.nanoTime();
+        Node linear = createScene(box, false);
+        System.out.println("Linear scene built in " + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        
+        nanos = System.nanoTime();
+        Node indexed = createScene(box, true);
+        System.out.println("Indexed scene built in " + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms, "
+                         + "tree height " + indexed.getSpatialIndex().getHeight());
+        
+        // both scenes must have the same layout
+        for (int i = 0; i < linear.getQuantity(); i++) {
+            indexed.getChild(i).setLocalTranslation(linear.getChild(i).getLocalTranslation());
+        }
+        indexed.updateGeometricState();
+
+        Ray[] rays = createRays();
+        int[] linearHits = new int[RAYS];
+        int[] indexedHits = new int[RAYS];
+
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            pick(linear, rays, linearHits);
+            pick(indexed, rays, indexedHits);
+        }
+        
+        long linearTime = pick(linear, rays, linearHits);
+        long indexedTime = pick(indexed, rays, indexedHits);
+        verify(linearHits, indexedHits);
+        System.out.println(GRID_SIZE * GRID_SIZE + " geometries, " + RAYS + " rays");
+        System.out.println("Linear:  " + (float) linearTime / NANOS_TO_MS / RAYS + " ms per ray");
+        System.out.println("Indexed: " + (float) indexedTime / NANOS_TO_MS / RAYS + " ms per ray");
+
+        nanos = System.nanoTime();
+        moveSome(linear, indexed);
+        System.out.println("Moved 10% of the geometries in " + (System.nanoTime() - nanos) / NANOS_TO_MS + " ms");
+        pick(linear, rays, linearHits);
+        pick(indexed, rays, indexedHits);
+        verify(linearHits, indexedHits);
+        
+        CollisionResults linearResults = new CollisionResults();
+        CollisionResults indexedResults = new CollisionResults();
+        BoundingSphere sphere = new BoundingSphere(30f, new Vector3f(GRID_SIZE * 2f, 5f, GRID_SIZE * 2f));
+        linear.collideWith(sphere, linearResults);
+        indexed.collideWith(sphere, indexedResults);
+        if (linearResults.size() != indexedResults.size()) {
+            throw new AssertionError("Bounding sphere query returned " + indexedResults.size()
+                                   + " collisions instead of " + linearResults.size());
+        }
+        System.out.println("Results match");
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.effect;
+
+import com.jme3.effect.ParticleEmitter;
+import com.jme3.effect.ParticleMesh;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless benchmark of a 100k particle emitter.  Times the simulation
+ * step and the mesh buffer update with one Particle object per particle
+ * and with the data oriented arrays, on one thread and split across
+ * all processors.
+ *
+ * <p>Usage: TestParticleThroughput [particles] [frames]</p>
+ */
+public class TestParticleThroughput {
+
+    private static ParticleEmitter createEmitter(int numParticles) {
+        ParticleEmitter emitter = new ParticleEmitter("Emitter", ParticleMesh.Type.Triangle, numParticles);
+        emitter.setLowLife(1000f);
+        emitter.setHighLife(2000f);
+        emitter.setParticlesPerSec(0);
+        emitter.setStartColor(new ColorRGBA(1f, 0.8f, 0.2f, 1f));
+        emitter.setEndColor(new ColorRGBA(0.3f, 0.1f, 0f, 0f));
+        emitter.setStartSize(0.2f);
+        emitter.setEndSize(1f);
+        emitter.setGravity(0, 0.5f, 0);
+        emitter.setRotateSpeed(2f);
+        emitter.getParticleInfluencer().setInitialVelocity(new Vector3f(0, 4, 0));
+        emitter.getParticleInfluencer().setVelocityVariation(0.5f);
+        return emitter;
+    }
+
+    private static void run(String name, ParticleEmitter emitter, int frames, Camera cam) {
+        emitter.emitAllParticles();
+        ParticleMesh mesh = (ParticleMesh) emitter.getMesh();
+        float tpf = 1f / 60f;
+
+        // warm up
+        for (int i = 0; i < 30; i++) {
+            emitter.updateFromControl(tpf);
+            update(emitter, mesh, cam);
+        }
+
+        long simulate = 0;
+        long write = 0;
+        for (int i = 0; i < frames; i++) {
+            long start = System.nanoTime();
+            emitter.updateFromControl(tpf);
+            long mid = System.nanoTime();
+            update(emitter, mesh, cam);
+            long end = System.nanoTime();
+            simulate += mid - start;
+            write += end - mid;
+        }
+
+        System.out.println(String.format("%-16s %7d particles  update %6.2f ms  mesh %6.2f ms  total %6.2f ms",
+                                         name, emitter.getNumVisibleParticles(),
+                                         simulate / 1e6 / frames, write / 1e6 / frames,
+                                         (simulate + write) / 1e6 / frames));
+    }
+
+    private static void update(ParticleEmitter emitter, ParticleMesh mesh, Camera cam) {
+        if (emitter.isDataOriented()) {
+            mesh.updateParticleData(emitter.getParticleData(), cam, Matrix3f.IDENTITY);
+        } else {
+            mesh.updateParticleData(emitter.getParticles(), cam, Matrix3f.IDENTITY);
+        }
+    }
+
+    public static void main(String[] args) {
+        int numParticles = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Camera cam = new Camera(640, 480);
+        cam.setLocation(new Vector3f(0, 5, 30));
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Processors: " + processors);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, processors - 1));
+        for (int round = 0; round < 2; round++) {
+            run("objects", createEmitter(numParticles), frames, cam);
+
+            ParticleEmitter serial = createEmitter(numParticles);
+            serial.setDataOriented(true);
+            serial.setParallelThreshold(Integer.MAX_VALUE);
+            run("arrays", serial, frames, cam);
+
+            ParticleEmitter parallel = createEmitter(numParticles);
+            parallel.setDataOriented(true);
+            parallel.setUpdateExecutor(executor);
+            run("arrays parallel", parallel, frames, cam);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.instancing;
+
+import com.jme3.app.SimpleApplication;
+import com.jme3.light.DirectionalLight;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.InstancedGeometry;
+import com.jme3.scene.InstancedNode;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+
+/**
+ * Renders a field of 20000 boxes and spheres with an {@link InstancedNode},
+ * in two draw calls. Some of the boxes spin to show that only
+ * moving instances are updated.
+ */
+public class TestInstancedNode extends SimpleApplication {
+
+    private static final int SIZE = 100;
+    
+    private InstancedNode instancedNode;
+
+    public static void main(String[] args) {
+        TestInstancedNode app = new TestInstancedNode();
+        app.start();
+    }
+
+    @Override
+    public void simpleInitApp() {
+        Mesh box = new Box(0.3f, 0.3f, 0.3f);
+        Mesh sphere = new Sphere(8, 8, 0.3f);
+        
+        Material boxMat = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+        boxMat.setBoolean("UseMaterialColors", true);
+        boxMat.setColor("Diffuse", ColorRGBA.Orange);
+        boxMat.setColor("Ambient", ColorRGBA.Orange);
+        boxMat.setBoolean("UseInstancing", true);
+        
+        Material sphereMat = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        sphereMat.setColor("Color", ColorRGBA.Cyan);
+        sphereMat.setBoolean("UseInstancing", true);
+        
+        instancedNode = new InstancedNode("Instanced");
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                boolean isBox = (x + z) % 2 == 0;
+                Geometry geom = new Geometry("Instance", isBox ? box : sphere);
+                geom.setMaterial(isBox ? boxMat : sphereMat);
+                geom.setLocalTranslation(x - SIZE / 2, 0, z - SIZE / 2);
+                instancedNode.attachChild(geom);
+            }
+        }
+        instancedNode.instance();
+        rootNode.attachChild(instancedNode);
+        
+        DirectionalLight light = new DirectionalLight();
+        light.setDirection(new Vector3f(-1, -2, -3).normalizeLocal());
+        rootNode.addLight(light);
+        
+        cam.setLocation(new Vector3f(0, 10, 30));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        flyCam.setMoveSpeed(20);
+    }
+
+    @Override
+    public void simpleUpdate(float tpf) {
+        // spin every 50th instance
+        int i = 0;
+        for (Spatial instance : instancedNode.getChildren()) {
+            if (instance instanceof InstancedGeometry) {
+                continue;
+            }
+            if ((i++ % 50) == 0) {
+                instance.rotate(0, tpf * FastMath.PI, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.network;
+
+import com.jme3.network.*;
+import com.jme3.network.base.MessageProtocol;
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.kernel.SharedBuffer;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how much memory the sending thread allocates per broadcast.
+ * First compares the plain message encoding against the pooled shared
+ * payload, then broadcasts to a set of local clients through a real
+ * server.  Per thread allocation counts come from the JVM's thread
+ * MXBean when it supports them.
+ */
+public class TestBroadcastAllocation {
+
+    private static final int CLIENTS = 16;
+    private static final int ENCODES = 20000;
+    private static final int BROADCASTS = 2000;
+
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+
+        int id;
+        float x, y, z;
+
+        public StateMessage(){
+            setReliable(true);
+        }
+    }
+
+    private static Object threadBean = ManagementFactory.getThreadMXBean();
+    private static Method allocatedBytes;
+
+    static {
+        try {
+            allocatedBytes = Class.forName("com.sun.management.ThreadMXBean")
+                                  .getMethod("getThreadAllocatedBytes", long.class);
+            allocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            allocatedBytes = null;
+        }
+    }
+
+    private static long allocated(){
+        if (allocatedBytes != null) {
+            try {
+                return (Long) allocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+            } catch (Exception e) {
+                allocatedBytes = null;
+            }
+        }
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void report(String name, long bytes, long nanos, int count){
+        System.out.printf("%-28s %10.1f bytes/op %8.2f us/op%n", name,
+                          bytes / (double) count, nanos / 1000.0 / count);
+    }
+
+    private static void encode(StateMessage msg, BufferPool pool, boolean pooled, int count){
+        for (int i = 0; i < count; i++) {
+            msg.id = i;
+            if (pooled) {
+                SharedBuffer buffer = MessageProtocol.messageToSharedBuffer(msg, pool);
+                buffer.release();
+            } else {
+                ByteBuffer buffer = MessageProtocol.messageToBuffer(msg, null);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException{
+        Serializer.registerClass(StateMessage.class);
+        if (allocatedBytes == null)
+            System.out.println("Per thread allocation counts unavailable, using heap deltas.");
+
+        StateMessage msg = new StateMessage();
+        BufferPool pool = new BufferPool(32767 + 2, 16);
+
+        // Encoding alone
+        for (int pass = 0; pass < 2; pass++) {
+            boolean pooled = pass == 1;
+            encode(msg, pool, pooled, ENCODES / 10);
+
+            long bytes = allocated();
+            long time = System.nanoTime();
+            encode(msg, pool, pooled, ENCODES);
+            time = System.nanoTime() - time;
+            bytes = allocated() - bytes;
+            report(pooled ? "encode (pooled, shared)" : "encode (fresh heap buffer)", bytes, time, ENCODES);
+        }
+        System.out.println("pool: " + pool);
+
+        // Broadcast to real connections
+        Server server = Network.createServer(5110);
+        server.start();
+
+        final AtomicInteger received = new AtomicInteger();
+        List<Client> clients = new ArrayList<Client>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Client client = Network.connectToServer("localhost", 5110);
+            client.addMessageListener(new MessageListener<Client>() {
+                public void messageReceived(Client source, Message m) {
+                    received.incrementAndGet();
+                }
+            }, StateMessage.class);
+            client.start();
+            clients.add(client);
+        }
+        while (server.getConnections().size() < CLIENTS) {
+            Thread.sleep(10);
+        }
+
+        for (int pass = 0; pass < 2; pass++) {
+            received.set(0);
+            long bytes = allocated();
+            long time = System.nanoTime();
+            for (int i = 0; i < BROADCASTS; i++) {
+                msg.id = i;
+                server.broadcast(msg);
+            }
+            long sendBytes = allocated() - bytes;
+            long sendTime = System.nanoTime() - time;
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (received.get() < BROADCASTS * CLIENTS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            time = System.nanoTime() - time;
+
+            if (pass == 0)
+                continue; // warm up
+            report("broadcast x" + CLIENTS + " (sender)", sendBytes, sendTime, BROADCASTS);
+            System.out.printf("delivered %d/%d messages in %.1f ms%n", received.get(),
+                              BROADCASTS * CLIENTS, time / 1000000.0);
+        }
+
+        for (Client client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.network;
+
+import com.jme3.network.*;
+import com.jme3.network.base.DefaultServer;
+import com.jme3.network.base.TransmitStats;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback comparison of per-connection message batching.  The server
+ * sends every client a burst of small reliable and unreliable state
+ * messages each tick, once without batching, once with a flush timer
+ * and once flushing explicitly at the end of the tick, and reports
+ * messages and frames per second together with how many messages
+ * the clients received.
+ */
+public class TestMessageBatching {
+
+    private static final int CLIENTS = 4;
+    private static final int TICKS = 100;
+    private static final long TICK_MILLIS = 10;
+    private static final int MESSAGES_PER_TICK = 20;
+
+    private static AtomicInteger received = new AtomicInteger();
+
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+
+        int entity;
+        float x, y, z;
+
+        public StateMessage(){
+        }
+
+        public StateMessage(int entity, boolean reliable){
+            setReliable(reliable);
+            this.entity = entity;
+            this.x = entity;
+            this.y = entity * 0.5f;
+            this.z = -entity;
+        }
+    }
+
+    private static class CountListener implements MessageListener<Client> {
+        public void messageReceived(Client source, Message m) {
+            received.incrementAndGet();
+        }
+    }
+
+    private static void run(String name, int port, long window, int frameSize, boolean explicit)
+            throws IOException, InterruptedException {
+        DefaultServer server = (DefaultServer) Network.createServer(port);
+        server.setMessageBatching(window, frameSize);
+        server.start();
+
+        List<Client> clients = new ArrayList<Client>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Client client = Network.connectToServer("localhost", port);
+            client.addMessageListener(new CountListener(), StateMessage.class);
+            client.start();
+            clients.add(client);
+        }
+        while (server.getConnections().size() < CLIENTS) {
+            Thread.sleep(10);
+        }
+        for (Client client : clients) {
+            while (!client.isConnected()) {
+                Thread.sleep(1);
+            }
+        }
+
+        received.set(0);
+        TransmitStats stats = server.getTransmitStats();
+        long messages = stats.getMessageCount();
+        long frames = stats.getFrameCount();
+        long bytes = stats.getByteCount();
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (HostedConnection conn : server.getConnections()) {
+                for (int i = 0; i < MESSAGES_PER_TICK; i++) {
+                    conn.send(new StateMessage(i, (i & 1) == 0));
+                }
+            }
+            if (explicit) {
+                server.flushMessages();
+            }
+            Thread.sleep(TICK_MILLIS);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        messages = stats.getMessageCount() - messages;
+        frames = stats.getFrameCount() - frames;
+        bytes = stats.getByteCount() - bytes;
+
+        // Give the stragglers a moment to arrive
+        Thread.sleep(200);
+        int expected = TICKS * MESSAGES_PER_TICK * CLIENTS;
+
+        System.out.println(String.format("%-10s %8.0f msg/s %8.0f frames/s %6.1f msg/frame %8d bytes  received %d/%d",
+                                         name, messages / seconds, frames / seconds,
+                                         (double) messages / frames, bytes,
+                                         received.get(), expected));
+
+        for (Client client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Serializer.registerClass(StateMessage.class);
+
+        int port = 5120;
+        run("off", port++, 0, 0, false);
+        run("timer", port++, 5, 8192, false);
+        run("explicit", port++, 0, 8192, true);
+    }
+}
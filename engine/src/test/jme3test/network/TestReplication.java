@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.network;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.*;
+import com.jme3.network.replication.EntitySnapshot;
+import com.jme3.network.replication.ReplicationClient;
+import com.jme3.network.replication.ReplicationServer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Replicates a few thousand moving entities to several clients over
+ * loopback.  It compares the bytes and encode time per client and tick
+ * against sending full snapshots, both raw and compressed per message
+ * like GZIPCompressedMessage does.  At the end it checks that every
+ * client ended up with the server's state.
+ */
+public class TestReplication {
+
+    private static final int CLIENTS = 8;
+    private static final int ENTITIES = 2000;
+    private static final int TICKS = 300;
+    private static final float MOVING = 0.1f;
+    private static final float PRECISION = 1 / 128f;
+
+    private static Vector3f[] positions = new Vector3f[ENTITIES];
+    private static Quaternion[] rotations = new Quaternion[ENTITIES];
+
+    private static byte[] fullSnapshot(){
+        ByteBuffer buffer = ByteBuffer.allocate(ENTITIES * 32);
+        for (int i = 0; i < ENTITIES; i++) {
+            buffer.putInt(i);
+            buffer.putFloat(positions[i].x).putFloat(positions[i].y).putFloat(positions[i].z);
+            buffer.putFloat(rotations[i].getX()).putFloat(rotations[i].getY())
+                  .putFloat(rotations[i].getZ()).putFloat(rotations[i].getW());
+        }
+        return buffer.array();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Server server = Network.createServer(5110);
+        server.start();
+        ReplicationServer replication = new ReplicationServer(server, PRECISION);
+
+        List<Client> clients = new ArrayList<Client>();
+        List<ReplicationClient> replicas = new ArrayList<ReplicationClient>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Client client = Network.connectToServer("localhost", 5110);
+            replicas.add(new ReplicationClient(client));
+            client.start();
+            clients.add(client);
+        }
+        while (server.getConnections().size() < CLIENTS) {
+            Thread.sleep(10);
+        }
+        // Give the UDP side a moment to register
+        Thread.sleep(200);
+
+        Random random = new Random(42);
+        for (int i = 0; i < ENTITIES; i++) {
+            positions[i] = new Vector3f(random.nextFloat() * 1000, 0, random.nextFloat() * 1000);
+            rotations[i] = new Quaternion().fromAngles(0, random.nextFloat() * FastMath.TWO_PI, 0);
+            replication.setEntity(i, positions[i], rotations[i]);
+        }
+
+        Deflater deflater = new Deflater();
+        byte[] compressed = new byte[ENTITIES * 40];
+        long rawBytes = 0, zipBytes = 0, zipNanos = 0, deltaNanos = 0;
+        Map<Integer, EntitySnapshot> sent = new HashMap<Integer, EntitySnapshot>();
+        EntitySnapshot last = null;
+        for (int tick = 0; tick < TICKS; tick++) {
+            // A fraction of the entities walk and turn a little each tick
+            for (int i = 0; i < ENTITIES * MOVING; i++) {
+                int id = random.nextInt(ENTITIES);
+                positions[id].addLocal(random.nextFloat() - 0.5f, 0, random.nextFloat() - 0.5f);
+                rotations[id].multLocal(new Quaternion().fromAngles(0, 0.05f, 0));
+                replication.setEntity(id, positions[id], rotations[id]);
+            }
+
+            long start = System.nanoTime();
+            last = replication.sendUpdates();
+            deltaNanos += System.nanoTime() - start;
+            sent.put(last.getSequence(), last);
+
+            // What a full snapshot would cost, compressed separately
+            // for every client like a per-message compressed broadcast
+            byte[] raw = fullSnapshot();
+            start = System.nanoTime();
+            for (int c = 0; c < CLIENTS; c++) {
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                zipBytes += deflater.deflate(compressed);
+            }
+            zipNanos += System.nanoTime() - start;
+            rawBytes += raw.length * CLIENTS;
+
+            Thread.sleep(16);
+        }
+        Thread.sleep(500);
+
+        double updates = TICKS * CLIENTS;
+        System.out.printf("%d entities, %d%% moving per tick, %d clients, %d ticks%n",
+                          ENTITIES, (int)(MOVING * 100), CLIENTS, TICKS);
+        System.out.printf("full snapshot, raw:        %8.0f bytes/client/tick%n", rawBytes / updates);
+        System.out.printf("full snapshot, deflated:   %8.0f bytes/client/tick  %7.1f us encode%n",
+                          zipBytes / updates, zipNanos / 1000.0 / updates);
+        System.out.printf("delta against acked:       %8.0f bytes/client/tick  %7.1f us encode, %.1f messages%n",
+                          replication.getBytesSent() / updates, deltaNanos / 1000.0 / updates,
+                          replication.getMessagesSent() / updates);
+
+        // Check that every client converged on what the server sent
+        int matching = 0;
+        for (ReplicationClient replica : replicas) {
+            EntitySnapshot received = replica.getSnapshot();
+            EntitySnapshot expected = received == null ? null : sent.get(received.getSequence());
+            boolean same = expected != null && expected.size() == received.size();
+            for (int i = 0; same && i < expected.size(); i++) {
+                same = expected.getId(i) == received.getId(i)
+                    && expected.getPosition(i, null).equals(received.getPosition(i, null))
+                    && expected.getRotation(i, null).equals(received.getRotation(i, null));
+            }
+            if (same)
+                matching++;
+            System.out.println("client at " + received + ", dropped " + replica.getDroppedCount()
+                               + (same ? ", matches server" : ", MISMATCH"));
+        }
+        System.out.println(matching + "/" + CLIENTS + " clients match, last server snapshot " + last);
+
+        for (Client client : clients) {
+            client.close();
+        }
+        replication.close();
+        server.close();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.network;
+
+import com.jme3.network.Client;
+import com.jme3.network.Network;
+import com.jme3.network.Server;
+import com.jme3.network.rmi.ObjectStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Loopback benchmark of remote method calls.  A client calls a method
+ * on an object exposed by the server through a blocking proxy, through
+ * a proxy whose methods return futures with many calls in flight, and
+ * through the same proxy with calls batched into single messages, and
+ * reports calls per second for each.
+ */
+public class TestRmiThroughput {
+
+    private static final long RUN_MILLIS = 2000;
+    private static final int IN_FLIGHT = 256;
+    private static final int BATCH = 64;
+
+    public static interface Calculator {
+        public int add(int a, int b);
+    }
+
+    /**
+     * Mirrors Calculator with methods that return right away.
+     */
+    public static interface AsyncCalculator {
+        public Future<Integer> add(int a, int b);
+    }
+
+    public static class CalculatorImpl implements Calculator {
+        public int add(int a, int b) {
+            return a + b;
+        }
+    }
+
+    private static void check(int a, int b, int result) {
+        if (a + b != result)
+            throw new RuntimeException("Wrong result for " + a + "+" + b + ":" + result);
+    }
+
+    private static void report(String name, long calls, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%-10s %8d calls %10.0f calls/s", name, calls, calls / seconds));
+    }
+
+    private static void runBlocking(Calculator calc) {
+        long end = System.currentTimeMillis() + RUN_MILLIS;
+        long start = System.nanoTime();
+        int calls = 0;
+        while (System.currentTimeMillis() < end) {
+            check(calls, 1, calc.add(calls, 1));
+            calls++;
+        }
+        report("blocking", calls, start);
+    }
+
+    private static void runAsync(AsyncCalculator calc) throws Exception {
+        long end = System.currentTimeMillis() + RUN_MILLIS;
+        long start = System.nanoTime();
+        List<Future<Integer>> inFlight = new ArrayList<Future<Integer>>();
+        int calls = 0;
+        int checked = 0;
+        while (System.currentTimeMillis() < end) {
+            while (inFlight.size() < IN_FLIGHT) {
+                inFlight.add(calc.add(calls++, 1));
+            }
+            check(checked++, 1, inFlight.remove(0).get());
+        }
+        for (Future<Integer> f : inFlight) {
+            check(checked++, 1, f.get());
+        }
+        report("async", calls, start);
+    }
+
+    private static void runBatched(ObjectStore store, AsyncCalculator calc) throws Exception {
+        long end = System.currentTimeMillis() + RUN_MILLIS;
+        long start = System.nanoTime();
+        List<Future<Integer>> batch = new ArrayList<Future<Integer>>(BATCH);
+        int calls = 0;
+        while (System.currentTimeMillis() < end) {
+            store.beginBatch();
+            for (int i = 0; i < BATCH; i++) {
+                batch.add(calc.add(calls + i, 1));
+            }
+            store.sendBatch();
+            for (int i = 0; i < BATCH; i++) {
+                check(calls + i, 1, batch.get(i).get());
+            }
+            calls += BATCH;
+            batch.clear();
+        }
+        report("batched", calls, start);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Server server = Network.createServer(5111);
+        server.start();
+        ObjectStore serverStore = new ObjectStore(server);
+        serverStore.exposeObject("calc", new CalculatorImpl());
+
+        Client client = Network.connectToServer("localhost", 5111);
+        client.start();
+        ObjectStore store = new ObjectStore(client);
+
+        Calculator calc = store.getExposedObject("calc", Calculator.class, true);
+        AsyncCalculator async = store.getExposedObjectLater("calc", AsyncCalculator.class).get();
+
+        // Warm up both paths before measuring
+        for (int i = 0; i < 2000; i++) {
+            calc.add(i, 1);
+            async.add(i, 1).get();
+        }
+
+        runBlocking(calc);
+        runAsync(async);
+        runBatched(store, async);
+
+        client.close();
+        server.close();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.network;
+
+import com.jme3.network.*;
+import com.jme3.network.base.DefaultServer;
+import com.jme3.network.kernel.tcp.SelectorKernel;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback load test for the reliable channel.  Every client keeps a
+ * fixed number of pings in flight that the server echoes back, and the
+ * test reports echoed messages per second and round trip latency
+ * percentiles as the number of connections grows.
+ *
+ * <p>Usage: TestSelectorLoad [selectors] [dispatchThreads] [connections,...]</p>
+ *
+ * <p>Each configuration is run once with a single selector thread and
+ * dispatching on the adapter thread, and once with the requested
+ * selector and dispatch thread counts.</p>
+ */
+public class TestSelectorLoad {
+
+    private static final int IN_FLIGHT = 4;
+    private static final long RUN_MILLIS = 3000;
+    private static final int MAX_SAMPLES = 4000000;
+
+    private static volatile boolean running;
+    private static long[] samples = new long[MAX_SAMPLES];
+    private static AtomicInteger sampleCount = new AtomicInteger();
+
+    @Serializable
+    public static class PingMessage extends AbstractMessage {
+
+        long sent;
+
+        public PingMessage(){
+            setReliable(true);
+        }
+
+        public PingMessage(long sent){
+            this();
+            this.sent = sent;
+        }
+    }
+
+    private static class EchoListener implements MessageListener<HostedConnection> {
+        public void messageReceived(HostedConnection source, Message m) {
+            m.setReliable(true);
+            source.send(m);
+        }
+    }
+
+    private static class PingListener implements MessageListener<Client> {
+        public void messageReceived(Client source, Message m) {
+            long now = System.nanoTime();
+            int i = sampleCount.getAndIncrement();
+            if (i < MAX_SAMPLES)
+                samples[i] = now - ((PingMessage) m).sent;
+            if (running)
+                source.send(new PingMessage(now));
+        }
+    }
+
+    private static void run(int port, int selectors, int dispatchThreads, int connections)
+            throws IOException, InterruptedException {
+        DefaultServer server = new DefaultServer(Network.DEFAULT_GAME_NAME, Network.DEFAULT_VERSION,
+                                                 new SelectorKernel(port, selectors), null);
+        server.setDispatchThreadCount(dispatchThreads);
+        server.addMessageListener(new EchoListener(), PingMessage.class);
+        server.start();
+
+        List<Client> clients = new ArrayList<Client>();
+        for (int i = 0; i < connections; i++) {
+            Client client = Network.connectToServer(Network.DEFAULT_GAME_NAME, Network.DEFAULT_VERSION,
+                                                    "localhost", port, -1);
+            client.addMessageListener(new PingListener(), PingMessage.class);
+            client.start();
+            clients.add(client);
+        }
+        while (server.getConnections().size() < connections) {
+            Thread.sleep(10);
+        }
+        for (Client client : clients) {
+            while (!client.isConnected()) {
+                Thread.sleep(1);
+            }
+        }
+
+        sampleCount.set(0);
+        running = true;
+        long start = System.nanoTime();
+        for (Client client : clients) {
+            for (int i = 0; i < IN_FLIGHT; i++) {
+                client.send(new PingMessage(System.nanoTime()));
+            }
+        }
+        Thread.sleep(RUN_MILLIS);
+        running = false;
+        int count = Math.min(sampleCount.get(), MAX_SAMPLES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = new long[count];
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted);
+        System.out.printf("%9d %10d %8d %12.0f %9.2f %9.2f%n", selectors, dispatchThreads, connections,
+                          count / seconds, percentile(sorted, 0.5), percentile(sorted, 0.99));
+
+        Thread.sleep(200);
+        for (Client client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    private static double percentile(long[] sorted, double p){
+        if (sorted.length == 0)
+            return 0;
+        int i = Math.min(sorted.length - 1, (int) (sorted.length * p));
+        return sorted[i] / 1000000.0;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Serializer.registerClass(PingMessage.class);
+
+        int selectors = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int dispatchThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String[] counts = (args.length > 2 ? args[2] : "25,100,400").split(",");
+
+        System.out.println("selectors dispatchers  clients  messages/s   p50 (ms)  p99 (ms)");
+        int port = 5110;
+        for (String c : counts) {
+            int connections = Integer.parseInt(c.trim());
+            run(port++, 1, 0, connections);
+            run(port++, selectors, dispatchThreads, connections);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.network;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.serializers.CompiledFieldSerializer;
+import com.jme3.network.serializing.serializers.FieldSerializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compares message serialization throughput of the reflective
+ * FieldSerializer with the CompiledFieldSerializer.  It also checks
+ * that both produce the same bytes.
+ */
+public class TestSerializerThroughput {
+
+    private static final int ITERATIONS = 500000;
+    private static final int ROUNDS = 3;
+
+    @Serializable
+    public static class EntityUpdateMessage extends AbstractMessage {
+
+        private int entityId;
+        private long timestamp;
+        private float x, y, z;
+        private float qx, qy, qz, qw;
+        private short health;
+        private byte state;
+        private boolean visible;
+        private String name;
+        private Vector3f velocity;
+
+        public EntityUpdateMessage(){
+        }
+
+        public EntityUpdateMessage(int id){
+            entityId = id;
+            timestamp = System.currentTimeMillis();
+            x = id * 0.5f; y = 2; z = -id;
+            qw = 1;
+            health = 100;
+            state = 3;
+            visible = true;
+            name = "entity" + id;
+            velocity = new Vector3f(1, 0, 0.5f);
+        }
+    }
+
+    private static byte[] run(String name, EntityUpdateMessage msg) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        // Warm up
+        for (int i = 0; i < ITERATIONS / 5; i++) {
+            buffer.clear();
+            Serializer.writeClassAndObject(buffer, msg);
+            buffer.flip();
+            Serializer.readClassAndObject(buffer);
+        }
+
+        long write = 0, read = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            buffer.clear();
+            long start = System.nanoTime();
+            Serializer.writeClassAndObject(buffer, msg);
+            long mid = System.nanoTime();
+            buffer.flip();
+            Serializer.readClassAndObject(buffer);
+            read += System.nanoTime() - mid;
+            write += mid - start;
+        }
+        System.out.printf("%-26s write: %6.0f ns  read: %6.0f ns  (%,.0f round trips/s)%n", name,
+                          write / (double) ITERATIONS, read / (double) ITERATIONS,
+                          ITERATIONS / ((write + read) / 1e9));
+
+        buffer.clear();
+        Serializer.writeClassAndObject(buffer, msg);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Serializer.registerClass(EntityUpdateMessage.class);
+        EntityUpdateMessage msg = new EntityUpdateMessage(17);
+
+        // Alternate the two so that both get the same chance to warm up.
+        // Re-registering keeps the ID and only swaps the serializer.
+        FieldSerializer fieldSerializer = new FieldSerializer();
+        CompiledFieldSerializer compiledSerializer = new CompiledFieldSerializer();
+        byte[] reflected = null, compiled = null;
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round);
+            Serializer.registerClass(EntityUpdateMessage.class, fieldSerializer);
+            reflected = run("FieldSerializer", msg);
+            Serializer.registerClass(EntityUpdateMessage.class, compiledSerializer);
+            compiled = run("CompiledFieldSerializer", msg);
+        }
+
+        System.out.println("Identical wire format: " + Arrays.equals(reflected, compiled)
+                           + " (" + compiled.length + " bytes)");
+    }
+}
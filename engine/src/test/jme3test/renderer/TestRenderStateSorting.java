@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Statistics;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.Shader;
+import com.jme3.shader.Uniform;
+import com.jme3.system.JmeSystem;
+import com.jme3.system.NullRenderer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.util.BufferUtils;
+import java.util.Random;
+
+/**
+ * Renders a scene with many materials through a {@link NullRenderer} that
+ * tracks the bound shader, textures and uniforms like a real renderer, and
+ * counts the shader switches, texture binds and uniform uploads in
+ * {@link Statistics}. Compares the
+ * sort key based {@link OpaqueComparator} with the previous comparison on
+ * {@link Material#getSortId() }.
+ */
+public class TestRenderStateSorting {
+
+    private static final int OBJECTS = 5000;
+    private static final int TEXTURES = 12;
+    private static final int FRAMES = 100;
+
+    /**
+     * Assigns ids and reports binds to the statistics the way the
+     * OpenGL renderers do.
+     */
+    private static class CountingRenderer extends NullRenderer {
+
+        private final Statistics statistics = new Statistics();
+        private final Image[] boundTextures = new Image[16];
+        private Shader boundShader;
+        private int nextId = 1;
+
+        CountingRenderer() {
+            getCaps().add(Caps.GLSL100);
+        }
+
+        @Override
+        public Statistics getStatistics() {
+            return statistics;
+        }
+
+        @Override
+        public void setShader(Shader shader) {
+            if (shader.getId() == -1) {
+                shader.setId(nextId++);
+                statistics.onNewShader();
+            }
+            statistics.onShaderUse(shader, shader != boundShader);
+            boundShader = shader;
+
+            for (Uniform uniform : shader.getUniformMap().values()) {
+                if (uniform.getLocation() == Uniform.LOC_UNKNOWN) {
+                    uniform.setLocation(nextId++);
+                }
+                if (uniform.isUpdateNeeded() && uniform.getValue() != null) {
+                    statistics.onUniformSet();
+                    uniform.clearUpdateNeeded();
+                }
+            }
+        }
+
+        @Override
+        public void setTexture(int unit, Texture tex) {
+            Image image = tex.getImage();
+            if (image.getId() == -1) {
+                image.setId(nextId++);
+                statistics.onNewTexture();
+            }
+            statistics.onTextureUse(image, boundTextures[unit] != image);
+            boundTextures[unit] = image;
+        }
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count) {
+            statistics.onMeshDrawn(mesh, lod);
+        }
+    }
+
+    /**
+     * The opaque comparison used before sort keys: material sort id,
+     * then front to back.
+     */
+    private static class SortIdComparator implements GeometryComparator {
+
+        private final OpaqueComparator distance = new OpaqueComparator();
+
+        public void setCamera(Camera cam) {
+            distance.setCamera(cam);
+        }
+
+        public int compare(Geometry o1, Geometry o2) {
+            int compareResult = o2.getMaterial().getSortId() - o1.getMaterial().getSortId();
+            if (compareResult == 0) {
+                float d1 = distance.distanceToCam(o1);
+                float d2 = distance.distanceToCam(o2);
+                return d1 == d2 ? 0 : (d1 < d2 ? -1 : 1);
+            }
+            return compareResult;
+        }
+    }
+
+    private static Texture createTexture() {
+        Image image = new Image(Format.RGBA8, 4, 4, BufferUtils.createByteBuffer(4 * 4 * 4));
+        return new Texture2D(image);
+    }
+
+    private static Node createScene(AssetManager assetManager, int materialCount) {
+        Random random = new Random(1234);
+        Texture[] textures = new Texture[TEXTURES];
+        for (int i = 0; i < TEXTURES; i++) {
+            textures[i] = createTexture();
+        }
+
+        // four shader variants, each with several texture combinations
+        Material[] materials = new Material[materialCount];
+        for (int i = 0; i < materialCount; i++) {
+            Material mat = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+            switch (i % 4) {
+                case 0:
+                    mat.setColor("Color", ColorRGBA.randomColor());
+                    break;
+                case 1:
+                    mat.setTexture("ColorMap", textures[random.nextInt(TEXTURES)]);
+                    break;
+                case 2:
+                    mat.setTexture("ColorMap", textures[random.nextInt(TEXTURES)]);
+                    mat.setTexture("LightMap", textures[random.nextInt(TEXTURES)]);
+                    break;
+                default:
+                    mat.setTexture("ColorMap", textures[random.nextInt(TEXTURES)]);
+                    mat.setBoolean("VertexColor", true);
+                    break;
+            }
+            materials[i] = mat;
+        }
+
+        Box box = new Box(0.5f, 0.5f, 0.5f);
+        Node scene = new Node("Scene");
+        for (int i = 0; i < OBJECTS; i++) {
+            Geometry geom = new Geometry("Box " + i, box);
+            geom.setMaterial(materials[random.nextInt(materialCount)]);
+            geom.setLocalTranslation(FastMath.nextRandomFloat() * 100 - 50,
+                                     FastMath.nextRandomFloat() * 100 - 50,
+                                     -FastMath.nextRandomFloat() * 200);
+            scene.attachChild(geom);
+        }
+        scene.updateGeometricState();
+        return scene;
+    }
+
+    private static void run(String name, GeometryComparator comparator, AssetManager assetManager,
+            int materialCount) {
+        CountingRenderer renderer = new CountingRenderer();
+        RenderManager renderManager = new RenderManager(renderer);
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(60f, 640f / 480f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0, 0, 100));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        ViewPort viewPort = renderManager.createMainView("Main", cam);
+        viewPort.attachScene(createScene(assetManager, materialCount));
+        viewPort.getQueue().setGeometryComparator(Bucket.Opaque, comparator);
+
+        // the first frame uploads shaders and textures
+        renderManager.renderViewPort(viewPort, 0.016f);
+
+        Statistics stats = renderer.getStatistics();
+        stats.setEnabled(true);
+        long shaderSwitches = 0, textureBinds = 0, objects = 0;
+        long uniformsSet = 0, uniformsSkipped = 0;
+        int[] data = new int[stats.getLabels().length];
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            stats.clearFrame();
+            renderManager.renderViewPort(viewPort, 0.016f);
+            stats.getData(data);
+            objects += data[3];
+            shaderSwitches += data[4];
+            textureBinds += data[7];
+            uniformsSet += data[2];
+            uniformsSkipped += data[13];
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.printf("%-10s %6d objects, %5d shader switches, %5d texture binds, "
+                + "%6d uniforms set, %6d skipped, %.2f ms/frame%n",
+                name, objects / FRAMES, shaderSwitches / FRAMES, textureBinds / FRAMES,
+                uniformsSet / FRAMES, uniformsSkipped / FRAMES, time / 1e6 / FRAMES);
+    }
+
+    public static void main(String[] args) {
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                Thread.currentThread().getContextClassLoader().getResource("com/jme3/asset/Desktop.cfg"));
+
+        // warm up
+        run("warmup", new OpaqueComparator(), assetManager, 48);
+        run("warmup", new SortIdComparator(), assetManager, 48);
+
+        System.out.println("48 materials:");
+        run("sort id", new SortIdComparator(), assetManager, 48);
+        run("sort key", new OpaqueComparator(), assetManager, 48);
+
+        System.out.println("4 shared materials:");
+        run("sort id", new SortIdComparator(), assetManager, 4);
+        run("sort key", new OpaqueComparator(), assetManager, 4);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.stress;
+
+import com.jme3.animation.AnimChannel;
+import com.jme3.animation.AnimControl;
+import com.jme3.animation.AnimPoseCache;
+import com.jme3.animation.Animation;
+import com.jme3.animation.Bone;
+import com.jme3.animation.BoneTrack;
+import com.jme3.animation.Skeleton;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+
+/**
+ * Animates a crowd of copies of one model, playing 3 animations started
+ * at 8 different times, with and without an {@link AnimPoseCache}, and
+ * prints the share of the updates that used a cached pose.
+ */
+public class TestAnimPoseCache {
+
+    private static final int CHARACTERS = 300;
+    private static final int BONES = 60;
+    private static final int KEYS = 120;
+    private static final int FRAMES = 600;
+    private static final String[] ANIMS = {"Walk", "Run", "Idle"};
+
+    private static Node createModel() {
+        Bone[] bones = new Bone[BONES];
+        for (int i = 0; i < BONES; i++) {
+            bones[i] = new Bone("Bone " + i);
+            bones[i].setBindTransforms(new Vector3f(0, 0.1f, 0), new Quaternion(), new Vector3f(1, 1, 1));
+            if (i % 10 != 0) {
+                bones[i - 1].addChild(bones[i]);
+            } else if (i > 0) {
+                bones[0].addChild(bones[i]);
+            }
+        }
+        AnimControl control = new AnimControl(new Skeleton(bones));
+
+        float[] times = new float[KEYS];
+        for (int k = 0; k < KEYS; k++) {
+            times[k] = k / 30f;
+        }
+        for (int a = 0; a < ANIMS.length; a++) {
+            Animation anim = new Animation(ANIMS[a], times[KEYS - 1]);
+            for (int b = 0; b < BONES; b++) {
+                Vector3f[] translations = new Vector3f[KEYS];
+                Quaternion[] rotations = new Quaternion[KEYS];
+                for (int k = 0; k < KEYS; k++) {
+                    translations[k] = new Vector3f();
+                    rotations[k] = new Quaternion().fromAngleAxis(
+                            FastMath.sin(k * 0.1f * (a + 1) + b) * 0.4f, Vector3f.UNIT_X);
+                }
+                anim.addTrack(new BoneTrack(b, times, translations, rotations));
+            }
+            control.addAnim(anim);
+        }
+
+        Node model = new Node("Model");
+        model.addControl(control);
+        return model;
+    }
+
+    private static Node createCrowd(AnimPoseCache cache) {
+        Node model = createModel();
+        model.getControl(AnimControl.class).setPoseCache(cache);
+        Node crowd = new Node("Crowd");
+        for (int i = 0; i < CHARACTERS; i++) {
+            Spatial character = model.clone();
+            AnimChannel channel = character.getControl(AnimControl.class).createChannel();
+            channel.setAnim(ANIMS[i % ANIMS.length], 0);
+            channel.setTime((i / ANIMS.length) % 8 * 0.5f);
+            crowd.attachChild(character);
+        }
+        return crowd;
+    }
+
+    private static long run(Node crowd) {
+        float tpf = 1f / 60f;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (frame % 200 == 100) {
+                // a group switches animations, blending for a while
+                for (int i = 0; i < CHARACTERS; i += 10) {
+                    AnimChannel channel = crowd.getChild(i).getControl(AnimControl.class).getChannel(0);
+                    channel.setAnim(ANIMS[(frame / 200 + i) % ANIMS.length], 0.5f);
+                }
+            }
+            crowd.updateLogicalState(tpf);
+            crowd.updateGeometricState();
+            for (int i = 0; i < CHARACTERS; i++) {
+                // what a skeleton control would do
+                crowd.getChild(i).getControl(AnimControl.class).getSkeleton().computeSkinningMatrices();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Characters: " + CHARACTERS + ", bones: " + BONES + ", frames: " + FRAMES);
+
+        // warm up
+        run(createCrowd(null));
+        run(createCrowd(new AnimPoseCache()));
+
+        long uncached = run(createCrowd(null));
+        System.out.printf("without cache: %.2f ms/frame%n", uncached / 1e6 / FRAMES);
+
+        AnimPoseCache cache = new AnimPoseCache();
+        long cached = run(createCrowd(cache));
+        System.out.printf("with cache: %.2f ms/frame, speedup %.2fx%n",
+                cached / 1e6 / FRAMES, (double) uncached / cached);
+        System.out.printf("hits: %d, misses: %d, hit rate: %.1f%%, cached poses: %d%n",
+                cache.getHitCount(), cache.getMissCount(), cache.getHitRate() * 100, cache.size());
+    }
+}
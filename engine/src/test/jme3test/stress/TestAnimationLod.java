@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.stress;
+
+import com.jme3.animation.AnimControl;
+import com.jme3.animation.Animation;
+import com.jme3.animation.Bone;
+import com.jme3.animation.BoneTrack;
+import com.jme3.animation.LoopMode;
+import com.jme3.animation.Skeleton;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+
+/**
+ * Animates a crowd of characters, as done on the update thread, first at
+ * full detail, then with animation levels of detail: characters further
+ * than 20 units update every 2nd frame, and the ones further than 50
+ * update every 4th frame without their 3 deepest bone levels.
+ */
+public class TestAnimationLod {
+
+    private static final int CHARACTERS = 300;
+    private static final int BONES = 60;
+    private static final int KEYS = 300;
+    private static final int FRAMES = 300;
+
+    /**
+     * Creates a skeleton of 6 chains of 10 bones, like the limbs, spine
+     * and fingers of a character.
+     */
+    private static Skeleton createSkeleton() {
+        Bone[] bones = new Bone[BONES];
+        for (int i = 0; i < BONES; i++) {
+            bones[i] = new Bone("Bone " + i);
+            bones[i].setBindTransforms(new Vector3f(0, 0.1f, 0), new Quaternion(), new Vector3f(1, 1, 1));
+            if (i % 10 != 0) {
+                bones[i - 1].addChild(bones[i]);
+            } else if (i > 0) {
+                bones[0].addChild(bones[i]);
+            }
+        }
+        return new Skeleton(bones);
+    }
+
+    private static Animation createAnimation(String name, float phase) {
+        float[] times = new float[KEYS];
+        for (int k = 0; k < KEYS; k++) {
+            times[k] = k / 30f;
+        }
+        Animation anim = new Animation(name, times[KEYS - 1]);
+        for (int b = 0; b < BONES; b++) {
+            Vector3f[] translations = new Vector3f[KEYS];
+            Quaternion[] rotations = new Quaternion[KEYS];
+            for (int k = 0; k < KEYS; k++) {
+                translations[k] = new Vector3f();
+                rotations[k] = new Quaternion().fromAngleAxis(
+                        FastMath.sin(k * 0.1f + b + phase) * 0.4f, Vector3f.UNIT_X);
+            }
+            anim.addTrack(new BoneTrack(b, times, translations, rotations));
+        }
+        return anim;
+    }
+
+    private static Node createCrowd(boolean lod) {
+        Animation walk = createAnimation("Walk", 0);
+        Animation wave = createAnimation("Wave", 1);
+        Node crowd = new Node("Crowd");
+        for (int i = 0; i < CHARACTERS; i++) {
+            AnimControl control = new AnimControl(createSkeleton());
+            control.addAnim(walk);
+            control.addAnim(wave);
+            if (lod) {
+                control.addLodLevel(20, 2, -1);
+                control.addLodLevel(50, 4, 3);
+            }
+            Node character = new Node("Character " + i);
+            // a 100 by 100 area in front of the camera
+            character.setLocalTranslation((i % 15) * 7 - 50, 0, -(i / 15) * 5);
+            character.addControl(control);
+            control.createChannel().setAnim("Walk", 0);
+            control.getChannel(0).setLoopMode(LoopMode.Loop);
+            control.getChannel(0).setTime(i * 0.1f);
+            crowd.attachChild(character);
+        }
+        crowd.updateGeometricState();
+        return crowd;
+    }
+
+    private static long run(Node crowd, ViewPort vp) {
+        float tpf = 1f / 60f;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (frame % 100 == 50) {
+                // some characters change animation, blending for a while
+                for (int i = 0; i < CHARACTERS; i += 3) {
+                    AnimControl control = crowd.getChild(i).getControl(AnimControl.class);
+                    control.getChannel(0).setAnim(frame % 200 == 50 ? "Wave" : "Walk", 0.5f);
+                }
+            }
+            crowd.updateLogicalState(tpf);
+            crowd.updateGeometricState();
+            // measures the distance to the camera, as rendering would
+            for (int i = 0; i < CHARACTERS; i++) {
+                crowd.getChild(i).getControl(AnimControl.class).render(null, vp);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        Camera cam = new Camera(640, 480);
+        cam.setLocation(new Vector3f(0, 2, 10));
+        ViewPort vp = new ViewPort("Crowd", cam);
+
+        System.out.println("Characters: " + CHARACTERS + ", bones: " + BONES + ", frames: " + FRAMES);
+
+        // warm up
+        run(createCrowd(false), vp);
+        run(createCrowd(true), vp);
+
+        long full = run(createCrowd(false), vp);
+        System.out.printf("full detail: %.2f ms/frame%n", full / 1e6 / FRAMES);
+
+        Node crowd = createCrowd(true);
+        long lod = run(crowd, vp);
+        int[] levels = new int[3];
+        for (int i = 0; i < CHARACTERS; i++) {
+            levels[crowd.getChild(i).getControl(AnimControl.class).getLodLevel() + 1]++;
+        }
+        System.out.printf("with levels of detail: %.2f ms/frame, speedup %.2fx%n",
+                lod / 1e6 / FRAMES, (double) full / lod);
+        System.out.println("characters at full detail: " + levels[0]
+                + ", level 0: " + levels[1] + ", level 1: " + levels[2]);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.stress;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.FastMath;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.ParallelSceneUpdater;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Updates a large scene, as a headless simulation would, sequentially and
+ * with a {@link ParallelSceneUpdater} using an increasing number of threads.
+ * Every object is moved by a control each frame, then the results of the
+ * sequential and parallel updates are compared.
+ */
+public class TestParallelSceneUpdate {
+
+    private static final int GROUPS = 64;
+    private static final int SUB_GROUPS = 16;
+    private static final int OBJECTS = 32;
+    private static final int FRAMES = 100;
+
+    private static class WanderControl extends AbstractControl {
+
+        private float time;
+        private final float speed;
+
+        WanderControl(float speed) {
+            this.speed = speed;
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+            time += tpf;
+            // some busy work, like a simple AI would do
+            float x = 0;
+            for (int i = 0; i < 20; i++) {
+                x += FastMath.sin(time * speed + i) * FastMath.cos(time + i * speed);
+            }
+            spatial.setLocalTranslation(spatial.getLocalTranslation().x, x * 0.05f,
+                    spatial.getLocalTranslation().z);
+            spatial.rotate(0, tpf * speed, 0);
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    private static Node createScene() {
+        Mesh box = new Box(0.2f, 0.2f, 0.2f);
+        Node root = new Node("Root");
+        for (int i = 0; i < GROUPS; i++) {
+            Node group = new Node("Group " + i);
+            group.setLocalTranslation((i % 8) * 20, 0, (i / 8) * 20);
+            root.attachChild(group);
+            for (int j = 0; j < SUB_GROUPS; j++) {
+                Node sub = new Node("Sub " + j);
+                sub.setLocalTranslation((j % 4) * 4, 0, (j / 4) * 4);
+                sub.addControl(new WanderControl(0.1f * (j + 1)));
+                group.attachChild(sub);
+                for (int k = 0; k < OBJECTS; k++) {
+                    Geometry geom = new Geometry("Object " + k, box);
+                    geom.setLocalTranslation(k % 4, 0, k / 4);
+                    geom.addControl(new WanderControl(0.05f * (k + 1)));
+                    sub.attachChild(geom);
+                }
+            }
+        }
+        return root;
+    }
+
+    private static long run(Node scene, ParallelSceneUpdater updater) {
+        float tpf = 1f / 60f;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (updater != null) {
+                updater.updateLogicalState(scene, tpf);
+                updater.updateGeometricState(scene);
+            } else {
+                scene.updateLogicalState(tpf);
+                scene.updateGeometricState();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static boolean sameState(Spatial a, Spatial b) {
+        if (!a.getWorldTransform().getTranslation().equals(b.getWorldTransform().getTranslation())
+                || !a.getWorldRotation().equals(b.getWorldRotation())
+                || !a.getWorldBound().getCenter().equals(b.getWorldBound().getCenter())
+                || !((BoundingBox) a.getWorldBound()).getExtent(null).equals(
+                        ((BoundingBox) b.getWorldBound()).getExtent(null))) {
+            return false;
+        }
+        if (a instanceof Node) {
+            for (int i = 0; i < ((Node) a).getQuantity(); i++) {
+                if (!sameState(((Node) a).getChild(i), ((Node) b).getChild(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Objects: " + GROUPS * SUB_GROUPS * OBJECTS
+                + ", frames: " + FRAMES + ", processors: " + processors);
+
+        // warm up
+        run(createScene(), null);
+
+        Node reference = createScene();
+        long sequentialTime = run(reference, null);
+        System.out.printf("sequential: %.2f ms/frame%n", sequentialTime / 1e6 / FRAMES);
+
+        for (int threads = 1; threads <= Math.max(8, processors); threads *= 2) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            ParallelSceneUpdater updater = new ParallelSceneUpdater(executor, threads);
+            run(createScene(), updater);
+
+            Node scene = createScene();
+            long time = run(scene, updater);
+            executor.shutdown();
+
+            System.out.printf("%d thread(s): %.2f ms/frame, speedup %.2fx, %s%n",
+                    threads, time / 1e6 / FRAMES, (double) sequentialTime / time,
+                    sameState(reference, scene) ? "identical" : "DIFFERENT");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.stress;
+
+import com.jme3.animation.Bone;
+import com.jme3.animation.Skeleton;
+import com.jme3.animation.SkeletonControl;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Skins a crowd of characters in software, as done when hardware skinning
+ * is not available, on the rendering thread and with an executor using an
+ * increasing number of threads. The skinned positions are compared with
+ * the ones computed on the rendering thread.
+ */
+public class TestParallelSkinning {
+
+    private static final int CHARACTERS = 200;
+    private static final int BONES = 4;
+    private static final int RINGS = 48;
+    private static final int SEGMENTS = 64;
+    private static final int FRAMES = 50;
+
+    /**
+     * Bends the bones of a character, the way an AnimControl would.
+     */
+    private static class BendControl extends AbstractControl {
+
+        private final Skeleton skeleton;
+        private final float speed;
+        private final Quaternion rotation = new Quaternion();
+        private float time;
+
+        BendControl(Skeleton skeleton, float speed) {
+            this.skeleton = skeleton;
+            this.speed = speed;
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+            time += tpf;
+            for (int i = 1; i < skeleton.getBoneCount(); i++) {
+                Bone bone = skeleton.getBone(i);
+                rotation.fromAngleAxis(FastMath.sin(time * speed + i) * 0.5f, Vector3f.UNIT_Z);
+                bone.setUserTransforms(Vector3f.ZERO, rotation, Vector3f.UNIT_XYZ);
+            }
+            skeleton.updateWorldVectors();
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    /**
+     * Creates a tube along the Y axis, each vertex weighted to the two
+     * closest bones.
+     */
+    private static Mesh createTube() {
+        int vertices = RINGS * SEGMENTS;
+        FloatBuffer pos = BufferUtils.createFloatBuffer(vertices * 3);
+        FloatBuffer norm = BufferUtils.createFloatBuffer(vertices * 3);
+        ByteBuffer indices = BufferUtils.createByteBuffer(vertices * 4);
+        FloatBuffer weights = BufferUtils.createFloatBuffer(vertices * 4);
+        float height = BONES;
+        for (int r = 0; r < RINGS; r++) {
+            float y = height * r / (RINGS - 1);
+            float boneY = Math.min(y, BONES - 1.001f);
+            int bone = (int) boneY;
+            float blend = boneY - bone;
+            for (int s = 0; s < SEGMENTS; s++) {
+                float angle = FastMath.TWO_PI * s / SEGMENTS;
+                float x = FastMath.cos(angle);
+                float z = FastMath.sin(angle);
+                pos.put(x * 0.3f).put(y).put(z * 0.3f);
+                norm.put(x).put(0).put(z);
+                indices.put((byte) bone).put((byte) (bone + 1)).put((byte) 0).put((byte) 0);
+                weights.put(1f - blend).put(blend).put(0).put(0);
+            }
+        }
+
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, pos);
+        mesh.setBuffer(Type.Normal, 3, norm);
+        mesh.setBuffer(Type.BoneIndex, 4, indices);
+        mesh.setBuffer(Type.BoneWeight, 4, weights);
+        mesh.getBuffer(Type.BoneIndex).setUsage(Usage.CpuOnly);
+        mesh.getBuffer(Type.BoneWeight).setUsage(Usage.CpuOnly);
+        mesh.setMaxNumWeights(2);
+        mesh.generateBindPose(true);
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static Node createCrowd(ExecutorService executor) {
+        Node crowd = new Node("Crowd");
+        for (int i = 0; i < CHARACTERS; i++) {
+            Bone[] bones = new Bone[BONES];
+            for (int b = 0; b < BONES; b++) {
+                bones[b] = new Bone("Bone " + b);
+                bones[b].setBindTransforms(new Vector3f(0, b == 0 ? 0 : 1, 0),
+                        new Quaternion(), new Vector3f(1, 1, 1));
+                bones[b].setUserControl(true);
+                if (b > 0) {
+                    bones[b - 1].addChild(bones[b]);
+                }
+            }
+            Skeleton skeleton = new Skeleton(bones);
+            skeleton.setBindingPose();
+
+            Node character = new Node("Character " + i);
+            character.attachChild(new Geometry("Body", createTube()));
+            character.addControl(new BendControl(skeleton, 1f + i % 7));
+            SkeletonControl skeletonControl = new SkeletonControl(skeleton);
+            character.addControl(skeletonControl);
+            skeletonControl.setSoftwareSkinningExecutor(executor);
+            crowd.attachChild(character);
+        }
+        return crowd;
+    }
+
+    private static long run(Node crowd) {
+        float tpf = 1f / 60f;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            crowd.updateLogicalState(tpf);
+            // the application would do other work here, like physics
+            // and updating the rest of the scene, while the meshes are skinned
+            crowd.updateGeometricState();
+            for (int i = 0; i < crowd.getQuantity(); i++) {
+                crowd.getChild(i).getControl(SkeletonControl.class).render(null, null);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static boolean samePositions(Node a, Node b) {
+        for (int i = 0; i < a.getQuantity(); i++) {
+            Mesh meshA = ((Geometry) ((Node) a.getChild(i)).getChild(0)).getMesh();
+            Mesh meshB = ((Geometry) ((Node) b.getChild(i)).getChild(0)).getMesh();
+            FloatBuffer posA = (FloatBuffer) meshA.getBuffer(Type.Position).getData();
+            FloatBuffer posB = (FloatBuffer) meshB.getBuffer(Type.Position).getData();
+            FloatBuffer normA = (FloatBuffer) meshA.getBuffer(Type.Normal).getData();
+            FloatBuffer normB = (FloatBuffer) meshB.getBuffer(Type.Normal).getData();
+            posA.clear();
+            posB.clear();
+            normA.clear();
+            normB.clear();
+            if (!posA.equals(posB) || !normA.equals(normB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Characters: " + CHARACTERS + ", vertices: "
+                + CHARACTERS * RINGS * SEGMENTS + ", frames: " + FRAMES
+                + ", processors: " + processors);
+
+        // warm up
+        run(createCrowd(null));
+
+        Node reference = createCrowd(null);
+        long renderThreadTime = run(reference);
+        System.out.printf("render thread: %.2f ms/frame%n", renderThreadTime / 1e6 / FRAMES);
+
+        for (int threads = 1; threads <= Math.max(8, processors); threads *= 2) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            run(createCrowd(executor));
+
+            Node crowd = createCrowd(executor);
+            long time = run(crowd);
+            executor.shutdown();
+
+            System.out.printf("%d thread(s): %.2f ms/frame, speedup %.2fx, %s%n",
+                    threads, time / 1e6 / FRAMES, (double) renderThreadTime / time,
+                    samePositions(reference, crowd) ? "identical" : "DIFFERENT");
+        }
+    }
+}
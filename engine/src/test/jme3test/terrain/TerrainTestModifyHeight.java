@@ -236,9 +236,9 @@ public class TerrainTestModifyHeight extends SimpleApplication {
             }
         }
 
+        // the terrain updates the normals and bounds of the modified patches once per frame
         terrain.adjustHeight(locs, heights);
         //System.out.println("Modified "+locs.size()+" points, took: " + (System.currentTimeMillis() - start)+" ms");
-        terrain.updateModelBound();
     }
 
     private boolean isInRadius(float x, float y, float radius) {
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.terrain;
+
+import com.jme3.math.Vector2f;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.terrain.geomipmap.TerrainPatch;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless benchmark of continuous terrain sculpting.  Every frame a few
+ * brush strokes raise and lower the terrain, then the frame is finished the
+ * way the engine does it: the controls update the normals and bounds of the
+ * edited patches and the modified vertex data is "uploaded".  Reports the
+ * time spent per frame and how much vertex data was marked for upload
+ * compared to sending the whole buffers of the modified patches. The
+ * "per edit" run also refreshes the model bound after each stroke, as
+ * editors used to do.
+ *
+ * <p>Usage: TestTerrainEditLatency [totalSize] [patchSize] [frames] [strokes]</p>
+ */
+public class TestTerrainEditLatency {
+
+    private static final Type[] TYPES = {Type.Position, Type.Normal, Type.Tangent, Type.Binormal};
+
+    private static float[] createHeightMap(int size) {
+        float[] heights = new float[size * size];
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                heights[z * size + x] = (float) (Math.sin(x * 0.05) * Math.cos(z * 0.03) * 40);
+            }
+        }
+        return heights;
+    }
+
+    private static void stroke(TerrainQuad terrain, float x, float z, float radius, float delta) {
+        List<Vector2f> locs = new ArrayList<Vector2f>();
+        List<Float> heights = new ArrayList<Float>();
+        int r = (int) radius;
+        for (int dz = -r; dz <= r; dz++) {
+            for (int dx = -r; dx <= r; dx++) {
+                float d = (float) Math.sqrt(dx * dx + dz * dz);
+                if (d > radius)
+                    continue;
+                locs.add(new Vector2f(x + dx, z + dz));
+                heights.add(delta * (1 - d / radius));
+            }
+        }
+        terrain.adjustHeight(locs, heights);
+    }
+
+    private static void run(String name, int totalSize, int patchSize, int frames, int strokes, boolean boundPerEdit) {
+        TerrainQuad terrain = new TerrainQuad("terrain", patchSize, totalSize, createHeightMap(totalSize));
+        terrain.updateLogicalState(0);
+        List<TerrainPatch> patches = new ArrayList<TerrainPatch>();
+        terrain.getAllTerrainPatches(patches);
+
+        float half = totalSize / 2f;
+        long uploaded = 0;
+        long whole = 0;
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++) {
+            for (int s = 0; s < strokes; s++) {
+                // brushes wander across the terrain and over the patch borders
+                float t = (f * strokes + s) * 0.01f;
+                float x = (float) Math.sin(t * 1.3 + s) * half * 0.9f;
+                float z = (float) Math.cos(t * 0.7 + s * 2) * half * 0.9f;
+                stroke(terrain, x, z, 8, (s % 2 == 0) ? 0.5f : -0.5f);
+                if (boundPerEdit)
+                    terrain.updateModelBound();
+            }
+            terrain.updateLogicalState(1f / 60f);
+            terrain.updateGeometricState();
+
+            // what a renderer would send to the GPU for this frame
+            for (TerrainPatch tp : patches) {
+                for (Type type : TYPES) {
+                    VertexBuffer vb = tp.getMesh().getBuffer(type);
+                    if (!vb.isUpdateNeeded())
+                        continue;
+                    uploaded += (vb.getUpdateEnd() - vb.getUpdateStart()) * 4;
+                    whole += vb.getData().limit() * 4;
+                    vb.clearUpdateNeeded();
+                }
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.println(String.format("%-9s %5.2f ms/frame  uploaded %8.1f KB/frame  whole buffers %8.1f KB/frame",
+                                         name, time / 1e6 / frames, uploaded / 1024f / frames, whole / 1024f / frames));
+    }
+
+    public static void main(String[] args) {
+        int totalSize = args.length > 0 ? Integer.parseInt(args[0]) : 513;
+        int patchSize = args.length > 1 ? Integer.parseInt(args[1]) : 65;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        int strokes = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        for (int round = 0; round < 2; round++) {
+            run("per edit", totalSize, patchSize, frames, strokes, true);
+            run("batched", totalSize, patchSize, frames, strokes, false);
+        }
+    }
+}
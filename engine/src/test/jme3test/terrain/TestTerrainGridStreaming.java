@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.terrain;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.terrain.geomipmap.TerrainGrid;
+import com.jme3.terrain.geomipmap.TerrainGridListener;
+import com.jme3.terrain.geomipmap.TerrainGridLodControl;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import com.jme3.terrain.geomipmap.grid.MappedTileLoader;
+import com.jme3.terrain.heightmap.HeightTileConverter;
+import com.jme3.terrain.heightmap.HeightTileFile;
+import com.jme3.terrain.heightmap.RawHeightMap;
+import java.io.File;
+
+/**
+ * Headless benchmark of TerrainGrid streaming from a memory mapped height
+ * tile file.  Converts a generated heightfield into tiles, times loading
+ * tiles, then flies a camera across the grid with and without prefetching
+ * and reports how long the grid takes to attach the new tiles after the
+ * camera enters a new cell.
+ *
+ * <p>Usage: TestTerrainGridStreaming [size] [seconds]</p>
+ */
+public class TestTerrainGridStreaming {
+
+    private static final int GRID_SIZE = 257;
+    private static final int TILE_SIZE = (GRID_SIZE + 1) / 2;
+
+    private static class LatencyListener implements TerrainGridListener {
+
+        long movedAt;
+        long latency;
+        long total;
+        int moves;
+
+        public void gridMoved(Vector3f newCenter) {
+            finish();
+            movedAt = System.nanoTime();
+        }
+
+        public void tileAttached(Vector3f cell, TerrainQuad quad) {
+            latency = System.nanoTime() - movedAt;
+        }
+
+        public void tileDetached(Vector3f cell, TerrainQuad quad) {
+        }
+
+        void finish() {
+            if (movedAt != 0) {
+                total += latency;
+                moves++;
+            }
+            latency = 0;
+        }
+    }
+
+    private static void fly(File file, float prefetchTime, float seconds) throws Exception {
+        Camera cam = new Camera(640, 480);
+        cam.setLocation(new Vector3f(0, 100, 0));
+        MappedTileLoader loader = new MappedTileLoader(file);
+        TerrainGrid grid = new TerrainGrid("grid", 33, GRID_SIZE, loader);
+        grid.setMaterial(new Material());
+        grid.setPrefetchTime(prefetchTime);
+        TerrainGridLodControl control = new TerrainGridLodControl(grid, cam);
+        grid.addControl(control);
+        LatencyListener listener = new LatencyListener();
+        grid.addListener(listener);
+
+        float speed = 250; // two cells per second
+        long start = System.nanoTime();
+        long last = start;
+        while (System.nanoTime() - start < seconds * 1e9) {
+            long now = System.nanoTime();
+            float tpf = (now - last) / 1e9f;
+            last = now;
+            cam.setLocation(cam.getLocation().add(speed * tpf, 0, speed * tpf * 0.3f));
+            grid.updateLogicalState(tpf);
+            Thread.sleep(15);
+        }
+        listener.finish();
+        control.detachAndCleanUpControl();
+        loader.getHeightTileFile().close();
+
+        System.out.println(String.format("prefetch %.1f s: %3d cells crossed, new tiles attached %6.1f ms after entering a cell",
+                                         prefetchTime, listener.moves - 1, listener.total / 1e6 / Math.max(1, listener.moves)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2049;
+        float seconds = args.length > 1 ? Float.parseFloat(args[1]) : 8;
+
+        float[] heights = new float[size * size];
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                heights[z * size + x] = (float) (Math.sin(x * 0.01) * Math.cos(z * 0.013) * 100);
+            }
+        }
+
+        File file = File.createTempFile("terrain", ".jmht");
+        file.deleteOnExit();
+        long start = System.nanoTime();
+        HeightTileConverter.convert(new RawHeightMap(heights), TILE_SIZE, file);
+        heights = null;
+        System.out.println(String.format("Converted %dx%d heights to %.1f MB of tiles in %.0f ms",
+                                         size, size, file.length() / 1048576f, (System.nanoTime() - start) / 1e6));
+
+        HeightTileFile tiles = new HeightTileFile(file);
+        float[] store = new float[TILE_SIZE * TILE_SIZE];
+        int count = 0;
+        start = System.nanoTime();
+        for (int z = 0; z < tiles.getTilesZ(); z++) {
+            for (int x = 0; x < tiles.getTilesX(); x++) {
+                tiles.readTile(x, z, store);
+                count++;
+            }
+        }
+        System.out.println(String.format("Read %d tiles of %d, %.3f ms per tile",
+                                         count, TILE_SIZE, (System.nanoTime() - start) / 1e6 / count));
+        tiles.close();
+
+        fly(file, 0, seconds);
+        fly(file, 1, seconds);
+        file.delete();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.terrain;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.terrain.geomipmap.LODIndexCache;
+import com.jme3.terrain.geomipmap.TerrainLodControl;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+
+/**
+ * Headless benchmark of the shared terrain index buffer table.  Flies a
+ * camera across a terrain with a TerrainLodControl, once building a new
+ * index buffer for every re-indexed patch and once sharing them through
+ * LODIndexCache, and reports how many buffers and bytes were allocated.
+ *
+ * <p>Usage: TestTerrainIndexCache [totalSize] [patchSize] [steps]</p>
+ */
+public class TestTerrainIndexCache {
+
+    private static float[] createHeightMap(int size) {
+        float[] heights = new float[size * size];
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                heights[z * size + x] = (float) (Math.sin(x * 0.05) * Math.cos(z * 0.03) * 40);
+            }
+        }
+        return heights;
+    }
+
+    private static void run(String name, int totalSize, int patchSize, int steps, boolean shared)
+            throws InterruptedException {
+        LODIndexCache.clear();
+        LODIndexCache.setEnabled(shared);
+
+        TerrainQuad terrain = new TerrainQuad("terrain", patchSize, totalSize, createHeightMap(totalSize));
+        Camera cam = new Camera(640, 480);
+        TerrainLodControl control = new TerrainLodControl(terrain, cam);
+        terrain.addControl(control);
+
+        float half = totalSize / 2f;
+        long start = System.nanoTime();
+        for (int i = 0; i <= steps; i++) {
+            // fly diagonally over the terrain, at a fixed height
+            float t = (float) i / steps;
+            cam.setLocation(new Vector3f(-half + t * totalSize, 50, -half + t * totalSize * 0.7f));
+            control.update(1f / 60f);
+            // give the LOD thread time to finish before the next frame
+            Thread.sleep(2);
+            control.update(1f / 60f);
+        }
+        long time = System.nanoTime() - start;
+        control.detachAndCleanUpControl();
+
+        long requests = LODIndexCache.getRequestCount();
+        long allocated = shared ? LODIndexCache.getMemoryUsage() : LODIndexCache.getRequestedBytes();
+        long buffers = shared ? LODIndexCache.getBufferCount() : requests;
+        System.out.println(String.format("%-8s re-indexed %6d  buffers built %6d  index memory %8.1f KB  requested %8.1f KB  %6.0f ms",
+                                         name, requests, buffers, allocated / 1024f,
+                                         LODIndexCache.getRequestedBytes() / 1024f, time / 1e6));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int totalSize = args.length > 0 ? Integer.parseInt(args[0]) : 513;
+        int patchSize = args.length > 1 ? Integer.parseInt(args[1]) : 65;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        for (int round = 0; round < 2; round++) {
+            run("copies", totalSize, patchSize, steps, false);
+            run("shared", totalSize, patchSize, steps, true);
+        }
+        LODIndexCache.clear();
+        LODIndexCache.setEnabled(true);
+    }
+}
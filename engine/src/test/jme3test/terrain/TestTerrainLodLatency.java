@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.terrain;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.terrain.geomipmap.TerrainLodControl;
+import com.jme3.terrain.geomipmap.TerrainPatch;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import com.jme3.terrain.geomipmap.UpdatedTerrainPatch;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Headless benchmark of the terrain LOD pass.  Measures how long the
+ * TerrainLodControl takes to calculate the LOD of every patch, stitch the
+ * edges and re-index the patches after the camera moved, for several
+ * terrain sizes and numbers of LOD threads.
+ *
+ * <p>Usage: TestTerrainLodLatency [patchSize] [totalSize...]</p>
+ */
+public class TestTerrainLodLatency {
+
+    /**
+     * Runs the LOD pass synchronously so it can be timed.
+     */
+    private static class TimedLodControl extends TerrainLodControl {
+
+        public TimedLodControl(TerrainQuad terrain, Camera camera) {
+            super(terrain, camera);
+        }
+
+        public long runLod(Vector3f location) throws Exception {
+            List<Vector3f> locations = new ArrayList<Vector3f>();
+            locations.add(location);
+            prepareTerrain();
+
+            long start = System.nanoTime();
+            HashMap<TerrainPatch, UpdatedTerrainPatch> updated = getLodThread(locations, getLodCalculator()).call();
+            long time = System.nanoTime() - start;
+
+            if (updated != null) {
+                for (UpdatedTerrainPatch utp : updated.values()) {
+                    utp.updateAll();
+                }
+            }
+            return time;
+        }
+    }
+
+    private static float[] createHeightMap(int size) {
+        float[] heights = new float[size * size];
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                heights[z * size + x] = (float) (Math.sin(x * 0.05) * Math.cos(z * 0.03) * 40);
+            }
+        }
+        return heights;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int patchSize = args.length > 0 ? Integer.parseInt(args[0]) : 65;
+        int[] sizes = {513, 1025, 2049};
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Processors: " + processors);
+        int passes = 20;
+
+        for (int size : sizes) {
+            TerrainQuad terrain = new TerrainQuad("terrain", patchSize, size, createHeightMap(size));
+            TimedLodControl control = new TimedLodControl(terrain, new Camera(640, 480));
+            terrain.addControl(control);
+
+            // fly back and forth between two corners so every pass changes LODs
+            Vector3f a = new Vector3f(-size / 2f, 50, -size / 2f);
+            Vector3f b = new Vector3f(size / 2f, 50, size / 2f);
+
+            for (int threads = 1; threads <= Math.max(2, processors); threads *= 2) {
+                control.setLodThreads(threads);
+                for (int i = 0; i < 4; i++) {
+                    control.runLod(i % 2 == 0 ? a : b);
+                }
+                long total = 0;
+                long max = 0;
+                for (int i = 0; i < passes; i++) {
+                    long time = control.runLod(i % 2 == 0 ? a : b);
+                    total += time;
+                    max = Math.max(max, time);
+                }
+                int patches = (size - 1) / (patchSize - 1);
+                System.out.println(String.format("%5d terrain  %5d patches  %2d threads  LOD pass %7.2f ms  worst %7.2f ms",
+                                                 size, patches * patches, threads,
+                                                 total / 1e6 / passes, max / 1e6));
+            }
+            control.detachAndCleanUpControl();
+        }
+    }
+}
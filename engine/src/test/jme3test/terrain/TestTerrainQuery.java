@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jme3test.terrain;
+
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import com.jme3.terrain.geomipmap.TerrainQuery;
+import java.util.Random;
+
+/**
+ * Headless benchmark of terrain height queries and ray casts. Compares
+ * TerrainQuad.getHeight() and the BresenhamTerrainPicker used by
+ * TerrainQuad.collideWith() with the batched heights and the min/max
+ * pyramid ray casts of TerrainQuery.
+ *
+ * <p>Usage: TestTerrainQuery [totalSize] [heights] [rays]</p>
+ */
+public class TestTerrainQuery {
+
+    private static float[] createHeightMap(int size) {
+        float[] heights = new float[size * size];
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                heights[z * size + x] = (float) (Math.sin(x * 0.05) * Math.cos(z * 0.03) * 40);
+            }
+        }
+        return heights;
+    }
+
+    public static void main(String[] args) {
+        int totalSize = args.length > 0 ? Integer.parseInt(args[0]) : 1025;
+        int heightCount = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int rayCount = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        TerrainQuad terrain = new TerrainQuad("terrain", 65, totalSize, createHeightMap(totalSize));
+        terrain.updateGeometricState();
+        long start = System.nanoTime();
+        TerrainQuery query = new TerrainQuery(terrain);
+        System.out.println(String.format("snapshot          %8.1f ms", (System.nanoTime() - start) / 1e6));
+
+        Random random = new Random(1);
+        float half = totalSize / 2f;
+        float[] xz = new float[heightCount * 2];
+        for (int i = 0; i < xz.length; i++)
+            xz[i] = (random.nextFloat() * 2 - 1) * half;
+        float[] heights = new float[heightCount];
+
+        Ray[] rays = new Ray[rayCount];
+        for (int i = 0; i < rayCount; i++) {
+            Vector3f origin = new Vector3f((random.nextFloat() * 2 - 1) * half, 80, (random.nextFloat() * 2 - 1) * half);
+            Vector3f direction = new Vector3f(random.nextFloat() - 0.5f, -0.1f - random.nextFloat() * 0.3f, random.nextFloat() - 0.5f);
+            rays[i] = new Ray(origin, direction.normalizeLocal());
+        }
+
+        for (int round = 0; round < 3; round++) {
+            Vector2f point = new Vector2f();
+            start = System.nanoTime();
+            for (int i = 0; i < heightCount; i++) {
+                point.set(xz[i * 2], xz[i * 2 + 1]);
+                heights[i] = terrain.getHeight(point);
+            }
+            long quadTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            query.getHeights(xz, heights);
+            long queryTime = System.nanoTime() - start;
+
+            int pickerHits = 0;
+            start = System.nanoTime();
+            for (Ray ray : rays) {
+                CollisionResults results = new CollisionResults();
+                if (terrain.collideWith(ray, results) > 0)
+                    pickerHits++;
+            }
+            long pickerTime = System.nanoTime() - start;
+
+            int queryHits = 0;
+            Vector3f hit = new Vector3f();
+            start = System.nanoTime();
+            for (Ray ray : rays) {
+                if (query.getIntersection(ray, hit) >= 0)
+                    queryHits++;
+            }
+            long rayTime = System.nanoTime() - start;
+
+            System.out.println(String.format("heights: quad tree %7.1f ms  batched %7.1f ms   rays: picker %7.1f ms (%d hits)  pyramid %7.1f ms (%d hits)",
+                                             quadTime / 1e6, queryTime / 1e6, pickerTime / 1e6, pickerHits, rayTime / 1e6, queryHits));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.jme3.animation;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AnimPoseCacheTest {
+
+    private static final int BONES = 8;
+
+    private static Node createModel() {
+        Bone[] bones = new Bone[BONES];
+        for (int i = 0; i < BONES; i++) {
+            bones[i] = new Bone("Bone " + i);
+            bones[i].setBindTransforms(new Vector3f(0, 1, 0), new Quaternion(), new Vector3f(1, 1, 1));
+            if (i > 0) {
+                bones[i - 1].addChild(bones[i]);
+            }
+        }
+        Skeleton skeleton = new Skeleton(bones);
+
+        float[] times = {0, 1, 2, 3, 4};
+        AnimControl control = new AnimControl(skeleton);
+        for (int a = 0; a < 2; a++) {
+            Animation anim = new Animation("Anim" + a, 4);
+            for (int i = 0; i < BONES; i++) {
+                Vector3f[] translations = new Vector3f[times.length];
+                Quaternion[] rotations = new Quaternion[times.length];
+                for (int k = 0; k < times.length; k++) {
+                    translations[k] = new Vector3f(k * 0.1f, a, i);
+                    rotations[k] = new Quaternion().fromAngles(k * 0.3f + a, i * 0.1f, 0);
+                }
+                anim.addTrack(new BoneTrack(i, times, translations, rotations));
+            }
+            control.addAnim(anim);
+        }
+        Node model = new Node("Model");
+        model.addControl(control);
+        return model;
+    }
+
+    private static AnimControl play(Spatial model, String anim, float time) {
+        AnimControl control = model.getControl(AnimControl.class);
+        AnimChannel channel = control.createChannel();
+        channel.setAnim(anim, 0);
+        channel.setTime(time);
+        return control;
+    }
+
+    private static void assertSamePose(Skeleton expected, Skeleton actual) {
+        for (int i = 0; i < BONES; i++) {
+            assertEquals(expected.getBone(i).getLocalRotation(), actual.getBone(i).getLocalRotation());
+            assertEquals(expected.getBone(i).getModelSpacePosition(), actual.getBone(i).getModelSpacePosition());
+            assertEquals(expected.getBone(i).getModelSpaceRotation(), actual.getBone(i).getModelSpaceRotation());
+        }
+        Matrix4f[] a = expected.computeSkinningMatrices();
+        Matrix4f[] b = actual.computeSkinningMatrices();
+        for (int i = 0; i < BONES; i++) {
+            assertEquals(a[i], b[i]);
+        }
+    }
+
+    @Test
+    public void testSharedBetweenCopies() {
+        AnimPoseCache cache = new AnimPoseCache(0.25f, 16);
+        Node original = createModel();
+        original.getControl(AnimControl.class).setPoseCache(cache);
+        Node reference = createModel();
+
+        AnimControl first = play(original.clone(), "Anim0", 1.5f);
+        AnimControl second = play(original.clone(), "Anim0", 1.5f);
+        AnimControl other = play(original.clone(), "Anim1", 1.5f);
+        AnimControl uncached = play(reference, "Anim0", 1.5f);
+        assertSame(cache, first.getPoseCache());
+
+        for (int frame = 0; frame < 5; frame++) {
+            first.update(0.25f);
+            second.update(0.25f);
+            other.update(0.25f);
+            uncached.update(0.25f);
+            // the times are multiples of the time step, so there is no rounding
+            assertSamePose(uncached.getSkeleton(), first.getSkeleton());
+            assertSamePose(uncached.getSkeleton(), second.getSkeleton());
+            assertSame(first.getSkeleton().computeSkinningMatrices(),
+                    second.getSkeleton().computeSkinningMatrices());
+            assertNotSame(first.getSkeleton().computeSkinningMatrices(),
+                    other.getSkeleton().computeSkinningMatrices());
+        }
+        assertEquals(5, cache.getHitCount());
+        assertEquals(10, cache.getMissCount());
+
+        // the poses of the loop are kept
+        AnimControl late = play(original.clone(), "Anim0", 1.5f);
+        late.update(0.25f);
+        assertEquals(6, cache.getHitCount());
+    }
+
+    @Test
+    public void testNotSharedWithUserControl() {
+        AnimPoseCache cache = new AnimPoseCache();
+        Node original = createModel();
+        original.getControl(AnimControl.class).setPoseCache(cache);
+
+        AnimControl first = play(original.clone(), "Anim0", 1);
+        AnimControl second = play(original.clone(), "Anim0", 1);
+        second.getSkeleton().getBone(3).setUserControl(true);
+        first.update(0.1f);
+        second.update(0.1f);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertNotSame(first.getSkeleton().computeSkinningMatrices(),
+                second.getSkeleton().computeSkinningMatrices());
+    }
+
+    @Test
+    public void testBlendingKey() {
+        AnimPoseCache cache = new AnimPoseCache();
+        Node original = createModel();
+        original.getControl(AnimControl.class).setPoseCache(cache);
+
+        AnimControl first = play(original.clone(), "Anim0", 1);
+        AnimControl second = play(original.clone(), "Anim0", 1);
+        second.getChannel(0).setAnim("Anim1", 1);
+        first.update(0.1f);
+        second.update(0.1f);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        cache.resetStats();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitRate(), 0);
+    }
+}
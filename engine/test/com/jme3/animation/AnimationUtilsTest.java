@@ -0,0 +1,63 @@
+package com.jme3.animation;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AnimationUtilsTest {
+
+    /**
+     * The keyframe search previously done by the tracks.
+     */
+    private static int linearSearch(float[] times, float time) {
+        int startFrame = 0;
+        for (int i = 0; i < times.length - 1 && times[i] < time; i++) {
+            startFrame = i;
+        }
+        return startFrame;
+    }
+
+    private static float[] createTimes(Random random, int count) {
+        float[] times = new float[count];
+        float time = 0;
+        for (int i = 0; i < count; i++) {
+            times[i] = time;
+            // some keyframes share their time
+            time += random.nextInt(4) == 0 ? 0 : random.nextFloat();
+        }
+        return times;
+    }
+
+    @Test
+    public void testFindKeyFrameAnyHint() {
+        Random random = new Random(1);
+        for (int count = 2; count < 40; count++) {
+            float[] times = createTimes(random, count);
+            float length = times[count - 1];
+            for (int i = 0; i < 200; i++) {
+                float time = i % 5 == 0 ? times[random.nextInt(count)] : random.nextFloat() * length;
+                int hint = random.nextInt(count + 2) - 1;
+                assertEquals(linearSearch(times, time), AnimationUtils.findKeyFrame(times, time, hint));
+            }
+        }
+    }
+
+    @Test
+    public void testFindKeyFramePlayback() {
+        Random random = new Random(2);
+        float[] times = createTimes(random, 5000);
+        float length = times[times.length - 1];
+        int frame = 0;
+        float time = 0;
+        for (int i = 0; i < 20000; i++) {
+            // mostly small steps, with some loops and seeks
+            if (i % 1000 == 999) {
+                time = random.nextFloat() * length;
+            } else {
+                time = (time + random.nextFloat() * 0.5f) % length;
+            }
+            frame = AnimationUtils.findKeyFrame(times, time, frame);
+            assertEquals(linearSearch(times, time), frame);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.jme3.animation;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SkeletonControlTest {
+
+    private static final int VERTICES = SkinningJob.RANGE_SIZE * 2 + 100;
+
+    /**
+     * Rotates the bones, updated before the skeleton control.
+     */
+    private static class PoseControl extends AbstractControl {
+
+        private final Skeleton skeleton;
+        private float time;
+
+        PoseControl(Skeleton skeleton) {
+            this.skeleton = skeleton;
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+            time += tpf;
+            for (int i = 0; i < skeleton.getBoneCount(); i++) {
+                Quaternion rotation = new Quaternion().fromAngleAxis(time * (i + 1), Vector3f.UNIT_X);
+                skeleton.getBone(i).setUserTransforms(new Vector3f(0, time, 0), rotation, Vector3f.UNIT_XYZ);
+            }
+            skeleton.updateWorldVectors();
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    /**
+     * Runs the tasks only when asked to.
+     */
+    private static class QueueExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    }
+
+    private Mesh createMesh() {
+        FloatBuffer pos = BufferUtils.createFloatBuffer(VERTICES * 3);
+        FloatBuffer norm = BufferUtils.createFloatBuffer(VERTICES * 3);
+        FloatBuffer tan = BufferUtils.createFloatBuffer(VERTICES * 4);
+        ByteBuffer indices = BufferUtils.createByteBuffer(VERTICES * 4);
+        FloatBuffer weights = BufferUtils.createFloatBuffer(VERTICES * 4);
+        for (int i = 0; i < VERTICES; i++) {
+            float angle = i * 0.1f;
+            pos.put(FastMath.cos(angle)).put(i * 0.001f).put(FastMath.sin(angle));
+            norm.put(FastMath.cos(angle)).put(0).put(FastMath.sin(angle));
+            tan.put(-FastMath.sin(angle)).put(0).put(FastMath.cos(angle)).put(i % 2 == 0 ? 1 : -1);
+            indices.put((byte) (i % 3)).put((byte) ((i + 1) % 3)).put((byte) 0).put((byte) 0);
+            // every 10th vertex is not skinned
+            float weight = i % 10 == 0 ? 0 : (i % 7) / 7f;
+            weights.put(weight).put(i % 10 == 0 ? 0 : 1 - weight).put(0).put(0);
+        }
+
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, pos);
+        mesh.setBuffer(Type.Normal, 3, norm);
+        mesh.setBuffer(Type.Tangent, 4, tan);
+        mesh.setBuffer(Type.BoneIndex, 4, indices);
+        mesh.setBuffer(Type.BoneWeight, 4, weights);
+        mesh.getBuffer(Type.BoneIndex).setUsage(Usage.CpuOnly);
+        mesh.getBuffer(Type.BoneWeight).setUsage(Usage.CpuOnly);
+        mesh.setMaxNumWeights(2);
+        mesh.generateBindPose(true);
+        return mesh;
+    }
+
+    private Node createModel(Executor executor, boolean withTangents) {
+        Bone[] bones = new Bone[3];
+        for (int i = 0; i < bones.length; i++) {
+            bones[i] = new Bone("Bone " + i);
+            bones[i].setBindTransforms(new Vector3f(i, 0, 0), new Quaternion(), new Vector3f(1, 1, 1));
+            bones[i].setUserControl(true);
+        }
+        Skeleton skeleton = new Skeleton(bones);
+        skeleton.setBindingPose();
+
+        Mesh mesh = createMesh();
+        if (!withTangents) {
+            mesh.clearBuffer(Type.Tangent);
+            mesh.clearBuffer(Type.BindPoseTangent);
+        }
+        Node model = new Node("Model");
+        model.attachChild(new Geometry("Geom", mesh));
+        model.addControl(new PoseControl(skeleton));
+        SkeletonControl control = new SkeletonControl(skeleton);
+        control.setSoftwareSkinningExecutor(executor);
+        model.addControl(control);
+        return model;
+    }
+
+    private static void frame(Node model) {
+        model.updateLogicalState(0.1f);
+        model.getControl(SkeletonControl.class).render(null, null);
+    }
+
+    private static FloatBuffer getData(Node model, Type type) {
+        Mesh mesh = ((Geometry) model.getChild(0)).getMesh();
+        FloatBuffer data = (FloatBuffer) mesh.getBuffer(type).getData();
+        data.clear();
+        return data;
+    }
+
+    private void testSameResult(boolean withTangents) {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Node reference = createModel(null, withTangents);
+            Node model = createModel(executor, withTangents);
+            for (int i = 0; i < 4; i++) {
+                frame(reference);
+                frame(model);
+                assertEquals(getData(reference, Type.Position), getData(model, Type.Position));
+                assertEquals(getData(reference, Type.Normal), getData(model, Type.Normal));
+                if (withTangents) {
+                    assertEquals(getData(reference, Type.Tangent), getData(model, Type.Tangent));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExecutorSameResult() {
+        testSameResult(false);
+    }
+
+    @Test
+    public void testExecutorSameResultWithTangents() {
+        testSameResult(true);
+    }
+
+    @Test
+    public void testSkinnedDataSwappedOnRender() {
+        QueueExecutor executor = new QueueExecutor();
+        Node model = createModel(executor, false);
+        frame(model);
+        assertFalse(executor.tasks.isEmpty());
+        executor.tasks.clear();
+
+        FloatBuffer before = getData(model, Type.Position);
+        FloatBuffer copy = BufferUtils.clone(before);
+        copy.clear();
+
+        // started during the update, with the skeleton already posed
+        model.updateLogicalState(0.1f);
+        assertEquals(3, executor.tasks.size());
+        executor.tasks.get(0).run();
+        assertSame(before, getData(model, Type.Position));
+        assertEquals(copy, getData(model, Type.Position));
+
+        // the rendering thread skins what is left, then swaps
+        model.getControl(SkeletonControl.class).render(null, null);
+        assertNotSame(before, getData(model, Type.Position));
+        assertFalse(copy.equals(getData(model, Type.Position)));
+    }
+}
@@ -0,0 +1,162 @@
+package com.jme3.animation;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SkeletonPoseTest {
+
+    private static final int BONES = 12;
+
+    /**
+     * Creates a skeleton where bone i is the child of bone (i - 1) / 2.
+     */
+    private static Skeleton createSkeleton() {
+        Random random = new Random(3);
+        Bone[] bones = new Bone[BONES];
+        for (int i = 0; i < BONES; i++) {
+            bones[i] = new Bone("Bone " + i);
+            bones[i].setBindTransforms(randomVector(random),
+                    randomRotation(random), new Vector3f(1, 1, 1).addLocal(randomVector(random)));
+            if (i > 0) {
+                bones[(i - 1) / 2].addChild(bones[i]);
+            }
+        }
+        return new Skeleton(bones);
+    }
+
+    private static Vector3f randomVector(Random random) {
+        return new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+    }
+
+    private static Quaternion randomRotation(Random random) {
+        return new Quaternion().fromAngles(random.nextFloat() * 3, random.nextFloat() * 3, random.nextFloat() * 3);
+    }
+
+    private static void assertSameBones(Skeleton expected, Skeleton actual) {
+        for (int i = 0; i < BONES; i++) {
+            Bone a = expected.getBone(i);
+            Bone b = actual.getBone(i);
+            assertEquals(a.getLocalPosition(), b.getLocalPosition());
+            assertEquals(a.getLocalRotation(), b.getLocalRotation());
+            assertEquals(a.getLocalScale(), b.getLocalScale());
+            assertEquals(a.getModelSpacePosition(), b.getModelSpacePosition());
+            assertEquals(a.getModelSpaceRotation(), b.getModelSpaceRotation());
+            assertEquals(a.getModelSpaceScale(), b.getModelSpaceScale());
+        }
+    }
+
+    @Test
+    public void testSameAsBones() {
+        Skeleton reference = createSkeleton();
+        Skeleton skeleton = createSkeleton();
+        SkeletonPose pose = new SkeletonPose(skeleton);
+
+        Quaternion userRotation = new Quaternion().fromAngles(0.2f, 0.3f, 0.4f);
+        for (Skeleton s : new Skeleton[]{reference, skeleton}) {
+            s.getBone(5).setUserControl(true);
+            s.getBone(5).setUserTransforms(Vector3f.UNIT_X, userRotation, Vector3f.UNIT_XYZ);
+        }
+
+        Random random = new Random(4);
+        for (int frame = 0; frame < 10; frame++) {
+            reference.reset();
+            pose.reset();
+            for (int i = 0; i < BONES; i++) {
+                // no blend, full, partial, or two partial blends
+                int blends = i % 4 == 3 ? 2 : i % 4;
+                for (int j = 0; j < blends; j++) {
+                    Vector3f translation = randomVector(random);
+                    Quaternion rotation = randomRotation(random);
+                    Vector3f scale = i % 3 == 0 ? null : new Vector3f(1, 1, 1).addLocal(randomVector(random));
+                    float weight = i % 4 == 1 ? 1 : random.nextFloat() * 0.5f;
+                    reference.getBone(i).blendAnimTransforms(translation, rotation, scale, weight);
+                    pose.blend(i, translation, rotation, scale, weight);
+                }
+            }
+            reference.updateWorldVectors();
+            pose.update();
+            assertSameBones(reference, skeleton);
+        }
+    }
+
+    private static AnimControl createModel() {
+        Skeleton skeleton = createSkeleton();
+        float[] times = {0, 1, 2};
+        Animation anim = new Animation("Anim", 2);
+        for (int i = 0; i < BONES; i++) {
+            Vector3f[] translations = new Vector3f[times.length];
+            Quaternion[] rotations = new Quaternion[times.length];
+            for (int k = 0; k < times.length; k++) {
+                translations[k] = new Vector3f(k, i, 0);
+                rotations[k] = new Quaternion().fromAngles(k * 0.5f, 0, 0);
+            }
+            anim.addTrack(new BoneTrack(i, times, translations, rotations));
+        }
+        AnimControl control = new AnimControl(skeleton);
+        control.addAnim(anim);
+        new Node("Model").addControl(control);
+        control.createChannel().setAnim("Anim", 0);
+        return control;
+    }
+
+    @Test
+    public void testLodLevel() {
+        AnimControl reference = createModel();
+        AnimControl control = createModel();
+        // not rendered, so the farthest level is used
+        control.addLodLevel(100, 3, 1);
+        control.addLodLevel(10, 1, -1);
+
+        Bone leaf = control.getSkeleton().getBone(BONES - 1);
+        Vector3f bindPos = leaf.getLocalPosition().clone();
+        int updates = 0;
+        for (int frame = 0; frame < 9; frame++) {
+            Vector3f before = control.getSkeleton().getBone(1).getLocalPosition().clone();
+            reference.update(0.1f);
+            control.update(0.1f);
+            assertEquals(1, control.getLodLevel());
+            if (!before.equals(control.getSkeleton().getBone(1).getLocalPosition())) {
+                updates++;
+            }
+        }
+        assertEquals(3, updates);
+        // bones deeper than 1 keep their bind pose
+        assertEquals(bindPos, leaf.getLocalPosition());
+        // the channel time advanced by the skipped frames as well, only
+        // the frames since the last update are missing
+        float lag = reference.getChannel(0).getTime() - control.getChannel(0).getTime();
+        assertTrue(lag > -0.0001f && lag < 0.3f);
+
+        control.clearLodLevels();
+        control.update(0.1f);
+        assertEquals(-1, control.getLodLevel());
+        assertFalse(bindPos.equals(leaf.getLocalPosition()));
+    }
+
+    @Test
+    public void testLodUpdatesStaggered() {
+        int interval = 4;
+        AnimControl[] controls = new AnimControl[interval];
+        for (int i = 0; i < controls.length; i++) {
+            controls[i] = createModel();
+            controls[i].addLodLevel(0, interval, -1);
+        }
+
+        // each frame of the interval updates exactly one of the models
+        for (int frame = 0; frame < interval * 3; frame++) {
+            int updated = 0;
+            for (AnimControl control : controls) {
+                float before = control.getChannel(0).getTime();
+                control.update(0.1f);
+                if (control.getChannel(0).getTime() != before) {
+                    updated++;
+                }
+            }
+            assertEquals(1, updated);
+        }
+    }
+}
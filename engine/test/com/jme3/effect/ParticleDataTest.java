@@ -0,0 +1,177 @@
+package com.jme3.effect;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ParticleDataTest {
+
+    private static ParticleEmitter createEmitter(int numParticles, boolean dataOriented) {
+        ParticleEmitter emitter = new ParticleEmitter("Emitter", ParticleMesh.Type.Triangle, numParticles);
+        emitter.setDataOriented(dataOriented);
+        emitter.setParticlesPerSec(0);
+        emitter.setLowLife(1f);
+        emitter.setHighLife(1f);
+        emitter.setStartSize(1f);
+        emitter.setEndSize(3f);
+        emitter.setStartColor(ColorRGBA.White);
+        emitter.setEndColor(ColorRGBA.Black);
+        emitter.setGravity(0, 2, 0);
+        emitter.getParticleInfluencer().setInitialVelocity(new Vector3f(1, 0, 0));
+        emitter.getParticleInfluencer().setVelocityVariation(0);
+        return emitter;
+    }
+
+    @Test
+    public void testRemoveKeepsParticlesPacked() {
+        ParticleData data = new ParticleData(4);
+        Particle p = new Particle();
+        for (int i = 0; i < 3; i++) {
+            p.position.set(i, 0, 0);
+            p.life = 1;
+            assertEquals(i, data.add(p));
+        }
+
+        data.remove(0);
+        assertEquals(2, data.size());
+        assertEquals(2f, data.positionX[0], 0f);
+        assertEquals(1f, data.positionX[1], 0f);
+        assertEquals(0f, data.life[2], 0f);
+
+        data.life[1] = 0;
+        data.removeDead();
+        assertEquals(1, data.size());
+        assertEquals(2f, data.positionX[0], 0f);
+    }
+
+    @Test
+    public void testAddWhenFull() {
+        ParticleData data = new ParticleData(1);
+        assertEquals(0, data.add(new Particle()));
+        assertEquals(-1, data.add(new Particle()));
+    }
+
+    @Test
+    public void testDataOrientedMatchesObjects() {
+        ParticleEmitter objects = createEmitter(100, false);
+        ParticleEmitter arrays = createEmitter(100, true);
+        objects.emitAllParticles();
+        arrays.emitAllParticles();
+
+        for (int i = 0; i < 5; i++) {
+            objects.updateFromControl(0.1f);
+            arrays.updateFromControl(0.1f);
+        }
+
+        assertEquals(100, objects.getNumVisibleParticles());
+        assertEquals(100, arrays.getNumVisibleParticles());
+
+        Particle expected = objects.getParticles()[0];
+        Particle actual = arrays.getParticles()[0];
+        assertEquals(expected.position.x, actual.position.x, 1e-5f);
+        assertEquals(expected.position.y, actual.position.y, 1e-5f);
+        assertEquals(expected.velocity.y, actual.velocity.y, 1e-5f);
+        assertEquals(expected.size, actual.size, 1e-5f);
+        assertEquals(expected.color.r, actual.color.r, 1e-5f);
+        assertEquals(expected.life, actual.life, 1e-5f);
+
+        BoundingBox expectedBound = (BoundingBox) objects.getMesh().getBound();
+        BoundingBox actualBound = (BoundingBox) arrays.getMesh().getBound();
+        assertEquals(expectedBound.getCenter().x, actualBound.getCenter().x, 1e-4f);
+        assertEquals(expectedBound.getXExtent(), actualBound.getXExtent(), 1e-4f);
+    }
+
+    private static void assertSameParticles(ParticleEmitter expected, ParticleEmitter actual) {
+        assertEquals(expected.getNumVisibleParticles(), actual.getNumVisibleParticles());
+        Particle[] e = expected.getParticles();
+        Particle[] a = actual.getParticles();
+        for (int i = 0; i < expected.getNumVisibleParticles(); i++) {
+            assertEquals(e[i].life, a[i].life, 1e-5f);
+            assertEquals(e[i].position.x, a[i].position.x, 1e-5f);
+            assertEquals(e[i].position.y, a[i].position.y, 1e-5f);
+            assertEquals(e[i].velocity.y, a[i].velocity.y, 1e-5f);
+            assertEquals(e[i].size, a[i].size, 1e-5f);
+            assertEquals(e[i].color.r, a[i].color.r, 1e-5f);
+            assertEquals(e[i].imageIndex, a[i].imageIndex);
+        }
+    }
+
+    @Test
+    public void testSpawnedParticlesMatchObjects() {
+        ParticleEmitter objects = createEmitter(100, false);
+        ParticleEmitter arrays = createEmitter(100, true);
+        for (ParticleEmitter emitter : new ParticleEmitter[]{ objects, arrays }) {
+            emitter.setParticlesPerSec(40);
+            emitter.setImagesX(4);
+        }
+
+        for (int i = 0; i < 4; i++) {
+            objects.updateFromControl(0.1f);
+            arrays.updateFromControl(0.1f);
+            assertSameParticles(objects, arrays);
+        }
+        assertEquals(16, arrays.getNumVisibleParticles());
+    }
+
+    @Test
+    public void testSpawnedParticleAgedOnce() {
+        // the particle spawned in the frame lives for 0.05 of its 0.06
+        ParticleEmitter objects = createEmitter(10, false);
+        ParticleEmitter arrays = createEmitter(10, true);
+        for (ParticleEmitter emitter : new ParticleEmitter[]{ objects, arrays }) {
+            emitter.setParticlesPerSec(20);
+            emitter.setLowLife(0.06f);
+            emitter.setHighLife(0.06f);
+        }
+
+        objects.updateFromControl(0.1f);
+        arrays.updateFromControl(0.1f);
+        assertEquals(1, arrays.getNumVisibleParticles());
+        assertEquals(0.01f, arrays.getParticleData().life[0], 1e-5f);
+        assertSameParticles(objects, arrays);
+    }
+
+    @Test
+    public void testParticlesDie() {
+        ParticleEmitter emitter = createEmitter(100, true);
+        emitter.emitAllParticles();
+        emitter.updateFromControl(0.5f);
+        assertEquals(100, emitter.getNumVisibleParticles());
+        emitter.updateFromControl(0.6f);
+        assertEquals(0, emitter.getNumVisibleParticles());
+        assertEquals(0f, emitter.getParticles()[0].life, 0f);
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        ParticleEmitter serial = createEmitter(20000, true);
+        ParticleEmitter parallel = createEmitter(20000, true);
+        serial.setParallelThreshold(0);
+        parallel.setParallelThreshold(0);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        parallel.setUpdateExecutor(executor);
+        serial.emitAllParticles();
+        parallel.emitAllParticles();
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                serial.updateFromControl(0.1f);
+                parallel.updateFromControl(0.1f);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        ParticleData a = serial.getParticleData();
+        ParticleData b = parallel.getParticleData();
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.positionY[i], b.positionY[i], 0f);
+            assertEquals(a.size[i], b.size[i], 0f);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.jme3.material;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.math.ColorRGBA;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Statistics;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.Shader;
+import com.jme3.shader.Uniform;
+import com.jme3.system.NullRenderer;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MaterialUniformCacheTest {
+
+    /**
+     * Uploads uniforms like the OpenGL renderers do.
+     */
+    private static class UploadingRenderer extends NullRenderer {
+
+        private final Statistics statistics = new Statistics();
+        private int nextLocation = 0;
+
+        UploadingRenderer() {
+            getCaps().add(Caps.GLSL100);
+            statistics.setEnabled(true);
+        }
+
+        @Override
+        public Statistics getStatistics() {
+            return statistics;
+        }
+
+        @Override
+        public void setShader(Shader shader) {
+            if (shader.getId() == -1) {
+                shader.setId(1);
+            }
+            for (Uniform uniform : shader.getUniformMap().values()) {
+                if (uniform.getLocation() == Uniform.LOC_UNKNOWN) {
+                    uniform.setLocation(nextLocation++);
+                }
+                if (uniform.isUpdateNeeded() && uniform.getValue() != null) {
+                    statistics.onUniformSet();
+                    uniform.clearUpdateNeeded();
+                }
+            }
+        }
+    }
+
+    private UploadingRenderer renderer;
+    private RenderManager renderManager;
+    private Material material;
+    private Geometry geom1, geom2;
+
+    @Before
+    public void setUp() {
+        AssetManager assetManager = new DesktopAssetManager(
+                Thread.currentThread().getContextClassLoader().getResource("com/jme3/asset/Desktop.cfg"));
+        renderer = new UploadingRenderer();
+        renderManager = new RenderManager(renderer);
+        renderManager.setCamera(new Camera(640, 480), false);
+
+        material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setColor("Color", ColorRGBA.Red);
+        Box box = new Box(1, 1, 1);
+        geom1 = new Geometry("Box1", box);
+        geom1.setMaterial(material);
+        geom2 = new Geometry("Box2", box);
+        geom2.setMaterial(material);
+        geom2.setLocalTranslation(2, 0, 0);
+        geom1.updateGeometricState();
+        geom2.updateGeometricState();
+    }
+
+    private int[] render(Geometry... geoms) {
+        renderer.getStatistics().clearFrame();
+        for (Geometry geom : geoms) {
+            renderManager.renderGeometry(geom);
+        }
+        int[] data = new int[renderer.getStatistics().getLabels().length];
+        renderer.getStatistics().getData(data);
+        return data;
+    }
+
+    private Uniform getColorUniform() {
+        return material.getActiveTechnique().getShader().getUniform("m_Color");
+    }
+
+    @Test
+    public void testSameMaterialSkipsParams() {
+        render(geom1);
+        int[] data = render(geom1, geom2);
+        // only the world matrices are uploaded again
+        assertEquals(2, data[13]);
+        assertEquals(ColorRGBA.Red, getColorUniform().getValue());
+    }
+
+    @Test
+    public void testChangedParamIsApplied() {
+        render(geom1);
+        material.setColor("Color", ColorRGBA.Blue);
+        int[] data = render(geom1);
+        assertEquals(0, data[13]);
+        assertEquals(ColorRGBA.Blue, getColorUniform().getValue());
+    }
+
+    @Test
+    public void testOtherMaterialInvalidatesShader() {
+        Material other = material.clone();
+        other.setColor("Color", ColorRGBA.Green);
+        Geometry geom3 = new Geometry("Box3", geom1.getMesh());
+        geom3.setMaterial(other);
+        geom3.updateGeometricState();
+
+        render(geom1, geom3);
+        assertEquals(ColorRGBA.Green, getColorUniform().getValue());
+        int[] data = render(geom1);
+        assertEquals(0, data[13]);
+        assertEquals(ColorRGBA.Red, getColorUniform().getValue());
+    }
+
+    @Test
+    public void testNewRenderPassAppliesParams() {
+        ColorRGBA color = new ColorRGBA(ColorRGBA.Red);
+        material.setColor("Color", color);
+        render(geom1);
+        assertEquals(1, render(geom1)[13]);
+
+        // a value modified in place is applied in the next render pass
+        color.set(0, 1, 0, 1);
+        renderManager.renderViewPort(renderManager.createMainView("Test", new Camera(640, 480)), 0);
+        int[] data = render(geom1);
+        assertEquals(0, data[13]);
+        assertEquals(new ColorRGBA(0, 1, 0, 1), getColorUniform().getValue());
+    }
+}
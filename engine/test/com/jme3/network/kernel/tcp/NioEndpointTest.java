@@ -0,0 +1,41 @@
+package com.jme3.network.kernel.tcp;
+
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.kernel.SharedBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NioEndpointTest {
+
+    @Test
+    public void testClearPendingReleasesSharedBuffers() {
+        BufferPool pool = new BufferPool(64, 4);
+        SharedBuffer shared = new SharedBuffer(pool.acquire(), pool);
+        NioEndpoint endpoint = new NioEndpoint(null, 1, null);
+
+        endpoint.send(shared, false);
+        assertTrue(endpoint.hasPending());
+        endpoint.clearPending();
+        assertFalse(endpoint.hasPending());
+
+        shared.release();
+        pool.acquire();
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    public void testSendAfterRemovalReleasesSharedBuffer() {
+        BufferPool pool = new BufferPool(64, 4);
+        NioEndpoint endpoint = new NioEndpoint(null, 1, null);
+        endpoint.clearPending();
+
+        // a broadcast that still saw the endpoint before it was removed
+        SharedBuffer shared = new SharedBuffer(pool.acquire(), pool);
+        endpoint.send(shared, false);
+        assertFalse(endpoint.hasPending());
+
+        shared.release();
+        pool.acquire();
+        assertEquals(1, pool.getAllocationCount());
+    }
+}
@@ -0,0 +1,146 @@
+package com.jme3.network.replication;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class EntitySnapshotTest {
+
+    private static final float PRECISION = 1 / 64f;
+
+    private static EntitySnapshot snapshot(int sequence, int[] ids, Random random) {
+        int[] positions = new int[ids.length * 3];
+        int[] rotations = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            for (int k = 0; k < 3; k++) {
+                positions[i * 3 + k] = EntitySnapshot.quantize((random.nextFloat() - 0.5f) * 2000, PRECISION);
+            }
+            rotations[i] = EntitySnapshot.packRotation(randomRotation(random));
+        }
+        return new EntitySnapshot(sequence, PRECISION, ids, positions, rotations);
+    }
+
+    private static Quaternion randomRotation(Random random) {
+        return new Quaternion().fromAngles(random.nextFloat() * FastMath.TWO_PI,
+                                           random.nextFloat() * FastMath.TWO_PI,
+                                           random.nextFloat() * FastMath.TWO_PI);
+    }
+
+    private static EntitySnapshot roundTrip(EntitySnapshot current, EntitySnapshot baseline) {
+        BitWriter out = new BitWriter(64);
+        current.writeDelta(baseline, out);
+        return EntitySnapshot.readDelta(current.getSequence(), PRECISION, baseline,
+                                        new BitReader(out.toByteArray()));
+    }
+
+    private static void assertSameSnapshot(EntitySnapshot expected, EntitySnapshot actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getId(i), actual.getId(i));
+            assertEquals(expected.getPosition(i, null), actual.getPosition(i, null));
+            assertEquals(expected.getRotation(i, null), actual.getRotation(i, null));
+        }
+    }
+
+    @Test
+    public void testBitPacking() {
+        BitWriter out = new BitWriter(4);
+        int[] values = {0, 1, 2, 3, 7, 8, 1000, 65535, Integer.MAX_VALUE};
+        for (int v : values) {
+            out.writeVar(v);
+            out.writeSignedVar(-v / 2);
+            out.writeBit(true);
+            out.writeBits(v, 32);
+        }
+        BitReader in = new BitReader(out.toByteArray());
+        for (int v : values) {
+            assertEquals(v, in.readVar());
+            assertEquals(-v / 2, in.readSignedVar());
+            assertTrue(in.readBit());
+            assertEquals(v, in.readBits(32));
+        }
+    }
+
+    @Test
+    public void testRotationQuantization() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            Quaternion q = randomRotation(random);
+            Quaternion r = EntitySnapshot.unpackRotation(EntitySnapshot.packRotation(q), new Quaternion());
+            // q and -q are the same rotation
+            float dot = Math.abs(q.dot(r));
+            assertTrue("dot " + dot, dot > 0.9999f);
+        }
+    }
+
+    @Test
+    public void testFullAndDeltaRoundTrip() {
+        Random random = new Random(2);
+        int[] baseIds = new int[200];
+        for (int i = 0; i < baseIds.length; i++) {
+            baseIds[i] = i * 3;
+        }
+        EntitySnapshot baseline = snapshot(5, baseIds, random);
+        assertSameSnapshot(baseline, roundTrip(baseline, null));
+
+        // Remove every 7th, move every 5th, turn every 11th and add some new ones
+        int[] ids = new int[baseIds.length + 10];
+        int[] positions = new int[ids.length * 3];
+        int[] rotations = new int[ids.length];
+        int n = 0;
+        for (int i = 0; i < baseIds.length; i++) {
+            if (i % 7 == 0)
+                continue;
+            ids[n] = baseIds[i];
+            Vector3f p = baseline.getPosition(i, null);
+            if (i % 5 == 0)
+                p.addLocal(0.5f, -0.25f, 3f);
+            positions[n * 3] = EntitySnapshot.quantize(p.x, PRECISION);
+            positions[n * 3 + 1] = EntitySnapshot.quantize(p.y, PRECISION);
+            positions[n * 3 + 2] = EntitySnapshot.quantize(p.z, PRECISION);
+            rotations[n] = i % 11 == 0 ? EntitySnapshot.packRotation(randomRotation(random))
+                                       : EntitySnapshot.packRotation(baseline.getRotation(i, null));
+            n++;
+            if (i % 20 == 0) {
+                // A new entity between existing IDs
+                ids[n] = baseIds[i] + 1;
+                rotations[n] = EntitySnapshot.packRotation(randomRotation(random));
+                n++;
+            }
+        }
+        int[] trimmedIds = new int[n];
+        int[] trimmedPositions = new int[n * 3];
+        int[] trimmedRotations = new int[n];
+        System.arraycopy(ids, 0, trimmedIds, 0, n);
+        System.arraycopy(positions, 0, trimmedPositions, 0, n * 3);
+        System.arraycopy(rotations, 0, trimmedRotations, 0, n);
+        EntitySnapshot current = new EntitySnapshot(6, PRECISION, trimmedIds, trimmedPositions, trimmedRotations);
+
+        assertSameSnapshot(current, roundTrip(current, baseline));
+
+        // The delta only carries the changes
+        BitWriter full = new BitWriter(64);
+        current.writeDelta(null, full);
+        BitWriter delta = new BitWriter(64);
+        current.writeDelta(baseline, delta);
+        assertTrue(delta.getByteCount() * 3 < full.getByteCount());
+    }
+
+    @Test
+    public void testUnchangedSnapshotIsTiny() {
+        Random random = new Random(3);
+        int[] ids = new int[500];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        EntitySnapshot baseline = snapshot(1, ids, random);
+        EntitySnapshot same = roundTrip(baseline, null);
+        BitWriter out = new BitWriter(64);
+        same.writeDelta(baseline, out);
+        assertEquals(2, out.getByteCount());
+        assertSameSnapshot(baseline, roundTrip(same, baseline));
+    }
+}
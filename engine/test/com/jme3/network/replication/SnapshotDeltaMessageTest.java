@@ -0,0 +1,116 @@
+package com.jme3.network.replication;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.network.Message;
+import com.jme3.network.base.MessageBatcher;
+import com.jme3.network.base.MessageProtocol;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SnapshotDeltaMessageTest {
+
+    private static final float PRECISION = 1 / 64f;
+
+    private static EntitySnapshot snapshot(int sequence, int count, int skip, Random random) {
+        int[] ids = new int[count];
+        int[] positions = new int[count * 3];
+        int[] rotations = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i * skip;
+            for (int k = 0; k < 3; k++) {
+                positions[i * 3 + k] = EntitySnapshot.quantize((random.nextFloat() - 0.5f) * 2000, PRECISION);
+            }
+            rotations[i] = EntitySnapshot.packRotation(new Quaternion().fromAngles(
+                    random.nextFloat() * FastMath.TWO_PI, random.nextFloat() * FastMath.TWO_PI, 0));
+        }
+        return new EntitySnapshot(sequence, PRECISION, ids, positions, rotations);
+    }
+
+    /**
+     * Sends the parts through the message protocol in reverse order
+     * and assembles them on the other end.
+     */
+    private static EntitySnapshot transfer(SnapshotDeltaMessage[] parts, EntitySnapshot baseline) {
+        MessageProtocol protocol = new MessageProtocol();
+        for (int i = parts.length - 1; i >= 0; i--) {
+            ByteBuffer buffer = MessageProtocol.messageToBuffer(parts[i], null);
+            assertTrue(buffer.remaining() <= MessageBatcher.MAX_DATAGRAM_SIZE);
+            protocol.addBuffer(buffer);
+        }
+
+        SnapshotAssembler assembler = new SnapshotAssembler();
+        EntitySnapshot result = null;
+        Message m;
+        while ((m = protocol.getMessage()) != null) {
+            assertNull(result);
+            result = assembler.add((SnapshotDeltaMessage) m, baseline);
+        }
+        return result;
+    }
+
+    private static void assertSameSnapshot(EntitySnapshot expected, EntitySnapshot actual) {
+        assertEquals(expected.getSequence(), actual.getSequence());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getId(i), actual.getId(i));
+            assertEquals(expected.getPosition(i, null), actual.getPosition(i, null));
+            assertEquals(expected.getRotation(i, null), actual.getRotation(i, null));
+        }
+    }
+
+    @Test
+    public void testLargeSnapshotIsSplit() {
+        SnapshotDeltaMessage.registerMessages();
+        Random random = new Random(1);
+        BitWriter writer = new BitWriter(1024);
+
+        EntitySnapshot baseline = snapshot(1, 4000, 1, random);
+        SnapshotDeltaMessage[] full = ReplicationServer.encodeDelta(baseline, null, writer);
+        assertTrue(full.length > 30);
+        assertSameSnapshot(baseline, transfer(full, null));
+
+        // Everything moves: as large as a delta gets
+        EntitySnapshot moved = snapshot(2, 4000, 1, random);
+        SnapshotDeltaMessage[] delta = ReplicationServer.encodeDelta(moved, baseline, writer);
+        for (SnapshotDeltaMessage part : delta) {
+            assertEquals(1, part.getBaseline());
+        }
+        assertSameSnapshot(moved, transfer(delta, baseline));
+
+        // Most entities removed and the rest spread over a wider ID range
+        EntitySnapshot sparse = snapshot(3, 200, 97, random);
+        assertSameSnapshot(sparse, transfer(ReplicationServer.encodeDelta(sparse, moved, writer), moved));
+    }
+
+    @Test
+    public void testSmallSnapshotIsOnePart() {
+        EntitySnapshot snapshot = snapshot(5, 50, 1, new Random(2));
+        SnapshotDeltaMessage[] parts = ReplicationServer.encodeDelta(snapshot, null, new BitWriter(64));
+        assertEquals(1, parts.length);
+        assertEquals(0, parts[0].getFirstId());
+        assertEquals(Integer.MAX_VALUE, parts[0].getLastId());
+    }
+
+    @Test
+    public void testIncompleteSnapshotIsReplaced() {
+        Random random = new Random(3);
+        BitWriter writer = new BitWriter(1024);
+        SnapshotDeltaMessage[] older = ReplicationServer.encodeDelta(snapshot(1, 3000, 1, random), null, writer);
+        EntitySnapshot newer = snapshot(2, 3000, 1, random);
+        SnapshotDeltaMessage[] parts = ReplicationServer.encodeDelta(newer, null, writer);
+
+        SnapshotAssembler assembler = new SnapshotAssembler();
+        assertNull(assembler.add(older[0], null));
+        EntitySnapshot result = null;
+        for (SnapshotDeltaMessage part : parts) {
+            assertNull(result);
+            result = assembler.add(part, null);
+            // duplicates are ignored
+            assertNull(assembler.add(part, null));
+        }
+        assertSameSnapshot(newer, result);
+    }
+}
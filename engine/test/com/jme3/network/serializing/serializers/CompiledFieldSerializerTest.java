@@ -0,0 +1,156 @@
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompiledFieldSerializerTest {
+
+    @Serializable
+    public static class Sample {
+        private boolean flag;
+        private byte b;
+        private char c;
+        private short s;
+        private int i;
+        private long l;
+        private float f;
+        private double d;
+        private String name;
+        private String nothing;
+        private Vector3f position;
+        private Object list;
+        private transient int skipped;
+        protected Integer boxed;
+
+        public Sample() {
+        }
+    }
+
+    @Serializable
+    public static class Amount {
+        private short amount;
+        private int count;
+
+        public Amount() {
+        }
+    }
+
+    /**
+     * Writes shorts as ints so that the custom serializer shows up
+     * in the size of the message.
+     */
+    public static class WideShortSerializer extends Serializer {
+        @SuppressWarnings("unchecked")
+        public <T> T readObject(ByteBuffer data, Class<T> c) {
+            return (T)Short.valueOf((short)data.getInt());
+        }
+
+        public void writeObject(ByteBuffer buffer, Object object) {
+            buffer.putInt(((Short)object).shortValue());
+        }
+    }
+
+    private static Sample sample() {
+        Sample s = new Sample();
+        s.flag = true;
+        s.b = -3;
+        s.c = 'q';
+        s.s = 1234;
+        s.i = -987654;
+        s.l = 1L << 40;
+        s.f = 1.5f;
+        s.d = -2.25;
+        s.name = "compiled";
+        s.position = new Vector3f(1, 2, 3);
+        List<Object> list = new ArrayList<Object>();
+        list.add("a");
+        list.add(7);
+        s.list = list;
+        s.skipped = 42;
+        s.boxed = 99;
+        return s;
+    }
+
+    private static byte[] write(Serializer serializer, Object o) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        serializer.writeObject(buffer, o);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void assertSameFields(Sample expected, Sample actual) {
+        assertEquals(expected.flag, actual.flag);
+        assertEquals(expected.b, actual.b);
+        assertEquals(expected.c, actual.c);
+        assertEquals(expected.s, actual.s);
+        assertEquals(expected.i, actual.i);
+        assertEquals(expected.l, actual.l);
+        assertEquals(expected.f, actual.f, 0);
+        assertEquals(expected.d, actual.d, 0);
+        assertEquals(expected.name, actual.name);
+        assertNull(actual.nothing);
+        assertEquals(expected.position, actual.position);
+        assertEquals(expected.list, actual.list);
+        assertEquals(0, actual.skipped);
+        assertEquals(expected.boxed, actual.boxed);
+    }
+
+    @Test
+    public void testWireCompatibleWithFieldSerializer() throws Exception {
+        Serializer.registerClass(Sample.class);
+        FieldSerializer plain = new FieldSerializer();
+        CompiledFieldSerializer compiled = new CompiledFieldSerializer();
+        plain.initialize(Sample.class);
+        compiled.initialize(Sample.class);
+
+        Sample s = sample();
+        byte[] expected = write(plain, s);
+        assertArrayEquals(expected, write(compiled, s));
+
+        // And each reads what the other wrote
+        assertSameFields(s, compiled.readObject(ByteBuffer.wrap(expected), Sample.class));
+        assertSameFields(s, plain.readObject(ByteBuffer.wrap(write(compiled, s)), Sample.class));
+    }
+
+    @Test
+    public void testPrimitiveWithCustomSerializer() throws Exception {
+        Serializer.registerClass(short.class, new WideShortSerializer());
+        try {
+            FieldSerializer plain = new FieldSerializer();
+            CompiledFieldSerializer compiled = new CompiledFieldSerializer();
+            plain.initialize(Amount.class);
+            compiled.initialize(Amount.class);
+
+            Amount a = new Amount();
+            a.amount = -1234;
+            a.count = 5;
+            byte[] expected = write(plain, a);
+            assertEquals(1 + 4 + 4, expected.length);
+            assertArrayEquals(expected, write(compiled, a));
+
+            Amount read = compiled.readObject(ByteBuffer.wrap(expected), Amount.class);
+            assertEquals(a.amount, read.amount);
+            assertEquals(a.count, read.count);
+        } finally {
+            Serializer.registerClass(short.class, new ShortSerializer());
+        }
+    }
+
+    @Test
+    public void testNullObject() throws Exception {
+        CompiledFieldSerializer compiled = new CompiledFieldSerializer();
+        compiled.initialize(Sample.class);
+
+        byte[] bytes = write(compiled, null);
+        assertArrayEquals(write(new FieldSerializer(), null), bytes);
+        assertNull(compiled.readObject(ByteBuffer.wrap(bytes), Sample.class));
+    }
+}
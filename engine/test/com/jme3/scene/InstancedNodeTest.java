@@ -0,0 +1,181 @@
+package com.jme3.scene;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class InstancedNodeTest {
+
+    /**
+     * Records the draw calls and uploads of instance data.
+     */
+    private static class RecordingRenderer extends NullRenderer {
+
+        List<Mesh> meshes = new ArrayList<Mesh>();
+        List<Integer> counts = new ArrayList<Integer>();
+        int instanceUploads = 0;
+
+        RecordingRenderer() {
+            getCaps().add(Caps.GLSL100);
+            getCaps().add(Caps.MeshInstancing);
+        }
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count) {
+            meshes.add(mesh);
+            counts.add(count);
+            VertexBuffer instanceData = mesh.getBuffer(VertexBuffer.Type.InstanceData);
+            if (instanceData != null && instanceData.isUpdateNeeded()) {
+                instanceUploads++;
+                instanceData.clearUpdateNeeded();
+            }
+        }
+
+        void reset() {
+            meshes.clear();
+            counts.clear();
+            instanceUploads = 0;
+        }
+    }
+
+    private RecordingRenderer renderer;
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private InstancedNode scene;
+    private Mesh box;
+    private Material instancedMaterial;
+
+    @Before
+    public void setUp() {
+        AssetManager assetManager = new DesktopAssetManager(
+                Thread.currentThread().getContextClassLoader().getResource("com/jme3/asset/Desktop.cfg"));
+        renderer = new RecordingRenderer();
+        renderManager = new RenderManager(renderer);
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0, 0, 50));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        viewPort = renderManager.createMainView("Test", cam);
+
+        box = new Box(0.5f, 0.5f, 0.5f);
+        instancedMaterial = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        instancedMaterial.setBoolean("UseInstancing", true);
+
+        scene = new InstancedNode("Scene");
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                Geometry geom = new Geometry("Box" + i + "-" + j, box);
+                geom.setMaterial(instancedMaterial);
+                geom.setLocalTranslation(i - 5, j - 5, 0);
+                scene.attachChild(geom);
+            }
+        }
+        Geometry regular = new Geometry("Regular", box);
+        regular.setMaterial(new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md"));
+        scene.attachChild(regular);
+
+        scene.instance();
+        viewPort.attachScene(scene);
+    }
+
+    private void render() {
+        renderer.reset();
+        scene.updateLogicalState(0);
+        scene.updateGeometricState();
+        // RenderManager.render() skips the NullRenderer
+        renderManager.renderViewPort(viewPort, 0);
+    }
+
+    private static int getInstanceDrawCount(RecordingRenderer renderer) {
+        for (int i = 0; i < renderer.meshes.size(); i++) {
+            if (renderer.meshes.get(i).getBuffer(VertexBuffer.Type.InstanceData) != null) {
+                return renderer.counts.get(i);
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testInstancesDrawnOnce() {
+        assertEquals(1, scene.getInstancedGeometries().size());
+        assertEquals(100, scene.getInstancedGeometries().get(0).getNumInstances());
+
+        render();
+        // one instanced draw call plus the regular geometry
+        assertEquals(2, renderer.meshes.size());
+        assertEquals(100, getInstanceDrawCount(renderer));
+        assertEquals(1, renderer.instanceUploads);
+    }
+
+    @Test
+    public void testInstancesCulled() {
+        for (Spatial child : scene.getChildren()) {
+            if (child.getName().startsWith("Box0-") || child.getName().startsWith("Box1-")) {
+                // behind the camera
+                child.setLocalTranslation(0, 0, 100);
+            }
+        }
+        render();
+        assertEquals(80, getInstanceDrawCount(renderer));
+    }
+
+    @Test
+    public void testUploadOnlyWhenChanged() {
+        render();
+        render();
+        assertEquals(100, getInstanceDrawCount(renderer));
+        assertEquals(0, renderer.instanceUploads);
+
+        Spatial moved = scene.getChild("Box3-4");
+        moved.move(0, 0, 1);
+        render();
+        assertEquals(1, renderer.instanceUploads);
+
+        // the buffer holds the new world matrix of the moved instance
+        InstancedGeometry instanced = scene.getInstancedGeometries().get(0);
+        Geometry geom = (Geometry) moved;
+        FloatBuffer data = (FloatBuffer) instanced.getMesh().getBuffer(VertexBuffer.Type.InstanceData).getData();
+        float[] column = new float[16];
+        data.position(geom.instanceIndex * 16);
+        data.get(column);
+        data.rewind();
+        Matrix4f expected = geom.getWorldMatrix();
+        assertEquals(expected.m03, column[12], 0f);
+        assertEquals(expected.m13, column[13], 0f);
+        assertEquals(expected.m23, column[14], 0f);
+    }
+
+    @Test
+    public void testDetachInstance() {
+        Spatial detached = scene.getChild("Box0-0");
+        detached.removeFromParent();
+        assertFalse(((Geometry) detached).isInstanced());
+        assertEquals(Spatial.CullHint.Dynamic, detached.getCullHint());
+
+        render();
+        assertEquals(99, getInstanceDrawCount(renderer));
+    }
+
+    @Test
+    public void testClone() {
+        InstancedNode clone = (InstancedNode) scene.clone(false);
+        assertEquals(1, clone.getInstancedGeometries().size());
+        assertEquals(100, clone.getInstancedGeometries().get(0).getNumInstances());
+        assertEquals(100, scene.getInstancedGeometries().get(0).getNumInstances());
+    }
+}
@@ -0,0 +1,164 @@
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.light.PointLight;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ParallelSceneUpdaterTest {
+
+    /**
+     * Moves and rotates its spatial by an amount depending on its seed.
+     */
+    private static class SpinControl extends AbstractControl {
+
+        private final int seed;
+
+        SpinControl(int seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+            float angle = tpf * (1 + seed % 7);
+            spatial.rotate(0, angle, 0);
+            spatial.move(tpf * (seed % 3), 0, -tpf * (seed % 5));
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    private static class FailingControl extends AbstractControl {
+
+        @Override
+        protected void controlUpdate(float tpf) {
+            throw new IllegalStateException("update failed");
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    private ExecutorService executor;
+    private ParallelSceneUpdater updater;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+        updater = new ParallelSceneUpdater(executor, 4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Node createScene() {
+        Mesh box = new Box(0.5f, 0.5f, 0.5f);
+        Node root = new Node("Root");
+        root.addLight(new PointLight());
+        int seed = 0;
+        for (int i = 0; i < 6; i++) {
+            Node group = new Node("Group " + i);
+            group.setLocalTranslation(i * 10, 0, 0);
+            group.addControl(new SpinControl(seed++));
+            root.attachChild(group);
+            for (int j = 0; j < 5; j++) {
+                Node sub = j % 2 == 0 ? new Node("Sub " + j) : new BatchNode("Batch " + j);
+                sub.setLocalRotation(new Quaternion().fromAngles(0, j, 0));
+                sub.addControl(new SpinControl(seed++));
+                group.attachChild(sub);
+                for (int k = 0; k < 8; k++) {
+                    Geometry geom = new Geometry("Box " + k, box);
+                    geom.setLocalTranslation(k, j, 0);
+                    geom.addControl(new SpinControl(seed++));
+                    sub.attachChild(geom);
+                }
+                if (j == 4) {
+                    sub.addLight(new PointLight());
+                }
+            }
+        }
+        return root;
+    }
+
+    private void assertSameState(Spatial expected, Spatial actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getWorldTranslation(), actual.getWorldTranslation());
+        assertEquals(expected.getWorldRotation(), actual.getWorldRotation());
+        assertEquals(expected.getWorldScale(), actual.getWorldScale());
+        BoundingBox expectedBound = (BoundingBox) expected.getWorldBound();
+        BoundingBox actualBound = (BoundingBox) actual.getWorldBound();
+        assertEquals(expectedBound.getCenter(), actualBound.getCenter());
+        assertEquals(expectedBound.getExtent(null), actualBound.getExtent(null));
+        assertEquals(expected.getWorldLightList().size(), actual.getWorldLightList().size());
+        assertEquals(0, actual.refreshFlags);
+        if (expected instanceof Node) {
+            Node expectedNode = (Node) expected;
+            Node actualNode = (Node) actual;
+            assertEquals(expectedNode.getQuantity(), actualNode.getQuantity());
+            for (int i = 0; i < expectedNode.getQuantity(); i++) {
+                assertSameState(expectedNode.getChild(i), actualNode.getChild(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSameResultAsSequentialUpdate() {
+        Node sequential = createScene();
+        Node parallel = createScene();
+        for (int frame = 0; frame < 10; frame++) {
+            float tpf = 0.01f * (frame + 1);
+            sequential.updateLogicalState(tpf);
+            sequential.updateGeometricState();
+            updater.updateLogicalState(parallel, tpf);
+            updater.updateGeometricState(parallel);
+            assertSameState(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void testLightChangeAfterUpdate() {
+        Node sequential = createScene();
+        Node parallel = createScene();
+        sequential.updateGeometricState();
+        updater.updateGeometricState(parallel);
+
+        sequential.addLight(new PointLight());
+        parallel.addLight(new PointLight());
+        sequential.updateGeometricState();
+        updater.updateGeometricState(parallel);
+        assertSameState(sequential, parallel);
+        assertEquals(3, parallel.getChild("Sub 4").getWorldLightList().size());
+    }
+
+    @Test
+    public void testSingleSpatial() {
+        Geometry geom = new Geometry("Box", new Box(1, 1, 1));
+        geom.addControl(new SpinControl(1));
+        updater.updateLogicalState(geom, 0.5f);
+        updater.updateGeometricState(geom);
+        assertEquals(0, geom.refreshFlags);
+        assertNotNull(geom.getWorldBound());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testControlExceptionIsRethrown() {
+        Node scene = createScene();
+        ((Node) scene.getChild(3)).getChild(2).addControl(new FailingControl());
+        updater.updateLogicalState(scene, 0.1f);
+    }
+}
@@ -0,0 +1,51 @@
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LODIndexCacheTest {
+
+    @After
+    public void tearDown() {
+        LODIndexCache.clear();
+    }
+
+    private static void assertSameIndices(IndexBuffer expected, VertexBuffer actual) {
+        IndexBuffer ib = IndexBuffer.wrapIndexBuffer(actual.getData());
+        assertEquals(expected.size(), ib.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), ib.get(i));
+        }
+    }
+
+    @Test
+    public void testSharedBetweenPatches() {
+        LODGeomap a = new LODGeomap(33, new float[33 * 33]);
+        LODGeomap b = new LODGeomap(33, new float[33 * 33]);
+
+        VertexBuffer vb = LODIndexCache.getIndexBuffer(a, 1, 2, 1, 1, 1, 129, false);
+        assertSame(vb, LODIndexCache.getIndexBuffer(b, 1, 2, 1, 1, 1, 129, false));
+        // only whether the neighbour is coarser matters without variable LOD
+        assertSame(vb, LODIndexCache.getIndexBuffer(b, 1, 3, 0, 1, 0, 129, false));
+        assertEquals(1, LODIndexCache.getBufferCount());
+        assertEquals(3, LODIndexCache.getRequestCount());
+        assertEquals(1, LODIndexCache.getMissCount());
+        assertEquals(3 * LODIndexCache.getMemoryUsage(), LODIndexCache.getRequestedBytes());
+
+        assertNotSame(vb, LODIndexCache.getIndexBuffer(a, 1, 2, 1, 1, 1, 129, true));
+        assertNotSame(vb, LODIndexCache.getIndexBuffer(new LODGeomap(65, new float[65 * 65]), 1, 2, 1, 1, 1, 129, false));
+        assertEquals(3, LODIndexCache.getBufferCount());
+    }
+
+    @Test
+    public void testMatchesGeomap() {
+        LODGeomap geomap = new LODGeomap(33, new float[33 * 33]);
+        assertSameIndices(geomap.writeIndexArrayLodDiff(2, true, false, false, true, 129),
+                          LODIndexCache.getIndexBuffer(geomap, 1, 2, 1, 0, 3, 129, false));
+        assertSameIndices(geomap.writeIndexArrayLodVariable(2, 4, 2, 1, 8, 129),
+                          LODIndexCache.getIndexBuffer(geomap, 1, 2, 1, 0, 3, 129, true));
+    }
+}
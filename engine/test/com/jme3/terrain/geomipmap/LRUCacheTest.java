@@ -0,0 +1,66 @@
+package com.jme3.terrain.geomipmap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LRUCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LRUCache<String, Integer> cache = new LRUCache<String, Integer>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+
+        cache.put("d", 4);
+        assertEquals(3, cache.usedEntries());
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+
+        Iterator<Map.Entry<String, Integer>> it = cache.getAll().iterator();
+        assertEquals("c", it.next().getKey());
+        assertEquals("d", it.next().getKey());
+        assertEquals("a", it.next().getKey());
+        assertFalse(it.hasNext());
+
+        cache.put("a", 5);
+        assertEquals(Integer.valueOf(5), cache.get("a"));
+        assertEquals(3, cache.usedEntries());
+        cache.clear();
+        assertEquals(0, cache.usedEntries());
+    }
+
+    @Test
+    public void testGetAllWhileAccessed() throws Exception {
+        final LRUCache<Integer, Integer> cache = new LRUCache<Integer, Integer>(2000);
+        for (int i = 0; i < 2000; i++) {
+            cache.put(i, i);
+        }
+
+        // another thread keeps changing the access order while it is sorted
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                Random random = new Random(1);
+                while (!done.get()) {
+                    cache.get(random.nextInt(2000));
+                }
+            }
+        };
+        reader.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(2000, cache.getAll().size());
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+    }
+}
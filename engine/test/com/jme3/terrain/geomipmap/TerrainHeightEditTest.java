@@ -0,0 +1,153 @@
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.Vector2f;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TerrainHeightEditTest {
+
+    private static final int SIZE = 65;
+
+    private static float[] createHeights() {
+        float[] heights = new float[SIZE * SIZE];
+        for (int i = 0; i < heights.length; i++)
+            heights[i] = (float) Math.sin(i * 0.07) * 5;
+        return heights;
+    }
+
+    private static TerrainQuad createTerrain(float[] heights) {
+        TerrainQuad terrain = new TerrainQuad("terrain", 17, SIZE, heights);
+        terrain.updateNormals();
+        return terrain;
+    }
+
+    private static List<TerrainPatch> getPatches(TerrainQuad terrain) {
+        List<TerrainPatch> patches = new ArrayList<TerrainPatch>();
+        terrain.getAllTerrainPatches(patches);
+        return patches;
+    }
+
+    private static void clearUpdates(TerrainQuad terrain) {
+        for (TerrainPatch tp : getPatches(terrain)) {
+            for (VertexBuffer vb : tp.getMesh().getBufferList())
+                vb.clearUpdateNeeded();
+        }
+    }
+
+    private static void adjustCrater(TerrainQuad terrain, float x, float z, int radius, float delta) {
+        List<Vector2f> locs = new ArrayList<Vector2f>();
+        List<Float> heights = new ArrayList<Float>();
+        for (int dz = -radius; dz <= radius; dz++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                locs.add(new Vector2f(x + dx, z + dz));
+                heights.add(delta);
+            }
+        }
+        terrain.adjustHeight(locs, heights);
+    }
+
+    private static void assertSameBuffer(FloatBuffer expected, FloatBuffer actual) {
+        assertEquals(expected.limit(), actual.limit());
+        for (int i = 0; i < expected.limit(); i++)
+            assertEquals(expected.get(i), actual.get(i), 1e-5f);
+    }
+
+    @Test
+    public void testIncrementalNormalsMatchFullRecalculation() {
+        TerrainQuad terrain = createTerrain(createHeights());
+
+        // one edit inside a patch, one across the corner of four patches
+        // and one on the border of the terrain, all in the same frame
+        adjustCrater(terrain, -20, -20, 2, 3);
+        adjustCrater(terrain, 0, 0, 3, -2);
+        adjustCrater(terrain, 31, 10, 2, 4);
+        terrain.updateNormals();
+
+        TerrainQuad expected = createTerrain(terrain.getHeightMap());
+        List<TerrainPatch> patches = getPatches(terrain);
+        List<TerrainPatch> expectedPatches = getPatches(expected);
+        assertEquals(expectedPatches.size(), patches.size());
+        for (int i = 0; i < patches.size(); i++) {
+            TerrainPatch tp = patches.get(i);
+            TerrainPatch ep = expectedPatches.get(i);
+            assertEquals(ep.getName(), tp.getName());
+            assertFalse(tp.isNormalUpdateNeeded());
+            assertSameBuffer(ep.getMesh().getFloatBuffer(Type.Position), tp.getMesh().getFloatBuffer(Type.Position));
+            assertSameBuffer(ep.getMesh().getFloatBuffer(Type.Normal), tp.getMesh().getFloatBuffer(Type.Normal));
+            assertSameBuffer(ep.getMesh().getFloatBuffer(Type.Tangent), tp.getMesh().getFloatBuffer(Type.Tangent));
+            assertSameBuffer(ep.getMesh().getFloatBuffer(Type.Binormal), tp.getMesh().getFloatBuffer(Type.Binormal));
+        }
+    }
+
+    @Test
+    public void testEditOnlyMarksModifiedRows() {
+        TerrainQuad terrain = createTerrain(createHeights());
+        clearUpdates(terrain);
+        List<TerrainPatch> patches = getPatches(terrain);
+        VertexBuffer[] positions = new VertexBuffer[patches.size()];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = patches.get(i).getMesh().getBuffer(Type.Position);
+
+        adjustCrater(terrain, -20, -20, 1, 2);
+
+        int edited = 0;
+        for (int i = 0; i < positions.length; i++) {
+            TerrainPatch tp = patches.get(i);
+            // the heights are written to the existing buffer
+            assertSame(positions[i], tp.getMesh().getBuffer(Type.Position));
+            if (!positions[i].isUpdateNeeded())
+                continue;
+            edited++;
+            assertTrue(tp.isNormalUpdateNeeded());
+            assertFalse(positions[i].hasDataSizeChanged());
+            int rowLength = tp.getSize() * 3;
+            assertEquals(3 * rowLength, positions[i].getUpdateEnd() - positions[i].getUpdateStart());
+            assertFalse(tp.getMesh().getBuffer(Type.Normal).isUpdateNeeded());
+        }
+        assertEquals(1, edited);
+
+        terrain.updateNormals();
+        for (TerrainPatch tp : patches) {
+            VertexBuffer normals = tp.getMesh().getBuffer(Type.Normal);
+            if (!normals.isUpdateNeeded())
+                continue;
+            // the crater and the vertices around it
+            assertEquals(5 * tp.getSize() * 3, normals.getUpdateEnd() - normals.getUpdateStart());
+        }
+    }
+
+    private static float getTop(TerrainPatch tp) {
+        BoundingBox bound = (BoundingBox) tp.getMesh().getBound();
+        return bound.getCenter().y + bound.getYExtent();
+    }
+
+    @Test
+    public void testBoundGrowsAndIsTightenedOnUpdate() {
+        TerrainQuad terrain = createTerrain(createHeights());
+        List<TerrainPatch> patches = getPatches(terrain);
+        float[] tops = new float[patches.size()];
+        for (int i = 0; i < tops.length; i++)
+            tops[i] = getTop(patches.get(i));
+
+        // the bound contains a new peak right away
+        adjustCrater(terrain, -20, -20, 0, 50);
+        int grown = 0;
+        for (int i = 0; i < tops.length; i++) {
+            if (getTop(patches.get(i)) >= tops[i] + 40)
+                grown++;
+        }
+        assertEquals(1, grown);
+
+        // and shrinks back once the edits of the frame are applied
+        adjustCrater(terrain, -20, -20, 0, -50);
+        terrain.updateNormals();
+        for (int i = 0; i < tops.length; i++)
+            assertEquals(tops[i], getTop(patches.get(i)), 1e-4f);
+    }
+}
@@ -0,0 +1,105 @@
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TerrainLodControlTest {
+
+    private static TerrainLodControl createTerrain(int lodThreads) {
+        float[] heights = new float[257 * 257];
+        for (int i = 0; i < heights.length; i++)
+            heights[i] = (float) Math.sin(i * 0.01) * 10;
+        TerrainQuad terrain = new TerrainQuad("terrain", 17, 257, heights);
+        TerrainLodControl control = new TerrainLodControl(terrain, new Camera(640, 480));
+        control.setLodThreads(lodThreads);
+        terrain.addControl(control);
+        return control;
+    }
+
+    private static HashMap<TerrainPatch, UpdatedTerrainPatch> runLod(TerrainLodControl control, Vector3f location) throws Exception {
+        TerrainQuad terrain = (TerrainQuad) control.getSpatial();
+        terrain.cacheTerrainTransforms();
+        List<Vector3f> locations = Collections.singletonList(location);
+        HashMap<TerrainPatch, UpdatedTerrainPatch> updated = control.getLodThread(locations, control.getLodCalculator()).call();
+        if (updated != null) {
+            for (UpdatedTerrainPatch utp : updated.values())
+                utp.updateAll();
+        }
+        return updated;
+    }
+
+    private static List<TerrainPatch> getPatches(TerrainLodControl control) {
+        List<TerrainPatch> patches = new ArrayList<TerrainPatch>();
+        ((TerrainQuad) control.getSpatial()).getAllTerrainPatches(patches);
+        return patches;
+    }
+
+    private static void assertSameIndices(VertexBuffer expected, VertexBuffer actual) {
+        IndexBuffer e = IndexBuffer.wrapIndexBuffer(expected.getData());
+        IndexBuffer a = IndexBuffer.wrapIndexBuffer(actual.getData());
+        assertEquals(e.size(), a.size());
+        for (int i = 0; i < e.size(); i++)
+            assertEquals(e.get(i), a.get(i));
+    }
+
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+        TerrainLodControl serial = createTerrain(1);
+        TerrainLodControl parallel = createTerrain(4);
+        try {
+            Vector3f[] path = {new Vector3f(-128, 20, -128), new Vector3f(0, 20, 0), new Vector3f(100, 20, -60)};
+            int changes = 0;
+            for (Vector3f location : path) {
+                HashMap<TerrainPatch, UpdatedTerrainPatch> expected = runLod(serial, location);
+                HashMap<TerrainPatch, UpdatedTerrainPatch> actual = runLod(parallel, location);
+                assertEquals(expected == null, actual == null);
+                if (expected != null) {
+                    assertEquals(expected.size(), actual.size());
+                    changes++;
+                }
+
+                List<TerrainPatch> serialPatches = getPatches(serial);
+                List<TerrainPatch> parallelPatches = getPatches(parallel);
+                assertEquals(256, serialPatches.size());
+                for (int i = 0; i < serialPatches.size(); i++) {
+                    TerrainPatch s = serialPatches.get(i);
+                    TerrainPatch p = parallelPatches.get(i);
+                    assertEquals(s.getName(), p.getName());
+                    assertEquals(s.getLod(), p.getLod());
+                    assertEquals(s.getLodLeft(), p.getLodLeft());
+                    assertEquals(s.getLodRight(), p.getLodRight());
+                    assertEquals(s.getLodTop(), p.getLodTop());
+                    assertEquals(s.getLodBottom(), p.getLodBottom());
+                    assertSameIndices(s.getMesh().getBuffer(Type.Index), p.getMesh().getBuffer(Type.Index));
+                }
+            }
+            assertTrue(changes > 1);
+        } finally {
+            serial.detachAndCleanUpControl();
+            parallel.detachAndCleanUpControl();
+            LODIndexCache.clear();
+        }
+    }
+
+    @Test
+    public void testSplitForLod() {
+        TerrainLodControl control = createTerrain(4);
+        TerrainQuad terrain = (TerrainQuad) control.getSpatial();
+        List<TerrainQuad> terrains = Collections.singletonList(terrain);
+
+        assertEquals(16, control.splitForLod(terrains, 4).size());
+        // 257 / 17 gives 4 levels of quads, the last ones only hold patches
+        assertEquals(64, control.splitForLod(terrains, 64).size());
+        assertEquals(1, control.splitForLod(terrains, 0).size());
+        terrain.removeControl(control);
+    }
+}
@@ -0,0 +1,126 @@
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TerrainQueryTest {
+
+    private static TerrainQuad createTerrain() {
+        int size = 129;
+        float[] heights = new float[size * size];
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++)
+                heights[z * size + x] = (float) (Math.sin(x * 0.11) * Math.cos(z * 0.07) * 12 + Math.sin(x * 0.9 + z) * 0.5);
+        }
+        TerrainQuad terrain = new TerrainQuad("terrain", 33, size, heights);
+        terrain.setLocalScale(2, 1.5f, 2);
+        terrain.updateGeometricState();
+        return terrain;
+    }
+
+    @Test
+    public void testHeightsMatchTerrain() {
+        TerrainQuad terrain = createTerrain();
+        TerrainQuery query = new TerrainQuery(terrain);
+        Random random = new Random(3);
+
+        float[] xz = new float[2000];
+        for (int i = 0; i < xz.length; i++)
+            xz[i] = (random.nextFloat() - 0.5f) * 250;
+        float[] heights = new float[xz.length / 2];
+        query.getHeights(xz, heights);
+
+        for (int i = 0; i < heights.length; i++) {
+            Vector2f point = new Vector2f(xz[i * 2], xz[i * 2 + 1]);
+            assertEquals(terrain.getHeight(point), heights[i], 1e-4f);
+            assertEquals(heights[i], query.getHeight(point.x, point.y), 0f);
+        }
+        assertTrue(Float.isNaN(query.getHeight(500, 0)));
+        assertTrue(Float.isNaN(query.getHeight(0, -129)));
+    }
+
+    @Test
+    public void testRayMatchesPicker() {
+        TerrainQuad terrain = createTerrain();
+        TerrainQuery query = new TerrainQuery(terrain);
+        Random random = new Random(7);
+
+        int hits = 0;
+        for (int i = 0; i < 200; i++) {
+            Vector3f origin = new Vector3f((random.nextFloat() - 0.5f) * 200, 40, (random.nextFloat() - 0.5f) * 200);
+            Vector3f direction = new Vector3f(random.nextFloat() - 0.5f, -0.3f - random.nextFloat(), random.nextFloat() - 0.5f).normalizeLocal();
+            Ray ray = new Ray(origin, direction);
+
+            CollisionResults results = new CollisionResults();
+            terrain.collideWith(ray, results);
+            Vector3f hit = new Vector3f();
+            float distance = query.getIntersection(ray, hit);
+            if (results.size() == 0) {
+                assertEquals(-1f, distance, 0f);
+                continue;
+            }
+            hits++;
+            assertEquals(results.getClosestCollision().getDistance(), distance, 1e-2f);
+            assertEquals(query.getHeight(hit.x, hit.z), hit.y, 1e-2f);
+        }
+        assertTrue(hits > 150);
+    }
+
+    @Test
+    public void testRayLimitAndMiss() {
+        TerrainQuad terrain = createTerrain();
+        TerrainQuery query = new TerrainQuery(terrain);
+
+        Ray down = new Ray(new Vector3f(10, 100, 10), new Vector3f(0, -1, 0));
+        float distance = query.getIntersection(down, null);
+        assertEquals(100 - query.getHeight(10, 10), distance, 1e-4f);
+
+        down.setLimit(distance - 1);
+        assertEquals(-1f, query.getIntersection(down, null), 0f);
+
+        Ray up = new Ray(new Vector3f(10, 100, 10), new Vector3f(0, 1, 0));
+        assertEquals(-1f, query.getIntersection(up, null), 0f);
+    }
+
+    @Test
+    public void testNormals() {
+        TerrainQuad terrain = new TerrainQuad("flat", 17, 65, null);
+        terrain.updateGeometricState();
+        TerrainQuery query = new TerrainQuery(terrain);
+        assertEquals(Vector3f.UNIT_Y, query.getNormal(3.3f, -7.1f, null));
+        assertNull(query.getNormal(100, 0, null));
+
+        // a slope rising along x leans the normal towards -x
+        TerrainQuad slope = createTerrain();
+        query = new TerrainQuery(slope);
+        Vector3f normal = query.getNormal(0, 0, new Vector3f());
+        float dx = query.getHeight(0.5f, 0) - query.getHeight(-0.5f, 0);
+        assertEquals(1f, normal.length(), 1e-5f);
+        assertTrue(normal.y > 0);
+        assertEquals(-Math.signum(dx), Math.signum(normal.x), 0f);
+    }
+
+    @Test
+    public void testSnapshotUntilUpdate() {
+        TerrainQuad terrain = createTerrain();
+        TerrainQuery query = new TerrainQuery(terrain);
+        float before = query.getHeight(20, 20);
+
+        List<Vector2f> xz = new ArrayList<Vector2f>();
+        xz.add(new Vector2f(20, 20));
+        List<Float> delta = new ArrayList<Float>();
+        delta.add(5f);
+        terrain.adjustHeight(xz, delta);
+        assertEquals(before, query.getHeight(20, 20), 0f);
+
+        query.update();
+        assertEquals(before + 5 * 1.5f, query.getHeight(20, 20), 1e-4f);
+    }
+}
@@ -0,0 +1,55 @@
+package com.jme3.terrain.heightmap;
+
+import java.io.File;
+import java.nio.FloatBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HeightTileFileTest {
+
+    private static float height(int x, int z) {
+        return x * 1000 + z;
+    }
+
+    @Test
+    public void testConvertAndRead() throws Exception {
+        int size = 40;
+        float[] heights = new float[size * size];
+        for (int z = 0; z < size; z++)
+            for (int x = 0; x < size; x++)
+                heights[z * size + x] = height(x, z);
+
+        File file = File.createTempFile("heights", ".jmht");
+        file.deleteOnExit();
+        HeightTileConverter.convert(new RawHeightMap(heights), 17, -1, 2, file);
+
+        HeightTileFile tiles = new HeightTileFile(file);
+        try {
+            assertEquals(17, tiles.getTileSize());
+            // 40 points need 3 tiles of 17 sharing their edges
+            assertEquals(3, tiles.getTilesX());
+            assertEquals(3, tiles.getTilesZ());
+            assertTrue(tiles.hasTile(-1, 2));
+            assertTrue(tiles.hasTile(1, 4));
+            assertFalse(tiles.hasTile(2, 2));
+            assertNull(tiles.getTile(-2, 2));
+            assertNull(tiles.readTile(0, 5, null));
+
+            // second tile on x, third on z, the last one is padded with the edge
+            float[] tile = tiles.readTile(0, 4, null);
+            assertEquals(17 * 17, tile.length);
+            assertEquals(height(16, 32), tile[0], 0);
+            assertEquals(height(16 + 5, 32 + 3), tile[3 * 17 + 5], 0);
+            assertEquals(height(32, 39), tile[16 * 17 + 16], 0);
+
+            FloatBuffer mapped = tiles.getTile(-1, 2);
+            assertEquals(17 * 17, mapped.remaining());
+            assertEquals(height(16, 16), mapped.get(16 * 17 + 16), 0);
+            // neighbours share their edge
+            assertEquals(mapped.get(16), tiles.getTile(0, 2).get(0), 0);
+        } finally {
+            tiles.close();
+            file.delete();
+        }
+    }
+}